@@ -0,0 +1,624 @@
+package com.stripe.codegen;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.internal.$Gson$Types;
+import com.google.gson.reflect.TypeToken;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Generates Gson type adapters for the model classes.
+ *
+ * <p>The generator loads the compiled classes of {@code com.stripe.model} and its subpackages and,
+ * for each of them, writes a {@code TypeAdapter} that reads JSON objects with a {@code switch} on
+ * the property names and sets fields directly, instead of using reflection. Classes that the
+ * generated code cannot construct or populate without reflection (e.g. because a field is private
+ * and has no setter) are left out and keep being deserialized by Gson's reflective adapter.
+ *
+ * <p>For each package, the adapters are nested in a {@code GeneratedTypeAdapters} class, and {@code
+ * com.stripe.model.GeneratedTypeAdapterFactory} creates the adapter of any supported class.
+ *
+ * <p>Usage: {@code TypeAdapterGenerator <output directory> <classes directory>...}
+ */
+public final class TypeAdapterGenerator {
+  private static final String ROOT_PACKAGE = "com.stripe.model";
+
+  private static final String FACTORY_NAME = "GeneratedTypeAdapterFactory";
+
+  private static final String ADAPTERS_NAME = "GeneratedTypeAdapters";
+
+  /** Interface implemented by the classes deserialized from API responses. */
+  private static final String MODEL_INTERFACE = ROOT_PACKAGE + ".StripeObjectInterface";
+
+  private static final String HEADER =
+      "// File generated by " + TypeAdapterGenerator.class.getName() + ". Do not edit.\n";
+
+  /** Classes that Gson handles with built-in adapters. */
+  private static final Class<?>[] BUILT_IN_TYPES = {
+    Collection.class, Map.class, Number.class, CharSequence.class, Iterable.class
+  };
+
+  private final Path outputDir;
+
+  private final Class<?> modelInterface = loadClass(MODEL_INTERFACE);
+
+  /** Generated adapters, by package name, in class name order. */
+  private final Map<String, List<Adapter>> adaptersByPackage = new TreeMap<>();
+
+  private TypeAdapterGenerator(Path outputDir) {
+    this.outputDir = outputDir;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      throw new IllegalArgumentException(
+          "Usage: TypeAdapterGenerator <output directory> <classes directory>...");
+    }
+
+    TypeAdapterGenerator generator = new TypeAdapterGenerator(Paths.get(args[0]));
+    int skipped = 0;
+    for (int i = 1; i < args.length; i++) {
+      for (String className : findModelClasses(Paths.get(args[i]))) {
+        if (!generator.add(loadClass(className))) {
+          skipped += 1;
+        }
+      }
+    }
+    generator.write();
+
+    int generated = generator.adaptersByPackage.values().stream().mapToInt(List::size).sum();
+    System.out.printf("Generated %d type adapters, skipped %d classes.%n", generated, skipped);
+  }
+
+  private static List<String> findModelClasses(Path classesDir) throws IOException {
+    Path modelDir = classesDir.resolve(ROOT_PACKAGE.replace('.', File.separatorChar));
+    List<String> classNames = new ArrayList<>();
+    if (!Files.isDirectory(modelDir)) {
+      return classNames;
+    }
+
+    try (Stream<Path> paths = Files.walk(modelDir)) {
+      paths
+          .filter(path -> path.toString().endsWith(".class"))
+          .map(classesDir::relativize)
+          .map(Path::toString)
+          .map(path -> path.substring(0, path.length() - ".class".length()))
+          .map(path -> path.replace(File.separatorChar, '.'))
+          .sorted()
+          .forEach(classNames::add);
+    }
+    return classNames;
+  }
+
+  private static Class<?> loadClass(String className) {
+    try {
+      return Class.forName(className, false, TypeAdapterGenerator.class.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException("Cannot load " + className, e);
+    }
+  }
+
+  /**
+   * Adds the adapter for the given class.
+   *
+   * @return {@code false} if the class is not a model class or no adapter can be generated for it
+   */
+  private boolean add(Class<?> clazz) {
+    if (!this.modelInterface.isAssignableFrom(clazz) || !isSupportedClass(clazz)) {
+      return false;
+    }
+
+    List<Property> properties = properties(clazz);
+    if (properties == null) {
+      return false;
+    }
+
+    String packageName = clazz.getPackage().getName();
+    this.adaptersByPackage
+        .computeIfAbsent(packageName, k -> new ArrayList<>())
+        .add(new Adapter(clazz, properties));
+    return true;
+  }
+
+  private static boolean isSupportedClass(Class<?> clazz) {
+    if (clazz.isInterface()
+        || clazz.isEnum()
+        || clazz.isAnnotation()
+        || clazz.isAnonymousClass()
+        || clazz.isLocalClass()
+        || clazz.isSynthetic()
+        || Modifier.isAbstract(clazz.getModifiers())
+        || (clazz.getTypeParameters().length > 0)
+        || (clazz.isMemberClass() && !Modifier.isStatic(clazz.getModifiers()))
+        || !isAccessible(clazz, clazz.getPackage().getName())) {
+      return false;
+    }
+    for (Class<?> builtInType : BUILT_IN_TYPES) {
+      if (builtInType.isAssignableFrom(clazz)) {
+        return false;
+      }
+    }
+
+    try {
+      Constructor<?> constructor = clazz.getDeclaredConstructor();
+      return !Modifier.isPrivate(constructor.getModifiers());
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns the properties that Gson's reflective adapter binds for the given class, or {@code
+   * null} if they cannot all be set without reflection.
+   */
+  private static List<Property> properties(Class<?> clazz) {
+    String packageName = clazz.getPackage().getName();
+    List<Property> properties = new ArrayList<>();
+    Set<String> jsonNames = new HashSet<>();
+    Set<String> fieldNames = new HashSet<>();
+
+    // Walk the class hierarchy the way ReflectiveTypeAdapterFactory does, resolving type variables
+    // against the class being generated.
+    Type type = clazz;
+    Class<?> raw = clazz;
+    while (raw != Object.class) {
+      for (Field field : raw.getDeclaredFields()) {
+        if (isExcluded(field)) {
+          continue;
+        }
+        // Fields hidden by subclass fields of the same name cannot be set as value.name.
+        if (Modifier.isFinal(field.getModifiers()) || !fieldNames.add(field.getName())) {
+          return null;
+        }
+
+        Type fieldType = $Gson$Types.resolve(type, raw, field.getGenericType());
+        if (!isRenderable(fieldType, packageName)) {
+          return null;
+        }
+
+        String setter = null;
+        if (!canAccess(field, packageName)) {
+          setter = findSetter(clazz, field, packageName);
+          if (setter == null) {
+            return null;
+          }
+        }
+
+        List<String> names = jsonNames(field);
+        for (String name : names) {
+          if (!jsonNames.add(name)) {
+            return null;
+          }
+        }
+        properties.add(new Property(field, fieldType, names, setter));
+      }
+      type = $Gson$Types.resolve(type, raw, raw.getGenericSuperclass());
+      raw = $Gson$Types.getRawType(type);
+    }
+    return properties;
+  }
+
+  /** Mirrors Gson's default exclusion strategy. */
+  private static boolean isExcluded(Field field) {
+    int modifiers = field.getModifiers();
+    Class<?> fieldClass = field.getType();
+    return Modifier.isStatic(modifiers)
+        || Modifier.isTransient(modifiers)
+        || field.isSynthetic()
+        || (!Enum.class.isAssignableFrom(fieldClass)
+            && (fieldClass.isAnonymousClass() || fieldClass.isLocalClass()));
+  }
+
+  /** Mirrors the names {@code ReflectiveTypeAdapterFactory} binds a field to. */
+  private static List<String> jsonNames(Field field) {
+    List<String> names = new ArrayList<>();
+    SerializedName annotation = field.getAnnotation(SerializedName.class);
+    if (annotation == null) {
+      names.add(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES.translateName(field));
+    } else {
+      names.add(annotation.value());
+      for (String alternate : annotation.alternate()) {
+        names.add(alternate);
+      }
+    }
+    return names;
+  }
+
+  private static boolean canAccess(Field field, String packageName) {
+    int modifiers = field.getModifiers();
+    if (Modifier.isPrivate(modifiers)) {
+      return false;
+    }
+    return Modifier.isPublic(modifiers)
+        ? isAccessible(field.getDeclaringClass(), packageName)
+        : field.getDeclaringClass().getPackage().getName().equals(packageName);
+  }
+
+  /** Returns the name of a public setter for the field, or {@code null} if there is none. */
+  private static String findSetter(Class<?> clazz, Field field, String packageName) {
+    String name = field.getName();
+    String setterName = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    for (Method method : clazz.getMethods()) {
+      if (method.getName().equals(setterName)
+          && !Modifier.isStatic(method.getModifiers())
+          && (method.getParameterCount() == 1)
+          && method.getParameterTypes()[0].equals(field.getType())
+          && isAccessible(method.getDeclaringClass(), packageName)) {
+        return setterName;
+      }
+    }
+    return null;
+  }
+
+  /** Returns whether the class can be named from code in the given package. */
+  private static boolean isAccessible(Class<?> clazz, String packageName) {
+    for (Class<?> c = clazz; c != null; c = c.getEnclosingClass()) {
+      int modifiers = c.getModifiers();
+      if (Modifier.isPrivate(modifiers)) {
+        return false;
+      }
+      if (!Modifier.isPublic(modifiers) && !c.getPackage().getName().equals(packageName)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns whether the type can be written in the source of the given package. */
+  private static boolean isRenderable(Type type, String packageName) {
+    if (type instanceof Class<?>) {
+      Class<?> clazz = (Class<?>) type;
+      while (clazz.isArray()) {
+        clazz = clazz.getComponentType();
+      }
+      return clazz.isPrimitive()
+          || (!clazz.isAnonymousClass()
+              && !clazz.isLocalClass()
+              && isAccessible(clazz, packageName));
+    }
+    if (type instanceof ParameterizedType) {
+      ParameterizedType parameterizedType = (ParameterizedType) type;
+      if (!isRenderable(parameterizedType.getRawType(), packageName)) {
+        return false;
+      }
+      for (Type argument : parameterizedType.getActualTypeArguments()) {
+        if (!isRenderable(argument, packageName)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    // Wildcards, type variables and generic arrays
+    return false;
+  }
+
+  /** Returns the source of the type, e.g. {@code java.util.List<com.stripe.model.Charge>}. */
+  private static String typeName(Type type) {
+    if (type instanceof Class<?>) {
+      return ((Class<?>) type).getCanonicalName();
+    }
+    ParameterizedType parameterizedType = (ParameterizedType) type;
+    StringBuilder sb = new StringBuilder(typeName(parameterizedType.getRawType())).append('<');
+    Type[] arguments = parameterizedType.getActualTypeArguments();
+    for (int i = 0; i < arguments.length; i++) {
+      sb.append((i == 0) ? "" : ", ").append(typeName(arguments[i]));
+    }
+    return sb.append('>').toString();
+  }
+
+  /** Returns the source of an expression evaluating to the {@link Type} of the type. */
+  private static String typeExpression(Type type) {
+    if (type instanceof Class<?>) {
+      return typeName(type) + ".class";
+    }
+    ParameterizedType parameterizedType = (ParameterizedType) type;
+    StringBuilder sb =
+        new StringBuilder("com.google.gson.reflect.TypeToken.getParameterized(")
+            .append(typeExpression(parameterizedType.getRawType()));
+    for (Type argument : parameterizedType.getActualTypeArguments()) {
+      sb.append(", ").append(typeExpression(argument));
+    }
+    return sb.append(").getType()").toString();
+  }
+
+  private static Type boxed(Type type) {
+    return (type instanceof Class<?>) ? TypeToken.get(type).getRawType() : type;
+  }
+
+  private static Class<?> box(Class<?> clazz) {
+    if (!clazz.isPrimitive()) {
+      return clazz;
+    } else if (clazz == boolean.class) {
+      return Boolean.class;
+    } else if (clazz == byte.class) {
+      return Byte.class;
+    } else if (clazz == char.class) {
+      return Character.class;
+    } else if (clazz == short.class) {
+      return Short.class;
+    } else if (clazz == int.class) {
+      return Integer.class;
+    } else if (clazz == long.class) {
+      return Long.class;
+    } else if (clazz == float.class) {
+      return Float.class;
+    } else {
+      return Double.class;
+    }
+  }
+
+  private void write() throws IOException {
+    for (Map.Entry<String, List<Adapter>> entry : this.adaptersByPackage.entrySet()) {
+      this.writeFile(
+          entry.getKey(), ADAPTERS_NAME, adaptersSource(entry.getKey(), entry.getValue()));
+    }
+    this.writeFile(ROOT_PACKAGE, FACTORY_NAME, this.factorySource());
+  }
+
+  private void writeFile(String packageName, String className, String source) throws IOException {
+    Path dir = this.outputDir.resolve(packageName.replace('.', File.separatorChar));
+    Files.createDirectories(dir);
+    Files.write(dir.resolve(className + ".java"), source.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private String factorySource() {
+    StringBuilder sb = new StringBuilder(HEADER);
+    sb.append("package ").append(ROOT_PACKAGE).append(";\n\n");
+    sb.append("/**\n");
+    sb.append(
+        " * Creates the type adapters generated for the model classes. Returns {@code null} for\n");
+    sb.append(" * other types, and for model classes that are deserialized using reflection.\n");
+    sb.append(" */\n");
+    sb.append("public final class ").append(FACTORY_NAME);
+    sb.append(" implements com.google.gson.TypeAdapterFactory {\n");
+    sb.append("  @Override\n");
+    sb.append("  @SuppressWarnings(\"unchecked\")\n");
+    sb.append("  public <T> com.google.gson.TypeAdapter<T> create(\n");
+    sb.append("      com.google.gson.Gson gson, com.google.gson.reflect.TypeToken<T> type) {\n");
+    sb.append("    if (!(type.getType() instanceof Class<?>)) {\n");
+    sb.append("      return null;\n");
+    sb.append("    }\n");
+    sb.append("    Class<?> rawType = type.getRawType();\n");
+    sb.append("    String className = rawType.getName();\n");
+    sb.append("    switch (className.substring(0, Math.max(className.lastIndexOf('.'), 0))) {\n");
+    for (String packageName : this.adaptersByPackage.keySet()) {
+      sb.append("      case \"").append(packageName).append("\":\n");
+      sb.append("        return (com.google.gson.TypeAdapter<T>)\n");
+      sb.append("            ").append(packageName).append('.').append(ADAPTERS_NAME);
+      sb.append(".create(gson, this, rawType);\n");
+    }
+    sb.append("      default:\n");
+    sb.append("        return null;\n");
+    sb.append("    }\n");
+    sb.append("  }\n");
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  private static String adaptersSource(String packageName, List<Adapter> adapters) {
+    StringBuilder sb = new StringBuilder(HEADER);
+    sb.append("package ").append(packageName).append(";\n\n");
+    sb.append("/** Type adapters for the model classes of this package. */\n");
+    sb.append("@SuppressWarnings({\"deprecation\", \"unchecked\"})\n");
+    sb.append("public final class ").append(ADAPTERS_NAME).append(" {\n");
+    sb.append("  private ").append(ADAPTERS_NAME).append("() {}\n\n");
+
+    sb.append("  /**\n");
+    sb.append(
+        "   * Returns the adapter for the given class, or {@code null} if none was generated.\n");
+    sb.append("   *\n");
+    sb.append("   * @param gson the Gson instance the adapter is created for\n");
+    sb.append(
+        "   * @param factory the factory creating the adapter, skipped to serialize objects\n");
+    sb.append("   * @param rawType the class\n");
+    sb.append("   * @return the adapter\n");
+    sb.append("   */\n");
+    sb.append("  public static com.google.gson.TypeAdapter<?> create(\n");
+    sb.append("      com.google.gson.Gson gson,\n");
+    sb.append("      com.google.gson.TypeAdapterFactory factory,\n");
+    sb.append("      Class<?> rawType) {\n");
+    sb.append("    switch (rawType.getName()) {\n");
+    for (Adapter adapter : adapters) {
+      String className = typeName(adapter.clazz);
+      sb.append("      case \"").append(adapter.clazz.getName()).append("\":\n");
+      sb.append("        return (rawType == ").append(className).append(".class)\n");
+      sb.append("            ? new ").append(adapter.name).append("(gson, factory)\n");
+      sb.append("            : null;\n");
+    }
+    sb.append("      default:\n");
+    sb.append("        return null;\n");
+    sb.append("    }\n");
+    sb.append("  }\n");
+
+    for (Adapter adapter : adapters) {
+      sb.append('\n');
+      adapter.appendSource(sb);
+    }
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  /** A field bound by Gson's reflective adapter. */
+  private static final class Property {
+    final Field field;
+    final Type type;
+    final List<String> jsonNames;
+
+    /** Name of the setter used to set the field, or {@code null} to set the field directly. */
+    final String setter;
+
+    Property(Field field, Type type, List<String> jsonNames, String setter) {
+      this.field = field;
+      this.type = type;
+      this.jsonNames = jsonNames;
+      this.setter = setter;
+    }
+  }
+
+  /** The generated adapter of a model class. */
+  private static final class Adapter {
+    final Class<?> clazz;
+    final String name;
+    final List<Property> properties;
+
+    Adapter(Class<?> clazz, List<Property> properties) {
+      this.clazz = clazz;
+      String packageName = clazz.getPackage().getName();
+      this.name = clazz.getName().substring(packageName.length() + 1).replace('$', '_') + "Adapter";
+      this.properties = properties;
+    }
+
+    void appendSource(StringBuilder sb) {
+      String className = typeName(this.clazz);
+
+      // One delegate adapter per distinct field type
+      Map<String, String> adapterFields = new LinkedHashMap<>();
+      Map<String, Type> adapterTypes = new LinkedHashMap<>();
+      for (Property property : this.properties) {
+        Type type = boxed(property.type);
+        String key = typeName(type);
+        if (!adapterFields.containsKey(key)) {
+          adapterFields.put(key, "adapter" + adapterFields.size());
+          adapterTypes.put(key, type);
+        }
+      }
+
+      sb.append("  static final class ").append(this.name);
+      sb.append(" extends com.google.gson.TypeAdapter<").append(className).append("> {\n");
+      sb.append("    private final com.google.gson.Gson gson;\n");
+      sb.append("    private final com.google.gson.TypeAdapterFactory factory;\n");
+      for (Map.Entry<String, String> entry : adapterFields.entrySet()) {
+        sb.append("    private final com.google.gson.TypeAdapter<").append(entry.getKey());
+        sb.append("> ").append(entry.getValue()).append(";\n");
+      }
+      sb.append("    private com.google.gson.TypeAdapter<").append(className);
+      sb.append("> reflectiveAdapter;\n\n");
+
+      sb.append("    ").append(this.name);
+      sb.append("(com.google.gson.Gson gson, com.google.gson.TypeAdapterFactory factory) {\n");
+      sb.append("      this.gson = gson;\n");
+      sb.append("      this.factory = factory;\n");
+      for (Map.Entry<String, String> entry : adapterFields.entrySet()) {
+        Type type = adapterTypes.get(entry.getKey());
+        sb.append("      this.").append(entry.getValue()).append(" =\n");
+        if (type instanceof Class<?>) {
+          sb.append("          gson.getAdapter(").append(typeExpression(type)).append(");\n");
+        } else {
+          sb.append("          (com.google.gson.TypeAdapter<")
+              .append(entry.getKey())
+              .append(">)\n");
+          String typeExpression = typeExpression(type);
+          // TypeToken.getParameterized(...).getType() -> TypeToken.getParameterized(...)
+          String typeTokenExpression =
+              typeExpression.substring(0, typeExpression.length() - ".getType()".length());
+          sb.append("              gson.getAdapter(").append(typeTokenExpression).append(");\n");
+        }
+      }
+      sb.append("    }\n\n");
+
+      sb.append("    @Override\n");
+      sb.append("    public void write(com.google.gson.stream.JsonWriter out, ");
+      sb.append(className).append(" value)\n");
+      sb.append("        throws java.io.IOException {\n");
+      sb.append("      // Serialization is rare, so leave it to the reflective adapter.\n");
+      sb.append("      com.google.gson.TypeAdapter<").append(className);
+      sb.append("> adapter = this.reflectiveAdapter;\n");
+      sb.append("      if (adapter == null) {\n");
+      sb.append("        adapter =\n");
+      sb.append("            this.gson.getDelegateAdapter(\n");
+      sb.append("                this.factory, com.google.gson.reflect.TypeToken.get(");
+      sb.append(className).append(".class));\n");
+      sb.append("        this.reflectiveAdapter = adapter;\n");
+      sb.append("      }\n");
+      sb.append("      adapter.write(out, value);\n");
+      sb.append("    }\n\n");
+
+      sb.append("    @Override\n");
+      sb.append("    public ").append(className);
+      sb.append(" read(com.google.gson.stream.JsonReader in) throws java.io.IOException {\n");
+      sb.append("      if (in.peek() == com.google.gson.stream.JsonToken.NULL) {\n");
+      sb.append("        in.nextNull();\n");
+      sb.append("        return null;\n");
+      sb.append("      }\n\n");
+      sb.append("      ").append(className).append(" value = new ").append(className);
+      sb.append("();\n");
+      sb.append("      try {\n");
+      sb.append("        in.beginObject();\n");
+      sb.append("        while (in.hasNext()) {\n");
+      sb.append("          switch (in.nextName()) {\n");
+      for (Property property : this.properties) {
+        for (String jsonName : property.jsonNames) {
+          sb.append("            case \"").append(escape(jsonName)).append("\":\n");
+        }
+        String adapterField = "this." + adapterFields.get(typeName(boxed(property.type)));
+        appendAssignment(sb, property, adapterField);
+        sb.append("              break;\n");
+      }
+      sb.append("            default:\n");
+      sb.append("              in.skipValue();\n");
+      sb.append("          }\n");
+      sb.append("        }\n");
+      sb.append("        in.endObject();\n");
+      sb.append("      } catch (IllegalStateException e) {\n");
+      sb.append("        throw new com.google.gson.JsonSyntaxException(e);\n");
+      sb.append("      }\n");
+      sb.append("      return value;\n");
+      sb.append("    }\n");
+      sb.append("  }\n");
+    }
+
+    private void appendAssignment(StringBuilder sb, Property property, String adapterField) {
+      boolean primitive =
+          (property.type instanceof Class<?>) && ((Class<?>) property.type).isPrimitive();
+      if (primitive) {
+        // Like the reflective adapter, leave primitive fields untouched when the JSON value is
+        // null.
+        String boxedName = typeName(box((Class<?>) property.type));
+        sb.append("              {\n");
+        sb.append("                ").append(boxedName).append(" read = ");
+        sb.append(adapterField).append(".read(in);\n");
+        sb.append("                if (read != null) {\n");
+        sb.append("                  ").append(assignment(property, "read")).append('\n');
+        sb.append("                }\n");
+        sb.append("              }\n");
+      } else if (property.setter != null) {
+        sb.append("              value.").append(property.setter).append('(');
+        sb.append(adapterField).append(".read(in));\n");
+      } else {
+        sb.append("              value.").append(property.field.getName());
+        sb.append(" = ").append(adapterField).append(".read(in);\n");
+      }
+    }
+
+    private static String assignment(Property property, String value) {
+      if (property.setter != null) {
+        return "value." + property.setter + "(" + value + ");";
+      }
+      return "value." + property.field.getName() + " = " + value + ";";
+    }
+
+    private static String escape(String s) {
+      return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.stripe.exception;
+
+import java.util.function.Supplier;
+
+/**
+ * Exception thrown by auto-pagination iterators when fetching the next page fails. As {@link
+ * java.util.Iterator#next()} cannot throw checked exceptions, the {@link StripeException} raised by
+ * the request is wrapped in this exception and returned by {@link #getCause()}.
+ *
+ * <p>Code consuming a list with a stream can use {@link #unwrap(Supplier)} to get the {@link
+ * StripeException} back as a checked exception:
+ *
+ * <pre>{@code
+ * List<Charge> refunded =
+ *     AutoPagingException.unwrap(
+ *         () -> charges.autoPagingStream().filter(Charge::getRefunded).collect(toList()));
+ * }</pre>
+ */
+public class AutoPagingException extends RuntimeException {
+  private static final long serialVersionUID = 2L;
+
+  public AutoPagingException(String message, StripeException cause) {
+    super(message, cause);
+  }
+
+  /**
+   * Returns the exception raised by the request for the next page.
+   *
+   * @return the exception raised by the request
+   */
+  @Override
+  public synchronized StripeException getCause() {
+    return (StripeException) super.getCause();
+  }
+
+  /**
+   * Runs the given code consuming auto-paginated lists, and rethrows the {@link StripeException} of
+   * any {@link AutoPagingException} it throws.
+   *
+   * @param supplier the code to run
+   * @return the result of the code
+   * @throws StripeException if fetching a page fails
+   */
+  public static <R> R unwrap(Supplier<R> supplier) throws StripeException {
+    try {
+      return supplier.get();
+    } catch (AutoPagingException e) {
+      throw e.getCause();
+    }
+  }
+}
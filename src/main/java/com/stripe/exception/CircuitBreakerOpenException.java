@@ -0,0 +1,22 @@
+package com.stripe.exception;
+
+import lombok.Getter;
+
+/**
+ * Exception thrown when a request is rejected without being sent because the circuit breaker for
+ * its endpoint is open.
+ */
+@Getter
+public class CircuitBreakerOpenException extends StripeException {
+  private static final long serialVersionUID = 2L;
+
+  /**
+   * The endpoint whose circuit breaker rejected the request, e.g. {@code GET /v1/invoices/{id}}.
+   */
+  private final String endpoint;
+
+  public CircuitBreakerOpenException(String message, String endpoint) {
+    super(message, null, null, 0);
+    this.endpoint = endpoint;
+  }
+}
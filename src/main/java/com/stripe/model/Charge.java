@@ -2,6 +2,7 @@ package com.stripe.model;
 
 import com.google.gson.annotations.SerializedName;
 import com.stripe.Stripe;
+import com.stripe.exception.InvalidRequestException;
 import com.stripe.exception.StripeException;
 import com.stripe.model.radar.Rule;
 import com.stripe.net.ApiResource;
@@ -13,6 +14,7 @@ import com.stripe.param.ChargeRetrieveParams;
 import com.stripe.param.ChargeUpdateParams;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
@@ -552,7 +554,7 @@ public class Charge extends ApiResource implements MetadataStore<Charge>, Balanc
    */
   public static ChargeCollection list(Map<String, Object> params, RequestOptions options)
       throws StripeException {
-    String url = String.format("%s%s", Stripe.getApiBase(), "/v1/charges");
+    String url = collectionUrl();
     return ApiResource.requestCollection(url, params, ChargeCollection.class, options);
   }
 
@@ -570,7 +572,7 @@ public class Charge extends ApiResource implements MetadataStore<Charge>, Balanc
    */
   public static ChargeCollection list(ChargeListParams params, RequestOptions options)
       throws StripeException {
-    String url = String.format("%s%s", Stripe.getApiBase(), "/v1/charges");
+    String url = collectionUrl();
     return ApiResource.requestCollection(url, params, ChargeCollection.class, options);
   }
 
@@ -592,7 +594,7 @@ public class Charge extends ApiResource implements MetadataStore<Charge>, Balanc
    */
   public static Charge create(Map<String, Object> params, RequestOptions options)
       throws StripeException {
-    String url = String.format("%s%s", Stripe.getApiBase(), "/v1/charges");
+    String url = collectionUrl();
     return ApiResource.request(ApiResource.RequestMethod.POST, url, params, Charge.class, options);
   }
 
@@ -614,7 +616,7 @@ public class Charge extends ApiResource implements MetadataStore<Charge>, Balanc
    */
   public static Charge create(ChargeCreateParams params, RequestOptions options)
       throws StripeException {
-    String url = String.format("%s%s", Stripe.getApiBase(), "/v1/charges");
+    String url = collectionUrl();
     return ApiResource.request(ApiResource.RequestMethod.POST, url, params, Charge.class, options);
   }
 
@@ -643,10 +645,7 @@ public class Charge extends ApiResource implements MetadataStore<Charge>, Balanc
    */
   public static Charge retrieve(String charge, Map<String, Object> params, RequestOptions options)
       throws StripeException {
-    String url =
-        String.format(
-            "%s%s",
-            Stripe.getApiBase(), String.format("/v1/charges/%s", ApiResource.urlEncodeId(charge)));
+    String url = resourceUrl(charge);
     return ApiResource.request(ApiResource.RequestMethod.GET, url, params, Charge.class, options);
   }
 
@@ -657,13 +656,84 @@ public class Charge extends ApiResource implements MetadataStore<Charge>, Balanc
    */
   public static Charge retrieve(String charge, ChargeRetrieveParams params, RequestOptions options)
       throws StripeException {
-    String url =
-        String.format(
-            "%s%s",
-            Stripe.getApiBase(), String.format("/v1/charges/%s", ApiResource.urlEncodeId(charge)));
+    String url = resourceUrl(charge);
     return ApiResource.request(ApiResource.RequestMethod.GET, url, params, Charge.class, options);
   }
 
+  /** Returns the URL of the charges collection. */
+  private static String collectionUrl() {
+    return String.format("%s%s", Stripe.getApiBase(), "/v1/charges");
+  }
+
+  /** Returns the URL of the given Charge. */
+  private static String resourceUrl(String charge) throws InvalidRequestException {
+    return String.format(
+        "%s%s",
+        Stripe.getApiBase(), String.format("/v1/charges/%s", ApiResource.urlEncodeId(charge)));
+  }
+
+  /** Asynchronous variant of {@link #create(Map)}. */
+  public static CompletableFuture<Charge> createAsync(Map<String, Object> params) {
+    return createAsync(params, (RequestOptions) null);
+  }
+
+  /** Asynchronous variant of {@link #create(Map, RequestOptions)}. */
+  public static CompletableFuture<Charge> createAsync(
+      Map<String, Object> params, RequestOptions options) {
+    String url = collectionUrl();
+    return ApiResource.requestAsync(
+        ApiResource.RequestMethod.POST, url, params, Charge.class, options);
+  }
+
+  /** Asynchronous variant of {@link #create(ChargeCreateParams)}. */
+  public static CompletableFuture<Charge> createAsync(ChargeCreateParams params) {
+    return createAsync(params, (RequestOptions) null);
+  }
+
+  /** Asynchronous variant of {@link #create(ChargeCreateParams, RequestOptions)}. */
+  public static CompletableFuture<Charge> createAsync(
+      ChargeCreateParams params, RequestOptions options) {
+    String url = collectionUrl();
+    return ApiResource.requestAsync(
+        ApiResource.RequestMethod.POST, url, params, Charge.class, options);
+  }
+
+  /** Asynchronous variant of {@link #retrieve(String)}. */
+  public static CompletableFuture<Charge> retrieveAsync(String charge) {
+    return retrieveAsync(charge, (Map<String, Object>) null, (RequestOptions) null);
+  }
+
+  /** Asynchronous variant of {@link #retrieve(String, RequestOptions)}. */
+  public static CompletableFuture<Charge> retrieveAsync(String charge, RequestOptions options) {
+    return retrieveAsync(charge, (Map<String, Object>) null, options);
+  }
+
+  /** Asynchronous variant of {@link #retrieve(String, Map, RequestOptions)}. */
+  public static CompletableFuture<Charge> retrieveAsync(
+      String charge, Map<String, Object> params, RequestOptions options) {
+    String url;
+    try {
+      url = resourceUrl(charge);
+    } catch (InvalidRequestException e) {
+      return ApiResource.failedFuture(e);
+    }
+    return ApiResource.requestAsync(
+        ApiResource.RequestMethod.GET, url, params, Charge.class, options);
+  }
+
+  /** Asynchronous variant of {@link #retrieve(String, ChargeRetrieveParams, RequestOptions)}. */
+  public static CompletableFuture<Charge> retrieveAsync(
+      String charge, ChargeRetrieveParams params, RequestOptions options) {
+    String url;
+    try {
+      url = resourceUrl(charge);
+    } catch (InvalidRequestException e) {
+      return ApiResource.failedFuture(e);
+    }
+    return ApiResource.requestAsync(
+        ApiResource.RequestMethod.GET, url, params, Charge.class, options);
+  }
+
   /**
    * Updates the specified charge by setting the values of the parameters passed. Any parameters not
    * provided will be left unchanged.
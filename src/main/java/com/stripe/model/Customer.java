@@ -2,6 +2,7 @@ package com.stripe.model;
 
 import com.google.gson.annotations.SerializedName;
 import com.stripe.Stripe;
+import com.stripe.exception.InvalidRequestException;
 import com.stripe.exception.StripeException;
 import com.stripe.net.ApiResource;
 import com.stripe.net.RequestOptions;
@@ -12,6 +13,7 @@ import com.stripe.param.CustomerRetrieveParams;
 import com.stripe.param.CustomerUpdateParams;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
@@ -186,7 +188,7 @@ public class Customer extends ApiResource implements HasId, MetadataStore<Custom
    */
   public static CustomerCollection list(Map<String, Object> params, RequestOptions options)
       throws StripeException {
-    String url = String.format("%s%s", Stripe.getApiBase(), "/v1/customers");
+    String url = collectionUrl();
     return ApiResource.requestCollection(url, params, CustomerCollection.class, options);
   }
 
@@ -204,7 +206,7 @@ public class Customer extends ApiResource implements HasId, MetadataStore<Custom
    */
   public static CustomerCollection list(CustomerListParams params, RequestOptions options)
       throws StripeException {
-    String url = String.format("%s%s", Stripe.getApiBase(), "/v1/customers");
+    String url = collectionUrl();
     return ApiResource.requestCollection(url, params, CustomerCollection.class, options);
   }
 
@@ -216,7 +218,7 @@ public class Customer extends ApiResource implements HasId, MetadataStore<Custom
   /** Creates a new customer object. */
   public static Customer create(Map<String, Object> params, RequestOptions options)
       throws StripeException {
-    String url = String.format("%s%s", Stripe.getApiBase(), "/v1/customers");
+    String url = collectionUrl();
     return ApiResource.request(
         ApiResource.RequestMethod.POST, url, params, Customer.class, options);
   }
@@ -229,7 +231,7 @@ public class Customer extends ApiResource implements HasId, MetadataStore<Custom
   /** Creates a new customer object. */
   public static Customer create(CustomerCreateParams params, RequestOptions options)
       throws StripeException {
-    String url = String.format("%s%s", Stripe.getApiBase(), "/v1/customers");
+    String url = collectionUrl();
     return ApiResource.request(
         ApiResource.RequestMethod.POST, url, params, Customer.class, options);
   }
@@ -256,11 +258,7 @@ public class Customer extends ApiResource implements HasId, MetadataStore<Custom
    */
   public static Customer retrieve(
       String customer, Map<String, Object> params, RequestOptions options) throws StripeException {
-    String url =
-        String.format(
-            "%s%s",
-            Stripe.getApiBase(),
-            String.format("/v1/customers/%s", ApiResource.urlEncodeId(customer)));
+    String url = resourceUrl(customer);
     return ApiResource.request(ApiResource.RequestMethod.GET, url, params, Customer.class, options);
   }
 
@@ -271,14 +269,84 @@ public class Customer extends ApiResource implements HasId, MetadataStore<Custom
   public static Customer retrieve(
       String customer, CustomerRetrieveParams params, RequestOptions options)
       throws StripeException {
-    String url =
-        String.format(
-            "%s%s",
-            Stripe.getApiBase(),
-            String.format("/v1/customers/%s", ApiResource.urlEncodeId(customer)));
+    String url = resourceUrl(customer);
     return ApiResource.request(ApiResource.RequestMethod.GET, url, params, Customer.class, options);
   }
 
+  /** Returns the URL of the customers collection. */
+  private static String collectionUrl() {
+    return String.format("%s%s", Stripe.getApiBase(), "/v1/customers");
+  }
+
+  /** Returns the URL of the given Customer. */
+  private static String resourceUrl(String customer) throws InvalidRequestException {
+    return String.format(
+        "%s%s",
+        Stripe.getApiBase(), String.format("/v1/customers/%s", ApiResource.urlEncodeId(customer)));
+  }
+
+  /** Asynchronous variant of {@link #create(Map)}. */
+  public static CompletableFuture<Customer> createAsync(Map<String, Object> params) {
+    return createAsync(params, (RequestOptions) null);
+  }
+
+  /** Asynchronous variant of {@link #create(Map, RequestOptions)}. */
+  public static CompletableFuture<Customer> createAsync(
+      Map<String, Object> params, RequestOptions options) {
+    String url = collectionUrl();
+    return ApiResource.requestAsync(
+        ApiResource.RequestMethod.POST, url, params, Customer.class, options);
+  }
+
+  /** Asynchronous variant of {@link #create(CustomerCreateParams)}. */
+  public static CompletableFuture<Customer> createAsync(CustomerCreateParams params) {
+    return createAsync(params, (RequestOptions) null);
+  }
+
+  /** Asynchronous variant of {@link #create(CustomerCreateParams, RequestOptions)}. */
+  public static CompletableFuture<Customer> createAsync(
+      CustomerCreateParams params, RequestOptions options) {
+    String url = collectionUrl();
+    return ApiResource.requestAsync(
+        ApiResource.RequestMethod.POST, url, params, Customer.class, options);
+  }
+
+  /** Asynchronous variant of {@link #retrieve(String)}. */
+  public static CompletableFuture<Customer> retrieveAsync(String customer) {
+    return retrieveAsync(customer, (Map<String, Object>) null, (RequestOptions) null);
+  }
+
+  /** Asynchronous variant of {@link #retrieve(String, RequestOptions)}. */
+  public static CompletableFuture<Customer> retrieveAsync(String customer, RequestOptions options) {
+    return retrieveAsync(customer, (Map<String, Object>) null, options);
+  }
+
+  /** Asynchronous variant of {@link #retrieve(String, Map, RequestOptions)}. */
+  public static CompletableFuture<Customer> retrieveAsync(
+      String customer, Map<String, Object> params, RequestOptions options) {
+    String url;
+    try {
+      url = resourceUrl(customer);
+    } catch (InvalidRequestException e) {
+      return ApiResource.failedFuture(e);
+    }
+    return ApiResource.requestAsync(
+        ApiResource.RequestMethod.GET, url, params, Customer.class, options);
+  }
+
+  /** Asynchronous variant of {@link #retrieve(String, CustomerRetrieveParams, RequestOptions)}. */
+  public static CompletableFuture<Customer> retrieveAsync(
+      String customer, CustomerRetrieveParams params, RequestOptions options) {
+    String url;
+    try {
+      url = resourceUrl(customer);
+    } catch (InvalidRequestException e) {
+      return ApiResource.failedFuture(e);
+    }
+    return ApiResource.requestAsync(
+        ApiResource.RequestMethod.GET, url, params, Customer.class, options);
+  }
+
   /**
    * Updates the specified customer by setting the values of the parameters passed. Any parameters
    * not provided will be left unchanged. For example, if you pass the <strong>source</strong>
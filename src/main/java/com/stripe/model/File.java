@@ -2,11 +2,18 @@ package com.stripe.model;
 
 import com.google.gson.annotations.SerializedName;
 import com.stripe.Stripe;
+import com.stripe.exception.InvalidRequestException;
 import com.stripe.exception.StripeException;
 import com.stripe.net.ApiResource;
+import com.stripe.net.DownloadProgressListener;
 import com.stripe.net.RequestOptions;
 import com.stripe.param.FileCreateParams;
 import com.stripe.param.FileListParams;
+import com.stripe.util.CsvReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.Map;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -165,4 +172,71 @@ public class File extends ApiResource implements HasId {
       throws StripeException {
     return request(RequestMethod.GET, instanceUrl(File.class, id), params, File.class, options);
   }
+
+  /**
+   * Downloads the contents of the file to the given path, streaming them to disk. See {@link
+   * ApiResource#download(String, Path, DownloadProgressListener, RequestOptions)}.
+   */
+  public long download(Path path, RequestOptions options) throws StripeException, IOException {
+    return download(path, null, options);
+  }
+
+  /**
+   * Downloads the contents of the file to the given path, streaming them to disk and reporting
+   * progress to the given listener. See {@link ApiResource#download(String, Path,
+   * DownloadProgressListener, RequestOptions)}.
+   */
+  public long download(Path path, DownloadProgressListener listener, RequestOptions options)
+      throws StripeException, IOException {
+    return download(this.contentsUrl(), path, listener, options);
+  }
+
+  /**
+   * Downloads the contents of the file to the given stream. See {@link ApiResource#download(String,
+   * OutputStream, DownloadProgressListener, RequestOptions)}.
+   */
+  public long download(OutputStream out, RequestOptions options)
+      throws StripeException, IOException {
+    return download(out, null, options);
+  }
+
+  /**
+   * Downloads the contents of the file to the given stream, reporting progress to the given
+   * listener. See {@link ApiResource#download(String, OutputStream, DownloadProgressListener,
+   * RequestOptions)}.
+   */
+  public long download(OutputStream out, DownloadProgressListener listener, RequestOptions options)
+      throws StripeException, IOException {
+    return download(this.contentsUrl(), out, listener, options);
+  }
+
+  /**
+   * Opens the contents of the file as a stream read from the network. Closing the stream closes the
+   * connection.
+   */
+  public InputStream openStream(RequestOptions options) throws StripeException {
+    return openStream(this.contentsUrl(), options);
+  }
+
+  /**
+   * Reads the contents of the file, a CSV file such as the results of a report run or of a Sigma
+   * scheduled query run, one row at a time as it is received. The reader must be closed.
+   */
+  public CsvReader readCsv(RequestOptions options) throws StripeException, IOException {
+    InputStream in = this.openStream(options);
+    try {
+      return CsvReader.open(in);
+    } catch (IOException | RuntimeException e) {
+      in.close();
+      throw e;
+    }
+  }
+
+  private String contentsUrl() throws InvalidRequestException {
+    if (this.url != null) {
+      return this.url;
+    }
+    return String.format(
+        "%s/contents", instanceUrl(File.class, this.getId(), Stripe.getUploadBase()));
+  }
 }
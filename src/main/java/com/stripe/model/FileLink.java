@@ -4,11 +4,15 @@ import com.google.gson.annotations.SerializedName;
 import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
 import com.stripe.net.ApiResource;
+import com.stripe.net.DownloadProgressListener;
 import com.stripe.net.RequestOptions;
 import com.stripe.param.FileLinkCreateParams;
 import com.stripe.param.FileLinkListParams;
 import com.stripe.param.FileLinkRetrieveParams;
 import com.stripe.param.FileLinkUpdateParams;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.Map;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -201,4 +205,40 @@ public class FileLink extends ApiResource implements HasId, MetadataStore<FileLi
     String url = String.format("%s%s", Stripe.getApiBase(), "/v1/file_links");
     return ApiResource.requestCollection(url, params, FileLinkCollection.class, options);
   }
+
+  /**
+   * Downloads the linked file to the given path, streaming it to disk. See {@link
+   * ApiResource#download(String, Path, DownloadProgressListener, RequestOptions)}.
+   */
+  public long download(Path path, RequestOptions options) throws StripeException, IOException {
+    return download(path, null, options);
+  }
+
+  /**
+   * Downloads the linked file to the given path, streaming it to disk and reporting progress to the
+   * given listener. See {@link ApiResource#download(String, Path, DownloadProgressListener,
+   * RequestOptions)}.
+   */
+  public long download(Path path, DownloadProgressListener listener, RequestOptions options)
+      throws StripeException, IOException {
+    return download(this.url, path, listener, options);
+  }
+
+  /**
+   * Downloads the linked file to the given stream. See {@link ApiResource#download(String,
+   * OutputStream, DownloadProgressListener, RequestOptions)}.
+   */
+  public long download(OutputStream out, RequestOptions options)
+      throws StripeException, IOException {
+    return download(out, null, options);
+  }
+
+  /**
+   * Downloads the linked file to the given stream, reporting progress to the given listener. See
+   * {@link ApiResource#download(String, OutputStream, DownloadProgressListener, RequestOptions)}.
+   */
+  public long download(OutputStream out, DownloadProgressListener listener, RequestOptions options)
+      throws StripeException, IOException {
+    return download(this.url, out, listener, options);
+  }
 }
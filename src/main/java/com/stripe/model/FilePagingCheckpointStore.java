@@ -0,0 +1,105 @@
+package com.stripe.model;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Stores the cursor of an auto-pagination run in a local file. The file is replaced atomically, so
+ * a run killed while saving leaves the previous cursor intact.
+ */
+public class FilePagingCheckpointStore implements PagingCheckpointStore {
+  /** The classes a cursor file may hold: the cursor and the values of request parameters. */
+  private static final Set<String> ALLOWED_CLASSES =
+      new HashSet<>(
+          Arrays.asList(
+              PagingCursor.class.getName(),
+              "java.util.Collections$UnmodifiableMap",
+              "java.util.HashMap",
+              "java.util.LinkedHashMap",
+              "java.util.ArrayList",
+              "java.lang.String",
+              "java.lang.Boolean",
+              "java.lang.Number",
+              "java.lang.Integer",
+              "java.lang.Long",
+              "java.lang.Double",
+              "java.lang.Float",
+              "java.math.BigDecimal",
+              "java.math.BigInteger"));
+
+  private final Path path;
+
+  /**
+   * Initializes a new instance of the {@link FilePagingCheckpointStore} class.
+   *
+   * @param path the file holding the cursor
+   */
+  public FilePagingCheckpointStore(Path path) {
+    requireNonNull(path);
+    this.path = path;
+  }
+
+  @Override
+  public PagingCursor load() throws IOException {
+    try (InputStream in = Files.newInputStream(this.path);
+        ObjectInputStream objects = new CursorInputStream(in)) {
+      return (PagingCursor) objects.readObject();
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (ClassNotFoundException | ClassCastException e) {
+      throw new IOException(String.format("Invalid cursor file %s", this.path), e);
+    }
+  }
+
+  @Override
+  public void save(PagingCursor cursor) throws IOException {
+    Path tempPath = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+    try (OutputStream out = Files.newOutputStream(tempPath);
+        ObjectOutputStream objects = new ObjectOutputStream(out)) {
+      objects.writeObject(cursor);
+    }
+
+    try {
+      Files.move(
+          tempPath, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tempPath, this.path, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  @Override
+  public void clear() throws IOException {
+    Files.deleteIfExists(this.path);
+  }
+
+  /** Only reads the classes a cursor is made of. */
+  private static class CursorInputStream extends ObjectInputStream {
+    CursorInputStream(InputStream in) throws IOException {
+      super(in);
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc)
+        throws IOException, ClassNotFoundException {
+      if (!ALLOWED_CLASSES.contains(desc.getName())) {
+        throw new InvalidClassException(desc.getName(), "Unexpected class in cursor file");
+      }
+      return super.resolveClass(desc);
+    }
+  }
+}
@@ -0,0 +1,439 @@
+package com.stripe.model;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.stripe.Stripe;
+import com.stripe.exception.StripeException;
+import com.stripe.net.ApiResource;
+import com.stripe.net.RequestOptions;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+import lombok.Value;
+
+/**
+ * Exports all objects of a list, e.g. {@code /v1/customers}, to gzip-compressed NDJSON files, one
+ * object per line, for loading into a data warehouse. The objects are written as returned by the
+ * API, without being deserialized into model classes.
+ *
+ * <p>Files are named {@code <prefix>-<index>.ndjson.gz} and are rotated once they hold a maximum
+ * number of objects or bytes. Each file is written to a {@code .part} file, which is renamed once
+ * complete, so only complete files ever appear under their final name.
+ *
+ * <p>With a {@link PagingCheckpointStore}, the position of the export and the index of the next
+ * file are saved each time a file is completed. An interrupted export run again resumes after the
+ * last saved file instead of starting over, and overwrites any file written after it, so that no
+ * object is exported twice. An export without a saved position starts from the first file index.
+ *
+ * <pre>{@code
+ * NdjsonExporter exporter =
+ *     NdjsonExporter.builder("/v1/customers", Paths.get("export"))
+ *         .setCheckpointStore(new FilePagingCheckpointStore(Paths.get("export/customers.cursor")))
+ *         .build();
+ * NdjsonExporter.Stats stats = exporter.run();
+ * }</pre>
+ */
+public class NdjsonExporter {
+  /** The default maximum number of objects in a file. */
+  public static final long DEFAULT_MAX_OBJECTS_PER_FILE = 1_000_000;
+
+  /** The default maximum number of compressed bytes in a file. */
+  public static final long DEFAULT_MAX_BYTES_PER_FILE = 128L * 1024 * 1024;
+
+  private static final String FILE_EXTENSION = ".ndjson.gz";
+
+  private static final String PART_FILE_SUFFIX = ".part";
+
+  private final String url;
+  private final Map<String, Object> params;
+  private final RequestOptions options;
+  private final Path directory;
+  private final String filePrefix;
+  private final long maxObjectsPerFile;
+  private final long maxBytesPerFile;
+  private final PagingCheckpointStore checkpointStore;
+
+  private final AtomicLong objects = new AtomicLong();
+  private final AtomicLong pages = new AtomicLong();
+  private final AtomicLong files = new AtomicLong();
+  private final AtomicLong bytesWritten = new AtomicLong();
+  private volatile long startNanos;
+  private volatile long endNanos;
+
+  private NdjsonExporter(NdjsonExporterBuilder builder) {
+    this.url = Stripe.getApiBase() + builder.path;
+    this.params = (builder.params != null) ? new HashMap<>(builder.params) : new HashMap<>();
+    this.params.remove("starting_after");
+    this.options = builder.options;
+    this.directory = builder.directory;
+    this.filePrefix =
+        (builder.filePrefix != null)
+            ? builder.filePrefix
+            : builder.path.replaceFirst("^/v1/", "").replace('/', '_');
+    this.maxObjectsPerFile = builder.maxObjectsPerFile;
+    this.maxBytesPerFile = builder.maxBytesPerFile;
+    this.checkpointStore = builder.checkpointStore;
+  }
+
+  /**
+   * Creates a builder of an exporter.
+   *
+   * @param path the path of the list, e.g. {@code /v1/customers}
+   * @param directory the directory the files are written to
+   * @return the builder
+   */
+  public static NdjsonExporterBuilder builder(String path, Path directory) {
+    return new NdjsonExporterBuilder(path, directory);
+  }
+
+  /**
+   * Exports all objects of the list, or the objects following the saved position if there is one.
+   * The statistics can also be read with {@link #getStats()} while the export runs.
+   *
+   * @return the statistics of the export
+   * @throws StripeException if a request fails
+   * @throws IOException if writing a file or the checkpoint fails
+   * @throws IllegalStateException if the saved position belongs to another list, or to a list
+   *     request with other parameters
+   */
+  public Stats run() throws StripeException, IOException {
+    this.startNanos = System.nanoTime();
+    this.endNanos = 0;
+
+    String lastId = null;
+    long fileIndex = 0;
+    if (this.checkpointStore != null) {
+      PagingCursor cursor = this.checkpointStore.load();
+      if (cursor != null) {
+        this.checkResumable(cursor);
+        lastId = cursor.getLastId();
+        fileIndex = cursor.getOutputIndex();
+      }
+    }
+
+    Files.createDirectories(this.directory);
+    ExportFile file = null;
+    try {
+      boolean hasMore;
+      do {
+        Map<String, Object> pageParams = new HashMap<>(this.params);
+        if (lastId != null) {
+          pageParams.put("starting_after", lastId);
+        }
+        RawJsonCollection page =
+            ApiResource.requestCollection(
+                this.url, pageParams, RawJsonCollection.class, this.options);
+        this.pages.incrementAndGet();
+
+        List<JsonObject> data = page.getData();
+        if (data != null && !data.isEmpty()) {
+          if (file == null) {
+            file = new ExportFile(this.filePath(fileIndex));
+          }
+          for (JsonObject object : data) {
+            file.write(object);
+          }
+          this.objects.addAndGet(data.size());
+          JsonElement id = data.get(data.size() - 1).get("id");
+          lastId = (id != null && id.isJsonPrimitive()) ? id.getAsString() : null;
+        }
+        hasMore = Boolean.TRUE.equals(page.getHasMore()) && lastId != null;
+
+        // Files are only rotated between pages, so that each checkpoint follows a complete file. A
+        // crash between the two only makes the next run write the same file again.
+        if (file != null
+            && (!hasMore
+                || file.objects >= this.maxObjectsPerFile
+                || file.bytes() >= this.maxBytesPerFile)) {
+          file.complete();
+          file = null;
+          this.files.incrementAndGet();
+          fileIndex += 1;
+          if (this.checkpointStore != null && hasMore) {
+            this.checkpointStore.save(
+                new PagingCursor(
+                    this.url, this.params, lastId, RawJsonCollection.class, fileIndex));
+          }
+        }
+      } while (hasMore);
+
+      if (this.checkpointStore != null) {
+        this.checkpointStore.clear();
+      }
+    } finally {
+      if (file != null) {
+        file.abandon();
+      }
+      this.endNanos = System.nanoTime();
+    }
+
+    return this.getStats();
+  }
+
+  /**
+   * Returns the statistics of the current or last export.
+   *
+   * @return a snapshot of the statistics
+   */
+  public Stats getStats() {
+    long start = this.startNanos;
+    long end = this.endNanos;
+    Duration elapsed =
+        (start == 0)
+            ? Duration.ZERO
+            : Duration.ofNanos(((end != 0) ? end : System.nanoTime()) - start);
+    return new Stats(
+        this.objects.get(), this.pages.get(), this.files.get(), this.bytesWritten.get(), elapsed);
+  }
+
+  private Path filePath(long index) {
+    return this.directory.resolve(
+        String.format("%s-%05d%s", this.filePrefix, index, FILE_EXTENSION));
+  }
+
+  /** Checks that the saved position belongs to the same list request as this export. */
+  private void checkResumable(PagingCursor cursor) {
+    if (!this.url.equals(cursor.getUrl())) {
+      throw new IllegalStateException(
+          String.format(
+              "The saved position belongs to the export of %s, not %s", cursor.getUrl(), this.url));
+    }
+    Map<String, Object> params =
+        new PagingCursor(this.url, this.params, "", RawJsonCollection.class).getRequestParams();
+    if (!params.equals(cursor.getRequestParams())) {
+      throw new IllegalStateException(
+          String.format(
+              "The saved position belongs to the export of %s with parameters %s, not %s",
+              this.url, cursor.getRequestParams(), params));
+    }
+  }
+
+  /** A file being written, under its {@code .part} name. */
+  private final class ExportFile {
+    private final Path path;
+    private final Path partPath;
+    private final CountingOutputStream counter;
+    private final Writer writer;
+    long objects;
+
+    ExportFile(Path path) throws IOException {
+      this.path = path;
+      this.partPath = path.resolveSibling(path.getFileName() + PART_FILE_SUFFIX);
+      this.counter = new CountingOutputStream(Files.newOutputStream(this.partPath));
+      this.writer =
+          new BufferedWriter(
+              new OutputStreamWriter(new GZIPOutputStream(this.counter), StandardCharsets.UTF_8));
+    }
+
+    void write(JsonObject object) throws IOException {
+      this.writer.write(object.toString());
+      this.writer.write('\n');
+      this.objects += 1;
+    }
+
+    /** The number of compressed bytes written to the file so far. */
+    long bytes() {
+      return this.counter.count;
+    }
+
+    void complete() throws IOException {
+      this.writer.close();
+      try {
+        Files.move(
+            this.partPath,
+            this.path,
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(this.partPath, this.path, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+
+    /** Closes the incomplete file, which the next export overwrites. */
+    void abandon() {
+      try {
+        this.writer.close();
+      } catch (IOException e) {
+        // The file is incomplete anyway.
+      }
+    }
+  }
+
+  /** Counts the bytes written to a file, for rotation and statistics. */
+  private final class CountingOutputStream extends FilterOutputStream {
+    long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      this.out.write(b);
+      this.count += 1;
+      bytesWritten.incrementAndGet();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      this.out.write(b, off, len);
+      this.count += len;
+      bytesWritten.addAndGet(len);
+    }
+  }
+
+  /** A snapshot of the statistics of an export. */
+  @Value
+  public static class Stats {
+    /** Number of objects written. */
+    long objects;
+
+    /** Number of pages fetched. */
+    long pages;
+
+    /** Number of files completed. */
+    long files;
+
+    /** Number of compressed bytes written. */
+    long bytesWritten;
+
+    /** Time spent by the export so far. */
+    Duration elapsed;
+
+    /**
+     * Returns the number of objects written per second.
+     *
+     * @return the throughput of the export
+     */
+    public double getObjectsPerSecond() {
+      long millis = this.elapsed.toMillis();
+      return (millis == 0) ? 0 : this.objects * 1000.0 / millis;
+    }
+
+    /**
+     * Returns the number of compressed bytes written per second.
+     *
+     * @return the write throughput of the export
+     */
+    public double getBytesPerSecond() {
+      long millis = this.elapsed.toMillis();
+      return (millis == 0) ? 0 : this.bytesWritten * 1000.0 / millis;
+    }
+  }
+
+  /** Builds an {@link NdjsonExporter}. */
+  public static final class NdjsonExporterBuilder {
+    private final String path;
+    private final Path directory;
+    private Map<String, Object> params;
+    private RequestOptions options;
+    private String filePrefix;
+    private long maxObjectsPerFile = DEFAULT_MAX_OBJECTS_PER_FILE;
+    private long maxBytesPerFile = DEFAULT_MAX_BYTES_PER_FILE;
+    private PagingCheckpointStore checkpointStore;
+
+    private NdjsonExporterBuilder(String path, Path directory) {
+      requireNonNull(path);
+      requireNonNull(directory);
+      this.path = path;
+      this.directory = directory;
+    }
+
+    /**
+     * Sets the parameters of the list requests.
+     *
+     * @param params the parameters, e.g. {@code limit} or {@code created}
+     * @return this builder
+     */
+    public NdjsonExporterBuilder setParams(Map<String, Object> params) {
+      this.params = params;
+      return this;
+    }
+
+    /**
+     * Sets the options of the list requests.
+     *
+     * @param options the request options, or {@code null} to use the global configuration
+     * @return this builder
+     */
+    public NdjsonExporterBuilder setRequestOptions(RequestOptions options) {
+      this.options = options;
+      return this;
+    }
+
+    /**
+     * Sets the prefix of the file names, by default derived from the path.
+     *
+     * @param filePrefix the prefix, e.g. {@code customers}
+     * @return this builder
+     */
+    public NdjsonExporterBuilder setFilePrefix(String filePrefix) {
+      this.filePrefix = filePrefix;
+      return this;
+    }
+
+    /**
+     * Sets the number of objects after which a file is completed and the next one started. Defaults
+     * to {@link #DEFAULT_MAX_OBJECTS_PER_FILE}.
+     *
+     * @param maxObjectsPerFile the maximum number of objects per file
+     * @return this builder
+     */
+    public NdjsonExporterBuilder setMaxObjectsPerFile(long maxObjectsPerFile) {
+      this.maxObjectsPerFile = maxObjectsPerFile;
+      return this;
+    }
+
+    /**
+     * Sets the number of compressed bytes after which a file is completed. Defaults to {@link
+     * #DEFAULT_MAX_BYTES_PER_FILE}.
+     *
+     * @param maxBytesPerFile the maximum number of compressed bytes per file
+     * @return this builder
+     */
+    public NdjsonExporterBuilder setMaxBytesPerFile(long maxBytesPerFile) {
+      this.maxBytesPerFile = maxBytesPerFile;
+      return this;
+    }
+
+    /**
+     * Sets the store the position of the export is saved to, to resume interrupted exports.
+     *
+     * @param checkpointStore the checkpoint store, or {@code null} to always export from the start
+     * @return this builder
+     */
+    public NdjsonExporterBuilder setCheckpointStore(PagingCheckpointStore checkpointStore) {
+      this.checkpointStore = checkpointStore;
+      return this;
+    }
+
+    /**
+     * Builds the exporter.
+     *
+     * @return the exporter
+     * @throws IllegalArgumentException if a maximum per file is not positive
+     */
+    public NdjsonExporter build() {
+      if (this.maxObjectsPerFile <= 0 || this.maxBytesPerFile <= 0) {
+        throw new IllegalArgumentException("The maximums per file must be positive");
+      }
+      return new NdjsonExporter(this);
+    }
+  }
+}
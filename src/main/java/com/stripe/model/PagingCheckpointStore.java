@@ -0,0 +1,32 @@
+package com.stripe.model;
+
+import java.io.IOException;
+
+/**
+ * Stores the {@link PagingCursor} of an auto-pagination run, e.g. in a file with {@link
+ * FilePagingCheckpointStore}, so that an interrupted run can resume from it.
+ */
+public interface PagingCheckpointStore {
+  /**
+   * Loads the saved cursor.
+   *
+   * @return the cursor, or {@code null} if none was saved
+   * @throws IOException if reading the cursor fails
+   */
+  PagingCursor load() throws IOException;
+
+  /**
+   * Saves the cursor, replacing the previous one.
+   *
+   * @param cursor the cursor
+   * @throws IOException if writing the cursor fails
+   */
+  void save(PagingCursor cursor) throws IOException;
+
+  /**
+   * Removes the saved cursor, once the run is complete.
+   *
+   * @throws IOException if removing the cursor fails
+   */
+  void clear() throws IOException;
+}
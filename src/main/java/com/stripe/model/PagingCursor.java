@@ -0,0 +1,156 @@
+package com.stripe.model;
+
+import static java.util.Objects.requireNonNull;
+
+import com.stripe.exception.StripeException;
+import com.stripe.net.ApiResource;
+import com.stripe.net.RequestOptions;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Value;
+
+/**
+ * The position of an auto-pagination run over a list, saved to a {@link PagingCheckpointStore} so
+ * that an interrupted run can resume from it instead of starting over.
+ *
+ * <p>The cursor holds the URL and parameters of the list request, the ID of the last object of the
+ * last page consumed, and the type of the collection. Request options, which hold the API key, are
+ * not saved and must be given again to {@link #resume(RequestOptions)}.
+ */
+@Value
+public class PagingCursor implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /** The URL of the list request. */
+  String url;
+
+  /**
+   * The parameters of the list request, without {@code starting_after}. Nested maps and lists are
+   * copied so that the cursor can be serialized.
+   */
+  Map<String, Object> requestParams;
+
+  /** The ID of the last object of the last page consumed. */
+  String lastId;
+
+  /** The name of the class of the collection, e.g. {@code com.stripe.model.InvoiceCollection}. */
+  String collectionType;
+
+  /**
+   * The index of the next output of the run, e.g. the next file written by an {@link
+   * NdjsonExporter}, or {@code 0} if the run does not number its outputs.
+   */
+  long outputIndex;
+
+  /**
+   * Initializes a new instance of the {@link PagingCursor} class.
+   *
+   * @param url the URL of the list request
+   * @param requestParams the parameters of the list request, or {@code null}
+   * @param lastId the ID of the last object consumed
+   * @param collectionType the class of the collection
+   */
+  public PagingCursor(
+      String url,
+      Map<String, Object> requestParams,
+      String lastId,
+      @SuppressWarnings("rawtypes") Class<? extends StripeCollectionInterface> collectionType) {
+    this(url, requestParams, lastId, collectionType, 0);
+  }
+
+  /**
+   * Initializes a new instance of the {@link PagingCursor} class for a run that numbers its
+   * outputs.
+   *
+   * @param url the URL of the list request
+   * @param requestParams the parameters of the list request, or {@code null}
+   * @param lastId the ID of the last object consumed
+   * @param collectionType the class of the collection
+   * @param outputIndex the index of the next output of the run
+   */
+  public PagingCursor(
+      String url,
+      Map<String, Object> requestParams,
+      String lastId,
+      @SuppressWarnings("rawtypes") Class<? extends StripeCollectionInterface> collectionType,
+      long outputIndex) {
+    requireNonNull(url);
+    requireNonNull(lastId);
+    requireNonNull(collectionType);
+
+    Map<String, Object> params = new HashMap<>();
+    if (requestParams != null) {
+      for (Map.Entry<String, Object> entry : requestParams.entrySet()) {
+        params.put(entry.getKey(), copyParam(entry.getValue()));
+      }
+    }
+    params.remove("starting_after");
+
+    this.url = url;
+    this.requestParams = Collections.unmodifiableMap(params);
+    this.lastId = lastId;
+    this.collectionType = collectionType.getName();
+    this.outputIndex = outputIndex;
+  }
+
+  /** Copies the value of a parameter into serializable maps and lists. */
+  private static Object copyParam(Object value) {
+    if (value instanceof Map) {
+      Map<Object, Object> copy = new LinkedHashMap<>();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        copy.put(entry.getKey(), copyParam(entry.getValue()));
+      }
+      return copy;
+    } else if (value instanceof Collection) {
+      List<Object> copy = new ArrayList<>();
+      for (Object element : (Collection<?>) value) {
+        copy.add(copyParam(element));
+      }
+      return copy;
+    } else if (value instanceof Object[]) {
+      return copyParam(Arrays.asList((Object[]) value));
+    }
+    return value;
+  }
+
+  /**
+   * Fetches the page following the position of the cursor. Iterating over it with {@link
+   * StripeCollection#autoPagingIterable()} continues the interrupted run.
+   *
+   * @param options the request options
+   * @return the page following the position of the cursor
+   * @throws StripeException if the request fails
+   * @throws IllegalStateException if the class of the collection cannot be found
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends HasId> StripeCollection<T> resume(RequestOptions options)
+      throws StripeException {
+    Class<?> type;
+    try {
+      type = Class.forName(this.collectionType);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException(
+          String.format("Unknown collection type %s", this.collectionType), e);
+    }
+    if (!StripeCollection.class.isAssignableFrom(type)) {
+      throw new IllegalStateException(
+          String.format("%s is not a collection type", this.collectionType));
+    }
+
+    Map<String, Object> params = new HashMap<>(this.requestParams);
+    params.put("starting_after", this.lastId);
+    StripeCollection<T> page =
+        ApiResource.requestCollection(this.url, params, (Class<StripeCollection<T>>) type, options);
+    if (page != null) {
+      page.setRequestParams(new HashMap<>(this.requestParams));
+    }
+    return page;
+  }
+}
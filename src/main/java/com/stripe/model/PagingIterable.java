@@ -9,12 +9,32 @@ import java.util.Iterator;
 public class PagingIterable<T extends HasId> implements Iterable<T> {
   private StripeCollectionInterface<T> page;
 
+  private PagingPrefetch prefetch;
+
+  private PagingCheckpointStore checkpointStore;
+
+  private int pagesPerCheckpoint;
+
   PagingIterable(final StripeCollectionInterface<T> page) {
+    this(page, null);
+  }
+
+  PagingIterable(final StripeCollectionInterface<T> page, final PagingPrefetch prefetch) {
+    this.page = page;
+    this.prefetch = prefetch;
+  }
+
+  PagingIterable(
+      final StripeCollectionInterface<T> page,
+      final PagingCheckpointStore checkpointStore,
+      final int pagesPerCheckpoint) {
     this.page = page;
+    this.checkpointStore = checkpointStore;
+    this.pagesPerCheckpoint = pagesPerCheckpoint;
   }
 
   @Override
   public Iterator<T> iterator() {
-    return new PagingIterator<>(page);
+    return new PagingIterator<>(page, prefetch, checkpointStore, pagesPerCheckpoint);
   }
 }
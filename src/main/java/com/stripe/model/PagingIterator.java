@@ -1,36 +1,98 @@
 package com.stripe.model;
 
 import com.stripe.Stripe;
+import com.stripe.exception.AutoPagingException;
+import com.stripe.exception.StripeException;
 import com.stripe.net.ApiResource;
 import com.stripe.net.RequestOptions;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+/**
+ * Iterates over all objects across all pages of a list. When a page is exhausted, the next one is
+ * fetched; with a {@link PagingPrefetch} policy, the next pages are fetched in the background
+ * before that.
+ *
+ * <p>With a {@link PagingCheckpointStore}, the position of the iterator is saved every few pages,
+ * and cleared once all objects were consumed; see {@link PagingCursor}.
+ *
+ * <p>If fetching a page fails, {@link #next()} throws an {@link AutoPagingException} whose cause is
+ * the {@link StripeException} raised by the request. Errors of pages fetched in the background are
+ * only thrown once the page is needed.
+ */
 public class PagingIterator<T extends HasId> extends ApiResource implements Iterator<T> {
   private final String url;
 
   @SuppressWarnings("rawtypes")
   private final Class<? extends StripeCollectionInterface> collectionType;
 
+  private final PagingPrefetch prefetch;
+
+  private final PagingCheckpointStore checkpointStore;
+  private final int pagesPerCheckpoint;
+  private int pagesSinceCheckpoint;
+  private boolean checkpointCleared;
+
+  /** The pages requested in the background, in order, at most {@link PagingPrefetch#getDepth()}. */
+  private final Deque<CompletableFuture<StripeCollectionInterface<T>>> prefetchedPages =
+      new ArrayDeque<>();
+
   private StripeCollectionInterface<T> currentCollection;
   private Iterator<T> currentDataIterator;
 
+  /** The number of objects of the current page consumed so far. */
+  private int consumed;
+
+  /** The number of objects of the current page to consume before prefetching the next pages. */
+  private int prefetchAt;
+
   private String lastId;
 
   PagingIterator(final StripeCollectionInterface<T> stripeCollection) {
+    this(stripeCollection, null);
+  }
+
+  PagingIterator(final StripeCollectionInterface<T> stripeCollection, PagingPrefetch prefetch) {
+    this(stripeCollection, prefetch, null, 0);
+  }
+
+  PagingIterator(
+      final StripeCollectionInterface<T> stripeCollection,
+      PagingPrefetch prefetch,
+      PagingCheckpointStore checkpointStore,
+      int pagesPerCheckpoint) {
     this.url = Stripe.getApiBase() + stripeCollection.getUrl();
 
     this.collectionType = stripeCollection.getClass();
+    this.prefetch = prefetch;
+    this.checkpointStore = checkpointStore;
+    this.pagesPerCheckpoint = pagesPerCheckpoint;
 
-    this.currentCollection = stripeCollection;
-    this.currentDataIterator = stripeCollection.getData().iterator();
+    this.startPage(stripeCollection);
   }
 
   @Override
   public boolean hasNext() {
-    return currentDataIterator.hasNext() || currentCollection.getHasMore();
+    boolean hasNext = currentDataIterator.hasNext() || currentCollection.getHasMore();
+    if (!hasNext && checkpointStore != null && !checkpointCleared) {
+      // the consumer is done with the last object: the run is complete
+      try {
+        checkpointStore.clear();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      this.checkpointCleared = true;
+    }
+    return hasNext;
   }
 
   @Override
@@ -38,29 +100,15 @@ public class PagingIterator<T extends HasId> extends ApiResource implements Iter
     // if we've run out of data on the current page, try to fetch another
     // one
     if (!currentDataIterator.hasNext() && currentCollection.getHasMore()) {
-      try {
-        Map<String, Object> params = new HashMap<>();
-
-        // copy all the parameters from the initial request
-        Map<String, Object> initialParams = currentCollection.getRequestParams();
-        if (initialParams != null) {
-          params.putAll(initialParams);
-        }
-
-        // then put our new page start in
-        params.put("starting_after", lastId);
-
-        this.currentCollection = list(params, currentCollection.getRequestOptions());
-
-        this.currentDataIterator = currentCollection.getData().iterator();
-      } catch (final Exception e) {
-        throw new RuntimeException("Unable to lazy-load stripe objects", e);
-      }
+      this.checkpointIfDue();
+      this.startPage(this.nextPage());
     }
 
     if (currentDataIterator.hasNext()) {
       final T next = currentDataIterator.next();
       this.lastId = next.getId();
+      this.consumed += 1;
+      this.prefetchIfDue();
       return next;
     }
 
@@ -72,9 +120,152 @@ public class PagingIterator<T extends HasId> extends ApiResource implements Iter
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Cancels the pages requested in the background. Requests already sent complete, but the pages
+   * following them are not requested.
+   */
+  void cancelPrefetch() {
+    CompletableFuture<StripeCollectionInterface<T>> prefetched;
+    while ((prefetched = this.prefetchedPages.poll()) != null) {
+      prefetched.cancel(false);
+    }
+    this.prefetchAt = Integer.MAX_VALUE;
+  }
+
+  /**
+   * Saves the position after the current page every {@code pagesPerCheckpoint} pages. As the
+   * consumer asked for the object following the current page, it is done with all of its objects.
+   */
+  private void checkpointIfDue() {
+    if (checkpointStore == null || lastId == null) {
+      return;
+    }
+    this.pagesSinceCheckpoint += 1;
+    if (this.pagesSinceCheckpoint < this.pagesPerCheckpoint) {
+      return;
+    }
+
+    this.pagesSinceCheckpoint = 0;
+    try {
+      checkpointStore.save(
+          new PagingCursor(url, currentCollection.getRequestParams(), lastId, collectionType));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void startPage(StripeCollectionInterface<T> collection) {
+    this.currentCollection = collection;
+    this.currentDataIterator = collection.getData().iterator();
+    this.consumed = 0;
+    if (this.prefetch != null) {
+      this.prefetchAt = (int) Math.ceil(this.prefetch.getThreshold() * collection.getData().size());
+      this.prefetchIfDue();
+    }
+  }
+
+  /** Returns the next page, either fetched in the background or requested now. */
+  private StripeCollectionInterface<T> nextPage() {
+    CompletableFuture<StripeCollectionInterface<T>> prefetched = this.prefetchedPages.poll();
+    if (prefetched != null) {
+      StripeCollectionInterface<T> page;
+      try {
+        page = prefetched.join();
+      } catch (CompletionException e) {
+        throw pagingException(e.getCause());
+      }
+      if (page != null) {
+        return page;
+      }
+    }
+
+    try {
+      return list(pageParams(currentCollection, lastId), currentCollection.getRequestOptions());
+    } catch (final StripeException e) {
+      throw pagingException(e);
+    }
+  }
+
+  /**
+   * Requests the pages following the current one in the background, once enough of the current page
+   * has been consumed and until {@link PagingPrefetch#getDepth()} pages are pending.
+   */
+  private void prefetchIfDue() {
+    if (this.prefetch == null || this.consumed < this.prefetchAt) {
+      return;
+    }
+
+    while (this.prefetchedPages.size() < this.prefetch.getDepth()) {
+      CompletableFuture<StripeCollectionInterface<T>> previous = this.prefetchedPages.peekLast();
+      if (previous == null) {
+        if (!hasFollowingPage(currentCollection)) {
+          return;
+        }
+        previous = CompletableFuture.completedFuture(currentCollection);
+      }
+      this.prefetchedPages.add(previous.thenCompose(this::requestFollowingPage));
+    }
+  }
+
+  /**
+   * Requests the page following the given one, whose cursor is the ID of its last object.
+   *
+   * @return a future that completes with the page, or with {@code null} if there is none
+   */
+  @SuppressWarnings("unchecked")
+  private CompletableFuture<StripeCollectionInterface<T>> requestFollowingPage(
+      StripeCollectionInterface<T> page) {
+    if (!hasFollowingPage(page)) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    List<T> data = page.getData();
+    String cursor = data.get(data.size() - 1).getId();
+    return ApiResource.requestCollectionAsync(
+            url, pageParams(page, cursor), collectionType, page.getRequestOptions())
+        .thenApply(collection -> (StripeCollectionInterface<T>) collection);
+  }
+
+  private static boolean hasFollowingPage(StripeCollectionInterface<?> page) {
+    return page != null
+        && Boolean.TRUE.equals(page.getHasMore())
+        && page.getData() != null
+        && !page.getData().isEmpty();
+  }
+
+  private static Map<String, Object> pageParams(
+      StripeCollectionInterface<?> page, String startingAfter) {
+    Map<String, Object> params = new HashMap<>();
+
+    // copy all the parameters from the initial request
+    Map<String, Object> initialParams = page.getRequestParams();
+    if (initialParams != null) {
+      params.putAll(initialParams);
+    }
+
+    // then put our new page start in
+    params.put("starting_after", startingAfter);
+    return params;
+  }
+
+  /**
+   * Returns the exception to throw from an iterator when fetching a page failed with the given
+   * exception.
+   */
+  static RuntimeException pagingException(Throwable cause) {
+    if (cause instanceof StripeException) {
+      return new AutoPagingException("Unable to lazy-load stripe objects", (StripeException) cause);
+    } else if (cause instanceof RuntimeException) {
+      return (RuntimeException) cause;
+    } else if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    return new RuntimeException("Unable to lazy-load stripe objects", cause);
+  }
+
   @SuppressWarnings("unchecked")
   private StripeCollectionInterface<T> list(
-      final Map<String, Object> params, final RequestOptions options) throws Exception {
+      final Map<String, Object> params, final RequestOptions options) throws StripeException {
     return ApiResource.requestCollection(url, params, collectionType, options);
   }
 }
@@ -0,0 +1,53 @@
+package com.stripe.model;
+
+import lombok.Getter;
+
+/**
+ * Configures auto-pagination to fetch the next pages in the background while the current page is
+ * consumed, so that iterating over long lists does not wait on a round trip for every page.
+ *
+ * <p>Once the given fraction of a page has been consumed, the following pages are requested
+ * asynchronously, up to the given depth. Each page is requested once the previous one has arrived,
+ * since its cursor is the ID of the last object of the previous page.
+ */
+@Getter
+public class PagingPrefetch {
+  /** The default fraction of a page consumed before the next pages are requested. */
+  public static final double DEFAULT_THRESHOLD = 0.5;
+
+  /** The default number of pages fetched ahead of the current page. */
+  public static final int DEFAULT_DEPTH = 1;
+
+  /** The fraction of a page consumed before the next pages are requested, between 0 and 1. */
+  private final double threshold;
+
+  /** The maximum number of pages fetched ahead of the current page. */
+  private final int depth;
+
+  /** Initializes a new instance of the {@link PagingPrefetch} class with default parameters. */
+  public PagingPrefetch() {
+    this(DEFAULT_THRESHOLD, DEFAULT_DEPTH);
+  }
+
+  /**
+   * Initializes a new instance of the {@link PagingPrefetch} class.
+   *
+   * @param threshold the fraction of a page consumed before the next pages are requested, from
+   *     {@code 0} to request them as soon as a page arrives to {@code 1} to request them once the
+   *     last object of the page is consumed
+   * @param depth the maximum number of pages fetched ahead of the current page
+   * @throws IllegalArgumentException if {@code threshold} is not between 0 and 1 or {@code depth}
+   *     is not positive
+   */
+  public PagingPrefetch(double threshold, int depth) {
+    if (!(threshold >= 0 && threshold <= 1)) {
+      throw new IllegalArgumentException("threshold must be between 0 and 1");
+    }
+    if (depth <= 0) {
+      throw new IllegalArgumentException("depth must be positive");
+    }
+
+    this.threshold = threshold;
+    this.depth = depth;
+  }
+}
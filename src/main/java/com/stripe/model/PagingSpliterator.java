@@ -0,0 +1,51 @@
+package com.stripe.model;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Splits nothing off: the objects of a list are read in order from a {@link PagingIterator}, which
+ * only fetches a page once the previous one is exhausted. A stream that short-circuits, e.g. with
+ * {@code limit()} or {@code findFirst()}, stops requesting pages as soon as it stops advancing.
+ */
+class PagingSpliterator<T extends HasId> implements Spliterator<T> {
+  private final PagingIterator<T> iterator;
+
+  PagingSpliterator(final PagingIterator<T> iterator) {
+    this.iterator = iterator;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super T> action) {
+    if (!iterator.hasNext()) {
+      return false;
+    }
+    action.accept(iterator.next());
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super T> action) {
+    iterator.forEachRemaining(action);
+  }
+
+  @Override
+  public Spliterator<T> trySplit() {
+    return null;
+  }
+
+  @Override
+  public long estimateSize() {
+    return Long.MAX_VALUE;
+  }
+
+  @Override
+  public int characteristics() {
+    return Spliterator.ORDERED | Spliterator.NONNULL;
+  }
+
+  /** Stops fetching pages in the background, once the stream is closed. */
+  void close() {
+    iterator.cancelPrefetch();
+  }
+}
@@ -0,0 +1,416 @@
+package com.stripe.model;
+
+import static java.util.Objects.requireNonNull;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lists all objects created in a time range by paging several time windows concurrently, each on
+ * its own cursor, instead of following a single cursor through the whole range. This speeds up
+ * exports of long histories, e.g. of all charges, balance transactions or events of an account.
+ *
+ * <p>The range is split into windows of equal duration, whose pages are fetched by up to {@code
+ * concurrency} threads. When fewer windows than threads are left, a window that still has more
+ * pages is split again: the part older than its cursor becomes a new window. Each window buffers at
+ * most {@value #BUFFERED_PAGES} pages, and is only paged further once they are consumed.
+ *
+ * <p>In ordered mode, objects are returned in the order of the API, from the most recently created,
+ * window after window. In unordered mode, the pages are returned as soon as they arrive.
+ *
+ * <pre>{@code
+ * ParallelLister<Charge> lister = new ParallelLister<>(Charge::list, Charge::getCreated, 16, 8);
+ * try (Stream<Charge> charges = lister.stream(params, start, end, false)) {
+ *   charges.parallel().forEach(this::export);
+ * }
+ * }</pre>
+ *
+ * <p>If fetching a page fails, the stream throws an {@link
+ * com.stripe.exception.AutoPagingException} and stops all other requests.
+ */
+public class ParallelLister<T extends HasId> {
+  /** The maximum number of pages of a window fetched ahead of the consumer. */
+  public static final int BUFFERED_PAGES = 2;
+
+  /** The number of seconds after which an idle thread of a listing stops. */
+  public static final long IDLE_THREAD_TIMEOUT_SECONDS = 30;
+
+  private static final AtomicInteger listingCount = new AtomicInteger();
+
+  /** Lists a page of objects, e.g. {@code Charge::list}. */
+  @FunctionalInterface
+  public interface ListMethod<T extends HasId> {
+    /**
+     * Lists a page of objects.
+     *
+     * @param params the parameters of the list request
+     * @return the page
+     * @throws StripeException if the request fails
+     */
+    StripeCollectionInterface<T> list(Map<String, Object> params) throws StripeException;
+  }
+
+  private final ListMethod<T> listMethod;
+  private final ToLongFunction<? super T> createdGetter;
+  private final int windows;
+  private final int concurrency;
+
+  /**
+   * Initializes a new instance of the {@link ParallelLister} class.
+   *
+   * @param listMethod the method listing a page of objects, e.g. {@code Charge::list}
+   * @param createdGetter the getter of the creation time of the objects, in seconds since the
+   *     epoch, e.g. {@code Charge::getCreated}
+   * @param windows the number of time windows the range is initially split into
+   * @param concurrency the maximum number of pages fetched concurrently
+   * @throws IllegalArgumentException if {@code windows} or {@code concurrency} is not positive
+   */
+  public ParallelLister(
+      ListMethod<T> listMethod,
+      ToLongFunction<? super T> createdGetter,
+      int windows,
+      int concurrency) {
+    requireNonNull(listMethod);
+    requireNonNull(createdGetter);
+    if (windows <= 0) {
+      throw new IllegalArgumentException("windows must be positive");
+    }
+    if (concurrency <= 0) {
+      throw new IllegalArgumentException("concurrency must be positive");
+    }
+
+    this.listMethod = listMethod;
+    this.createdGetter = createdGetter;
+    this.windows = windows;
+    this.concurrency = concurrency;
+  }
+
+  /**
+   * Returns a stream of the objects created in the given range. The stream can be made parallel, in
+   * which case each page is processed as one chunk. Closing the stream stops all requests.
+   *
+   * @param params the parameters of the list requests, except {@code created}, {@code
+   *     starting_after} and {@code ending_before}
+   * @param createdGte the start of the range, inclusive, in seconds since the epoch
+   * @param createdLt the end of the range, exclusive, in seconds since the epoch
+   * @param ordered whether to return the objects in the order of the API
+   * @return the stream of objects
+   * @throws IllegalArgumentException if the range is empty
+   */
+  public Stream<T> stream(
+      Map<String, Object> params, long createdGte, long createdLt, boolean ordered) {
+    Listing listing = this.spliterator(params, createdGte, createdLt, ordered);
+    return StreamSupport.stream(listing, false).onClose(listing::close);
+  }
+
+  /**
+   * Returns a spliterator over the objects created in the given range. Requests start right away;
+   * their threads stop once all objects were returned, or once a request fails. If the caller stops
+   * consuming objects without closing the listing, its threads stop once they have been idle for
+   * {@link #IDLE_THREAD_TIMEOUT_SECONDS} seconds.
+   *
+   * @see #stream(Map, long, long, boolean)
+   */
+  public Listing spliterator(
+      Map<String, Object> params, long createdGte, long createdLt, boolean ordered) {
+    if (createdGte >= createdLt) {
+      throw new IllegalArgumentException("createdGte must be before createdLt");
+    }
+    return new Listing(params, createdGte, createdLt, ordered);
+  }
+
+  /** A time window of the range, paged on its own cursor. */
+  private final class Window {
+    long gte;
+    final long lt;
+    String cursor;
+
+    final Deque<List<T>> pages = new ArrayDeque<>();
+    boolean fetching;
+    boolean done;
+
+    Window(long gte, long lt) {
+      this.gte = gte;
+      this.lt = lt;
+    }
+
+    boolean exhausted() {
+      return this.done && this.pages.isEmpty();
+    }
+  }
+
+  /** The objects of a listing, fetched in the background. */
+  public final class Listing implements Spliterator<T> {
+    private final Map<String, Object> params;
+    private final boolean ordered;
+    private final ExecutorService executor;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    /** The windows that still have objects, from the most recent. */
+    private final List<Window> windowList = new ArrayList<>();
+
+    private Throwable failure;
+    private boolean closed;
+
+    /** The page being consumed, only touched by the consuming thread. */
+    private Spliterator<T> currentPage;
+
+    private Listing(Map<String, Object> params, long createdGte, long createdLt, boolean ordered) {
+      this.params = (params != null) ? new HashMap<>(params) : new HashMap<>();
+      this.params.remove("ending_before");
+      this.params.remove("starting_after");
+      this.ordered = ordered;
+
+      int listing = listingCount.incrementAndGet();
+      AtomicInteger threadCount = new AtomicInteger();
+      ThreadPoolExecutor executor =
+          new ThreadPoolExecutor(
+              concurrency,
+              concurrency,
+              IDLE_THREAD_TIMEOUT_SECONDS,
+              TimeUnit.SECONDS,
+              new LinkedBlockingQueue<>(),
+              runnable -> {
+                Thread thread =
+                    new Thread(
+                        runnable,
+                        String.format(
+                            "stripe-parallel-lister-%d-%d",
+                            listing, threadCount.incrementAndGet()));
+                thread.setDaemon(true);
+                return thread;
+              });
+      // A listing abandoned before its end, e.g. by a short-circuiting stream that is not closed,
+      // still releases its threads.
+      executor.allowCoreThreadTimeOut(true);
+      this.executor = executor;
+
+      long span = createdLt - createdGte;
+      long count = Math.min(windows, span);
+      for (long i = 0; i < count; i++) {
+        this.windowList.add(
+            new Window(createdLt - span * (i + 1) / count, createdLt - span * i / count));
+      }
+
+      this.lock.lock();
+      try {
+        for (Window window : this.windowList) {
+          this.scheduleLocked(window);
+        }
+      } finally {
+        this.lock.unlock();
+      }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+      while (this.currentPage == null || !this.currentPage.tryAdvance(action)) {
+        List<T> page = this.nextPage();
+        if (page == null) {
+          return false;
+        }
+        this.currentPage = page.spliterator();
+      }
+      return true;
+    }
+
+    /** Splits off the rest of the current page, or else the next page. */
+    @Override
+    public Spliterator<T> trySplit() {
+      Spliterator<T> split = this.currentPage;
+      this.currentPage = null;
+      if (split != null && split.estimateSize() > 0) {
+        return split;
+      }
+      List<T> page = this.nextPage();
+      return (page != null) ? page.spliterator() : null;
+    }
+
+    @Override
+    public long estimateSize() {
+      return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+      return this.ordered ? (Spliterator.ORDERED | Spliterator.NONNULL) : Spliterator.NONNULL;
+    }
+
+    /** Stops all requests. The objects that were not returned yet are discarded. */
+    public void close() {
+      this.lock.lock();
+      try {
+        this.closed = true;
+        this.windowList.clear();
+        this.changed.signalAll();
+      } finally {
+        this.lock.unlock();
+      }
+      this.executor.shutdownNow();
+    }
+
+    /**
+     * Waits for the next page: in ordered mode, of the most recent window; in unordered mode, of
+     * any window.
+     *
+     * @return the page, or {@code null} once all objects were returned
+     */
+    private List<T> nextPage() {
+      this.lock.lock();
+      try {
+        while (true) {
+          if (this.failure != null) {
+            throw PagingIterator.pagingException(this.failure);
+          }
+          this.windowList.removeIf(Window::exhausted);
+          if (this.windowList.isEmpty()) {
+            return null;
+          }
+
+          Iterator<Window> candidates = this.windowList.iterator();
+          do {
+            Window window = candidates.next();
+            if (!window.pages.isEmpty()) {
+              List<T> page = window.pages.poll();
+              this.scheduleLocked(window);
+              return page;
+            }
+          } while (!this.ordered && candidates.hasNext());
+
+          try {
+            this.changed.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.failure =
+                new ApiConnectionException("Interrupted while waiting for the next page", e);
+            this.executor.shutdownNow();
+          }
+        }
+      } finally {
+        this.lock.unlock();
+      }
+    }
+
+    /** Fetches the next page of the window, unless it is already being fetched or buffered. */
+    private void scheduleLocked(Window window) {
+      if (this.closed
+          || this.failure != null
+          || window.done
+          || window.fetching
+          || window.pages.size() >= BUFFERED_PAGES) {
+        return;
+      }
+
+      window.fetching = true;
+      Map<String, Object> pageParams = new HashMap<>(this.params);
+      Map<String, Object> created = new HashMap<>();
+      created.put("gte", window.gte);
+      created.put("lt", window.lt);
+      pageParams.put("created", created);
+      if (window.cursor != null) {
+        pageParams.put("starting_after", window.cursor);
+      }
+
+      try {
+        this.executor.execute(() -> this.fetch(window, pageParams));
+      } catch (RejectedExecutionException e) {
+        // The listing was closed.
+        window.fetching = false;
+      }
+    }
+
+    private void fetch(Window window, Map<String, Object> pageParams) {
+      StripeCollectionInterface<T> page;
+      try {
+        page = listMethod.list(pageParams);
+      } catch (StripeException | RuntimeException e) {
+        this.fail(e);
+        return;
+      }
+
+      this.lock.lock();
+      try {
+        window.fetching = false;
+        if (this.closed || this.failure != null) {
+          return;
+        }
+
+        List<T> data = (page.getData() != null) ? page.getData() : new ArrayList<>();
+        if (!data.isEmpty()) {
+          window.pages.add(data);
+        }
+        if (Boolean.TRUE.equals(page.getHasMore()) && !data.isEmpty()) {
+          T last = data.get(data.size() - 1);
+          window.cursor = last.getId();
+          this.rebalanceLocked(window, createdGetter.applyAsLong(last));
+        } else {
+          window.done = true;
+        }
+
+        this.scheduleLocked(window);
+        if (this.windowList.stream().allMatch(w -> w.done)) {
+          this.executor.shutdown();
+        }
+        this.changed.signalAll();
+      } catch (RuntimeException e) {
+        this.failure = e;
+        this.changed.signalAll();
+      } finally {
+        this.lock.unlock();
+      }
+    }
+
+    /**
+     * Splits the rest of a window that still has more pages when threads would otherwise be idle.
+     * The objects left in the window were created at or before the last object of its last page, so
+     * the part of the window before that time is split off into a new, older window.
+     */
+    private void rebalanceLocked(Window window, long lastCreated) {
+      long pending = this.windowList.stream().filter(w -> !w.done).count();
+      if (pending >= concurrency || lastCreated - window.gte < 2) {
+        return;
+      }
+
+      long mid = window.gte + (lastCreated - window.gte) / 2;
+      Window older = new Window(window.gte, mid);
+      window.gte = mid;
+      this.windowList.add(this.windowList.indexOf(window) + 1, older);
+      this.scheduleLocked(older);
+    }
+
+    private void fail(Throwable e) {
+      this.lock.lock();
+      try {
+        if (this.failure == null && !this.closed) {
+          this.failure = e;
+        }
+        this.changed.signalAll();
+      } finally {
+        this.lock.unlock();
+      }
+      this.executor.shutdownNow();
+    }
+  }
+}
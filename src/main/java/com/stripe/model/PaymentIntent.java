@@ -2,6 +2,7 @@ package com.stripe.model;
 
 import com.google.gson.annotations.SerializedName;
 import com.stripe.Stripe;
+import com.stripe.exception.InvalidRequestException;
 import com.stripe.exception.StripeException;
 import com.stripe.net.ApiResource;
 import com.stripe.net.RequestOptions;
@@ -14,6 +15,7 @@ import com.stripe.param.PaymentIntentRetrieveParams;
 import com.stripe.param.PaymentIntentUpdateParams;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
@@ -445,7 +447,7 @@ public class PaymentIntent extends ApiResource implements HasId, MetadataStore<P
    */
   public static PaymentIntent create(Map<String, Object> params, RequestOptions options)
       throws StripeException {
-    String url = String.format("%s%s", Stripe.getApiBase(), "/v1/payment_intents");
+    String url = collectionUrl();
     return ApiResource.request(
         ApiResource.RequestMethod.POST, url, params, PaymentIntent.class, options);
   }
@@ -482,7 +484,7 @@ public class PaymentIntent extends ApiResource implements HasId, MetadataStore<P
    */
   public static PaymentIntent create(PaymentIntentCreateParams params, RequestOptions options)
       throws StripeException {
-    String url = String.format("%s%s", Stripe.getApiBase(), "/v1/payment_intents");
+    String url = collectionUrl();
     return ApiResource.request(
         ApiResource.RequestMethod.POST, url, params, PaymentIntent.class, options);
   }
@@ -495,7 +497,7 @@ public class PaymentIntent extends ApiResource implements HasId, MetadataStore<P
   /** Returns a list of PaymentIntents. */
   public static PaymentIntentCollection list(Map<String, Object> params, RequestOptions options)
       throws StripeException {
-    String url = String.format("%s%s", Stripe.getApiBase(), "/v1/payment_intents");
+    String url = collectionUrl();
     return ApiResource.requestCollection(url, params, PaymentIntentCollection.class, options);
   }
 
@@ -508,7 +510,7 @@ public class PaymentIntent extends ApiResource implements HasId, MetadataStore<P
   /** Returns a list of PaymentIntents. */
   public static PaymentIntentCollection list(PaymentIntentListParams params, RequestOptions options)
       throws StripeException {
-    String url = String.format("%s%s", Stripe.getApiBase(), "/v1/payment_intents");
+    String url = collectionUrl();
     return ApiResource.requestCollection(url, params, PaymentIntentCollection.class, options);
   }
 
@@ -553,11 +555,7 @@ public class PaymentIntent extends ApiResource implements HasId, MetadataStore<P
    */
   public static PaymentIntent retrieve(
       String intent, Map<String, Object> params, RequestOptions options) throws StripeException {
-    String url =
-        String.format(
-            "%s%s",
-            Stripe.getApiBase(),
-            String.format("/v1/payment_intents/%s", ApiResource.urlEncodeId(intent)));
+    String url = resourceUrl(intent);
     return ApiResource.request(
         ApiResource.RequestMethod.GET, url, params, PaymentIntent.class, options);
   }
@@ -575,15 +573,89 @@ public class PaymentIntent extends ApiResource implements HasId, MetadataStore<P
   public static PaymentIntent retrieve(
       String intent, PaymentIntentRetrieveParams params, RequestOptions options)
       throws StripeException {
-    String url =
-        String.format(
-            "%s%s",
-            Stripe.getApiBase(),
-            String.format("/v1/payment_intents/%s", ApiResource.urlEncodeId(intent)));
+    String url = resourceUrl(intent);
     return ApiResource.request(
         ApiResource.RequestMethod.GET, url, params, PaymentIntent.class, options);
   }
 
+  /** Returns the URL of the PaymentIntents collection. */
+  private static String collectionUrl() {
+    return String.format("%s%s", Stripe.getApiBase(), "/v1/payment_intents");
+  }
+
+  /** Returns the URL of the given PaymentIntent. */
+  private static String resourceUrl(String intent) throws InvalidRequestException {
+    return String.format(
+        "%s%s",
+        Stripe.getApiBase(),
+        String.format("/v1/payment_intents/%s", ApiResource.urlEncodeId(intent)));
+  }
+
+  /** Asynchronous variant of {@link #create(Map)}. */
+  public static CompletableFuture<PaymentIntent> createAsync(Map<String, Object> params) {
+    return createAsync(params, (RequestOptions) null);
+  }
+
+  /** Asynchronous variant of {@link #create(Map, RequestOptions)}. */
+  public static CompletableFuture<PaymentIntent> createAsync(
+      Map<String, Object> params, RequestOptions options) {
+    String url = collectionUrl();
+    return ApiResource.requestAsync(
+        ApiResource.RequestMethod.POST, url, params, PaymentIntent.class, options);
+  }
+
+  /** Asynchronous variant of {@link #create(PaymentIntentCreateParams)}. */
+  public static CompletableFuture<PaymentIntent> createAsync(PaymentIntentCreateParams params) {
+    return createAsync(params, (RequestOptions) null);
+  }
+
+  /** Asynchronous variant of {@link #create(PaymentIntentCreateParams, RequestOptions)}. */
+  public static CompletableFuture<PaymentIntent> createAsync(
+      PaymentIntentCreateParams params, RequestOptions options) {
+    String url = collectionUrl();
+    return ApiResource.requestAsync(
+        ApiResource.RequestMethod.POST, url, params, PaymentIntent.class, options);
+  }
+
+  /** Asynchronous variant of {@link #retrieve(String)}. */
+  public static CompletableFuture<PaymentIntent> retrieveAsync(String intent) {
+    return retrieveAsync(intent, (Map<String, Object>) null, (RequestOptions) null);
+  }
+
+  /** Asynchronous variant of {@link #retrieve(String, RequestOptions)}. */
+  public static CompletableFuture<PaymentIntent> retrieveAsync(
+      String intent, RequestOptions options) {
+    return retrieveAsync(intent, (Map<String, Object>) null, options);
+  }
+
+  /** Asynchronous variant of {@link #retrieve(String, Map, RequestOptions)}. */
+  public static CompletableFuture<PaymentIntent> retrieveAsync(
+      String intent, Map<String, Object> params, RequestOptions options) {
+    String url;
+    try {
+      url = resourceUrl(intent);
+    } catch (InvalidRequestException e) {
+      return ApiResource.failedFuture(e);
+    }
+    return ApiResource.requestAsync(
+        ApiResource.RequestMethod.GET, url, params, PaymentIntent.class, options);
+  }
+
+  /**
+   * Asynchronous variant of {@link #retrieve(String, PaymentIntentRetrieveParams, RequestOptions)}.
+   */
+  public static CompletableFuture<PaymentIntent> retrieveAsync(
+      String intent, PaymentIntentRetrieveParams params, RequestOptions options) {
+    String url;
+    try {
+      url = resourceUrl(intent);
+    } catch (InvalidRequestException e) {
+      return ApiResource.failedFuture(e);
+    }
+    return ApiResource.requestAsync(
+        ApiResource.RequestMethod.GET, url, params, PaymentIntent.class, options);
+  }
+
   /**
    * Updates properties on a PaymentIntent object without confirming.
    *
@@ -0,0 +1,38 @@
+package com.stripe.model;
+
+import com.google.gson.JsonObject;
+import com.stripe.net.RequestOptions;
+import java.util.List;
+import java.util.Map;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A page of any list whose objects are kept as JSON, e.g. to export them without deserializing them
+ * into model classes.
+ */
+@Getter
+@Setter
+@EqualsAndHashCode(callSuper = false)
+public class RawJsonCollection extends StripeObject
+    implements StripeCollectionInterface<JsonObject> {
+  String object;
+
+  @Getter(onMethod_ = {@Override})
+  List<JsonObject> data;
+
+  @Getter(onMethod_ = {@Override})
+  Boolean hasMore;
+
+  @Getter(onMethod_ = {@Override})
+  String url;
+
+  @Getter(onMethod_ = {@Override})
+  @Setter(onMethod = @__({@Override}))
+  private RequestOptions requestOptions;
+
+  @Getter(onMethod_ = {@Override})
+  @Setter(onMethod = @__({@Override}))
+  private Map<String, Object> requestParams;
+}
@@ -3,6 +3,8 @@ package com.stripe.model;
 import com.stripe.net.RequestOptions;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
@@ -31,6 +33,16 @@ import lombok.Setter;
  *   System.out.println("Current invoice = " + invoice.toString());
  * }
  * }</pre>
+ *
+ * <p>or as a stream, which only fetches the pages it needs:
+ *
+ * <p>
+ *
+ * <pre>{@code
+ * Optional<Invoice> open = Invoice.list(...).autoPagingStream()
+ *     .filter(invoice -> "open".equals(invoice.getStatus()))
+ *     .findFirst();
+ * }</pre>
  */
 @Getter
 @Setter
@@ -78,4 +90,130 @@ public abstract class StripeCollection<T extends HasId> extends StripeObject
     this.setRequestParams(params);
     return new PagingIterable<>(this);
   }
+
+  /**
+   * Constructs an iterable that can be used to iterate across all objects across all pages, with
+   * the next pages fetched in the background while the current page is consumed.
+   *
+   * @param prefetch when to fetch the next pages, and how many of them
+   */
+  public Iterable<T> autoPagingIterable(PagingPrefetch prefetch) {
+    return new PagingIterable<>(this, prefetch);
+  }
+
+  /**
+   * Constructs an iterable that can be used to iterate across all objects across all pages, with
+   * the next pages fetched in the background while the current page is consumed.
+   *
+   * @param params request parameters (will override the parameters from the initial list request)
+   * @param options request options (will override the options from the initial list request)
+   * @param prefetch when to fetch the next pages, and how many of them
+   */
+  public Iterable<T> autoPagingIterable(
+      Map<String, Object> params, RequestOptions options, PagingPrefetch prefetch) {
+    this.setRequestOptions(options);
+    this.setRequestParams(params);
+    return new PagingIterable<>(this, prefetch);
+  }
+
+  /**
+   * Constructs an iterable that can be used to iterate across all objects across all pages, saving
+   * its position to the given store every few pages. If the run is interrupted, it can resume from
+   * the saved {@link PagingCursor} instead of starting over:
+   *
+   * <pre>{@code
+   * PagingCursor cursor = store.load();
+   * StripeCollection<Invoice> invoices =
+   *     (cursor != null) ? cursor.resume(options) : Invoice.list(params, options);
+   * for (Invoice invoice : invoices.autoPagingIterable(store, 10)) {
+   *   export(invoice);
+   * }
+   * }</pre>
+   *
+   * <p>The position is saved once all objects of a page were consumed, so a resumed run may see
+   * again the objects consumed after the last checkpoint, but never skips any. The saved cursor is
+   * cleared once all objects were consumed.
+   *
+   * @param checkpointStore the store of the position
+   * @param pagesPerCheckpoint the number of pages consumed between two checkpoints
+   * @throws IllegalArgumentException if {@code checkpointStore} is {@code null} or {@code
+   *     pagesPerCheckpoint} is not positive
+   */
+  public Iterable<T> autoPagingIterable(
+      PagingCheckpointStore checkpointStore, int pagesPerCheckpoint) {
+    if (checkpointStore == null) {
+      throw new IllegalArgumentException("checkpointStore must not be null");
+    }
+    if (pagesPerCheckpoint <= 0) {
+      throw new IllegalArgumentException("pagesPerCheckpoint must be positive");
+    }
+    return new PagingIterable<>(this, checkpointStore, pagesPerCheckpoint);
+  }
+
+  /**
+   * Constructs a sequential stream of all objects across all pages. Pages are only fetched when the
+   * stream needs their objects, so short-circuiting operations such as {@code limit()}, {@code
+   * findFirst()} or {@code anyMatch()} stop paging as soon as they have their result.
+   *
+   * <p>If fetching a page fails, the terminal operation throws an {@link
+   * com.stripe.exception.AutoPagingException}; see {@link
+   * com.stripe.exception.AutoPagingException#unwrap(java.util.function.Supplier)} to get the {@link
+   * com.stripe.exception.StripeException} back as a checked exception.
+   */
+  public Stream<T> autoPagingStream() {
+    return autoPagingStream((PagingPrefetch) null);
+  }
+
+  /**
+   * Constructs a sequential stream of all objects across all pages.
+   *
+   * @param params request parameters (will override the parameters from the initial list request)
+   * @see #autoPagingStream()
+   */
+  public Stream<T> autoPagingStream(Map<String, Object> params) {
+    this.setRequestParams(params);
+    return autoPagingStream((PagingPrefetch) null);
+  }
+
+  /**
+   * Constructs a sequential stream of all objects across all pages.
+   *
+   * @param params request parameters (will override the parameters from the initial list request)
+   * @param options request options (will override the options from the initial list request)
+   * @see #autoPagingStream()
+   */
+  public Stream<T> autoPagingStream(Map<String, Object> params, RequestOptions options) {
+    return autoPagingStream(params, options, null);
+  }
+
+  /**
+   * Constructs a sequential stream of all objects across all pages, with the next pages fetched in
+   * the background while the current page is consumed. Closing the stream stops fetching pages.
+   *
+   * @param prefetch when to fetch the next pages, and how many of them, or {@code null} to only
+   *     fetch pages on demand
+   * @see #autoPagingStream()
+   */
+  public Stream<T> autoPagingStream(PagingPrefetch prefetch) {
+    PagingSpliterator<T> spliterator =
+        new PagingSpliterator<>(new PagingIterator<>(this, prefetch));
+    return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+  }
+
+  /**
+   * Constructs a sequential stream of all objects across all pages, with the next pages fetched in
+   * the background while the current page is consumed. Closing the stream stops fetching pages.
+   *
+   * @param params request parameters (will override the parameters from the initial list request)
+   * @param options request options (will override the options from the initial list request)
+   * @param prefetch when to fetch the next pages, and how many of them, or {@code null} to only
+   *     fetch pages on demand
+   * @see #autoPagingStream()
+   */
+  public Stream<T> autoPagingStream(
+      Map<String, Object> params, RequestOptions options, PagingPrefetch prefetch) {
+    this.setRequestOptions(options);
+    this.setRequestParams(params);
+    return autoPagingStream(prefetch);
+  }
 }
@@ -0,0 +1,572 @@
+package com.stripe.model;
+
+import static java.util.Objects.requireNonNull;
+
+import com.stripe.exception.RateLimitException;
+import com.stripe.exception.StripeException;
+import com.stripe.net.BatchExecutor;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.UsageRecordCreateOnSubscriptionItemParams;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import lombok.Value;
+
+/**
+ * Aggregates metered usage in memory and reports it with one {@code action=increment} usage record
+ * per subscription item and time bucket, instead of one request per event.
+ *
+ * <p>Increments are added to lock-free striped counters, so that threads recording usage for the
+ * same subscription item do not contend. Counters are flushed every {@code flushInterval}, once
+ * {@code maxBuckets} buckets hold usage, on {@link #flush()}, and on {@link #close()}. Each usage
+ * record is sent with an idempotency key derived from its bucket, so a record sent again after a
+ * failure is only counted once.
+ *
+ * <pre>{@code
+ * UsageRecordAggregator aggregator =
+ *     UsageRecordAggregator.builder()
+ *         .setBucketDuration(Duration.ofMinutes(1))
+ *         .setSpillFile(Paths.get("usage.spill"))
+ *         .setFlushOnShutdown(true)
+ *         .build();
+ * aggregator.increment("si_123", 1);
+ * }</pre>
+ *
+ * <p>With a spill file, the usage records being sent and those that failed to send are saved to
+ * disk until they are acknowledged, and are sent again by the next aggregator built with the same
+ * file. Usage still in the counters, i.e. recorded since the last flush, is only held in memory.
+ */
+public class UsageRecordAggregator implements AutoCloseable {
+  /** The default duration of the time buckets usage is aggregated in. */
+  public static final Duration DEFAULT_BUCKET_DURATION = Duration.ofMinutes(1);
+
+  /** The default interval between periodic flushes. */
+  public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(30);
+
+  /** The default number of buckets holding usage that triggers a flush. */
+  public static final int DEFAULT_MAX_BUCKETS = 10_000;
+
+  /** The default maximum number of usage records sent concurrently. */
+  public static final int DEFAULT_CONCURRENCY = 4;
+
+  private static final AtomicInteger aggregatorCount = new AtomicInteger();
+
+  private final long bucketSeconds;
+  private final int maxBuckets;
+  private final Path spillFile;
+  private final BatchExecutor executor;
+
+  /** Identifies this aggregator in idempotency keys, so that they differ from those of others. */
+  private final String instanceId = UUID.randomUUID().toString();
+
+  private final Map<Bucket, StripedCounter> counters = new ConcurrentHashMap<>();
+
+  /** Counters removed from {@link #counters}, drained once more in case of a racing increment. */
+  private List<StripedCounter> retiredCounters = new ArrayList<>();
+
+  /** The usage records drained from the counters and not acknowledged yet. */
+  private List<PendingRecord> pendingRecords = new ArrayList<>();
+
+  private long sequence;
+
+  private final ScheduledExecutorService scheduler;
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+  private final Thread shutdownHook;
+  private boolean closed;
+
+  private UsageRecordAggregator(UsageRecordAggregatorBuilder builder) throws IOException {
+    this.bucketSeconds = builder.bucketDuration.getSeconds();
+    this.maxBuckets = builder.maxBuckets;
+    this.spillFile = builder.spillFile;
+    this.executor = new BatchExecutor("usage", builder.concurrency, builder.options);
+
+    if (this.spillFile != null) {
+      this.pendingRecords.addAll(readSpillFile(this.spillFile));
+    }
+
+    int aggregator = aggregatorCount.incrementAndGet();
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, String.format("stripe-usage-aggregator-%d", aggregator));
+              thread.setDaemon(true);
+              return thread;
+            });
+    if (builder.flushInterval != null) {
+      long intervalMillis = builder.flushInterval.toMillis();
+      this.scheduler.scheduleWithFixedDelay(
+          this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    if (builder.flushOnShutdown) {
+      this.shutdownHook = new Thread(this::closeQuietly, "stripe-usage-aggregator-shutdown");
+      Runtime.getRuntime().addShutdownHook(this.shutdownHook);
+    } else {
+      this.shutdownHook = null;
+    }
+  }
+
+  /**
+   * Creates a builder of an aggregator.
+   *
+   * @return the builder
+   */
+  public static UsageRecordAggregatorBuilder builder() {
+    return new UsageRecordAggregatorBuilder();
+  }
+
+  /**
+   * Records usage of a subscription item now.
+   *
+   * @param subscriptionItem the ID of the subscription item
+   * @param quantity the quantity used
+   * @throws IllegalArgumentException if {@code quantity} is negative
+   */
+  public void increment(String subscriptionItem, long quantity) {
+    this.increment(subscriptionItem, quantity, System.currentTimeMillis() / 1000);
+  }
+
+  /**
+   * Records usage of a subscription item at the given time. The usage is reported at the start of
+   * the bucket holding that time.
+   *
+   * @param subscriptionItem the ID of the subscription item
+   * @param quantity the quantity used
+   * @param timestamp the time of the usage, in seconds since the epoch
+   * @throws IllegalArgumentException if {@code quantity} is negative
+   */
+  public void increment(String subscriptionItem, long quantity, long timestamp) {
+    requireNonNull(subscriptionItem);
+    if (quantity < 0) {
+      throw new IllegalArgumentException("quantity must not be negative");
+    }
+    if (quantity == 0) {
+      return;
+    }
+
+    Bucket bucket =
+        new Bucket(subscriptionItem, Math.floorDiv(timestamp, bucketSeconds) * bucketSeconds);
+    StripedCounter counter = this.counters.get(bucket);
+    if (counter == null) {
+      counter = this.counters.computeIfAbsent(bucket, StripedCounter::new);
+      if (this.counters.size() >= this.maxBuckets) {
+        this.scheduleFlush();
+      }
+    }
+    counter.add(quantity);
+  }
+
+  /**
+   * Sends the aggregated usage, one usage record per subscription item and bucket, along with the
+   * records of previous flushes that failed to send. Records that fail are kept and sent again by
+   * the next flush, with the same idempotency key, unless they were rejected as invalid (a {@code
+   * 400} or {@code 404} status other than a rate limit).
+   *
+   * @return the result of sending each record
+   * @throws IOException if writing the spill file fails
+   */
+  public synchronized BatchExecutor.BatchResult<UsageRecord> flush() throws IOException {
+    this.flushScheduled.set(false);
+    this.drainCounters();
+    if (this.pendingRecords.isEmpty()) {
+      return this.executor.execute(Collections.emptyList());
+    }
+
+    // the records are on disk before they are sent, so that none is lost if the process dies
+    this.writeSpillFile();
+
+    List<BatchExecutor.Operation<UsageRecord>> operations = new ArrayList<>();
+    for (PendingRecord record : this.pendingRecords) {
+      UsageRecordCreateOnSubscriptionItemParams params =
+          UsageRecordCreateOnSubscriptionItemParams.builder()
+              .setAction(UsageRecordCreateOnSubscriptionItemParams.Action.INCREMENT)
+              .setQuantity(record.getQuantity())
+              .setTimestamp(record.getTimestamp())
+              .build();
+      operations.add(
+          BatchExecutor.operation(
+              record.getKey(),
+              params,
+              (p, options) ->
+                  UsageRecord.createOnSubscriptionItem(record.getSubscriptionItem(), p, options)));
+    }
+    BatchExecutor.BatchResult<UsageRecord> result = this.executor.execute(operations);
+
+    List<PendingRecord> remaining = new ArrayList<>();
+    for (BatchExecutor.ItemResult<UsageRecord> item : result.getFailures()) {
+      if (!isPermanentFailure(item.getException())) {
+        remaining.add(this.pendingRecords.get(item.getIndex()));
+      }
+    }
+    this.pendingRecords = remaining;
+    this.writeSpillFile();
+    return result;
+  }
+
+  /**
+   * Returns whether a record failed in a way that sending it again cannot fix, e.g. because its
+   * subscription item does not exist. Rate limits, conflicts and server errors are not permanent.
+   */
+  private static boolean isPermanentFailure(Exception e) {
+    if (!(e instanceof StripeException) || e instanceof RateLimitException) {
+      return false;
+    }
+    Integer statusCode = ((StripeException) e).getStatusCode();
+    return statusCode != null && (statusCode == 400 || statusCode == 404);
+  }
+
+  /**
+   * Returns the number of usage records drained from the counters that were not acknowledged yet.
+   *
+   * @return the number of pending records
+   */
+  public synchronized int getPendingRecordCount() {
+    return this.pendingRecords.size();
+  }
+
+  /**
+   * Stops periodic flushes and flushes the aggregated usage. Records that fail to send are kept in
+   * the spill file, if any.
+   *
+   * @throws IOException if writing the spill file fails
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    this.scheduler.shutdownNow();
+    if (this.shutdownHook != null && Thread.currentThread() != this.shutdownHook) {
+      try {
+        Runtime.getRuntime().removeShutdownHook(this.shutdownHook);
+      } catch (IllegalStateException e) {
+        // the JVM is already shutting down
+      }
+    }
+    this.flush();
+  }
+
+  private void scheduleFlush() {
+    if (this.flushScheduled.compareAndSet(false, true)) {
+      try {
+        this.scheduler.execute(this::flushQuietly);
+      } catch (RejectedExecutionException e) {
+        // the aggregator was closed
+        this.flushScheduled.set(false);
+      }
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      this.flush();
+    } catch (IOException | RuntimeException e) {
+      // the records stay pending, and are sent again by the next flush
+    }
+  }
+
+  private void closeQuietly() {
+    try {
+      this.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Moves the usage of all counters to pending records. Counters of past buckets without usage are
+   * removed; as an increment may still be racing on them, they are drained once more by the next
+   * flush.
+   */
+  private void drainCounters() {
+    long currentBucket =
+        Math.floorDiv(System.currentTimeMillis() / 1000, this.bucketSeconds) * this.bucketSeconds;
+
+    List<StripedCounter> retired = this.retiredCounters;
+    this.retiredCounters = new ArrayList<>();
+    for (StripedCounter counter : retired) {
+      this.addPendingRecord(counter.bucket, counter.drain());
+    }
+
+    for (StripedCounter counter : this.counters.values()) {
+      long quantity = counter.drain();
+      this.addPendingRecord(counter.bucket, quantity);
+      if (quantity == 0
+          && counter.bucket.getTimestamp() < currentBucket
+          && this.counters.remove(counter.bucket, counter)) {
+        this.retiredCounters.add(counter);
+      }
+    }
+  }
+
+  private void addPendingRecord(Bucket bucket, long quantity) {
+    if (quantity == 0) {
+      return;
+    }
+    this.sequence += 1;
+    String key =
+        String.format(
+            "%s-%d-%s-%d",
+            bucket.getSubscriptionItem(), bucket.getTimestamp(), this.instanceId, this.sequence);
+    this.pendingRecords.add(
+        new PendingRecord(bucket.getSubscriptionItem(), bucket.getTimestamp(), quantity, key));
+  }
+
+  /** Replaces the spill file with the pending records, or deletes it if there are none. */
+  private void writeSpillFile() throws IOException {
+    if (this.spillFile == null) {
+      return;
+    }
+    if (this.pendingRecords.isEmpty()) {
+      Files.deleteIfExists(this.spillFile);
+      return;
+    }
+
+    Path tempPath = this.spillFile.resolveSibling(this.spillFile.getFileName() + ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+      for (PendingRecord record : this.pendingRecords) {
+        writer.write(
+            String.format(
+                "%s\t%d\t%d\t%s",
+                record.getSubscriptionItem(),
+                record.getTimestamp(),
+                record.getQuantity(),
+                record.getKey()));
+        writer.newLine();
+      }
+    }
+
+    try {
+      Files.move(
+          tempPath,
+          this.spillFile,
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tempPath, this.spillFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static List<PendingRecord> readSpillFile(Path path) throws IOException {
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+    } catch (NoSuchFileException e) {
+      return Collections.emptyList();
+    }
+
+    List<PendingRecord> records = new ArrayList<>();
+    for (String line : lines) {
+      if (line.isEmpty()) {
+        continue;
+      }
+      String[] fields = line.split("\t", -1);
+      try {
+        if (fields.length != 4) {
+          throw new NumberFormatException();
+        }
+        records.add(
+            new PendingRecord(
+                fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3]));
+      } catch (NumberFormatException e) {
+        throw new IOException(String.format("Invalid spill file %s: %s", path, line), e);
+      }
+    }
+    return records;
+  }
+
+  /** A builder of {@link UsageRecordAggregator}. */
+  public static final class UsageRecordAggregatorBuilder {
+    private Duration bucketDuration = DEFAULT_BUCKET_DURATION;
+    private Duration flushInterval = DEFAULT_FLUSH_INTERVAL;
+    private int maxBuckets = DEFAULT_MAX_BUCKETS;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private RequestOptions options;
+    private Path spillFile;
+    private boolean flushOnShutdown;
+
+    private UsageRecordAggregatorBuilder() {}
+
+    /**
+     * Sets the duration of the time buckets usage is aggregated in. Defaults to {@link
+     * #DEFAULT_BUCKET_DURATION}.
+     *
+     * @param bucketDuration the duration of a bucket, a whole number of seconds
+     * @return this builder
+     */
+    public UsageRecordAggregatorBuilder setBucketDuration(Duration bucketDuration) {
+      this.bucketDuration = bucketDuration;
+      return this;
+    }
+
+    /**
+     * Sets the interval between periodic flushes. Defaults to {@link #DEFAULT_FLUSH_INTERVAL}.
+     *
+     * @param flushInterval the interval, or {@code null} to only flush on demand
+     * @return this builder
+     */
+    public UsageRecordAggregatorBuilder setFlushInterval(Duration flushInterval) {
+      this.flushInterval = flushInterval;
+      return this;
+    }
+
+    /**
+     * Sets the number of buckets holding usage that triggers a flush. Defaults to {@link
+     * #DEFAULT_MAX_BUCKETS}.
+     *
+     * @param maxBuckets the maximum number of buckets
+     * @return this builder
+     */
+    public UsageRecordAggregatorBuilder setMaxBuckets(int maxBuckets) {
+      this.maxBuckets = maxBuckets;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of usage records sent concurrently by a flush. Defaults to {@link
+     * #DEFAULT_CONCURRENCY}.
+     *
+     * @param concurrency the maximum number of concurrent requests
+     * @return this builder
+     */
+    public UsageRecordAggregatorBuilder setConcurrency(int concurrency) {
+      this.concurrency = concurrency;
+      return this;
+    }
+
+    /**
+     * Sets the options usage records are sent with.
+     *
+     * @param options the request options, or {@code null} to use the global configuration
+     * @return this builder
+     */
+    public UsageRecordAggregatorBuilder setRequestOptions(RequestOptions options) {
+      this.options = options;
+      return this;
+    }
+
+    /**
+     * Sets the file unacknowledged usage records are saved to, and loaded from when the aggregator
+     * is built.
+     *
+     * @param spillFile the spill file, or {@code null} to keep unacknowledged records in memory
+     * @return this builder
+     */
+    public UsageRecordAggregatorBuilder setSpillFile(Path spillFile) {
+      this.spillFile = spillFile;
+      return this;
+    }
+
+    /**
+     * Sets whether to close the aggregator, flushing it, when the JVM shuts down. Defaults to
+     * {@code false}.
+     *
+     * @param flushOnShutdown whether to flush on shutdown
+     * @return this builder
+     */
+    public UsageRecordAggregatorBuilder setFlushOnShutdown(boolean flushOnShutdown) {
+      this.flushOnShutdown = flushOnShutdown;
+      return this;
+    }
+
+    /**
+     * Builds the aggregator, loading the usage records left in the spill file, if any.
+     *
+     * @return the aggregator
+     * @throws IOException if reading the spill file fails
+     * @throws IllegalArgumentException if the bucket duration is not a positive number of seconds,
+     *     or the flush interval, maximum number of buckets or concurrency is not positive
+     */
+    public UsageRecordAggregator build() throws IOException {
+      if (this.bucketDuration == null
+          || this.bucketDuration.getSeconds() <= 0
+          || this.bucketDuration.getNano() != 0) {
+        throw new IllegalArgumentException("bucketDuration must be a positive number of seconds");
+      }
+      if (this.flushInterval != null
+          && (this.flushInterval.isNegative() || this.flushInterval.isZero())) {
+        throw new IllegalArgumentException("flushInterval must be positive");
+      }
+      if (this.maxBuckets <= 0) {
+        throw new IllegalArgumentException("maxBuckets must be positive");
+      }
+      if (this.concurrency <= 0) {
+        throw new IllegalArgumentException("concurrency must be positive");
+      }
+      return new UsageRecordAggregator(this);
+    }
+  }
+
+  /** A subscription item and the start of a time bucket, in seconds since the epoch. */
+  @Value
+  private static class Bucket {
+    String subscriptionItem;
+    long timestamp;
+  }
+
+  /** A usage record to send, with the idempotency key it was first sent with. */
+  @Value
+  private static class PendingRecord {
+    String subscriptionItem;
+    long timestamp;
+    long quantity;
+    String key;
+  }
+
+  /**
+   * A counter split into stripes, each on its own cache line, that threads add to depending on
+   * their ID. Unlike a {@link java.util.concurrent.atomic.LongAdder}, it can be drained atomically
+   * with respect to concurrent additions.
+   */
+  private static final class StripedCounter {
+    /** The number of longs per stripe, so that stripes are 64 bytes apart. */
+    private static final int PADDING = 8;
+
+    private static final int STRIPES =
+        Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1) << 1);
+
+    final Bucket bucket;
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    StripedCounter(Bucket bucket) {
+      this.bucket = bucket;
+    }
+
+    void add(long value) {
+      long id = Thread.currentThread().getId();
+      int stripe = (int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & (STRIPES - 1);
+      this.cells.addAndGet(stripe * PADDING, value);
+    }
+
+    long drain() {
+      long sum = 0;
+      for (int i = 0; i < STRIPES; i++) {
+        sum += this.cells.getAndSet(i * PADDING, 0);
+      }
+      return sum;
+    }
+  }
+}
@@ -11,6 +11,8 @@ import com.stripe.net.RequestOptions;
 import com.stripe.param.reporting.ReportRunCreateParams;
 import com.stripe.param.reporting.ReportRunListParams;
 import com.stripe.param.reporting.ReportRunRetrieveParams;
+import com.stripe.util.CsvReader;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import lombok.EqualsAndHashCode;
@@ -235,4 +237,17 @@ public class ReportRun extends ApiResource implements HasId {
     @SerializedName("reporting_category")
     String reportingCategory;
   }
+
+  /**
+   * Reads the results of the report run, one row at a time as they are received, without loading
+   * the whole file in memory. The reader must be closed.
+   *
+   * @throws IllegalStateException if the report run has no results yet
+   */
+  public CsvReader readResultCsv(RequestOptions options) throws StripeException, IOException {
+    if (this.result == null) {
+      throw new IllegalStateException("The report run has no results yet");
+    }
+    return this.result.readCsv(options);
+  }
 }
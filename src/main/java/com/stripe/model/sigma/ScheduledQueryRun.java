@@ -10,6 +10,8 @@ import com.stripe.net.ApiResource;
 import com.stripe.net.RequestOptions;
 import com.stripe.param.sigma.ScheduledQueryRunListParams;
 import com.stripe.param.sigma.ScheduledQueryRunRetrieveParams;
+import com.stripe.util.CsvReader;
+import java.io.IOException;
 import java.util.Map;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -146,4 +148,17 @@ public class ScheduledQueryRun extends ApiResource implements HasId {
     @SerializedName("message")
     String message;
   }
+
+  /**
+   * Reads the results of the scheduled query run, one row at a time as they are received, without
+   * loading the whole file in memory. The reader must be closed.
+   *
+   * @throws IllegalStateException if the scheduled query run has no results yet
+   */
+  public CsvReader readResultCsv(RequestOptions options) throws StripeException, IOException {
+    if (this.file == null) {
+      throw new IllegalStateException("The scheduled query run has no results yet");
+    }
+    return this.file.readCsv(options);
+  }
 }
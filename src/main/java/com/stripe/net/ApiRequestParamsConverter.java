@@ -7,13 +7,26 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.TypeAdapter;
 import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.SerializedName;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 import com.stripe.Stripe;
 import com.stripe.param.common.EmptyParam;
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Converter to map an api request object to an untyped map. It is not called a *Serializer because
@@ -31,6 +44,10 @@ class ApiRequestParamsConverter {
   private static final UntypedMapDeserializer FLATTENING_EXTRA_PARAMS_DESERIALIZER =
       new UntypedMapDeserializer(new ExtraParamsFlatteningStrategy());
 
+  /** The fields of each params class, bound the first time an instance is converted. */
+  private static final ConcurrentMap<Class<?>, ParamsClass> PARAMS_CLASSES =
+      new ConcurrentHashMap<>();
+
   /** Strategy to flatten extra params in the API request parameters. */
   private static class ExtraParamsFlatteningStrategy implements UntypedMapDeserializer.Strategy {
     @Override
@@ -175,7 +192,199 @@ class ApiRequestParamsConverter {
    * supported.
    */
   Map<String, Object> convert(ApiRequestParams apiRequestParams) {
+    ParamsClass paramsClass = paramsClassOf(apiRequestParams.getClass());
+    if (paramsClass.fields == null) {
+      return convertUsingJsonTree(apiRequestParams);
+    }
+    return convertParams(apiRequestParams, paramsClass);
+  }
+
+  /**
+   * Converts the given request params by serializing them to a JSON tree and deserializing that
+   * tree. This is the reference behavior that the direct conversion reproduces.
+   */
+  static Map<String, Object> convertUsingJsonTree(ApiRequestParams apiRequestParams) {
     JsonObject jsonParams = GSON.toJsonTree(apiRequestParams).getAsJsonObject();
     return FLATTENING_EXTRA_PARAMS_DESERIALIZER.deserialize(jsonParams);
   }
+
+  // The conversion below walks the params objects directly, using their fields as bound once per
+  // class, instead of building a JSON tree and deserializing it. It produces the same maps, lists
+  // and values, in the same order, as the JSON tree conversion. Values of types it does not know
+  // are converted through the JSON tree.
+
+  private static Map<String, Object> convertParams(Object params, ParamsClass paramsClass) {
+    Map<String, Object> outerMap = new HashMap<>();
+    for (ParamsField field : paramsClass.fields) {
+      Object value = field.get(params);
+      // Gson omits null fields.
+      if (value != null) {
+        putValue(outerMap, field.name, value);
+      }
+    }
+    return outerMap;
+  }
+
+  private static Map<String, Object> convertMap(Map<?, ?> map) {
+    Map<String, Object> outerMap = new HashMap<>();
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      putValue(outerMap, (String) entry.getKey(), entry.getValue());
+    }
+    return outerMap;
+  }
+
+  /** Same as {@link ExtraParamsFlatteningStrategy}, for a value that was not converted yet. */
+  @SuppressWarnings("unchecked")
+  private static void putValue(Map<String, Object> outerMap, String key, Object rawValue) {
+    Object value = convertValue(rawValue);
+    if (ApiRequestParams.EXTRA_PARAMS_KEY.equals(key)) {
+      if (!(value instanceof Map<?, ?>)) {
+        throw new IllegalStateException(
+            String.format(
+                "Unexpected schema for extra params. JSON object is expected at key `%s`, but found"
+                    + " `%s`. This is likely a problem with this current library version `%s`. "
+                    + "Please contact support@stripe.com for assistance.",
+                ApiRequestParams.EXTRA_PARAMS_KEY, GSON.toJsonTree(rawValue), Stripe.VERSION));
+      }
+      for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+        validateDuplicateKey(outerMap, entry.getKey(), entry.getValue());
+        outerMap.put(entry.getKey(), entry.getValue());
+      }
+    } else {
+      validateDuplicateKey(outerMap, key, value);
+      outerMap.put(key, value);
+    }
+  }
+
+  private static Object convertValue(Object value) {
+    if (value == null || value instanceof String || value instanceof Boolean) {
+      return value;
+    } else if (value instanceof ApiRequestParams.EnumParam) {
+      String enumValue = ((ApiRequestParams.EnumParam) value).getValue();
+      return enumValue.equals("") ? null : enumValue;
+    } else if (value instanceof Long
+        || value instanceof Integer
+        || value instanceof Short
+        || value instanceof Byte
+        || value instanceof BigDecimal
+        || value instanceof BigInteger) {
+      return value;
+    } else if (value instanceof Map<?, ?> && hasStringKeys((Map<?, ?>) value)) {
+      return convertMap((Map<?, ?>) value);
+    } else if (value instanceof Collection<?>) {
+      List<Object> list = new ArrayList<>(((Collection<?>) value).size());
+      for (Object element : (Collection<?>) value) {
+        list.add(convertValue(element));
+      }
+      return list;
+    } else if (value instanceof Object[]) {
+      List<Object> list = new ArrayList<>(((Object[]) value).length);
+      for (Object element : (Object[]) value) {
+        list.add(convertValue(element));
+      }
+      return list;
+    }
+
+    ParamsClass paramsClass = paramsClassOf(value.getClass());
+    if (paramsClass.fields != null) {
+      return convertParams(value, paramsClass);
+    }
+    return FLATTENING_EXTRA_PARAMS_DESERIALIZER.deserializeJsonElement(GSON.toJsonTree(value));
+  }
+
+  private static boolean hasStringKeys(Map<?, ?> map) {
+    for (Object key : map.keySet()) {
+      if (!(key instanceof String)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static ParamsClass paramsClassOf(Class<?> clazz) {
+    ParamsClass paramsClass = PARAMS_CLASSES.get(clazz);
+    if (paramsClass == null) {
+      paramsClass = new ParamsClass(bindFields(clazz));
+      PARAMS_CLASSES.putIfAbsent(clazz, paramsClass);
+    }
+    return paramsClass;
+  }
+
+  /**
+   * Returns the fields serialized by Gson's reflective type adapter for the given params class, in
+   * the same order, or {@code null} if the class is not a params class or Gson would not serialize
+   * it reflectively.
+   */
+  private static ParamsField[] bindFields(Class<?> clazz) {
+    boolean isParamsClass =
+        ApiRequestParams.class.isAssignableFrom(clazz)
+            || clazz.getName().startsWith("com.stripe.param.");
+    if (!isParamsClass
+        || clazz.isEnum()
+        || clazz.isInterface()
+        || clazz.isAnonymousClass()
+        || clazz.isLocalClass()
+        || ApiRequestParams.EnumParam.class.isAssignableFrom(clazz)
+        || Map.class.isAssignableFrom(clazz)
+        || Collection.class.isAssignableFrom(clazz)) {
+      return null;
+    }
+
+    List<ParamsField> fields = new ArrayList<>();
+    Set<String> names = new HashSet<>();
+    // Like Gson, list the fields of the class before those of its superclasses.
+    for (Class<?> c = clazz; c != Object.class; c = c.getSuperclass()) {
+      for (Field field : c.getDeclaredFields()) {
+        if ((field.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) != 0
+            || field.isSynthetic()
+            || isAnonymousOrLocal(field.getType())) {
+          continue;
+        }
+        SerializedName serializedName = field.getAnnotation(SerializedName.class);
+        String name =
+            (serializedName != null)
+                ? serializedName.value()
+                : FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES.translateName(field);
+        if (!names.add(name)) {
+          // Gson rejects classes declaring the same name twice; let it report the error.
+          return null;
+        }
+        field.setAccessible(true);
+        fields.add(new ParamsField(name, field));
+      }
+    }
+    return fields.toArray(new ParamsField[0]);
+  }
+
+  private static boolean isAnonymousOrLocal(Class<?> clazz) {
+    return !Enum.class.isAssignableFrom(clazz)
+        && (clazz.isAnonymousClass() || clazz.isLocalClass());
+  }
+
+  /** The serialized fields of a class, or {@code null} fields if it is not converted directly. */
+  private static class ParamsClass {
+    final ParamsField[] fields;
+
+    ParamsClass(ParamsField[] fields) {
+      this.fields = fields;
+    }
+  }
+
+  private static class ParamsField {
+    final String name;
+    final Field field;
+
+    ParamsField(String name, Field field) {
+      this.name = name;
+      this.field = field;
+    }
+
+    Object get(Object params) {
+      try {
+        return this.field.get(params);
+      } catch (IllegalAccessException e) {
+        throw new AssertionError(e);
+      }
+    }
+  }
 }
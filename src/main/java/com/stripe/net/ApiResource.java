@@ -22,16 +22,28 @@ import com.stripe.model.StripeObjectInterface;
 import com.stripe.model.StripeRawJsonObject;
 import com.stripe.model.StripeRawJsonObjectDeserializer;
 import com.stripe.util.StringUtils;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 public abstract class ApiResource extends StripeObject {
   public static final Charset CHARSET = StandardCharsets.UTF_8;
 
+  /**
+   * Name of the factory generated at build time, which is compiled after this class and cannot be
+   * referenced directly.
+   */
+  private static final String GENERATED_TYPE_ADAPTER_FACTORY =
+      "com.stripe.model.GeneratedTypeAdapterFactory";
+
   private static StripeResponseGetter stripeResponseGetter = new LiveStripeResponseGetter();
 
   public static final Gson GSON = createGson();
@@ -42,13 +54,21 @@ public abstract class ApiResource extends StripeObject {
 
   private static Gson createGson() {
     GsonBuilder builder =
-        new GsonBuilder()
-            .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
-            .registerTypeAdapter(EphemeralKey.class, new EphemeralKeyDeserializer())
-            .registerTypeAdapter(EventData.class, new EventDataDeserializer())
-            .registerTypeAdapter(EventRequest.class, new EventRequestDeserializer())
-            .registerTypeAdapter(ExpandableField.class, new ExpandableFieldDeserializer())
-            .registerTypeAdapter(StripeRawJsonObject.class, new StripeRawJsonObjectDeserializer());
+        new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES);
+
+    // Factories registered last take precedence, so the generated adapters only replace the
+    // reflective ones, not the custom adapters registered below.
+    TypeAdapterFactory generatedFactory = createGeneratedTypeAdapterFactory();
+    if (generatedFactory != null) {
+      builder.registerTypeAdapterFactory(generatedFactory);
+    }
+
+    builder
+        .registerTypeAdapter(EphemeralKey.class, new EphemeralKeyDeserializer())
+        .registerTypeAdapter(EventData.class, new EventDataDeserializer())
+        .registerTypeAdapter(EventRequest.class, new EventRequestDeserializer())
+        .registerTypeAdapter(ExpandableField.class, new ExpandableFieldDeserializer())
+        .registerTypeAdapter(StripeRawJsonObject.class, new StripeRawJsonObjectDeserializer());
 
     for (TypeAdapterFactory factory : ApiResourceTypeAdapterFactoryProvider.getAll()) {
       builder.registerTypeAdapterFactory(factory);
@@ -56,6 +76,29 @@ public abstract class ApiResource extends StripeObject {
     return builder.create();
   }
 
+  /**
+   * Returns the factory of the type adapters generated at build time for the model classes, or
+   * {@code null} if they were not generated (e.g. when running from an IDE's own build), in which
+   * case model classes are deserialized using reflection.
+   *
+   * @throws IllegalStateException if the factory exists but cannot be instantiated
+   */
+  private static TypeAdapterFactory createGeneratedTypeAdapterFactory() {
+    Class<?> factoryClass;
+    try {
+      factoryClass = Class.forName(GENERATED_TYPE_ADAPTER_FACTORY);
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+
+    try {
+      return (TypeAdapterFactory) factoryClass.getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(
+          String.format("Unable to instantiate %s", GENERATED_TYPE_ADAPTER_FACTORY), e);
+    }
+  }
+
   private static String className(Class<?> clazz) {
     // Convert CamelCase to snake_case
     String className = StringUtils.toSnakeCase(clazz.getSimpleName());
@@ -206,6 +249,145 @@ public abstract class ApiResource extends StripeObject {
     return collection;
   }
 
+  /**
+   * Asynchronous variant of {@link #request(ApiResource.RequestMethod, String, ApiRequestParams,
+   * Class, RequestOptions)}.
+   *
+   * @return a future that completes with the resource, or exceptionally with a {@link
+   *     StripeException}
+   */
+  public static <T extends StripeObjectInterface> CompletableFuture<T> requestAsync(
+      ApiResource.RequestMethod method,
+      String url,
+      ApiRequestParams params,
+      Class<T> clazz,
+      RequestOptions options) {
+    checkNullTypedParams(url, params);
+    return requestAsync(method, url, params.toMap(), clazz, options);
+  }
+
+  /**
+   * Asynchronous variant of {@link #request(ApiResource.RequestMethod, String, Map, Class,
+   * RequestOptions)}.
+   *
+   * @return a future that completes with the resource, or exceptionally with a {@link
+   *     StripeException}
+   */
+  public static <T extends StripeObjectInterface> CompletableFuture<T> requestAsync(
+      ApiResource.RequestMethod method,
+      String url,
+      Map<String, Object> params,
+      Class<T> clazz,
+      RequestOptions options) {
+    return ApiResource.stripeResponseGetter.requestAsync(method, url, params, clazz, options);
+  }
+
+  /**
+   * Opens the contents at the given URL, e.g. a file's contents, as a stream read from the network.
+   * Closing the stream closes the connection.
+   *
+   * @param url the URL of the contents
+   * @param options the request options
+   * @return the stream of the contents
+   * @throws StripeException if the request fails
+   */
+  public static InputStream openStream(String url, RequestOptions options) throws StripeException {
+    StripeRequest request = new StripeRequest(RequestMethod.GET, url, null, options);
+    return ApiResource.stripeResponseGetter.requestStream(request).body();
+  }
+
+  /**
+   * Downloads the contents at the given URL, e.g. a file's contents, to the given path, without
+   * holding them in memory. The contents are written to a {@code .part} file next to the given
+   * path, which is moved in place once complete. An interrupted transfer is resumed with a {@code
+   * Range} request, up to {@link RequestOptions#getMaxNetworkRetries()} times, and a failed
+   * download resumes from the partial file the next time it is run, unless the URL or the version
+   * of the contents changed.
+   *
+   * <p>Requests go through the configured {@link StripeResponseGetter}, which must support {@link
+   * StripeResponseGetter#requestStream(StripeRequest) streamed responses}.
+   *
+   * @param url the URL of the contents
+   * @param path the file to write
+   * @param listener the listener receiving the progress of the download, or {@code null}
+   * @param options the request options
+   * @return the size of the contents, in bytes
+   * @throws StripeException if a request fails or the transfer cannot be resumed
+   * @throws IOException if writing the file fails
+   */
+  public static long download(
+      String url, Path path, DownloadProgressListener listener, RequestOptions options)
+      throws StripeException, IOException {
+    return Downloader.download(ApiResource.stripeResponseGetter, url, path, options, listener);
+  }
+
+  /**
+   * Downloads the contents at the given URL, e.g. a file's contents, to the given stream. An
+   * interrupted transfer is resumed with a {@code Range} request, up to {@link
+   * RequestOptions#getMaxNetworkRetries()} times.
+   *
+   * @param url the URL of the contents
+   * @param out the stream to write to, which is not closed
+   * @param listener the listener receiving the progress of the download, or {@code null}
+   * @param options the request options
+   * @return the size of the contents, in bytes
+   * @throws StripeException if a request fails or the transfer cannot be resumed
+   * @throws IOException if writing to the stream fails
+   */
+  public static long download(
+      String url, OutputStream out, DownloadProgressListener listener, RequestOptions options)
+      throws StripeException, IOException {
+    return Downloader.download(ApiResource.stripeResponseGetter, url, out, options, listener);
+  }
+
+  /**
+   * Asynchronous variant of {@link #requestCollection(String, ApiRequestParams, Class,
+   * RequestOptions)}.
+   *
+   * @return a future that completes with the collection, or exceptionally with a {@link
+   *     StripeException}
+   */
+  public static <T extends StripeCollectionInterface<?>>
+      CompletableFuture<T> requestCollectionAsync(
+          String url, ApiRequestParams params, Class<T> clazz, RequestOptions options) {
+    checkNullTypedParams(url, params);
+    return requestCollectionAsync(url, params.toMap(), clazz, options);
+  }
+
+  /**
+   * Asynchronous variant of {@link #requestCollection(String, Map, Class, RequestOptions)}.
+   *
+   * @return a future that completes with the collection, or exceptionally with a {@link
+   *     StripeException}
+   */
+  public static <T extends StripeCollectionInterface<?>>
+      CompletableFuture<T> requestCollectionAsync(
+          String url, Map<String, Object> params, Class<T> clazz, RequestOptions options) {
+    return requestAsync(RequestMethod.GET, url, params, clazz, options)
+        .thenApply(
+            collection -> {
+              if (collection != null) {
+                collection.setRequestOptions(options);
+                collection.setRequestParams(params);
+              }
+              return collection;
+            });
+  }
+
+  /**
+   * Returns a future that has already completed exceptionally with the given exception. This is
+   * used by asynchronous methods to report errors detected before the request is sent, such as an
+   * invalid resource ID.
+   *
+   * @param e the exception
+   * @return the failed future
+   */
+  protected static <T> CompletableFuture<T> failedFuture(StripeException e) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    future.completeExceptionally(e);
+    return future;
+  }
+
   /**
    * Invalidate null typed parameters.
    *
@@ -0,0 +1,410 @@
+package com.stripe.net;
+
+import static java.util.Objects.requireNonNull;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Value;
+
+/**
+ * Runs a batch of create or update operations, e.g. thousands of invoice items or transfers, with
+ * at most {@code concurrency} of them in flight at a time. Operations are ordinary resource
+ * methods, sent through the client configured on {@link ApiResource}; pairing the executor with a
+ * {@link ConcurrencyLimiter} on that client further adapts the pace to the account's rate limits.
+ *
+ * <p>Each operation is sent with an {@code Idempotency-Key} derived from the batch ID and the key
+ * of the operation, by default its index in the batch. Running the same batch again, e.g. after a
+ * job was interrupted, therefore returns the objects created by the first run instead of creating
+ * them twice.
+ *
+ * <pre>{@code
+ * BatchExecutor executor = new BatchExecutor("invoice-items-2020-10-01", 8);
+ * List<BatchExecutor.Operation<InvoiceItem>> operations = new ArrayList<>();
+ * for (InvoiceItemCreateParams params : paramsList) {
+ *   operations.add(BatchExecutor.operation(params, InvoiceItem::create));
+ * }
+ * BatchExecutor.BatchResult<InvoiceItem> result = executor.execute(operations);
+ * }</pre>
+ *
+ * <p>The failure of an operation does not stop the others: each operation's result or exception is
+ * reported in the {@link BatchResult}.
+ */
+public class BatchExecutor {
+  /** The maximum length of an idempotency key accepted by the API. */
+  private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
+  private static final AtomicInteger batchCount = new AtomicInteger();
+
+  /**
+   * An operation of a batch, e.g. a call to {@code InvoiceItem.create}.
+   *
+   * @param <R> the type of the result of the operation
+   */
+  @FunctionalInterface
+  public interface Operation<R> {
+    /**
+     * Sends the operation.
+     *
+     * @param options the request options to send it with, which include its idempotency key
+     * @return the result of the operation
+     * @throws StripeException if the request fails
+     */
+    R execute(RequestOptions options) throws StripeException;
+
+    /**
+     * Returns the key of the operation, unique within its batch, from which its idempotency key is
+     * derived.
+     *
+     * @return the key, or {@code null} to use the index of the operation in the batch
+     */
+    default String getKey() {
+      return null;
+    }
+  }
+
+  /**
+   * A resource method taking parameters and request options, e.g. {@code InvoiceItem::create}.
+   *
+   * @param <P> the type of the parameters
+   * @param <R> the type of the result
+   */
+  @FunctionalInterface
+  public interface ResourceMethod<P, R> {
+    /**
+     * Calls the method.
+     *
+     * @param params the parameters
+     * @param options the request options
+     * @return the result of the method
+     * @throws StripeException if the request fails
+     */
+    R call(P params, RequestOptions options) throws StripeException;
+  }
+
+  private final String batchId;
+  private final int concurrency;
+  private final RequestOptions options;
+
+  /**
+   * Initializes a new instance of the {@link BatchExecutor} class, sending operations with the
+   * default request options.
+   *
+   * @param batchId the ID of the batch, from which idempotency keys are derived; it must be the
+   *     same when the batch is run again, and differ between batches
+   * @param concurrency the maximum number of operations in flight at a time
+   */
+  public BatchExecutor(String batchId, int concurrency) {
+    this(batchId, concurrency, null);
+  }
+
+  /**
+   * Initializes a new instance of the {@link BatchExecutor} class.
+   *
+   * @param batchId the ID of the batch, from which idempotency keys are derived; it must be the
+   *     same when the batch is run again, and differ between batches
+   * @param concurrency the maximum number of operations in flight at a time
+   * @param options the request options operations are sent with, or {@code null} for the default
+   *     ones; their idempotency key, if any, is replaced by the one of each operation
+   * @throws IllegalArgumentException if {@code batchId} is empty or {@code concurrency} is not
+   *     positive
+   */
+  public BatchExecutor(String batchId, int concurrency, RequestOptions options) {
+    requireNonNull(batchId);
+    if (batchId.trim().isEmpty()) {
+      throw new IllegalArgumentException("batchId must not be empty");
+    }
+    if (concurrency <= 0) {
+      throw new IllegalArgumentException("concurrency must be positive");
+    }
+
+    this.batchId = batchId;
+    this.concurrency = concurrency;
+    this.options = options;
+  }
+
+  /**
+   * Creates an operation calling a resource method with the given parameters.
+   *
+   * @param params the parameters
+   * @param method the method, e.g. {@code InvoiceItem::create}
+   * @return the operation
+   */
+  public static <P, R> Operation<R> operation(P params, ResourceMethod<P, R> method) {
+    requireNonNull(method);
+    return options -> method.call(params, options);
+  }
+
+  /**
+   * Creates an operation calling a resource method with the given parameters, whose idempotency key
+   * is derived from the given key rather than from its index in the batch. Keys allow operations to
+   * be added to or removed from a batch that is run again.
+   *
+   * @param key the key of the operation, unique within its batch
+   * @param params the parameters
+   * @param method the method, e.g. {@code InvoiceItem::create}
+   * @return the operation
+   */
+  public static <P, R> Operation<R> operation(String key, P params, ResourceMethod<P, R> method) {
+    requireNonNull(key);
+    requireNonNull(method);
+    return new Operation<R>() {
+      @Override
+      public R execute(RequestOptions options) throws StripeException {
+        return method.call(params, options);
+      }
+
+      @Override
+      public String getKey() {
+        return key;
+      }
+    };
+  }
+
+  /**
+   * Returns the idempotency key of an operation.
+   *
+   * @param index the index of the operation in the batch
+   * @param operation the operation
+   * @return the idempotency key
+   */
+  public String idempotencyKey(int index, Operation<?> operation) {
+    String operationKey = operation.getKey();
+    String key =
+        String.format(
+            "%s-%s", this.batchId, (operationKey != null) ? operationKey : String.valueOf(index));
+    if (key.length() <= MAX_IDEMPOTENCY_KEY_LENGTH) {
+      return key;
+    }
+
+    try {
+      byte[] digest =
+          MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+      StringBuilder hex = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  /**
+   * Runs the operations and waits for all of them to complete. If the calling thread is
+   * interrupted, the operations not sent yet are cancelled and fail with an {@link
+   * ApiConnectionException}; running the batch again completes them.
+   *
+   * @param operations the operations
+   * @return the result of each operation, in the order of the operations, and the statistics of the
+   *     batch
+   * @throws IllegalArgumentException if two operations have the same idempotency key
+   */
+  public <R> BatchResult<R> execute(List<? extends Operation<? extends R>> operations) {
+    requireNonNull(operations);
+    List<String> keys = new ArrayList<>(operations.size());
+    for (int i = 0; i < operations.size(); i++) {
+      keys.add(this.idempotencyKey(i, operations.get(i)));
+    }
+    if (keys.stream().distinct().count() != keys.size()) {
+      throw new IllegalArgumentException("Operations must have distinct keys");
+    }
+
+    int batch = batchCount.incrementAndGet();
+    AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            Math.max(1, Math.min(this.concurrency, operations.size())),
+            runnable -> {
+              Thread thread =
+                  new Thread(
+                      runnable,
+                      String.format(
+                          "stripe-batch-executor-%d-%d", batch, threadCount.incrementAndGet()));
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    long start = System.nanoTime();
+    List<ItemResult<R>> items = new ArrayList<>(operations.size());
+    try {
+      List<Future<ItemResult<R>>> futures = new ArrayList<>(operations.size());
+      for (int i = 0; i < operations.size(); i++) {
+        int index = i;
+        futures.add(executor.submit(() -> this.run(index, keys.get(index), operations.get(index))));
+      }
+
+      boolean interrupted = false;
+      for (int i = 0; i < futures.size(); i++) {
+        Future<ItemResult<R>> future = futures.get(i);
+        if (interrupted) {
+          future.cancel(false);
+        }
+        try {
+          items.add(future.get());
+        } catch (InterruptedException e) {
+          interrupted = true;
+          executor.shutdownNow();
+          items.add(this.interrupted(i, keys.get(i), e));
+        } catch (CancellationException e) {
+          items.add(this.interrupted(i, keys.get(i), e));
+        } catch (ExecutionException e) {
+          // run() catches the exceptions of operations
+          throw new IllegalStateException(e.getCause());
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    return new BatchResult<>(
+        Collections.unmodifiableList(items), Stats.of(items, System.nanoTime() - start));
+  }
+
+  private <R> ItemResult<R> run(int index, String key, Operation<? extends R> operation) {
+    RequestOptions base = (this.options != null) ? this.options : RequestOptions.getDefault();
+    RequestOptions itemOptions = base.toBuilder().setIdempotencyKey(key).build();
+
+    long start = System.nanoTime();
+    try {
+      R value = operation.execute(itemOptions);
+      return new ItemResult<>(index, key, value, null, Duration.ofNanos(System.nanoTime() - start));
+    } catch (StripeException | RuntimeException e) {
+      return new ItemResult<>(index, key, null, e, Duration.ofNanos(System.nanoTime() - start));
+    }
+  }
+
+  private <R> ItemResult<R> interrupted(int index, String key, Exception cause) {
+    return new ItemResult<>(
+        index,
+        key,
+        null,
+        new ApiConnectionException("Interrupted before the operation completed", cause),
+        Duration.ZERO);
+  }
+
+  /** The result of an operation of a batch. */
+  @Value
+  public static class ItemResult<R> {
+    /** The index of the operation in the batch. */
+    int index;
+
+    /** The idempotency key the operation was sent with. */
+    String idempotencyKey;
+
+    /** The result of the operation, or {@code null} if it failed. */
+    R value;
+
+    /**
+     * The exception raised by the operation, or {@code null} if it succeeded. This is usually a
+     * {@link StripeException}.
+     */
+    Exception exception;
+
+    /** The time the operation took. */
+    Duration latency;
+
+    /**
+     * Returns whether the operation succeeded.
+     *
+     * @return {@code true} if the operation did not raise an exception
+     */
+    public boolean isSuccess() {
+      return this.exception == null;
+    }
+  }
+
+  /** The results of all operations of a batch. */
+  @Value
+  public static class BatchResult<R> {
+    /** The result of each operation, in the order of the operations. */
+    List<ItemResult<R>> items;
+
+    /** The statistics of the batch. */
+    Stats stats;
+
+    /**
+     * Returns the results of the operations that failed.
+     *
+     * @return the failed results, in the order of the operations
+     */
+    public List<ItemResult<R>> getFailures() {
+      List<ItemResult<R>> failures = new ArrayList<>();
+      for (ItemResult<R> item : this.items) {
+        if (!item.isSuccess()) {
+          failures.add(item);
+        }
+      }
+      return failures;
+    }
+  }
+
+  /** The statistics of a batch. */
+  @Value
+  public static class Stats {
+    /** Number of operations that succeeded. */
+    long succeeded;
+
+    /** Number of operations that failed. */
+    long failed;
+
+    /** Time the whole batch took. */
+    Duration elapsed;
+
+    /** Median latency of the operations. */
+    Duration medianLatency;
+
+    /** 95th percentile latency of the operations. */
+    Duration p95Latency;
+
+    /** Maximum latency of the operations. */
+    Duration maxLatency;
+
+    static Stats of(List<? extends ItemResult<?>> items, long elapsedNanos) {
+      long succeeded = items.stream().filter(ItemResult::isSuccess).count();
+      long[] latencies = items.stream().mapToLong(item -> item.getLatency().toNanos()).toArray();
+      Arrays.sort(latencies);
+      return new Stats(
+          succeeded,
+          items.size() - succeeded,
+          Duration.ofNanos(elapsedNanos),
+          percentile(latencies, 0.5),
+          percentile(latencies, 0.95),
+          percentile(latencies, 1));
+    }
+
+    private static Duration percentile(long[] sorted, double percentile) {
+      if (sorted.length == 0) {
+        return Duration.ZERO;
+      }
+      int index = (int) Math.ceil(percentile * sorted.length) - 1;
+      return Duration.ofNanos(sorted[Math.max(0, Math.min(sorted.length - 1, index))]);
+    }
+
+    /**
+     * Returns the number of operations completed per second.
+     *
+     * @return the throughput of the batch
+     */
+    public double getOperationsPerSecond() {
+      long nanos = this.elapsed.toNanos();
+      return (nanos == 0) ? 0 : (this.succeeded + this.failed) * 1e9 / nanos;
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.stripe.net;
+
+import java.time.Duration;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Describes how long {@link CachingStripeResponseGetter} keeps responses for a class of resources.
+ */
+public final class CachePolicy {
+  private static final CachePolicy DISABLED = new CachePolicy(Duration.ZERO);
+  private static final CachePolicy IMMUTABLE = new CachePolicy(null);
+
+  /** How long responses are cached, or {@code null} if they never expire. */
+  @Getter(AccessLevel.PACKAGE)
+  private final Duration timeToLive;
+
+  private CachePolicy(Duration timeToLive) {
+    this.timeToLive = timeToLive;
+  }
+
+  /**
+   * Returns a policy that never caches responses.
+   *
+   * @return the policy
+   */
+  public static CachePolicy disabled() {
+    return DISABLED;
+  }
+
+  /**
+   * Returns a policy for resources that never change once created: their responses are kept until
+   * evicted to make room for others.
+   *
+   * @return the policy
+   */
+  public static CachePolicy immutable() {
+    return IMMUTABLE;
+  }
+
+  /**
+   * Returns a policy for resources that rarely change: their responses are kept for the given
+   * duration.
+   *
+   * @param timeToLive how long responses are kept
+   * @return the policy
+   * @throws IllegalArgumentException if the duration is negative
+   */
+  public static CachePolicy ttl(Duration timeToLive) {
+    if (timeToLive == null || timeToLive.isNegative()) {
+      throw new IllegalArgumentException("Time to live must not be negative.");
+    }
+    return timeToLive.isZero() ? DISABLED : new CachePolicy(timeToLive);
+  }
+
+  /** Returns whether responses are cached under this policy. */
+  boolean isEnabled() {
+    return this.timeToLive == null || !this.timeToLive.isZero();
+  }
+}
@@ -0,0 +1,401 @@
+package com.stripe.net;
+
+import com.stripe.exception.StripeException;
+import com.stripe.model.StripeObjectInterface;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+import lombok.Value;
+
+/**
+ * A {@link StripeResponseGetter} that caches the responses of {@code GET} requests for selected
+ * resource classes, and sends every other request to another getter.
+ *
+ * <p>Each resource class has a {@link CachePolicy}: responses for {@link CachePolicy#immutable()
+ * immutable} resources are kept until evicted, responses for {@link
+ * CachePolicy#ttl(java.time.Duration) TTL} resources are kept for a fixed duration, and classes
+ * without a policy are not cached. The cache holds at most {@code maxEntries} responses and evicts
+ * the least recently used one when full.
+ *
+ * <p>Responses are cached by URL, parameters (including {@code expand}), API key, {@code
+ * Stripe-Account} and Stripe version. Only the raw response is cached: every request returns a new
+ * object deserialized from it, so callers cannot modify each other's objects. With {@link
+ * HttpClient#setResponseStreaming(boolean) response streaming}, responses are therefore only cached
+ * if their raw body is retained. Any {@code POST} or {@code DELETE} request sent through this
+ * getter removes the cached responses for its URL, both when it is sent and once it completes, and
+ * responses to requests that were in flight meanwhile are not cached.
+ *
+ * <pre>{@code
+ * StripeResponseGetter getter =
+ *     CachingStripeResponseGetter.builder(new LiveStripeResponseGetter())
+ *         .setPolicy(Event.class, CachePolicy.immutable())
+ *         .setPolicy(ExchangeRate.class, CachePolicy.ttl(Duration.ofMinutes(5)))
+ *         .build();
+ * ApiResource.setStripeResponseGetter(getter);
+ * }</pre>
+ */
+public class CachingStripeResponseGetter implements StripeResponseGetter {
+  /** Default maximum number of cached responses. */
+  public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+  private final StripeResponseGetter delegate;
+  private final Map<Class<?>, CachePolicy> policies;
+  private final int maxEntries;
+  private final LongSupplier clock;
+
+  private final LinkedHashMap<Key, CachedResponse> entries;
+
+  /** The keys of the cached responses, by URL, to invalidate them without scanning every entry. */
+  private final Map<String, Set<Key>> keysByUrl = new HashMap<>();
+
+  /** The number of writes sent, to tell whether one was sent while a response was requested. */
+  private long writeCount;
+
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  private CachingStripeResponseGetter(Builder builder) {
+    this.delegate = builder.delegate;
+    this.policies = Collections.unmodifiableMap(new HashMap<>(builder.policies));
+    this.maxEntries = builder.maxEntries;
+    this.clock = builder.clock;
+    this.entries =
+        new LinkedHashMap<Key, CachedResponse>(16, 0.75f, true) {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Key, CachedResponse> eldest) {
+            if (this.size() > CachingStripeResponseGetter.this.maxEntries) {
+              CachingStripeResponseGetter.this.evictionCount += 1;
+              CachingStripeResponseGetter.this.unindex(eldest.getKey());
+              return true;
+            }
+            return false;
+          }
+        };
+  }
+
+  /**
+   * Returns a builder for a caching getter.
+   *
+   * @param delegate the getter used to send requests whose responses are not cached
+   * @return the builder
+   */
+  public static Builder builder(StripeResponseGetter delegate) {
+    return new Builder(delegate);
+  }
+
+  /**
+   * Returns a snapshot of the cache's statistics.
+   *
+   * @return the cache's statistics
+   */
+  public synchronized Stats getStats() {
+    return new Stats(this.hitCount, this.missCount, this.evictionCount, this.entries.size());
+  }
+
+  /** Removes every cached response. */
+  public synchronized void invalidateAll() {
+    this.entries.clear();
+    this.keysByUrl.clear();
+  }
+
+  @Override
+  public <T extends StripeObjectInterface> T request(
+      ApiResource.RequestMethod method,
+      String url,
+      Map<String, Object> params,
+      Class<T> clazz,
+      RequestOptions options)
+      throws StripeException {
+    if (method != ApiResource.RequestMethod.GET) {
+      this.invalidate(url);
+      try {
+        return this.delegate.request(method, url, params, clazz, options);
+      } finally {
+        this.invalidate(url);
+      }
+    }
+
+    CachePolicy policy = this.policyFor(clazz);
+    if (policy == null) {
+      return this.delegate.request(method, url, params, clazz, options);
+    }
+
+    Key key = Key.of(url, params, clazz, options);
+    long writes = this.writeCount();
+    StripeResponse cached = this.get(key);
+    if (cached != null) {
+      return deserialize(cached, clazz);
+    }
+
+    T resource = this.delegate.request(method, url, params, clazz, options);
+    this.put(key, policy, resource, writes);
+    return resource;
+  }
+
+  @Override
+  public <T extends StripeObjectInterface> CompletableFuture<T> requestAsync(
+      ApiResource.RequestMethod method,
+      String url,
+      Map<String, Object> params,
+      Class<T> clazz,
+      RequestOptions options) {
+    if (method != ApiResource.RequestMethod.GET) {
+      this.invalidate(url);
+      return this.delegate
+          .requestAsync(method, url, params, clazz, options)
+          .whenComplete((resource, e) -> this.invalidate(url));
+    }
+
+    CachePolicy policy = this.policyFor(clazz);
+    if (policy == null) {
+      return this.delegate.requestAsync(method, url, params, clazz, options);
+    }
+
+    Key key = Key.of(url, params, clazz, options);
+    long writes = this.writeCount();
+    StripeResponse cached = this.get(key);
+    if (cached != null) {
+      return CompletableFuture.completedFuture(deserialize(cached, clazz));
+    }
+
+    return this.delegate
+        .requestAsync(method, url, params, clazz, options)
+        .thenApply(
+            resource -> {
+              this.put(key, policy, resource, writes);
+              return resource;
+            });
+  }
+
+  @Override
+  public StripeResponseStream requestStream(StripeRequest request) throws StripeException {
+    // Streamed responses are never cached
+    if (request.method() == ApiResource.RequestMethod.GET) {
+      return this.delegate.requestStream(request);
+    }
+
+    String url = request.url().toString();
+    this.invalidate(url);
+    try {
+      return this.delegate.requestStream(request);
+    } finally {
+      this.invalidate(url);
+    }
+  }
+
+  @Override
+  public <T extends StripeObjectInterface> T oauthRequest(
+      ApiResource.RequestMethod method,
+      String url,
+      Map<String, Object> params,
+      Class<T> clazz,
+      RequestOptions options)
+      throws StripeException {
+    return this.delegate.oauthRequest(method, url, params, clazz, options);
+  }
+
+  /** Returns the policy applying to a {@code GET} request, or {@code null} if it is not cached. */
+  private CachePolicy policyFor(Class<?> clazz) {
+    CachePolicy policy = this.policies.get(clazz);
+    return (policy != null && policy.isEnabled()) ? policy : null;
+  }
+
+  private synchronized StripeResponse get(Key key) {
+    CachedResponse entry = this.entries.get(key);
+    if (entry != null && entry.expires && entry.expiresAt - this.clock.getAsLong() <= 0) {
+      this.entries.remove(key);
+      this.unindex(key);
+      entry = null;
+    }
+
+    if (entry == null) {
+      this.missCount += 1;
+      return null;
+    }
+
+    this.hitCount += 1;
+    return entry.response;
+  }
+
+  private synchronized long writeCount() {
+    return this.writeCount;
+  }
+
+  /**
+   * Caches the response of a request, unless a write was sent while it was requested, since the
+   * response may then predate the write.
+   *
+   * @param writes the number of writes sent when the request was sent
+   */
+  private void put(Key key, CachePolicy policy, StripeObjectInterface resource, long writes) {
+    StripeResponse response = resource.getLastResponse();
+    // Responses deserialized while they were read are only cached if their raw body was retained.
+    if (response == null || response.code() != 200 || !response.hasOriginalBody()) {
+      return;
+    }
+
+    boolean expires = (policy.getTimeToLive() != null);
+    long expiresAt = expires ? this.clock.getAsLong() + policy.getTimeToLive().toNanos() : 0;
+    synchronized (this) {
+      if (this.writeCount != writes) {
+        return;
+      }
+      this.entries.put(key, new CachedResponse(response, expires, expiresAt));
+      this.keysByUrl.computeIfAbsent(key.getUrl(), url -> new HashSet<>()).add(key);
+    }
+  }
+
+  private synchronized void invalidate(String url) {
+    this.writeCount += 1;
+    Set<Key> keys = this.keysByUrl.remove(url);
+    if (keys != null) {
+      this.entries.keySet().removeAll(keys);
+    }
+  }
+
+  /** Removes a key, whose entry was removed, from the index by URL. */
+  private void unindex(Key key) {
+    Set<Key> keys = this.keysByUrl.get(key.getUrl());
+    if (keys != null) {
+      keys.remove(key);
+      if (keys.isEmpty()) {
+        this.keysByUrl.remove(key.getUrl());
+      }
+    }
+  }
+
+  private static <T extends StripeObjectInterface> T deserialize(
+      StripeResponse response, Class<T> clazz) {
+    T resource = ApiResource.GSON.fromJson(response.body(), clazz);
+    resource.setLastResponse(response);
+    return resource;
+  }
+
+  /** The properties of a request that determine its response. */
+  @Value
+  private static class Key {
+    String url;
+    List<String> params;
+    Class<?> clazz;
+    String apiKey;
+    String stripeAccount;
+    String stripeVersion;
+
+    static Key of(String url, Map<String, Object> params, Class<?> clazz, RequestOptions options) {
+      List<String> flattenedParams = new ArrayList<>();
+      if (params != null) {
+        for (KeyValuePair<String, Object> param : FormEncoder.flattenParams(params)) {
+          flattenedParams.add(param.getKey() + "=" + param.getValue());
+        }
+        // Parameters are flattened in the map's iteration order, which may differ between equal
+        // maps.
+        Collections.sort(flattenedParams);
+      }
+
+      RequestOptions resolved = (options != null) ? options : RequestOptions.getDefault();
+      String stripeVersion =
+          (resolved.getStripeVersionOverride() != null)
+              ? resolved.getStripeVersionOverride()
+              : resolved.getStripeVersion();
+      return new Key(
+          url,
+          flattenedParams,
+          clazz,
+          resolved.getApiKey(),
+          resolved.getStripeAccount(),
+          stripeVersion);
+    }
+  }
+
+  @Value
+  private static class CachedResponse {
+    StripeResponse response;
+
+    /** Whether the response becomes stale after {@code expiresAt}. */
+    boolean expires;
+
+    /** Value of the clock, in nanoseconds, after which the response is stale. */
+    long expiresAt;
+  }
+
+  /** A snapshot of a {@link CachingStripeResponseGetter}'s statistics. */
+  @Value
+  public static class Stats {
+    /** Number of requests answered from the cache. */
+    long hits;
+
+    /** Number of cacheable requests sent because no fresh response was cached. */
+    long misses;
+
+    /** Number of responses removed to make room for others. */
+    long evictions;
+
+    /** Number of responses currently cached. */
+    int size;
+  }
+
+  /** Builder for {@link CachingStripeResponseGetter}. */
+  public static final class Builder {
+    private final StripeResponseGetter delegate;
+    private final Map<Class<?>, CachePolicy> policies = new HashMap<>();
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private LongSupplier clock = System::nanoTime;
+
+    private Builder(StripeResponseGetter delegate) {
+      if (delegate == null) {
+        throw new IllegalArgumentException("delegate must not be null");
+      }
+      this.delegate = delegate;
+    }
+
+    /**
+     * Sets the policy applied to {@code GET} requests returning the given class of resources.
+     *
+     * @param clazz the resource class, e.g. {@code Event.class}
+     * @param policy the policy
+     * @return this builder
+     */
+    public Builder setPolicy(Class<? extends StripeObjectInterface> clazz, CachePolicy policy) {
+      this.policies.put(clazz, policy);
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of cached responses.
+     *
+     * @param maxEntries the maximum number of cached responses
+     * @return this builder
+     */
+    public Builder setMaxEntries(int maxEntries) {
+      if (maxEntries <= 0) {
+        throw new IllegalArgumentException("Maximum number of entries must be positive.");
+      }
+      this.maxEntries = maxEntries;
+      return this;
+    }
+
+    Builder setClock(LongSupplier clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    /**
+     * Builds the caching getter.
+     *
+     * @return the caching getter
+     */
+    public CachingStripeResponseGetter build() {
+      return new CachingStripeResponseGetter(this);
+    }
+  }
+}
@@ -0,0 +1,342 @@
+package com.stripe.net;
+
+import com.stripe.exception.CircuitBreakerOpenException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+import lombok.Value;
+
+/**
+ * A set of circuit breakers, one per API endpoint, that reject requests to endpoints that keep
+ * failing instead of letting every caller wait for them to time out.
+ *
+ * <p>Endpoints are identified by the request's method and the template of its path, where object
+ * IDs are replaced by a placeholder: {@code GET /v1/customers/cus_123} and {@code GET
+ * /v1/customers/cus_456} share the {@code GET /v1/customers/{id}} breaker.
+ *
+ * <p>Each breaker starts {@link State#CLOSED closed} and records the outcome of the last {@code
+ * windowSize} requests. A request fails if it raises a connection error, receives a {@code 5xx}
+ * response, or takes longer than the slow call threshold. Once the window is full and the share of
+ * failures reaches the threshold, the breaker {@link State#OPEN opens}: requests are rejected with
+ * a {@link CircuitBreakerOpenException} without being sent. After the open duration, the breaker
+ * becomes {@link State#HALF_OPEN half-open} and lets a single trial request through. If it
+ * succeeds, the breaker closes again; otherwise it reopens.
+ */
+public class CircuitBreaker {
+  /** Default number of recent requests considered when deciding whether to open a breaker. */
+  public static final int DEFAULT_WINDOW_SIZE = 20;
+
+  /** Default share of failed requests in the window above which a breaker opens. */
+  public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+
+  /** Default time a breaker stays open before letting a trial request through. */
+  public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+
+  /** Default duration above which a request counts as failed even if it succeeds. */
+  public static final Duration DEFAULT_SLOW_CALL_THRESHOLD = Duration.ofSeconds(20);
+
+  private static final Pattern LITERAL_SEGMENT = Pattern.compile("[a-z]+(_[a-z]+)*");
+
+  /** The states of a circuit breaker. */
+  public enum State {
+    /** Requests are sent, and their outcome is recorded. */
+    CLOSED,
+
+    /** Requests are rejected without being sent. */
+    OPEN,
+
+    /** A single trial request is sent to decide whether to close or reopen the breaker. */
+    HALF_OPEN
+  }
+
+  private final int windowSize;
+  private final double failureRateThreshold;
+  private final long openDurationNanos;
+  private final long slowCallThresholdNanos;
+  private final LongSupplier clock;
+
+  private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+  /** Initializes a new instance of the {@link CircuitBreaker} class with default parameters. */
+  public CircuitBreaker() {
+    this(
+        DEFAULT_WINDOW_SIZE,
+        DEFAULT_FAILURE_RATE_THRESHOLD,
+        DEFAULT_OPEN_DURATION,
+        DEFAULT_SLOW_CALL_THRESHOLD);
+  }
+
+  /**
+   * Initializes a new instance of the {@link CircuitBreaker} class.
+   *
+   * @param windowSize the number of recent requests considered when deciding whether to open a
+   *     breaker
+   * @param failureRateThreshold the share of failed requests in the window, between 0 exclusive and
+   *     1 inclusive, above which a breaker opens
+   * @param openDuration the time a breaker stays open before letting a trial request through
+   * @param slowCallThreshold the duration above which a request counts as failed, or {@code null}
+   *     to not take latency into account
+   * @throws IllegalArgumentException if a parameter is out of range
+   */
+  public CircuitBreaker(
+      int windowSize,
+      double failureRateThreshold,
+      Duration openDuration,
+      Duration slowCallThreshold) {
+    this(windowSize, failureRateThreshold, openDuration, slowCallThreshold, System::nanoTime);
+  }
+
+  CircuitBreaker(
+      int windowSize,
+      double failureRateThreshold,
+      Duration openDuration,
+      Duration slowCallThreshold,
+      LongSupplier clock) {
+    if (windowSize <= 0) {
+      throw new IllegalArgumentException("Window size must be positive.");
+    }
+    if (!(failureRateThreshold > 0 && failureRateThreshold <= 1)) {
+      throw new IllegalArgumentException(
+          "Failure rate threshold must be between 0 exclusive and 1 inclusive.");
+    }
+    if (openDuration == null || openDuration.isNegative()) {
+      throw new IllegalArgumentException("Open duration must not be negative.");
+    }
+    if (slowCallThreshold != null && slowCallThreshold.isNegative()) {
+      throw new IllegalArgumentException("Slow call threshold must not be negative.");
+    }
+
+    this.windowSize = windowSize;
+    this.failureRateThreshold = failureRateThreshold;
+    this.openDurationNanos = openDuration.toNanos();
+    this.slowCallThresholdNanos =
+        (slowCallThreshold != null) ? slowCallThreshold.toNanos() : Long.MAX_VALUE;
+    this.clock = clock;
+  }
+
+  /**
+   * Returns a snapshot of the statistics of every endpoint that received requests, keyed by
+   * endpoint (e.g. {@code GET /v1/customers/{id}}).
+   *
+   * @return the statistics of each endpoint
+   */
+  public Map<String, Stats> getStats() {
+    Map<String, Stats> stats = new HashMap<>();
+    for (Map.Entry<String, Endpoint> entry : this.endpoints.entrySet()) {
+      stats.put(entry.getKey(), entry.getValue().getStats());
+    }
+    return stats;
+  }
+
+  /**
+   * Returns the endpoint of the given request: its method, followed by the template of its path.
+   *
+   * @param request the request
+   * @return the request's endpoint, e.g. {@code POST /v1/payment_intents/{id}/confirm}
+   */
+  static String endpointOf(StripeRequest request) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(request.method().name()).append(' ');
+
+    String[] segments = request.url().getPath().split("/");
+    boolean first = true;
+    for (String segment : segments) {
+      if (segment.isEmpty()) {
+        continue;
+      }
+      sb.append('/');
+      // The first segment is the API version, e.g. v1.
+      if (first || LITERAL_SEGMENT.matcher(segment).matches()) {
+        sb.append(segment);
+      } else {
+        sb.append("{id}");
+      }
+      first = false;
+    }
+
+    return sb.toString();
+  }
+
+  /**
+   * Asks the breaker of the request's endpoint whether the request may be sent.
+   *
+   * @param request the request
+   * @return the call, whose outcome must be reported with {@link Call#complete(StripeResponse)}
+   * @throws CircuitBreakerOpenException if the breaker is open
+   */
+  Call acquire(StripeRequest request) throws CircuitBreakerOpenException {
+    String key = endpointOf(request);
+    Endpoint endpoint = this.endpoints.computeIfAbsent(key, k -> new Endpoint());
+    boolean trial = endpoint.acquire(key);
+    return new Call(endpoint, trial);
+  }
+
+  /** A request allowed through a breaker. */
+  final class Call {
+    private final Endpoint endpoint;
+    private final boolean trial;
+    private long startedAt;
+    private boolean started;
+    private boolean completed;
+
+    private Call(Endpoint endpoint, boolean trial) {
+      this.endpoint = endpoint;
+      this.trial = trial;
+    }
+
+    /** Marks the moment the request is actually sent, from which its duration is measured. */
+    synchronized void start() {
+      this.started = true;
+      this.startedAt = CircuitBreaker.this.clock.getAsLong();
+    }
+
+    /**
+     * Records the outcome of the request. Calls that were never started do not count towards the
+     * failure rate. Only the first invocation has an effect.
+     *
+     * @param response the response, or {@code null} if the request failed without a response
+     */
+    void complete(StripeResponse response) {
+      Boolean failed;
+      synchronized (this) {
+        if (this.completed) {
+          return;
+        }
+        this.completed = true;
+
+        if (!this.started) {
+          failed = null;
+        } else {
+          long elapsed = CircuitBreaker.this.clock.getAsLong() - this.startedAt;
+          failed =
+              (response == null)
+                  || (response.code() >= 500)
+                  || (elapsed > CircuitBreaker.this.slowCallThresholdNanos);
+        }
+      }
+      this.endpoint.record(this.trial, failed);
+    }
+  }
+
+  /** The breaker of a single endpoint. */
+  private final class Endpoint {
+    /** Ring buffer of the outcomes of the last requests, {@code true} meaning failed. */
+    private final boolean[] outcomes = new boolean[CircuitBreaker.this.windowSize];
+
+    private State state = State.CLOSED;
+    private int recorded;
+    private int position;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+    private long rejected;
+
+    /**
+     * Returns whether the request is the half-open breaker's trial request, or throws if it is
+     * rejected.
+     */
+    synchronized boolean acquire(String key) throws CircuitBreakerOpenException {
+      if (this.state == State.OPEN
+          && CircuitBreaker.this.clock.getAsLong() - this.openedAt
+              >= CircuitBreaker.this.openDurationNanos) {
+        this.state = State.HALF_OPEN;
+      }
+
+      if (this.state == State.CLOSED) {
+        return false;
+      }
+
+      if (this.state == State.HALF_OPEN && !this.trialInFlight) {
+        this.trialInFlight = true;
+        return true;
+      }
+
+      this.rejected += 1;
+      throw new CircuitBreakerOpenException(
+          String.format(
+              "Request rejected because the circuit breaker for %s is %s after repeated failures.",
+              key, (this.state == State.OPEN) ? "open" : "half-open and testing the endpoint"),
+          key);
+    }
+
+    /**
+     * Records the outcome of a request.
+     *
+     * @param trial whether the request was the half-open breaker's trial request
+     * @param failed whether the request failed, or {@code null} if it was never sent
+     */
+    synchronized void record(boolean trial, Boolean failed) {
+      if (trial) {
+        this.trialInFlight = false;
+        if (failed == null) {
+          return;
+        }
+        if (failed) {
+          this.open();
+        } else {
+          this.close();
+        }
+        return;
+      }
+
+      // Ignore outcomes of requests sent before the breaker last opened.
+      if (failed == null || this.state != State.CLOSED) {
+        return;
+      }
+
+      if (this.recorded == this.outcomes.length) {
+        if (this.outcomes[this.position]) {
+          this.failures -= 1;
+        }
+      } else {
+        this.recorded += 1;
+      }
+      this.outcomes[this.position] = failed;
+      if (failed) {
+        this.failures += 1;
+      }
+      this.position = (this.position + 1) % this.outcomes.length;
+
+      if (this.recorded == this.outcomes.length
+          && this.failures >= CircuitBreaker.this.failureRateThreshold * this.outcomes.length) {
+        this.open();
+      }
+    }
+
+    synchronized Stats getStats() {
+      return new Stats(this.state, this.recorded, this.failures, this.rejected);
+    }
+
+    private void open() {
+      this.state = State.OPEN;
+      this.openedAt = CircuitBreaker.this.clock.getAsLong();
+    }
+
+    private void close() {
+      this.state = State.CLOSED;
+      this.recorded = 0;
+      this.position = 0;
+      this.failures = 0;
+    }
+  }
+
+  /** A snapshot of the statistics of an endpoint's breaker. */
+  @Value
+  public static class Stats {
+    /** State of the breaker. */
+    State state;
+
+    /** Number of request outcomes in the window. */
+    int recorded;
+
+    /** Number of failed requests in the window. */
+    int failures;
+
+    /** Number of requests rejected because the breaker was open. */
+    long rejected;
+  }
+}
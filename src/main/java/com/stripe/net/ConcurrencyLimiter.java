@@ -0,0 +1,388 @@
+package com.stripe.net;
+
+import com.stripe.exception.ApiConnectionException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import lombok.Value;
+
+/**
+ * An adaptive limit on the number of concurrent requests sent to Stripe's API.
+ *
+ * <p>The limit follows an additive-increase/multiplicative-decrease (AIMD) scheme: every healthy
+ * response raises the limit by {@code 1 / limit} (i.e. by about one request per round trip), and
+ * every response signaling that the account is being throttled (a {@code 429 Too Many Requests}, or
+ * a {@code 409 Conflict} caused by a lock timeout) multiplies it by the backoff ratio. Only one
+ * decrease is applied per round of requests, so a burst of throttled responses to requests that
+ * were all sent at the same time only halves the limit once. Server errors and connection failures
+ * do not affect the limit.
+ *
+ * <p>Requests sent when the limit is reached wait, in order, until another request completes. This
+ * keeps a busy client close to its account's rate limit instead of alternating between bursts and
+ * rate limiting errors.
+ *
+ * <p>Limits are tracked separately for each API key and, unless disabled, for each value of the
+ * {@code Stripe-Account} header, since Stripe applies rate limits to each account separately. At
+ * most {@code maxPartitions} of these limits are kept: beyond that, the least recently used limits
+ * without requests in flight are forgotten, and start again from the initial limit when used.
+ */
+public class ConcurrencyLimiter {
+  /** Default initial limit. */
+  public static final int DEFAULT_INITIAL_LIMIT = 20;
+
+  /** Default minimum limit. */
+  public static final int DEFAULT_MIN_LIMIT = 1;
+
+  /** Default maximum limit. */
+  public static final int DEFAULT_MAX_LIMIT = 200;
+
+  /** Default factor applied to the limit when requests are throttled. */
+  public static final double DEFAULT_BACKOFF_RATIO = 0.5;
+
+  /** Default maximum number of API keys and accounts whose limits are kept. */
+  public static final int DEFAULT_MAX_PARTITIONS = 10_000;
+
+  private final int initialLimit;
+  private final int minLimit;
+  private final int maxLimit;
+  private final double backoffRatio;
+  private final boolean limitPerAccount;
+  private final int maxPartitions;
+
+  /** The limits, in access order, guarded by their own lock. */
+  private final LinkedHashMap<PartitionKey, Partition> partitions =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  /** Initializes a new instance of the {@link ConcurrencyLimiter} class with default parameters. */
+  public ConcurrencyLimiter() {
+    this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_BACKOFF_RATIO, true);
+  }
+
+  /**
+   * Initializes a new instance of the {@link ConcurrencyLimiter} class.
+   *
+   * @param initialLimit the limit used for an API key or account before any response was received
+   * @param minLimit the minimum limit
+   * @param maxLimit the maximum limit
+   * @param backoffRatio the factor applied to the limit when requests are throttled, between 0 and
+   *     1 exclusive
+   * @param limitPerAccount whether requests sent with a {@code Stripe-Account} header are limited
+   *     separately for each account, rather than sharing the API key's limit
+   * @throws IllegalArgumentException if the parameters are inconsistent
+   */
+  public ConcurrencyLimiter(
+      int initialLimit, int minLimit, int maxLimit, double backoffRatio, boolean limitPerAccount) {
+    this(initialLimit, minLimit, maxLimit, backoffRatio, limitPerAccount, DEFAULT_MAX_PARTITIONS);
+  }
+
+  /**
+   * Initializes a new instance of the {@link ConcurrencyLimiter} class.
+   *
+   * @param initialLimit the limit used for an API key or account before any response was received
+   * @param minLimit the minimum limit
+   * @param maxLimit the maximum limit
+   * @param backoffRatio the factor applied to the limit when requests are throttled, between 0 and
+   *     1 exclusive
+   * @param limitPerAccount whether requests sent with a {@code Stripe-Account} header are limited
+   *     separately for each account, rather than sharing the API key's limit
+   * @param maxPartitions the maximum number of API keys and accounts whose limits are kept
+   * @throws IllegalArgumentException if the parameters are inconsistent
+   */
+  public ConcurrencyLimiter(
+      int initialLimit,
+      int minLimit,
+      int maxLimit,
+      double backoffRatio,
+      boolean limitPerAccount,
+      int maxPartitions) {
+    if (minLimit <= 0 || maxLimit < minLimit) {
+      throw new IllegalArgumentException(
+          "Limits must be positive and the maximum limit must not be less than the minimum.");
+    }
+    if (initialLimit < minLimit || initialLimit > maxLimit) {
+      throw new IllegalArgumentException(
+          "Initial limit must be between the minimum and maximum limits.");
+    }
+    if (!(backoffRatio > 0 && backoffRatio < 1)) {
+      throw new IllegalArgumentException("Backoff ratio must be between 0 and 1 exclusive.");
+    }
+    if (maxPartitions <= 0) {
+      throw new IllegalArgumentException("Maximum number of partitions must be positive.");
+    }
+
+    this.initialLimit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.backoffRatio = backoffRatio;
+    this.limitPerAccount = limitPerAccount;
+    this.maxPartitions = maxPartitions;
+  }
+
+  /**
+   * Returns a snapshot of the statistics of the limit applied to the given API key and account.
+   *
+   * @param apiKey the API key
+   * @param stripeAccount the value of the {@code Stripe-Account} header, or {@code null}
+   * @return the statistics
+   */
+  public Stats getStats(String apiKey, String stripeAccount) {
+    Partition partition;
+    synchronized (this.partitions) {
+      partition = this.partitions.get(this.partitionKey(apiKey, stripeAccount));
+    }
+    if (partition == null) {
+      return new Stats(this.initialLimit, 0, 0, 0);
+    }
+    return partition.getStats();
+  }
+
+  /**
+   * Waits until the given request may be sent.
+   *
+   * @param request the request
+   * @return the permit to release once the request completes
+   * @throws ApiConnectionException if the thread is interrupted while waiting
+   */
+  Permit acquire(StripeRequest request) throws ApiConnectionException {
+    CompletableFuture<Permit> future = this.acquireAsync(request);
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      if (!future.cancel(false)) {
+        // The permit was granted concurrently; give it back.
+        future.join().release(null);
+      }
+      throw new ApiConnectionException(
+          "Interrupted while waiting for the concurrency limit on requests to Stripe", e);
+    } catch (ExecutionException e) {
+      throw new ApiConnectionException(
+          String.format(
+              "Unable to wait for the concurrency limit on requests to Stripe: %s",
+              e.getCause().getMessage()),
+          e.getCause());
+    }
+  }
+
+  /**
+   * Returns a future that completes once the given request may be sent. Cancelling the future
+   * removes the request from the queue.
+   *
+   * @param request the request
+   * @return a future that completes with the permit to release once the request completes
+   */
+  CompletableFuture<Permit> acquireAsync(StripeRequest request) {
+    PartitionKey key =
+        this.partitionKey(request.options().getApiKey(), request.options().getStripeAccount());
+    while (true) {
+      CompletableFuture<Permit> future = this.partition(key).acquire();
+      if (future != null) {
+        return future;
+      }
+      // The partition was evicted concurrently: use the new one.
+    }
+  }
+
+  private Partition partition(PartitionKey key) {
+    synchronized (this.partitions) {
+      Partition partition = this.partitions.get(key);
+      if (partition == null) {
+        partition = new Partition();
+        this.partitions.put(key, partition);
+        this.evictIdlePartitions(partition);
+      }
+      return partition;
+    }
+  }
+
+  /**
+   * Removes the least recently used partitions without requests in flight, while there are too
+   * many. Partitions with requests in flight are kept, so that their limit still applies.
+   */
+  private void evictIdlePartitions(Partition added) {
+    int excess = this.partitions.size() - this.maxPartitions;
+    Iterator<Partition> it = this.partitions.values().iterator();
+    while (excess > 0 && it.hasNext()) {
+      Partition partition = it.next();
+      if (partition != added && partition.retireIfIdle()) {
+        it.remove();
+        excess -= 1;
+      }
+    }
+  }
+
+  private PartitionKey partitionKey(String apiKey, String stripeAccount) {
+    return new PartitionKey(apiKey, this.limitPerAccount ? stripeAccount : null);
+  }
+
+  /**
+   * Returns whether the response indicates that requests are being throttled: either a rate
+   * limiting error, or a conflict caused by a timeout while waiting on a lock held by another
+   * request.
+   */
+  static boolean isThrottled(StripeResponse response) {
+    if (response.code() == 429) {
+      return true;
+    }
+    return (response.code() == 409)
+        && (response.body() != null)
+        && response.body().contains("\"lock_timeout\"");
+  }
+
+  /** A slot granted to a single request, which must be released exactly once. */
+  final class Permit {
+    private final Partition partition;
+    private final long generation;
+    private boolean released;
+
+    private Permit(Partition partition, long generation) {
+      this.partition = partition;
+      this.generation = generation;
+    }
+
+    /**
+     * Releases the permit, adjusting the limit according to the response.
+     *
+     * @param response the response, or {@code null} if the request failed without a response
+     */
+    void release(StripeResponse response) {
+      this.partition.release(this, response);
+    }
+  }
+
+  /** The limit applied to a single API key or account. */
+  private final class Partition {
+    private final Deque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+
+    private double limit = ConcurrencyLimiter.this.initialLimit;
+    private int inFlight;
+
+    /** Incremented every time the limit is decreased, to detect responses to older requests. */
+    private long generation;
+
+    private long throttledCount;
+
+    /** Whether the partition was evicted, after which requests must use a new one. */
+    private boolean retired;
+
+    /**
+     * Returns a future that completes once a request may be sent, or {@code null} if the partition
+     * was evicted.
+     */
+    CompletableFuture<Permit> acquire() {
+      CompletableFuture<Permit> future = new CompletableFuture<>();
+      Permit permit = null;
+
+      synchronized (this) {
+        if (this.retired) {
+          return null;
+        }
+        if (this.waiters.isEmpty() && this.inFlight < this.effectiveLimit()) {
+          this.inFlight += 1;
+          permit = new Permit(this, this.generation);
+        } else {
+          this.waiters.addLast(future);
+        }
+      }
+
+      if (permit != null) {
+        future.complete(permit);
+      } else {
+        future.whenComplete(
+            (granted, error) -> {
+              if (future.isCancelled()) {
+                synchronized (this) {
+                  this.waiters.remove(future);
+                }
+              }
+            });
+      }
+
+      return future;
+    }
+
+    void release(Permit permit, StripeResponse response) {
+      List<CompletableFuture<Permit>> grantedFutures = new ArrayList<>();
+      List<Permit> grantedPermits = new ArrayList<>();
+
+      synchronized (this) {
+        if (permit.released) {
+          return;
+        }
+        permit.released = true;
+        this.inFlight -= 1;
+
+        if (response != null) {
+          if (isThrottled(response)) {
+            if (permit.generation == this.generation) {
+              this.limit =
+                  Math.max(
+                      ConcurrencyLimiter.this.minLimit,
+                      this.limit * ConcurrencyLimiter.this.backoffRatio);
+              this.generation += 1;
+              this.throttledCount += 1;
+            }
+          } else if (response.code() < 500) {
+            this.limit = Math.min(ConcurrencyLimiter.this.maxLimit, this.limit + 1 / this.limit);
+          }
+        }
+
+        while (!this.waiters.isEmpty() && this.inFlight < this.effectiveLimit()) {
+          this.inFlight += 1;
+          grantedFutures.add(this.waiters.pollFirst());
+          grantedPermits.add(new Permit(this, this.generation));
+        }
+      }
+
+      // Complete the futures outside of the lock since doing so runs their callbacks.
+      for (int i = 0; i < grantedFutures.size(); i++) {
+        if (!grantedFutures.get(i).complete(grantedPermits.get(i))) {
+          grantedPermits.get(i).release(null);
+        }
+      }
+    }
+
+    /** Marks the partition as evicted if it has no request in flight or waiting. */
+    synchronized boolean retireIfIdle() {
+      if (this.inFlight == 0 && this.waiters.isEmpty()) {
+        this.retired = true;
+      }
+      return this.retired;
+    }
+
+    synchronized Stats getStats() {
+      return new Stats(this.limit, this.inFlight, this.waiters.size(), this.throttledCount);
+    }
+
+    private int effectiveLimit() {
+      return Math.max(ConcurrencyLimiter.this.minLimit, (int) this.limit);
+    }
+  }
+
+  @Value
+  private static class PartitionKey {
+    String apiKey;
+    String stripeAccount;
+  }
+
+  /** A snapshot of the statistics of the limit applied to an API key or account. */
+  @Value
+  public static class Stats {
+    /** Current limit. Only its integer part is enforced. */
+    double limit;
+
+    /** Number of requests currently being sent. */
+    int inFlight;
+
+    /** Number of requests waiting for the limit to allow them. */
+    int queued;
+
+    /** Number of times the limit was decreased because requests were throttled. */
+    long throttled;
+  }
+}
@@ -0,0 +1,360 @@
+package com.stripe.net;
+
+import java.io.IOException;
+import java.net.Proxy;
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import lombok.Value;
+
+/**
+ * A bounded pool of persistent HTTP connections, used by {@link PooledHttpClient}.
+ *
+ * <p>Connections are keyed by route (scheme, host, port and proxy), so requests to Stripe's API,
+ * Connect and file upload hosts each get their own set of connections. The pool enforces both a
+ * global limit and a per-host limit; callers asking for a connection when a limit is reached wait
+ * until another connection is released. Connections that have been idle for longer than the idle
+ * timeout are closed the next time the pool is accessed, or when {@link #evictIdleConnections()} is
+ * called.
+ */
+public class ConnectionPool {
+  /** Default maximum number of connections, across all hosts. */
+  public static final int DEFAULT_MAX_CONNECTIONS = 64;
+
+  /** Default maximum number of connections to a single host. */
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 32;
+
+  /** Default time after which an idle connection is closed. */
+  public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofSeconds(30);
+
+  private final int maxConnections;
+  private final int maxConnectionsPerHost;
+  private final Duration idleTimeout;
+
+  private final Map<Route, Deque<PooledConnection>> idleConnections = new HashMap<>();
+  private final Map<Route, Integer> connectionsPerRoute = new HashMap<>();
+
+  private int totalConnections;
+  private int idleCount;
+  private int leasedCount;
+  private int pendingCount;
+  private long handshakeCount;
+  private long reuseCount;
+  private boolean closed;
+
+  /** Initializes a new instance of the {@link ConnectionPool} class with default parameters. */
+  public ConnectionPool() {
+    this(DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_IDLE_TIMEOUT);
+  }
+
+  /**
+   * Initializes a new instance of the {@link ConnectionPool} class.
+   *
+   * @param maxConnections the maximum number of connections, across all hosts
+   * @param maxConnectionsPerHost the maximum number of connections to a single host
+   * @param idleTimeout the time after which an idle connection is closed
+   * @throws IllegalArgumentException if a limit is not positive or the idle timeout is negative
+   */
+  public ConnectionPool(int maxConnections, int maxConnectionsPerHost, Duration idleTimeout) {
+    if (maxConnections <= 0 || maxConnectionsPerHost <= 0) {
+      throw new IllegalArgumentException("Connection limits must be positive.");
+    }
+    if (idleTimeout == null || idleTimeout.isNegative()) {
+      throw new IllegalArgumentException("Idle timeout must not be negative.");
+    }
+
+    this.maxConnections = maxConnections;
+    this.maxConnectionsPerHost = Math.min(maxConnectionsPerHost, maxConnections);
+    this.idleTimeout = idleTimeout;
+  }
+
+  /**
+   * Returns a snapshot of the pool's statistics.
+   *
+   * @return the pool's statistics
+   */
+  public synchronized Stats getStats() {
+    return new Stats(
+        this.leasedCount, this.idleCount, this.pendingCount, this.handshakeCount, this.reuseCount);
+  }
+
+  /** Closes all connections that have been idle for longer than the idle timeout. */
+  public void evictIdleConnections() {
+    List<PooledConnection> evicted;
+    synchronized (this) {
+      evicted = this.removeExpired(System.nanoTime());
+    }
+    closeAll(evicted);
+  }
+
+  /**
+   * Closes all idle connections and prevents leased connections from being returned to the pool.
+   */
+  public void close() {
+    List<PooledConnection> evicted = new ArrayList<>();
+    synchronized (this) {
+      this.closed = true;
+      for (Deque<PooledConnection> deque : this.idleConnections.values()) {
+        for (PooledConnection conn : deque) {
+          this.forget(conn.getRoute());
+          evicted.add(conn);
+        }
+        deque.clear();
+      }
+      this.idleCount = 0;
+      this.notifyAll();
+    }
+    closeAll(evicted);
+  }
+
+  /**
+   * Leases a connection to the given route, reusing an idle connection if possible and opening a
+   * new one otherwise.
+   *
+   * @param route the route to connect to
+   * @param timeout the maximum time to wait for a connection, in milliseconds (0 means infinite)
+   * @return the leased connection
+   * @throws IOException if no connection could be established
+   */
+  PooledConnection lease(Route route, int timeout) throws IOException {
+    long deadline = (timeout > 0) ? System.nanoTime() + Duration.ofMillis(timeout).toNanos() : 0;
+
+    while (true) {
+      PooledConnection idle = null;
+      List<PooledConnection> evicted = new ArrayList<>();
+
+      try {
+        synchronized (this) {
+          evicted.addAll(this.removeExpired(System.nanoTime()));
+          this.pendingCount += 1;
+          try {
+            while (true) {
+              if (this.closed) {
+                throw new IOException("Connection pool has been closed");
+              }
+
+              Deque<PooledConnection> deque = this.idleConnections.get(route);
+              if (deque != null && !deque.isEmpty()) {
+                idle = deque.pollFirst();
+                this.idleCount -= 1;
+                this.leasedCount += 1;
+                break;
+              }
+
+              if (this.totalConnections >= this.maxConnections) {
+                PooledConnection oldest = this.removeOldestIdle();
+                if (oldest != null) {
+                  evicted.add(oldest);
+                }
+              }
+
+              if (this.totalConnections < this.maxConnections
+                  && this.connectionsPerRoute.getOrDefault(route, 0) < this.maxConnectionsPerHost) {
+                this.totalConnections += 1;
+                this.connectionsPerRoute.merge(route, 1, Integer::sum);
+                this.leasedCount += 1;
+                break;
+              }
+
+              this.awaitRelease(deadline);
+            }
+          } finally {
+            this.pendingCount -= 1;
+          }
+        }
+      } finally {
+        closeAll(evicted);
+      }
+
+      if (idle == null) {
+        PooledConnection conn;
+        try {
+          conn = PooledConnection.open(route, timeout);
+        } catch (IOException | RuntimeException e) {
+          this.release(null, route);
+          throw e;
+        }
+        synchronized (this) {
+          this.handshakeCount += 1;
+        }
+        return conn;
+      }
+
+      if (!idle.isStale()) {
+        idle.markReused();
+        synchronized (this) {
+          this.reuseCount += 1;
+        }
+        return idle;
+      }
+
+      this.discard(idle);
+    }
+  }
+
+  /**
+   * Returns a connection to the pool so that it can be reused by subsequent requests.
+   *
+   * @param conn the connection to return
+   */
+  void recycle(PooledConnection conn) {
+    synchronized (this) {
+      if (!this.closed) {
+        this.leasedCount -= 1;
+        conn.touch();
+        this.idleConnections
+            .computeIfAbsent(conn.getRoute(), k -> new ArrayDeque<>())
+            .addFirst(conn);
+        this.idleCount += 1;
+        this.notifyAll();
+        return;
+      }
+    }
+    this.discard(conn);
+  }
+
+  /**
+   * Closes a leased connection and frees its slot in the pool.
+   *
+   * @param conn the connection to close
+   */
+  void discard(PooledConnection conn) {
+    this.release(conn, conn.getRoute());
+  }
+
+  private void release(PooledConnection conn, Route route) {
+    synchronized (this) {
+      this.leasedCount -= 1;
+      this.forget(route);
+      this.notifyAll();
+    }
+    if (conn != null) {
+      conn.close();
+    }
+  }
+
+  private void forget(Route route) {
+    this.totalConnections -= 1;
+    int remaining = this.connectionsPerRoute.getOrDefault(route, 1) - 1;
+    if (remaining <= 0) {
+      this.connectionsPerRoute.remove(route);
+    } else {
+      this.connectionsPerRoute.put(route, remaining);
+    }
+  }
+
+  private void awaitRelease(long deadline) throws IOException {
+    try {
+      if (deadline == 0) {
+        this.wait();
+        return;
+      }
+
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        throw new IOException("Timeout waiting for a connection from the pool");
+      }
+      Duration wait = Duration.ofNanos(remaining);
+      this.wait(Math.max(1, wait.toMillis()));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for a connection from the pool", e);
+    }
+  }
+
+  /** Must be called while holding the pool's lock. */
+  private List<PooledConnection> removeExpired(long now) {
+    List<PooledConnection> evicted = new ArrayList<>();
+    long idleTimeoutNanos = this.idleTimeout.toNanos();
+
+    for (Deque<PooledConnection> deque : this.idleConnections.values()) {
+      // Connections are added at the head, so the least recently used ones are at the tail.
+      while (!deque.isEmpty() && now - deque.peekLast().getLastUsed() >= idleTimeoutNanos) {
+        PooledConnection conn = deque.pollLast();
+        this.idleCount -= 1;
+        this.forget(conn.getRoute());
+        evicted.add(conn);
+      }
+    }
+
+    return evicted;
+  }
+
+  /** Must be called while holding the pool's lock. */
+  private PooledConnection removeOldestIdle() {
+    Deque<PooledConnection> oldestDeque = null;
+    for (Deque<PooledConnection> deque : this.idleConnections.values()) {
+      if (deque.isEmpty()) {
+        continue;
+      }
+      if (oldestDeque == null
+          || deque.peekLast().getLastUsed() < oldestDeque.peekLast().getLastUsed()) {
+        oldestDeque = deque;
+      }
+    }
+
+    if (oldestDeque == null) {
+      return null;
+    }
+
+    PooledConnection conn = oldestDeque.pollLast();
+    this.idleCount -= 1;
+    this.forget(conn.getRoute());
+    return conn;
+  }
+
+  private static void closeAll(List<PooledConnection> connections) {
+    Iterator<PooledConnection> it = connections.iterator();
+    while (it.hasNext()) {
+      it.next().close();
+    }
+  }
+
+  /** A snapshot of a {@link ConnectionPool}'s statistics. */
+  @Value
+  public static class Stats {
+    /** Number of connections currently in use by a request. */
+    int leased;
+
+    /** Number of open connections waiting to be reused. */
+    int idle;
+
+    /** Number of requests waiting for a connection. */
+    int pending;
+
+    /** Number of new connections opened (i.e. TCP and, for HTTPS, TLS handshakes performed). */
+    long handshakes;
+
+    /** Number of times an idle connection was reused instead of opening a new one. */
+    long reused;
+  }
+
+  /** The destination of a connection: a scheme, host and port, and the proxy used to reach it. */
+  @Value
+  static class Route {
+    String scheme;
+    String host;
+    int port;
+    Proxy proxy;
+
+    static Route of(URL url, Proxy proxy) {
+      int port = (url.getPort() != -1) ? url.getPort() : url.getDefaultPort();
+      return new Route(
+          url.getProtocol().toLowerCase(Locale.ROOT),
+          url.getHost().toLowerCase(Locale.ROOT),
+          port,
+          (proxy != null) ? proxy : Proxy.NO_PROXY);
+    }
+
+    boolean isSecure() {
+      return "https".equals(this.scheme);
+    }
+  }
+}
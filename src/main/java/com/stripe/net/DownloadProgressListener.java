@@ -0,0 +1,14 @@
+package com.stripe.net;
+
+/** Receives the progress of a download, e.g. of a file's contents. */
+@FunctionalInterface
+public interface DownloadProgressListener {
+  /**
+   * Called every time a chunk of the download was written, on the thread running the download.
+   *
+   * @param bytesDownloaded the number of bytes written so far, including those downloaded before
+   *     the download was resumed
+   * @param totalBytes the total number of bytes to download, or {@code -1} if it is not known
+   */
+  void onProgress(long bytesDownloaded, long totalBytes);
+}
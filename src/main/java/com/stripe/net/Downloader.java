@@ -0,0 +1,443 @@
+package com.stripe.net;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Downloads the body of a response, e.g. a file's contents, to a file or a stream without holding
+ * it in memory. If the transfer is interrupted, it is resumed with a {@code Range} request, up to
+ * {@link RequestOptions#getMaxNetworkRetries()} times.
+ *
+ * <p>Downloads to a file are written to a {@code .part} file next to it, which is moved in place
+ * once complete. If a download fails, the partial file is kept, and the next download to the same
+ * file resumes from it. The URL and the {@code ETag} or {@code Last-Modified} header of the
+ * contents are saved in a {@code .part.meta} file, so that a partial file is only resumed from the
+ * same source, with an {@code If-Range} header: otherwise, the download starts over.
+ */
+final class Downloader {
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  private static final int PARTIAL_CONTENT = 206;
+
+  private static final int RANGE_NOT_SATISFIABLE = 416;
+
+  private static final String PART_FILE_SUFFIX = ".part";
+
+  private static final String META_FILE_SUFFIX = ".part.meta";
+
+  private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-\\d+/(\\d+|\\*)");
+
+  private Downloader() {}
+
+  /**
+   * Downloads the body of the response to a {@code GET} request to the given URL into a file.
+   *
+   * @param getter the response getter sending the requests
+   * @param url the URL
+   * @param path the file to write, which is replaced once the download is complete
+   * @param options the request options
+   * @param listener the listener receiving the progress of the download, or {@code null}
+   * @return the size of the file, in bytes
+   * @throws StripeException if a request fails or the transfer cannot be resumed
+   * @throws IOException if writing the file fails
+   */
+  static long download(
+      StripeResponseGetter getter,
+      String url,
+      Path path,
+      RequestOptions options,
+      DownloadProgressListener listener)
+      throws StripeException, IOException {
+    checkUrl(url);
+    Path partPath = path.resolveSibling(path.getFileName() + PART_FILE_SUFFIX);
+    Path metaPath = path.resolveSibling(path.getFileName() + META_FILE_SUFFIX);
+
+    long size;
+    try (FileChannel channel =
+        FileChannel.open(partPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      size = transfer(getter, url, options, listener, new FileSink(channel, metaPath, url));
+    }
+
+    try {
+      Files.move(
+          partPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(partPath, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+    Files.deleteIfExists(metaPath);
+    return size;
+  }
+
+  /**
+   * Downloads the body of the response to a {@code GET} request to the given URL into a stream.
+   *
+   * @param getter the response getter sending the requests
+   * @param url the URL
+   * @param out the stream to write to, which is not closed
+   * @param options the request options
+   * @param listener the listener receiving the progress of the download, or {@code null}
+   * @return the number of bytes written
+   * @throws StripeException if a request fails or the transfer cannot be resumed
+   * @throws IOException if writing to the stream fails
+   */
+  static long download(
+      StripeResponseGetter getter,
+      String url,
+      OutputStream out,
+      RequestOptions options,
+      DownloadProgressListener listener)
+      throws StripeException, IOException {
+    checkUrl(url);
+    return transfer(getter, url, options, listener, new StreamSink(out));
+  }
+
+  private static void checkUrl(String url) {
+    if (url == null) {
+      throw new IllegalArgumentException("The URL of the contents to download must not be null");
+    }
+  }
+
+  private static long transfer(
+      StripeResponseGetter getter,
+      String url,
+      RequestOptions options,
+      DownloadProgressListener listener,
+      Sink sink)
+      throws StripeException, IOException {
+    int resumes = 0;
+
+    while (true) {
+      long position = sink.position();
+      StripeRequest request = new StripeRequest(ApiResource.RequestMethod.GET, url, null, options);
+      if (position > 0) {
+        request = request.withAdditionalHeader("Range", String.format("bytes=%d-", position));
+        if (sink.validator() != null) {
+          request = request.withAdditionalHeader("If-Range", sink.validator());
+        }
+      }
+
+      StripeResponseStream response;
+      try {
+        response = getter.requestStream(request);
+      } catch (StripeException e) {
+        // A partial file longer than the contents cannot be resumed: start over.
+        if (position > 0
+            && Integer.valueOf(RANGE_NOT_SATISFIABLE).equals(e.getStatusCode())
+            && sink.truncate()) {
+          continue;
+        }
+        throw e;
+      }
+
+      SourceChannel source = new SourceChannel(response.body());
+      IOException interruption;
+      try {
+        long totalBytes = start(response, sink, source);
+        while (sink.transferFrom(source) > 0) {
+          if (listener != null) {
+            listener.onProgress(sink.position(), totalBytes);
+          }
+        }
+        if (totalBytes < 0 || sink.position() >= totalBytes) {
+          return sink.position();
+        }
+        interruption =
+            new EOFException(
+                String.format("Download ended after %d of %d bytes", sink.position(), totalBytes));
+      } catch (IOException e) {
+        if (!source.failedWith(e) || (e instanceof ClosedByInterruptException)) {
+          throw e;
+        }
+        interruption = e;
+      } finally {
+        closeQuietly(response);
+      }
+
+      if (resumes >= request.options().getMaxNetworkRetries()) {
+        throw new ApiConnectionException(
+            String.format(
+                "IOException during download from Stripe (%s) after %d bytes: %s",
+                url, sink.position(), interruption.getMessage()),
+            interruption);
+      }
+      resumes += 1;
+    }
+  }
+
+  /**
+   * Prepares the sink for the body of the response.
+   *
+   * @return the total number of bytes to download, or {@code -1} if it is not known
+   */
+  private static long start(StripeResponseStream response, Sink sink, SourceChannel source)
+      throws StripeException, IOException {
+    long position = sink.position();
+    String validator = validator(response);
+
+    if (response.code() == PARTIAL_CONTENT) {
+      String contentRange = response.headers().firstValue("Content-Range").orElse("");
+      Matcher matcher = CONTENT_RANGE.matcher(contentRange);
+      if (!matcher.matches() || Long.parseLong(matcher.group(1)) != position) {
+        throw new ApiConnectionException(
+            String.format(
+                "Unexpected Content-Range in response to a download from Stripe: %s",
+                contentRange));
+      }
+      return "*".equals(matcher.group(2)) ? -1 : Long.parseLong(matcher.group(2));
+    }
+
+    // The server ignored the range, or the contents changed: it sent the whole contents.
+    if (position > 0 && !sink.truncate()) {
+      if (sink.validator() != null && !sink.validator().equals(validator)) {
+        throw new ApiConnectionException(
+            String.format(
+                "The contents of a download from Stripe changed after %d bytes were written",
+                position));
+      }
+      source.skip(position);
+    }
+    sink.begin(validator);
+    try {
+      return Long.parseLong(response.headers().firstValue("Content-Length").orElse("-1"));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Returns the value identifying the version of the contents in the response, for {@code If-Range}
+   * headers, or {@code null} if there is none. Weak entity tags cannot be used for ranges.
+   */
+  private static String validator(StripeResponseStream response) {
+    String etag = response.headers().firstValue("ETag").orElse(null);
+    if (etag != null && !etag.startsWith("W/")) {
+      return etag;
+    }
+    return response.headers().firstValue("Last-Modified").orElse(null);
+  }
+
+  private static void closeQuietly(StripeResponseStream response) {
+    try {
+      response.close();
+    } catch (IOException e) {
+      // The download either completed or is resumed with another request.
+    }
+  }
+
+  /** Where the downloaded bytes are written. */
+  private interface Sink {
+    /** The number of bytes written so far. */
+    long position();
+
+    /** The version of the contents written so far, or {@code null} if it is not known. */
+    String validator();
+
+    /**
+     * Records the version of the contents about to be written from the start of a response.
+     *
+     * @param validator the {@code ETag} or {@code Last-Modified} header, or {@code null}
+     */
+    void begin(String validator) throws IOException;
+
+    /**
+     * Discards the bytes written so far.
+     *
+     * @return {@code false} if they cannot be discarded
+     */
+    boolean truncate() throws IOException;
+
+    /**
+     * Transfers the next chunk from the given channel.
+     *
+     * @return the number of bytes transferred, or {@code 0} at the end of the channel
+     */
+    long transferFrom(ReadableByteChannel source) throws IOException;
+  }
+
+  /**
+   * Writes to a file, through its channel. The URL and version of the contents are kept in a
+   * metadata file, so that a partial file left by a previous download is only resumed when they
+   * match.
+   */
+  private static final class FileSink implements Sink {
+    private final FileChannel channel;
+    private final Path metaPath;
+    private final String url;
+    private long position;
+    private String validator;
+
+    FileSink(FileChannel channel, Path metaPath, String url) throws IOException {
+      this.channel = channel;
+      this.metaPath = metaPath;
+      this.url = url;
+      this.position = channel.size();
+      if (this.position > 0) {
+        this.validator = this.readValidator();
+        if (this.validator == null) {
+          this.truncate();
+        }
+      }
+    }
+
+    /** Returns the version of the partial file, if it was downloaded from the same URL. */
+    private String readValidator() throws IOException {
+      if (!Files.exists(this.metaPath)) {
+        return null;
+      }
+      List<String> lines = Files.readAllLines(this.metaPath, StandardCharsets.UTF_8);
+      if (lines.size() < 2 || !this.url.equals(lines.get(0)) || lines.get(1).isEmpty()) {
+        return null;
+      }
+      return lines.get(1);
+    }
+
+    @Override
+    public long position() {
+      return this.position;
+    }
+
+    @Override
+    public String validator() {
+      return this.validator;
+    }
+
+    @Override
+    public void begin(String validator) throws IOException {
+      this.validator = validator;
+      Files.write(
+          this.metaPath,
+          Arrays.asList(this.url, (validator != null) ? validator : ""),
+          StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean truncate() throws IOException {
+      this.channel.truncate(0);
+      this.position = 0;
+      return true;
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel source) throws IOException {
+      long transferred = this.channel.transferFrom(source, this.position, CHUNK_SIZE);
+      this.position += transferred;
+      return transferred;
+    }
+  }
+
+  /** Writes to a stream, which cannot be rewound. */
+  private static final class StreamSink implements Sink {
+    private final OutputStream out;
+    private final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+    private long position;
+    private String validator;
+
+    StreamSink(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public long position() {
+      return this.position;
+    }
+
+    @Override
+    public String validator() {
+      return this.validator;
+    }
+
+    @Override
+    public void begin(String validator) {
+      this.validator = validator;
+    }
+
+    @Override
+    public boolean truncate() {
+      return this.position == 0;
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel source) throws IOException {
+      this.buffer.clear();
+      int read = source.read(this.buffer);
+      if (read <= 0) {
+        return 0;
+      }
+      this.out.write(this.buffer.array(), 0, read);
+      this.position += read;
+      return read;
+    }
+  }
+
+  /**
+   * The body of a response, as a channel. Remembers the last read failure, to tell network errors,
+   * after which the transfer can be resumed, from errors writing the bytes.
+   */
+  private static final class SourceChannel implements ReadableByteChannel {
+    private final ReadableByteChannel channel;
+    private IOException failure;
+
+    SourceChannel(InputStream body) {
+      this.channel = Channels.newChannel(body);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+      try {
+        return this.channel.read(dst);
+      } catch (IOException e) {
+        this.failure = e;
+        throw e;
+      }
+    }
+
+    /** Reads and discards the given number of bytes. */
+    void skip(long count) throws IOException {
+      ByteBuffer discarded = ByteBuffer.allocate((int) Math.min(count, CHUNK_SIZE));
+      long remaining = count;
+      while (remaining > 0) {
+        discarded.clear();
+        discarded.limit((int) Math.min(remaining, discarded.capacity()));
+        int read = this.read(discarded);
+        if (read == -1) {
+          this.failure = new EOFException("Download ended before the resumed position");
+          throw this.failure;
+        }
+        remaining -= read;
+      }
+    }
+
+    boolean failedWith(IOException e) {
+      return e == this.failure;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return this.channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.channel.close();
+    }
+  }
+}
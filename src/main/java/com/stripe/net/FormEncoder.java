@@ -23,20 +23,14 @@ public final class FormEncoder {
       return HttpContent.buildFormURLEncodedContent(new ArrayList<KeyValuePair<String, String>>());
     }
 
-    Collection<KeyValuePair<String, Object>> flatParams = flattenParams(params);
-
-    // If all parameters have been encoded as strings, then the content can be represented
+    // If all parameters can be encoded as strings, then the content can be represented
     // with application/x-www-form-url-encoded encoding. Otherwise, use
     // multipart/form-data encoding.
-    if (flatParams.stream().allMatch(kvp -> kvp.getValue() instanceof String)) {
-      Collection<KeyValuePair<String, String>> flatParamsString =
-          flatParams.stream()
-              .filter(kvp -> kvp.getValue() instanceof String)
-              .map(kvp -> new KeyValuePair<String, String>(kvp.getKey(), (String) kvp.getValue()))
-              .collect(Collectors.toList());
-      return HttpContent.buildFormURLEncodedContent(flatParamsString);
+    byte[] body = FormWriter.encodeBody(params);
+    if (body != null) {
+      return HttpContent.buildEncodedFormContent(body);
     } else {
-      return HttpContent.buildMultipartFormDataContent(flatParams);
+      return HttpContent.buildMultipartFormDataContent(flattenParams(params));
     }
   }
 
@@ -51,12 +45,7 @@ public final class FormEncoder {
       return "";
     }
 
-    Collection<KeyValuePair<String, String>> flatParams =
-        flattenParams(params).stream()
-            .filter(kvp -> kvp.getValue() instanceof String)
-            .map(kvp -> new KeyValuePair<String, String>(kvp.getKey(), (String) kvp.getValue()))
-            .collect(Collectors.toList());
-    return createQueryString(flatParams);
+    return FormWriter.encodeQuery(params);
   }
 
   /**
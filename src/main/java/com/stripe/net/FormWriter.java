@@ -0,0 +1,294 @@
+package com.stripe.net;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Encodes parameters using {@code application/x-www-form-urlencoded} encoding in a single pass.
+ *
+ * <p>This produces the same output as encoding the result of {@link FormEncoder#flattenParams(Map)}
+ * with {@link FormEncoder#createQueryString(Collection)}, but walks the parameters once and writes
+ * URL-encoded bytes straight into a buffer, without building the intermediate list of key/value
+ * pairs nor any of the keys and values as strings. Each thread reuses its own buffers from one
+ * request to the next.
+ */
+final class FormWriter {
+  /** Initial size of the buffers. */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /** Size above which buffers are not kept for the next request. */
+  private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+  private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+  private static final ThreadLocal<FormWriter> CACHED = ThreadLocal.withInitial(FormWriter::new);
+
+  /** Key of the current parameter, which nested parameters are appended to. */
+  private final StringBuilder key = new StringBuilder(INITIAL_CAPACITY);
+
+  private byte[] buffer = new byte[INITIAL_CAPACITY];
+  private int count;
+
+  /** Number of parameters written so far, including skipped file parameters. */
+  private int paramCount;
+
+  /** Whether {@link File} and {@link InputStream} values are left out, rather than rejected. */
+  private boolean skipStreams;
+
+  private boolean inUse;
+
+  private FormWriter() {}
+
+  /**
+   * Encodes the given parameters as the body of a request.
+   *
+   * @param params the parameters
+   * @return the encoded parameters, or {@code null} if a parameter is a {@link File} or an {@link
+   *     InputStream} and the parameters must be encoded using {@code multipart/form-data} encoding
+   */
+  static byte[] encodeBody(Map<String, Object> params) {
+    FormWriter writer = acquire(false);
+    try {
+      if (!writer.writeValue(params)) {
+        return null;
+      }
+      return Arrays.copyOf(writer.buffer, writer.count);
+    } finally {
+      writer.release();
+    }
+  }
+
+  /**
+   * Encodes the given parameters as a query string, leaving out {@link File} and {@link
+   * InputStream} parameters.
+   *
+   * @param params the parameters
+   * @return the query string
+   */
+  static String encodeQuery(Map<String, Object> params) {
+    FormWriter writer = acquire(true);
+    try {
+      writer.writeValue(params);
+      // URL-encoded bytes are all ASCII.
+      return new String(writer.buffer, 0, writer.count, StandardCharsets.ISO_8859_1);
+    } finally {
+      writer.release();
+    }
+  }
+
+  private static FormWriter acquire(boolean skipStreams) {
+    FormWriter writer = CACHED.get();
+    if (writer.inUse) {
+      // A value's toString() sent a request on the same thread.
+      writer = new FormWriter();
+    }
+    writer.inUse = true;
+    writer.skipStreams = skipStreams;
+    return writer;
+  }
+
+  private void release() {
+    this.inUse = false;
+    this.count = 0;
+    this.paramCount = 0;
+    this.key.setLength(0);
+    if (this.key.capacity() > MAX_RETAINED_CAPACITY) {
+      this.key.trimToSize();
+    }
+    if (this.buffer.length > MAX_RETAINED_CAPACITY) {
+      this.buffer = new byte[INITIAL_CAPACITY];
+    }
+  }
+
+  /**
+   * Writes the parameters for the given value under the current key. Follows the same rules as
+   * {@code FormEncoder.flattenParamsValue}.
+   *
+   * @return {@code false} if a {@link File} or {@link InputStream} value was found and streams are
+   *     not skipped
+   */
+  private boolean writeValue(Object value) {
+    if (value == null) {
+      this.writeParam("");
+    } else if (value instanceof Map<?, ?>) {
+      return this.writeMap((Map<?, ?>) value);
+    } else if (value instanceof String) {
+      this.writeParam((String) value);
+    } else if ((value instanceof File) || (value instanceof InputStream)) {
+      if (!this.skipStreams) {
+        return false;
+      }
+      this.paramCount += 1;
+    } else if (value instanceof Collection<?>) {
+      return this.writeCollection((Collection<?>) value);
+    } else if (value.getClass().isArray()) {
+      return this.writeArray(value);
+    } else if (value instanceof Date) {
+      this.writeParam(Long.toString(((Date) value).getTime() / 1000L));
+    } else if (value.getClass().isEnum()) {
+      this.writeParam(ApiResource.GSON.toJson(value).replaceAll("\"", ""));
+    } else {
+      this.writeParam(value.toString());
+    }
+    return true;
+  }
+
+  private boolean writeMap(Map<?, ?> map) {
+    int prefixLength = this.key.length();
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      this.appendKey(entry.getKey().toString(), prefixLength);
+      if (!this.writeValue(entry.getValue())) {
+        return false;
+      }
+      this.key.setLength(prefixLength);
+    }
+    return true;
+  }
+
+  private boolean writeCollection(Collection<?> collection) {
+    int prefixLength = this.key.length();
+    int paramCountBefore = this.paramCount;
+    int index = 0;
+    for (Object value : collection) {
+      this.key.append('[').append(index).append(']');
+      if (!this.writeValue(value)) {
+        return false;
+      }
+      this.key.setLength(prefixLength);
+      index += 1;
+    }
+    return this.writeEmptyListIfNeeded(paramCountBefore);
+  }
+
+  private boolean writeArray(Object array) {
+    int prefixLength = this.key.length();
+    int paramCountBefore = this.paramCount;
+    int length = Array.getLength(array);
+    Object[] objects = array.getClass().getComponentType().isPrimitive() ? null : (Object[]) array;
+    for (int index = 0; index < length; index++) {
+      this.key.append('[').append(index).append(']');
+      Object value = (objects != null) ? objects[index] : Array.get(array, index);
+      if (!this.writeValue(value)) {
+        return false;
+      }
+      this.key.setLength(prefixLength);
+    }
+    return this.writeEmptyListIfNeeded(paramCountBefore);
+  }
+
+  /**
+   * Writes an empty value for lists that produced no parameters, since {@code
+   * application/x-www-form-urlencoded} cannot represent an empty list.
+   */
+  private boolean writeEmptyListIfNeeded(int paramCountBefore) {
+    if (this.paramCount == paramCountBefore) {
+      this.writeParam("");
+    }
+    return true;
+  }
+
+  /** Appends the given map key to the current key, like {@code FormEncoder.newPrefix}. */
+  private void appendKey(String mapKey, int prefixLength) {
+    if (prefixLength == 0) {
+      this.key.append(mapKey);
+      return;
+    }
+
+    int i = mapKey.indexOf('[');
+    if (i == -1) {
+      this.key.append('[').append(mapKey).append(']');
+    } else {
+      this.key
+          .append('[')
+          .append(mapKey, 0, i)
+          .append("][")
+          .append(mapKey, i, mapKey.length())
+          .append(']');
+    }
+  }
+
+  private void writeParam(String value) {
+    // Every parameter writes at least its key and '='.
+    if (this.count > 0) {
+      this.writeByte('&');
+    }
+    this.writeEncoded(this.key);
+    this.writeByte('=');
+    this.writeEncoded(value);
+    this.paramCount += 1;
+  }
+
+  /**
+   * Writes the URL-encoded form of the given characters. The output is identical to {@link
+   * java.net.URLEncoder#encode(String, String)} with UTF-8, except that square brackets are not
+   * encoded.
+   */
+  private void writeEncoded(CharSequence s) {
+    int length = s.length();
+    this.ensureCapacity(length);
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      if ((c >= 'a' && c <= 'z')
+          || (c >= 'A' && c <= 'Z')
+          || (c >= '0' && c <= '9')
+          || c == '.'
+          || c == '-'
+          || c == '*'
+          || c == '_'
+          || c == '['
+          || c == ']') {
+        this.writeByte(c);
+      } else if (c == ' ') {
+        this.writeByte('+');
+      } else if (c < 0x80) {
+        this.writePercentEncoded(c);
+      } else if (c < 0x800) {
+        this.writePercentEncoded(0xC0 | (c >> 6));
+        this.writePercentEncoded(0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c)
+          && (i + 1 < length)
+          && Character.isLowSurrogate(s.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, s.charAt(i + 1));
+        this.writePercentEncoded(0xF0 | (codePoint >> 18));
+        this.writePercentEncoded(0x80 | ((codePoint >> 12) & 0x3F));
+        this.writePercentEncoded(0x80 | ((codePoint >> 6) & 0x3F));
+        this.writePercentEncoded(0x80 | (codePoint & 0x3F));
+        i += 1;
+      } else if (Character.isSurrogate(c)) {
+        // Unpaired surrogates are replaced by '?' when encoded in UTF-8.
+        this.writePercentEncoded('?');
+      } else {
+        this.writePercentEncoded(0xE0 | (c >> 12));
+        this.writePercentEncoded(0x80 | ((c >> 6) & 0x3F));
+        this.writePercentEncoded(0x80 | (c & 0x3F));
+      }
+    }
+  }
+
+  private void writePercentEncoded(int b) {
+    this.ensureCapacity(3);
+    this.buffer[this.count] = '%';
+    this.buffer[this.count + 1] = HEX_DIGITS[(b >> 4) & 0xF];
+    this.buffer[this.count + 2] = HEX_DIGITS[b & 0xF];
+    this.count += 3;
+  }
+
+  private void writeByte(int b) {
+    this.ensureCapacity(1);
+    this.buffer[this.count] = (byte) b;
+    this.count += 1;
+  }
+
+  private void ensureCapacity(int additional) {
+    if (this.count + additional > this.buffer.length) {
+      this.buffer =
+          Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.count + additional));
+    }
+  }
+}
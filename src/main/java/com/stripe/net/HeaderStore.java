@@ -0,0 +1,213 @@
+package com.stripe.net;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable map of HTTP header names to values, in which names are case insensitive. This is the
+ * storage behind {@link HttpHeaders}.
+ *
+ * <p>Headers are kept in insertion order in parallel arrays, along with a case-insensitive hash of
+ * each name. Requests and responses only carry a few headers, so scanning the hashes is faster than
+ * a hash table, and looking up a header does not allocate. Adding headers returns a new store
+ * holding a copy of the arrays, leaving the original one untouched.
+ *
+ * <p>Like {@link com.stripe.util.CaseInsensitiveMap}, the store remembers the case of the last name
+ * set for each header, and {@code null} is a valid name.
+ */
+final class HeaderStore extends AbstractMap<String, List<String>> {
+  static final HeaderStore EMPTY = new HeaderStore(new String[0], new int[0], newValues(0), 0);
+
+  private static final Class<?> UNMODIFIABLE_LIST_CLASS =
+      Collections.unmodifiableList(new LinkedList<>()).getClass();
+
+  private static final Class<?> UNMODIFIABLE_RANDOM_ACCESS_LIST_CLASS =
+      Collections.unmodifiableList(Arrays.asList()).getClass();
+
+  private static final Class<?> SINGLETON_LIST_CLASS = Collections.singletonList("").getClass();
+
+  private final String[] names;
+  private final int[] hashes;
+  private final List<String>[] values;
+  private final int size;
+
+  private Set<Map.Entry<String, List<String>>> entrySet;
+
+  private HeaderStore(String[] names, int[] hashes, List<String>[] values, int size) {
+    this.names = names;
+    this.hashes = hashes;
+    this.values = values;
+    this.size = size;
+  }
+
+  /**
+   * Returns a new store containing the headers of this store plus the given header, which replaces
+   * any header with the same name.
+   *
+   * @param name the header's name
+   * @param values the header's values
+   * @return the new store
+   */
+  HeaderStore with(String name, List<String> values) {
+    int hash = hash(name);
+    int index = this.indexOf(name, hash, this.size);
+    int newSize = (index < 0) ? this.size + 1 : this.size;
+
+    String[] newNames = Arrays.copyOf(this.names, newSize);
+    int[] newHashes = Arrays.copyOf(this.hashes, newSize);
+    List<String>[] newValues = Arrays.copyOf(this.values, newSize);
+    int position = (index < 0) ? this.size : index;
+    newNames[position] = name;
+    newHashes[position] = hash;
+    newValues[position] = unmodifiable(values);
+
+    return new HeaderStore(newNames, newHashes, newValues, newSize);
+  }
+
+  /**
+   * Returns a new store containing the headers of this store plus the given headers, which replace
+   * any header with the same name.
+   *
+   * @param headers the headers to add
+   * @return the new store
+   */
+  HeaderStore with(Map<String, List<String>> headers) {
+    if (headers.isEmpty()) {
+      return this;
+    }
+
+    int capacity = this.size + headers.size();
+    String[] newNames = Arrays.copyOf(this.names, capacity);
+    int[] newHashes = Arrays.copyOf(this.hashes, capacity);
+    List<String>[] newValues = Arrays.copyOf(this.values, capacity);
+    HeaderStore store = new HeaderStore(newNames, newHashes, newValues, this.size);
+
+    int newSize = this.size;
+    for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+      int hash = hash(header.getKey());
+      int index = store.indexOf(header.getKey(), hash, newSize);
+      if (index < 0) {
+        index = newSize;
+        newSize += 1;
+      }
+      newNames[index] = header.getKey();
+      newHashes[index] = hash;
+      newValues[index] = unmodifiable(header.getValue());
+    }
+
+    // Headers replacing existing ones leave unused slots at the end of the arrays.
+    return new HeaderStore(newNames, newHashes, newValues, newSize);
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return this.indexOf(key) >= 0;
+  }
+
+  @Override
+  public List<String> get(Object key) {
+    int index = this.indexOf(key);
+    return (index < 0) ? null : this.values[index];
+  }
+
+  @Override
+  public Set<Map.Entry<String, List<String>>> entrySet() {
+    if (this.entrySet == null) {
+      this.entrySet = new EntrySet();
+    }
+    return this.entrySet;
+  }
+
+  private int indexOf(Object key) {
+    if ((key != null) && !(key instanceof String)) {
+      return -1;
+    }
+    String name = (String) key;
+    return this.indexOf(name, hash(name), this.size);
+  }
+
+  private int indexOf(String name, int hash, int size) {
+    for (int i = 0; i < size; i++) {
+      if (this.hashes[i] != hash) {
+        continue;
+      }
+      String candidate = this.names[i];
+      if ((name == null) ? (candidate == null) : name.equalsIgnoreCase(candidate)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Returns a hash of the name that is equal for names that only differ by case. */
+  private static int hash(String name) {
+    if (name == null) {
+      return 0;
+    }
+    int hash = 1;
+    for (int i = 0; i < name.length(); i++) {
+      // Same equivalence as String.equalsIgnoreCase
+      hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+    }
+    return hash;
+  }
+
+  /** Wraps the values in an unmodifiable list, unless they already are one. */
+  private static List<String> unmodifiable(List<String> values) {
+    if ((values == null)
+        || (values.getClass() == UNMODIFIABLE_LIST_CLASS)
+        || (values.getClass() == UNMODIFIABLE_RANDOM_ACCESS_LIST_CLASS)
+        || (values.getClass() == SINGLETON_LIST_CLASS)) {
+      return values;
+    }
+    return Collections.unmodifiableList(values);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<String>[] newValues(int length) {
+    return (List<String>[]) new List<?>[length];
+  }
+
+  private final class EntrySet extends AbstractSet<Map.Entry<String, List<String>>> {
+    @Override
+    public int size() {
+      return HeaderStore.this.size;
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, List<String>>> iterator() {
+      return new Iterator<Map.Entry<String, List<String>>>() {
+        private int position;
+
+        @Override
+        public boolean hasNext() {
+          return this.position < HeaderStore.this.size;
+        }
+
+        @Override
+        public Map.Entry<String, List<String>> next() {
+          if (!this.hasNext()) {
+            throw new NoSuchElementException();
+          }
+          int index = this.position;
+          this.position += 1;
+          return new AbstractMap.SimpleImmutableEntry<>(
+              HeaderStore.this.names[index], HeaderStore.this.values[index]);
+        }
+      };
+    }
+  }
+}
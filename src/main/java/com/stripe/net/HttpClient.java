@@ -2,14 +2,32 @@ package com.stripe.net;
 
 import com.stripe.Stripe;
 import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.CircuitBreakerOpenException;
 import com.stripe.exception.StripeException;
 import com.stripe.util.Stopwatch;
+import com.stripe.util.StreamUtils;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.ConnectException;
 import java.time.Duration;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Value;
 
 /** Base abstract class for HTTP clients used to send requests to Stripe's API. */
 public abstract class HttpClient {
@@ -19,11 +37,44 @@ public abstract class HttpClient {
   /** Minimum sleep time between tries to send HTTP requests after network failure. */
   public static final Duration minNetworkRetriesDelay = Duration.ofMillis(500);
 
+  /**
+   * Maximum number of threads of the default executor of asynchronous requests. Requests beyond
+   * this number wait in the executor's queue.
+   */
+  public static final int DEFAULT_ASYNC_THREADS = 32;
+
+  /** The user agent headers, or {@code null} if they were not built yet. */
+  private static volatile UserAgentHeaders userAgentHeaders;
+
   private final RequestTelemetry requestTelemetry = new RequestTelemetry();
 
   /** A value indicating whether the client should sleep between automatic request retries. */
   boolean networkRetriesSleep = true;
 
+  /** The executor used to run requests sent with {@link #requestAsync(StripeRequest)}. */
+  private volatile Executor asyncExecutor;
+
+  /** The scheduler used to wait between automatic request retries. */
+  private volatile RetryScheduler retryScheduler;
+
+  /** The budget limiting automatic request retries, or {@code null} if retries are not limited. */
+  private volatile RetryBudget retryBudget;
+
+  /** The limiter applied to concurrent requests, or {@code null} if concurrency is not limited. */
+  private volatile ConcurrencyLimiter concurrencyLimiter;
+
+  /** The circuit breakers applied to requests, or {@code null} if requests are never rejected. */
+  private volatile CircuitBreaker circuitBreaker;
+
+  /** The hedger applied to {@code GET} requests, or {@code null} if requests are not hedged. */
+  private volatile RequestHedger requestHedger;
+
+  /** Whether successful responses are deserialized while they are read. */
+  private volatile boolean responseStreaming;
+
+  /** Whether responses deserialized while they are read keep their raw body. */
+  private volatile boolean retainRawResponseBody = true;
+
   /** Initializes a new instance of the {@link HttpClient} class. */
   public HttpClient() {}
 
@@ -36,6 +87,298 @@ public abstract class HttpClient {
    */
   public abstract StripeResponse request(StripeRequest request) throws StripeException;
 
+  /**
+   * Sends the given request to Stripe's API asynchronously.
+   *
+   * <p>The default implementation runs {@link #request(StripeRequest)} on the client's async
+   * executor (see {@link #setAsyncExecutor(Executor)}). The bundled clients use blocking I/O, so
+   * this is thread-per-request: each request in flight holds one of the executor's threads, and
+   * requests beyond its threads wait in its queue. Subclasses backed by a non-blocking transport
+   * should override this method so that no thread is held while waiting for the response.
+   *
+   * @param request the request
+   * @return a future that completes with the response, or exceptionally with a {@link
+   *     StripeException} if the request fails for any reason
+   */
+  public CompletableFuture<StripeResponse> requestAsync(StripeRequest request) {
+    return execute(this.getAsyncExecutor(), request, this::request);
+  }
+
+  /** Sends a request on the calling thread. */
+  private interface RequestSender {
+    StripeResponse send(StripeRequest request) throws StripeException;
+  }
+
+  /** Sends the given request with the given sender on the given executor. */
+  private static CompletableFuture<StripeResponse> execute(
+      Executor executor, StripeRequest request, RequestSender sender) {
+    CompletableFuture<StripeResponse> future = new CompletableFuture<>();
+
+    try {
+      executor.execute(
+          () -> {
+            try {
+              future.complete(sender.send(request));
+            } catch (StripeException | RuntimeException e) {
+              future.completeExceptionally(e);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(
+          new ApiConnectionException(
+              String.format(
+                  "Unable to schedule asynchronous API request to Stripe (%s): %s",
+                  Stripe.getApiBase(), e.getMessage()),
+              e));
+    }
+
+    return future;
+  }
+
+  /**
+   * Returns the executor used to run requests sent asynchronously. Unless another executor was set
+   * with {@link #setAsyncExecutor(Executor)}, this is an executor shared by all clients that runs
+   * requests on at most {@link #DEFAULT_ASYNC_THREADS} daemon threads, queueing the others.
+   *
+   * <p>Asynchronous requests sent with {@link #requestWithRetriesAsync(StripeRequest)} only reach
+   * the executor once they hold a permit of the concurrency limiter, if set, and wait between
+   * retries on the retry scheduler, so neither waiting holds one of its threads.
+   *
+   * @return the executor used to run asynchronous requests
+   */
+  public Executor getAsyncExecutor() {
+    Executor executor = this.asyncExecutor;
+    return (executor != null) ? executor : DefaultAsyncExecutorHolder.INSTANCE;
+  }
+
+  /**
+   * Sets the executor used to run requests sent asynchronously.
+   *
+   * @param asyncExecutor the executor, or {@code null} to use the default shared executor
+   */
+  public void setAsyncExecutor(Executor asyncExecutor) {
+    this.asyncExecutor = asyncExecutor;
+  }
+
+  /**
+   * Returns the scheduler used to wait between automatic request retries. Unless another scheduler
+   * was set with {@link #setRetryScheduler(RetryScheduler)}, this is {@link
+   * RetryScheduler#getDefault()}.
+   *
+   * @return the retry scheduler
+   */
+  public RetryScheduler getRetryScheduler() {
+    RetryScheduler scheduler = this.retryScheduler;
+    return (scheduler != null) ? scheduler : RetryScheduler.getDefault();
+  }
+
+  /**
+   * Sets the scheduler used to wait between automatic request retries.
+   *
+   * @param retryScheduler the scheduler, or {@code null} to use the default shared scheduler
+   */
+  public void setRetryScheduler(RetryScheduler retryScheduler) {
+    this.retryScheduler = retryScheduler;
+  }
+
+  /**
+   * Returns the budget limiting automatic request retries.
+   *
+   * @return the retry budget, or {@code null} if retries are only limited per request
+   */
+  public RetryBudget getRetryBudget() {
+    return this.retryBudget;
+  }
+
+  /**
+   * Sets the budget limiting automatic request retries. The same budget can be shared by several
+   * clients.
+   *
+   * @param retryBudget the budget, or {@code null} to only limit retries per request with {@link
+   *     RequestOptions#getMaxNetworkRetries()}
+   */
+  public void setRetryBudget(RetryBudget retryBudget) {
+    this.retryBudget = retryBudget;
+  }
+
+  /**
+   * Returns the limiter applied to concurrent requests.
+   *
+   * @return the concurrency limiter, or {@code null} if concurrency is not limited
+   */
+  public ConcurrencyLimiter getConcurrencyLimiter() {
+    return this.concurrencyLimiter;
+  }
+
+  /**
+   * Sets the limiter applied to concurrent requests sent with {@link
+   * #requestWithRetries(StripeRequest)} and {@link #requestWithRetriesAsync(StripeRequest)}. Each
+   * attempt, including retries, counts against the limit.
+   *
+   * @param concurrencyLimiter the limiter, or {@code null} to not limit concurrency
+   */
+  public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+    this.concurrencyLimiter = concurrencyLimiter;
+  }
+
+  /**
+   * Returns the circuit breakers applied to requests.
+   *
+   * @return the circuit breakers, or {@code null} if requests are never rejected
+   */
+  public CircuitBreaker getCircuitBreaker() {
+    return this.circuitBreaker;
+  }
+
+  /**
+   * Sets the circuit breakers applied to requests sent with {@link
+   * #requestWithRetries(StripeRequest)} and {@link #requestWithRetriesAsync(StripeRequest)}.
+   * Requests to an endpoint whose breaker is open fail with a {@link CircuitBreakerOpenException}
+   * and are not retried.
+   *
+   * @param circuitBreaker the circuit breakers, or {@code null} to never reject requests
+   */
+  public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+    this.circuitBreaker = circuitBreaker;
+  }
+
+  /**
+   * Returns the hedger applied to {@code GET} requests.
+   *
+   * @return the request hedger, or {@code null} if requests are not hedged
+   */
+  public RequestHedger getRequestHedger() {
+    return this.requestHedger;
+  }
+
+  /**
+   * Sets the hedger applied to {@code GET} requests sent with {@link
+   * #requestWithRetries(StripeRequest)} and {@link #requestWithRetriesAsync(StripeRequest)}. A
+   * hedged request and its hedge count as a single attempt for retries, the concurrency limiter and
+   * the circuit breaker.
+   *
+   * <p>Both copies of a hedged synchronous request are sent on daemon threads dedicated to hedging,
+   * started as needed, while the calling thread waits for the first successful response. Copies of
+   * asynchronous requests are sent on the async executor.
+   *
+   * @param requestHedger the hedger, or {@code null} to not hedge requests
+   */
+  public void setRequestHedger(RequestHedger requestHedger) {
+    this.requestHedger = requestHedger;
+  }
+
+  /**
+   * Returns whether successful responses are deserialized while they are read.
+   *
+   * @return whether response streaming is enabled
+   */
+  public boolean getResponseStreaming() {
+    return this.responseStreaming;
+  }
+
+  /**
+   * Sets whether successful responses are deserialized while they are read.
+   *
+   * <p>By default, the body of a response is read into a string, which is then parsed. With
+   * response streaming, objects are parsed straight from the network stream, so large responses
+   * such as list pages are never held in memory as text. The response's {@link
+   * StripeResponse#body() body}, and thus {@link com.stripe.model.StripeObject#getRawJsonObject()},
+   * are decoded from the raw body, which is retained as bytes unless disabled with {@link
+   * #setRetainRawResponseBody(boolean)}.
+   *
+   * @param responseStreaming whether to enable response streaming
+   */
+  public void setResponseStreaming(boolean responseStreaming) {
+    this.responseStreaming = responseStreaming;
+  }
+
+  /**
+   * Returns whether responses deserialized while they are read keep their raw body.
+   *
+   * @return whether raw response bodies are retained
+   */
+  public boolean getRetainRawResponseBody() {
+    return this.retainRawResponseBody;
+  }
+
+  /**
+   * Sets whether responses deserialized while they are read keep their raw body, as bytes, so that
+   * {@link StripeResponse#body()} and {@link com.stripe.model.StripeObject#getRawJsonObject()}
+   * return the exact JSON sent by Stripe, including properties the library does not know. This is
+   * the default, and has no effect unless response streaming is enabled.
+   *
+   * <p>Without the raw body, {@link StripeResponse#body()} is rebuilt from the deserialized object
+   * in its current state, which leaves out the properties the library does not know, and responses
+   * are not cached by a {@link CachingStripeResponseGetter}.
+   *
+   * @param retainRawResponseBody whether to retain raw response bodies
+   */
+  public void setRetainRawResponseBody(boolean retainRawResponseBody) {
+    this.retainRawResponseBody = retainRawResponseBody;
+  }
+
+  /**
+   * Builds the response to the given request from its status code, headers and body. If response
+   * streaming is enabled (see {@link #setResponseStreaming(boolean)}), the body of a successful
+   * response is deserialized while it is read. Otherwise, the body is read into a string.
+   *
+   * @param request the request
+   * @param code the HTTP status code of the response
+   * @param headers the HTTP headers of the response
+   * @param body the stream of the body, which is closed once read
+   * @return the response
+   * @throws IOException if reading the body fails
+   */
+  protected StripeResponse createResponse(
+      StripeRequest request, int code, HttpHeaders headers, InputStream body) throws IOException {
+    if (this.responseStreaming
+        && (request.responseType() != null)
+        && (code >= 200)
+        && (code < 300)) {
+      return StreamingResponseReader.read(
+          code, headers, body, request.responseType(), this.retainRawResponseBody);
+    }
+    return new StripeResponse(code, headers, StreamUtils.readToEnd(body, ApiResource.CHARSET));
+  }
+
+  /**
+   * Wraps an exception raised while sending a request or reading its response.
+   *
+   * @param e the exception
+   * @return the exception to throw to the caller
+   */
+  protected static ApiConnectionException connectionException(IOException e) {
+    return new ApiConnectionException(
+        String.format(
+            "IOException during API request to Stripe (%s): %s "
+                + "Please check your internet connection and try again. If this problem persists,"
+                + "you should check Stripe's service status at https://twitter.com/stripestatus,"
+                + " or let us know at support@stripe.com.",
+            Stripe.getApiBase(), e.getMessage()),
+        e);
+  }
+
+  /**
+   * Sends the given request to Stripe's API and returns the response without reading its body, so
+   * that the caller can stream it, e.g. to save a file to disk. The caller must close the response.
+   *
+   * <p>The default implementation throws an {@link ApiConnectionException} without sending the
+   * request, since {@link #request(StripeRequest)} reads the body as text and would corrupt binary
+   * downloads. Subclasses that can hand out the body of a response as it is received should
+   * override this method.
+   *
+   * @param request the request
+   * @return the response
+   * @throws StripeException If the request fails for any reason
+   */
+  public StripeResponseStream requestStream(StripeRequest request) throws StripeException {
+    throw new ApiConnectionException(
+        String.format(
+            "%s does not support streamed responses; use HttpURLConnectionClient or "
+                + "PooledHttpClient to download %s",
+            this.getClass().getName(), request.url()));
+  }
+
   /**
    * Sends the given request to Stripe's API, handling telemetry if not disabled.
    *
@@ -61,6 +404,109 @@ public abstract class HttpClient {
     return response;
   }
 
+  /**
+   * Sends the given request to Stripe's API asynchronously, handling telemetry if not disabled.
+   *
+   * @param request the request
+   * @return a future that completes with the response
+   */
+  public CompletableFuture<StripeResponse> requestWithTelemetryAsync(StripeRequest request) {
+    Optional<String> telemetryHeaderValue = requestTelemetry.getHeaderValue(request.headers());
+    if (telemetryHeaderValue.isPresent()) {
+      request =
+          request.withAdditionalHeader(RequestTelemetry.HEADER_NAME, telemetryHeaderValue.get());
+    }
+
+    Stopwatch stopwatch = Stopwatch.startNew();
+
+    return this.requestAsync(request)
+        .thenApply(
+            response -> {
+              stopwatch.stop();
+              requestTelemetry.maybeEnqueueMetrics(response, stopwatch.getElapsed());
+              return response;
+            });
+  }
+
+  /**
+   * Sends the given request to Stripe's API without reading the response's body, handling telemetry
+   * if not disabled. The duration reported is the time until the response's headers were received.
+   *
+   * @param request the request
+   * @return the response, which the caller must close
+   * @throws StripeException If the request fails for any reason
+   */
+  public StripeResponseStream requestStreamWithTelemetry(StripeRequest request)
+      throws StripeException {
+    Optional<String> telemetryHeaderValue = requestTelemetry.getHeaderValue(request.headers());
+    if (telemetryHeaderValue.isPresent()) {
+      request =
+          request.withAdditionalHeader(RequestTelemetry.HEADER_NAME, telemetryHeaderValue.get());
+    }
+
+    Stopwatch stopwatch = Stopwatch.startNew();
+
+    StripeResponseStream responseStream = this.requestStream(request);
+
+    stopwatch.stop();
+
+    requestTelemetry.maybeEnqueueMetrics(responseStream.withoutBody(), stopwatch.getElapsed());
+
+    return responseStream;
+  }
+
+  /**
+   * Sends the given request to Stripe's API without reading the response's body, retrying the
+   * request in cases of intermittent problems. Retries follow the same rules as {@link
+   * #requestWithRetries(StripeRequest)}, but only until a response is received: failures while
+   * reading the body are left to the caller. The request is not hedged.
+   *
+   * @param request the request
+   * @return the response, which the caller must close
+   * @throws StripeException If the request fails for any reason
+   */
+  public StripeResponseStream requestStreamWithRetries(StripeRequest request)
+      throws StripeException {
+    ApiConnectionException requestException = null;
+    StripeResponseStream responseStream = null;
+    int retry = 0;
+    RetryBudget budget = this.retryBudget;
+
+    if (budget != null) {
+      budget.recordFirstAttempt();
+    }
+
+    while (true) {
+      requestException = null;
+      responseStream = null;
+
+      try {
+        responseStream = this.sendStreamAttempt(request);
+      } catch (ApiConnectionException e) {
+        requestException = e;
+      }
+
+      StripeResponse response = (responseStream != null) ? responseStream.withoutBody() : null;
+      if (!this.shouldRetry(retry, requestException, request, response)
+          || !tryAcquireRetry(budget)) {
+        break;
+      }
+
+      if (!this.awaitRetryDelay(retry + 1)) {
+        break;
+      }
+
+      closeQuietly(responseStream);
+      retry += 1;
+    }
+
+    if (requestException != null) {
+      throw requestException;
+    }
+
+    return responseStream;
+  }
+
   /**
    * Sends the given request to Stripe's API, retrying the request in cases of intermittent
    * problems.
@@ -73,27 +519,31 @@ public abstract class HttpClient {
     ApiConnectionException requestException = null;
     StripeResponse response = null;
     int retry = 0;
+    RetryBudget budget = this.retryBudget;
+
+    if (budget != null) {
+      budget.recordFirstAttempt();
+    }
 
     while (true) {
       requestException = null;
 
       try {
-        response = this.requestWithTelemetry(request);
+        response = this.sendAttempt(request);
       } catch (ApiConnectionException e) {
         requestException = e;
       }
 
-      if (!this.shouldRetry(retry, requestException, request, response)) {
+      if (!this.shouldRetry(retry, requestException, request, response)
+          || !tryAcquireRetry(budget)) {
         break;
       }
 
-      retry += 1;
-
-      try {
-        Thread.sleep(this.sleepTime(retry).toMillis());
-      } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
+      if (!this.awaitRetryDelay(retry + 1)) {
+        break;
       }
+
+      retry += 1;
     }
 
     if (requestException != null) {
@@ -105,6 +555,309 @@ public abstract class HttpClient {
     return response;
   }
 
+  /**
+   * Sends the given request to Stripe's API asynchronously, retrying the request in cases of
+   * intermittent problems.
+   *
+   * @param request the request
+   * @return a future that completes with the response, or exceptionally with a {@link
+   *     StripeException} if the request fails for any reason
+   */
+  public CompletableFuture<StripeResponse> requestWithRetriesAsync(StripeRequest request) {
+    CompletableFuture<StripeResponse> result = new CompletableFuture<>();
+    RetryBudget budget = this.retryBudget;
+
+    if (budget != null) {
+      budget.recordFirstAttempt();
+    }
+
+    this.attemptAsync(request, 0, budget, result);
+    return result;
+  }
+
+  private void attemptAsync(
+      StripeRequest request,
+      int retry,
+      RetryBudget budget,
+      CompletableFuture<StripeResponse> result) {
+    this.sendAttemptAsync(request)
+        .whenComplete(
+            (response, error) -> {
+              Throwable cause = unwrapCompletionException(error);
+              if (cause != null && !(cause instanceof ApiConnectionException)) {
+                result.completeExceptionally(cause);
+                return;
+              }
+              ApiConnectionException requestException = (ApiConnectionException) cause;
+
+              if (!this.shouldRetry(retry, requestException, request, response)
+                  || !tryAcquireRetry(budget)) {
+                if (requestException != null) {
+                  result.completeExceptionally(requestException);
+                } else {
+                  response.numRetries(retry);
+                  result.complete(response);
+                }
+                return;
+              }
+
+              // Schedule the next attempt instead of sleeping, so that no thread is held while
+              // waiting. If the delay cannot be scheduled, report the outcome of this attempt.
+              this.getRetryScheduler()
+                  .delay(this.sleepTime(retry + 1))
+                  .whenComplete(
+                      (ignored, delayError) -> {
+                        if (result.isDone()) {
+                          return;
+                        }
+                        if (delayError == null) {
+                          this.attemptAsync(request, retry + 1, budget, result);
+                        } else if (requestException != null) {
+                          result.completeExceptionally(requestException);
+                        } else {
+                          response.numRetries(retry);
+                          result.complete(response);
+                        }
+                      });
+            });
+  }
+
+  /**
+   * Sends a single attempt of the request, after checking the circuit breaker and within the
+   * concurrency limit, if set.
+   */
+  private StripeResponse sendAttempt(StripeRequest request) throws StripeException {
+    CircuitBreaker breaker = this.circuitBreaker;
+    ConcurrencyLimiter limiter = this.concurrencyLimiter;
+    if (breaker == null && limiter == null) {
+      return this.sendCopies(request);
+    }
+
+    CircuitBreaker.Call call = (breaker != null) ? breaker.acquire(request) : null;
+    ConcurrencyLimiter.Permit permit = null;
+    StripeResponse response = null;
+    try {
+      if (limiter != null) {
+        permit = limiter.acquire(request);
+      }
+      if (call != null) {
+        call.start();
+      }
+      response = this.sendCopies(request);
+      return response;
+    } finally {
+      if (permit != null) {
+        permit.release(response);
+      }
+      if (call != null) {
+        call.complete(response);
+      }
+    }
+  }
+
+  /**
+   * Sends a single attempt of the request without reading the response's body, after checking the
+   * circuit breaker and within the concurrency limit, if set. The concurrency permit is released
+   * once the response's headers are received.
+   */
+  private StripeResponseStream sendStreamAttempt(StripeRequest request) throws StripeException {
+    CircuitBreaker breaker = this.circuitBreaker;
+    ConcurrencyLimiter limiter = this.concurrencyLimiter;
+    if (breaker == null && limiter == null) {
+      return this.requestStreamWithTelemetry(request);
+    }
+
+    CircuitBreaker.Call call = (breaker != null) ? breaker.acquire(request) : null;
+    ConcurrencyLimiter.Permit permit = null;
+    StripeResponse response = null;
+    try {
+      if (limiter != null) {
+        permit = limiter.acquire(request);
+      }
+      if (call != null) {
+        call.start();
+      }
+      StripeResponseStream responseStream = this.requestStreamWithTelemetry(request);
+      response = responseStream.withoutBody();
+      return responseStream;
+    } finally {
+      if (permit != null) {
+        permit.release(response);
+      }
+      if (call != null) {
+        call.complete(response);
+      }
+    }
+  }
+
+  private static void closeQuietly(StripeResponseStream responseStream) {
+    if (responseStream == null) {
+      return;
+    }
+    try {
+      responseStream.close();
+    } catch (IOException e) {
+      // The response is discarded anyway.
+    }
+  }
+
+  /**
+   * Sends a single attempt of the request asynchronously, after checking the circuit breaker and
+   * within the concurrency limit, if set.
+   */
+  private CompletableFuture<StripeResponse> sendAttemptAsync(StripeRequest request) {
+    CircuitBreaker breaker = this.circuitBreaker;
+    ConcurrencyLimiter limiter = this.concurrencyLimiter;
+    if (breaker == null && limiter == null) {
+      return this.sendCopiesAsync(request);
+    }
+
+    CircuitBreaker.Call call;
+    try {
+      call = (breaker != null) ? breaker.acquire(request) : null;
+    } catch (CircuitBreakerOpenException e) {
+      CompletableFuture<StripeResponse> future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+      return future;
+    }
+
+    CompletableFuture<ConcurrencyLimiter.Permit> permitFuture =
+        (limiter != null) ? limiter.acquireAsync(request) : CompletableFuture.completedFuture(null);
+
+    return permitFuture
+        .thenCompose(
+            permit -> {
+              if (call != null) {
+                call.start();
+              }
+              return this.sendCopiesAsync(request)
+                  .whenComplete(
+                      (response, error) -> {
+                        if (permit != null) {
+                          permit.release(response);
+                        }
+                      });
+            })
+        .whenComplete(
+            (response, error) -> {
+              if (call != null) {
+                call.complete(response);
+              }
+            });
+  }
+
+  /** Sends the request, hedging it if a hedger is set. */
+  private StripeResponse sendCopies(StripeRequest request) throws StripeException {
+    RequestHedger hedger = this.requestHedger;
+    if (hedger == null || request.method() != ApiResource.RequestMethod.GET) {
+      return this.requestWithTelemetry(request);
+    }
+
+    // Each copy runs on a thread of the hedging executor rather than the async executor, so that
+    // synchronous requests neither compete with asynchronous ones for its threads nor wait in its
+    // queue, which would count towards the latency the hedge delay is computed from.
+    return awaitResponse(
+        hedger.send(
+            request,
+            copy -> execute(HedgingExecutorHolder.INSTANCE, copy, this::requestWithTelemetry),
+            this.getRetryScheduler()));
+  }
+
+  /** Sends the request asynchronously, hedging it if a hedger is set. */
+  private CompletableFuture<StripeResponse> sendCopiesAsync(StripeRequest request) {
+    RequestHedger hedger = this.requestHedger;
+    if (hedger == null) {
+      return this.requestWithTelemetryAsync(request);
+    }
+
+    return hedger.send(request, this::requestWithTelemetryAsync, this.getRetryScheduler());
+  }
+
+  /**
+   * Waits on the retry scheduler before the given retry.
+   *
+   * @param retry the number of the retry about to be sent
+   * @return {@code true} if the retry should be sent, {@code false} if waiting was interrupted or
+   *     the delay could not be scheduled
+   */
+  private boolean awaitRetryDelay(int retry) {
+    try {
+      this.getRetryScheduler().delay(this.sleepTime(retry)).get();
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Blocks until the given future completes, and returns its response or throws its exception. If
+   * the thread is interrupted, the future is cancelled.
+   *
+   * @param future the future
+   * @return the response
+   * @throws StripeException if the future completed with a {@link StripeException}, or if the
+   *     thread was interrupted
+   */
+  static StripeResponse awaitResponse(CompletableFuture<StripeResponse> future)
+      throws StripeException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      future.cancel(true);
+      throw new ApiConnectionException(
+          String.format(
+              "Interrupted while waiting for a response from Stripe (%s)", Stripe.getApiBase()),
+          e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof StripeException) {
+        throw (StripeException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new ApiConnectionException(e.getCause().getMessage(), e.getCause());
+    }
+  }
+
+  /**
+   * Returns the cause of a {@link CompletionException}, or the given throwable if it is not a
+   * {@link CompletionException}.
+   */
+  static Throwable unwrapCompletionException(Throwable throwable) {
+    if ((throwable instanceof CompletionException) && (throwable.getCause() != null)) {
+      return throwable.getCause();
+    }
+    return throwable;
+  }
+
+  /**
+   * Returns the {@code User-Agent} and {@code X-Stripe-Client-User-Agent} headers. They are built
+   * once and cached until the application's information set with {@link Stripe#setAppInfo} changes.
+   *
+   * @return an unmodifiable map of the user agent headers
+   */
+  static Map<String, List<String>> getUserAgentHeaders() {
+    UserAgentHeaders cached = userAgentHeaders;
+    // Stripe.setAppInfo updates its map in place, so compare the contents of the map with the
+    // copy taken when the headers were built.
+    if (cached == null || !Objects.equals(cached.appInfo, Stripe.getAppInfo())) {
+      Map<String, String> appInfo =
+          (Stripe.getAppInfo() != null) ? new HashMap<>(Stripe.getAppInfo()) : null;
+      Map<String, List<String>> headers = new HashMap<>();
+      headers.put("User-Agent", Collections.singletonList(buildUserAgentString()));
+      headers.put(
+          "X-Stripe-Client-User-Agent",
+          Collections.singletonList(buildXStripeClientUserAgentString()));
+      cached = new UserAgentHeaders(appInfo, Collections.unmodifiableMap(headers));
+      userAgentHeaders = cached;
+    }
+    return cached.headers;
+  }
+
   /**
    * Builds the value of the {@code User-Agent} header.
    *
@@ -164,6 +917,12 @@ public abstract class HttpClient {
     return str;
   }
 
+  private static boolean tryAcquireRetry(RetryBudget budget) {
+    // Only consult the budget once the request is known to be retryable, so that requests that
+    // would not be retried anyway do not count as denied retries.
+    return (budget == null) || budget.tryAcquireRetry();
+  }
+
   private boolean shouldRetry(
       int numRetries, StripeException exception, StripeRequest request, StripeResponse response) {
     // Do not retry if we are out of retries.
@@ -178,6 +937,11 @@ public abstract class HttpClient {
       return true;
     }
 
+    // Do not resend a body read from a stream, which was consumed by the first attempt.
+    if ((request.content() != null) && !request.content().repeatable()) {
+      return false;
+    }
+
     // The API may ask us not to retry (eg; if doing so would be a no-op)
     // or advise us to retry (eg; in cases of lock timeouts); we defer to that.
     if ((response != null) && (response.headers() != null)) {
@@ -236,4 +1000,63 @@ public abstract class HttpClient {
 
     return delay;
   }
+
+  /** Lazily creates the executor shared by clients that were not given their own executor. */
+  private static class DefaultAsyncExecutorHolder {
+    private static final ThreadPoolExecutor INSTANCE;
+
+    static {
+      AtomicInteger threadCount = new AtomicInteger();
+      INSTANCE =
+          new ThreadPoolExecutor(
+              DEFAULT_ASYNC_THREADS,
+              DEFAULT_ASYNC_THREADS,
+              60,
+              TimeUnit.SECONDS,
+              new LinkedBlockingQueue<>(),
+              runnable -> {
+                Thread thread =
+                    new Thread(
+                        runnable,
+                        String.format("stripe-async-request-%d", threadCount.incrementAndGet()));
+                thread.setDaemon(true);
+                return thread;
+              });
+      INSTANCE.allowCoreThreadTimeOut(true);
+    }
+  }
+
+  /**
+   * Lazily creates the executor that runs the copies of hedged synchronous requests. Their callers
+   * are blocked waiting for them, so it starts a thread for each copy rather than queueing it.
+   */
+  private static class HedgingExecutorHolder {
+    private static final ThreadPoolExecutor INSTANCE;
+
+    static {
+      AtomicInteger threadCount = new AtomicInteger();
+      INSTANCE =
+          new ThreadPoolExecutor(
+              0,
+              Integer.MAX_VALUE,
+              60,
+              TimeUnit.SECONDS,
+              new SynchronousQueue<>(),
+              runnable -> {
+                Thread thread =
+                    new Thread(
+                        runnable,
+                        String.format("stripe-hedged-request-%d", threadCount.incrementAndGet()));
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+  }
+
+  /** The user agent headers, along with the application's information they were built from. */
+  @Value
+  private static class UserAgentHeaders {
+    Map<String, String> appInfo;
+    Map<String, List<String>> headers;
+  }
 }
@@ -4,13 +4,19 @@ import static java.util.Objects.requireNonNull;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.Collection;
 import java.util.UUID;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 import lombok.Value;
 import lombok.experimental.Accessors;
+import lombok.experimental.NonFinal;
 
 /**
  * Represents the content of an HTTP request, i.e. the request's body. This class also holds the
@@ -19,16 +25,35 @@ import lombok.experimental.Accessors;
  */
 @Value
 @Accessors(fluent = true)
+@EqualsAndHashCode(doNotUseGetters = true)
+@ToString(doNotUseGetters = true)
 public class HttpContent {
-  /** The request's content, as a byte array. */
-  byte[] byteArrayContent;
+  private static final String FORM_URL_ENCODED_CONTENT_TYPE =
+      String.format("application/x-www-form-urlencoded;charset=%s", ApiResource.CHARSET);
+
+  /** The request's content, as a byte array, or {@code null} until a streamed body is read. */
+  @Getter(AccessLevel.NONE)
+  @NonFinal
+  volatile byte[] byteArrayContent;
 
   /** The value of the {@code Content-Type} header. */
   String contentType;
 
+  /** The streamed body, or {@code null} if the content is held in memory. */
+  @Getter(AccessLevel.NONE)
+  @ToString.Exclude
+  MultipartBody streamedContent;
+
   private HttpContent(byte[] byteArrayContent, String contentType) {
     this.byteArrayContent = byteArrayContent;
     this.contentType = contentType;
+    this.streamedContent = null;
+  }
+
+  private HttpContent(MultipartBody streamedContent, String contentType) {
+    this.byteArrayContent = null;
+    this.contentType = contentType;
+    this.streamedContent = streamedContent;
   }
 
   /**
@@ -43,14 +68,89 @@ public class HttpContent {
       Collection<KeyValuePair<String, String>> nameValueCollection) throws IOException {
     requireNonNull(nameValueCollection);
 
-    return new HttpContent(
-        FormEncoder.createQueryString(nameValueCollection).getBytes(ApiResource.CHARSET),
-        String.format("application/x-www-form-urlencoded;charset=%s", ApiResource.CHARSET));
+    return buildEncodedFormContent(
+        FormEncoder.createQueryString(nameValueCollection).getBytes(ApiResource.CHARSET));
+  }
+
+  /**
+   * Builds a new HttpContent for a body already encoded using {@code
+   * application/x-www-form-urlencoded} MIME type.
+   *
+   * @param body the encoded body
+   * @return the HttpContent instance
+   */
+  static HttpContent buildEncodedFormContent(byte[] body) {
+    return new HttpContent(body, FORM_URL_ENCODED_CONTENT_TYPE);
+  }
+
+  /**
+   * The request's content, as a byte array. For streamed content, this reads the whole body into
+   * memory the first time it is called, and the body is then sent from memory.
+   */
+  public byte[] byteArrayContent() {
+    byte[] content = this.byteArrayContent;
+    if (content == null) {
+      synchronized (this) {
+        content = this.byteArrayContent;
+        if (content == null) {
+          ByteArrayOutputStream baos = new ByteArrayOutputStream();
+          try {
+            this.streamedContent.writeTo(baos);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+          content = baos.toByteArray();
+          this.byteArrayContent = content;
+        }
+      }
+    }
+    return content;
   }
 
   /** The request's content, as a string. */
   public String stringContent() {
-    return new String(this.byteArrayContent, ApiResource.CHARSET);
+    return new String(this.byteArrayContent(), ApiResource.CHARSET);
+  }
+
+  /**
+   * Whether the content is streamed, i.e. read from files or streams while it is sent, rather than
+   * held in memory. Clients should send streamed content with {@link #writeTo(OutputStream)}
+   * instead of {@link #byteArrayContent()}.
+   */
+  public boolean streamed() {
+    return (this.streamedContent != null) && (this.byteArrayContent == null);
+  }
+
+  /**
+   * The length of the content in bytes, or {@code -1} if it is not known before the content is
+   * sent, in which case clients should use chunked transfer encoding.
+   */
+  public long contentLength() {
+    byte[] content = this.byteArrayContent;
+    return (content != null) ? content.length : this.streamedContent.length();
+  }
+
+  /**
+   * Whether the content can be sent more than once. Content read from an {@link InputStream} can
+   * only be sent once.
+   */
+  boolean repeatable() {
+    return (this.byteArrayContent != null) || this.streamedContent.repeatable();
+  }
+
+  /**
+   * Writes the content to the given stream. Files are transferred without copying them into memory.
+   *
+   * @param out the stream to write to, which is not closed
+   * @throws IOException if reading the content or writing to the stream fails
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    byte[] content = this.byteArrayContent;
+    if (content != null) {
+      out.write(content);
+    } else {
+      this.streamedContent.writeTo(out);
+    }
   }
 
   /**
@@ -69,7 +169,9 @@ public class HttpContent {
 
   /**
    * Builds a new HttpContent for name/value tuples encoded using {@code multipart/form-data} MIME
-   * type.
+   * type. The content is streamed: {@link File} and {@link InputStream} values are read when the
+   * content is sent, and the length of the content is known unless a value is an {@link
+   * InputStream}.
    *
    * @param nameValueCollection the collection of name/value tuples to encode
    * @param boundary the boundary
@@ -81,31 +183,8 @@ public class HttpContent {
       throws IOException {
     requireNonNull(nameValueCollection);
 
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    MultipartProcessor multipartProcessor = null;
-    try {
-      multipartProcessor = new MultipartProcessor(baos, boundary, ApiResource.CHARSET);
-
-      for (KeyValuePair<String, Object> entry : nameValueCollection) {
-        String key = entry.getKey();
-        Object value = entry.getValue();
-
-        if (value instanceof File) {
-          File file = (File) value;
-          multipartProcessor.addFileField(key, file.getName(), new FileInputStream(file));
-        } else if (value instanceof InputStream) {
-          multipartProcessor.addFileField(key, "blob", (InputStream) value);
-        } else {
-          multipartProcessor.addFormField(key, (String) value);
-        }
-      }
-    } finally {
-      if (multipartProcessor != null) {
-        multipartProcessor.finish();
-      }
-    }
-
     return new HttpContent(
-        baos.toByteArray(), String.format("multipart/form-data; boundary=%s", boundary));
+        MultipartBody.build(nameValueCollection, boundary),
+        String.format("multipart/form-data; boundary=%s", boundary));
   }
 }
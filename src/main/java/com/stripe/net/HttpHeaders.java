@@ -2,10 +2,7 @@ package com.stripe.net;
 
 import static java.util.Objects.requireNonNull;
 
-import com.stripe.util.CaseInsensitiveMap;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -18,10 +15,10 @@ import lombok.EqualsAndHashCode;
  */
 @EqualsAndHashCode
 public class HttpHeaders {
-  private CaseInsensitiveMap<List<String>> headerMap;
+  private final HeaderStore headerStore;
 
-  private HttpHeaders(CaseInsensitiveMap<List<String>> headerMap) {
-    this.headerMap = headerMap;
+  private HttpHeaders(HeaderStore headerStore) {
+    this.headerStore = headerStore;
   }
 
   /**
@@ -33,7 +30,7 @@ public class HttpHeaders {
    */
   public static HttpHeaders of(Map<String, List<String>> headerMap) {
     requireNonNull(headerMap);
-    return new HttpHeaders(CaseInsensitiveMap.of(headerMap));
+    return new HttpHeaders(HeaderStore.EMPTY.with(headerMap));
   }
 
   /**
@@ -48,7 +45,7 @@ public class HttpHeaders {
   public HttpHeaders withAdditionalHeader(String name, String value) {
     requireNonNull(name);
     requireNonNull(value);
-    return this.withAdditionalHeader(name, Arrays.asList(value));
+    return this.withAdditionalHeader(name, Collections.singletonList(value));
   }
 
   /**
@@ -63,9 +60,7 @@ public class HttpHeaders {
   public HttpHeaders withAdditionalHeader(String name, List<String> values) {
     requireNonNull(name);
     requireNonNull(values);
-    Map<String, List<String>> headerMap = new HashMap<>();
-    headerMap.put(name, values);
-    return this.withAdditionalHeaders(headerMap);
+    return new HttpHeaders(this.headerStore.with(name, values));
   }
 
   /**
@@ -78,9 +73,7 @@ public class HttpHeaders {
    */
   public HttpHeaders withAdditionalHeaders(Map<String, List<String>> headerMap) {
     requireNonNull(headerMap);
-    Map<String, List<String>> newHeaderMap = new HashMap<>(this.map());
-    newHeaderMap.putAll(headerMap);
-    return HttpHeaders.of(newHeaderMap);
+    return new HttpHeaders(this.headerStore.with(headerMap));
   }
 
   /**
@@ -91,11 +84,9 @@ public class HttpHeaders {
    * @return a List of headers string values
    */
   public List<String> allValues(String name) {
-    if (this.headerMap.containsKey(name)) {
-      List<String> values = this.headerMap.get(name);
-      if ((values != null) && (values.size() > 0)) {
-        return Collections.unmodifiableList(values);
-      }
+    List<String> values = this.headerStore.get(name);
+    if ((values != null) && (values.size() > 0)) {
+      return values;
     }
     return Collections.emptyList();
   }
@@ -109,22 +100,20 @@ public class HttpHeaders {
    * @return an {@code Optional<String>} containing the first named header string value, if present
    */
   public Optional<String> firstValue(String name) {
-    if (this.headerMap.containsKey(name)) {
-      List<String> values = this.headerMap.get(name);
-      if ((values != null) && (values.size() > 0)) {
-        return Optional.of(values.get(0));
-      }
+    List<String> values = this.headerStore.get(name);
+    if ((values != null) && (values.size() > 0)) {
+      return Optional.of(values.get(0));
     }
     return Optional.empty();
   }
 
   /**
-   * Returns an unmodifiable Map view of this HttpHeaders.
+   * Returns an unmodifiable Map view of this HttpHeaders. Lookups in the map are case insensitive.
    *
    * @return the Map
    */
   public Map<String, List<String>> map() {
-    return Collections.unmodifiableMap(this.headerMap);
+    return this.headerStore;
   }
 
   /**
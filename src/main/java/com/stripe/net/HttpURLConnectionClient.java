@@ -2,14 +2,14 @@ package com.stripe.net;
 
 import com.stripe.Stripe;
 import com.stripe.exception.ApiConnectionException;
-import com.stripe.util.StreamUtils;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Authenticator;
 import java.net.HttpURLConnection;
 import java.net.PasswordAuthentication;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import lombok.Cleanup;
@@ -37,25 +37,18 @@ public class HttpURLConnectionClient extends HttpClient {
       // trigger the request
       int responseCode = conn.getResponseCode();
       HttpHeaders headers = HttpHeaders.of(conn.getHeaderFields());
-      String responseBody;
+      InputStream responseBody;
 
       if (responseCode >= 200 && responseCode < 300) {
-        responseBody = StreamUtils.readToEnd(conn.getInputStream(), ApiResource.CHARSET);
+        responseBody = conn.getInputStream();
       } else {
-        responseBody = StreamUtils.readToEnd(conn.getErrorStream(), ApiResource.CHARSET);
+        responseBody = conn.getErrorStream();
       }
 
-      return new StripeResponse(responseCode, headers, responseBody);
+      return this.createResponse(request, responseCode, headers, responseBody);
 
     } catch (IOException e) {
-      throw new ApiConnectionException(
-          String.format(
-              "IOException during API request to Stripe (%s): %s "
-                  + "Please check your internet connection and try again. If this problem persists,"
-                  + "you should check Stripe's service status at https://twitter.com/stripestatus,"
-                  + " or let us know at support@stripe.com.",
-              Stripe.getApiBase(), e.getMessage()),
-          e);
+      throw connectionException(e);
     } finally {
       if (conn != null) {
         conn.disconnect();
@@ -63,14 +56,63 @@ public class HttpURLConnectionClient extends HttpClient {
     }
   }
 
-  static HttpHeaders getHeaders(StripeRequest request) {
-    Map<String, List<String>> userAgentHeadersMap = new HashMap<>();
+  /**
+   * Sends the given request to Stripe's API and returns the response as soon as its headers are
+   * received. The connection is closed when the response is closed.
+   *
+   * @param request the request
+   * @return the response
+   * @throws ApiConnectionException if an error occurs when sending or receiving
+   */
+  @Override
+  public StripeResponseStream requestStream(StripeRequest request) throws ApiConnectionException {
+    HttpURLConnection conn = null;
 
-    userAgentHeadersMap.put("User-Agent", Arrays.asList(buildUserAgentString()));
-    userAgentHeadersMap.put(
-        "X-Stripe-Client-User-Agent", Arrays.asList(buildXStripeClientUserAgentString()));
+    try {
+      conn = createStripeConnection(request);
 
-    return request.headers().withAdditionalHeaders(userAgentHeadersMap);
+      // trigger the request
+      int responseCode = conn.getResponseCode();
+      HttpHeaders headers = HttpHeaders.of(conn.getHeaderFields());
+      InputStream responseBody;
+
+      if (responseCode >= 200 && responseCode < 300) {
+        responseBody = conn.getInputStream();
+      } else {
+        responseBody = conn.getErrorStream();
+      }
+      if (responseBody == null) {
+        responseBody = new ByteArrayInputStream(new byte[0]);
+      }
+
+      // The response now owns the connection.
+      HttpURLConnection connection = conn;
+      conn = null;
+      return new StripeResponseStream(
+          responseCode,
+          headers,
+          new FilterInputStream(responseBody) {
+            @Override
+            public void close() throws IOException {
+              try {
+                super.close();
+              } finally {
+                connection.disconnect();
+              }
+            }
+          });
+
+    } catch (IOException e) {
+      throw connectionException(e);
+    } finally {
+      if (conn != null) {
+        conn.disconnect();
+      }
+    }
+  }
+
+  static HttpHeaders getHeaders(StripeRequest request) {
+    return request.headers().withAdditionalHeaders(getUserAgentHeaders());
   }
 
   private static HttpURLConnection createStripeConnection(StripeRequest request)
@@ -103,8 +145,19 @@ public class HttpURLConnectionClient extends HttpClient {
       conn.setDoOutput(true);
       conn.setRequestProperty("Content-Type", request.content().contentType());
 
+      HttpContent content = request.content();
+      if (content.streamed()) {
+        // Send the body as it is read, instead of letting the connection buffer all of it.
+        long contentLength = content.contentLength();
+        if (contentLength >= 0) {
+          conn.setFixedLengthStreamingMode(contentLength);
+        } else {
+          conn.setChunkedStreamingMode(0);
+        }
+      }
+
       @Cleanup OutputStream output = conn.getOutputStream();
-      output.write(request.content().byteArrayContent());
+      content.writeTo(output);
     }
 
     return conn;
@@ -2,6 +2,7 @@ package com.stripe.net;
 
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
+import com.stripe.exception.ApiConnectionException;
 import com.stripe.exception.ApiException;
 import com.stripe.exception.AuthenticationException;
 import com.stripe.exception.CardException;
@@ -20,11 +21,16 @@ import com.stripe.model.StripeError;
 import com.stripe.model.StripeObject;
 import com.stripe.model.StripeObjectInterface;
 import com.stripe.model.oauth.OAuthError;
+import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class LiveStripeResponseGetter implements StripeResponseGetter {
   private final HttpClient httpClient;
 
+  private final RequestCoalescer requestCoalescer;
+
   /**
    * Initializes a new instance of the {@link LiveStripeResponseGetter} class with default
    * parameters.
@@ -39,7 +45,19 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
    * @param httpClient the HTTP client to use
    */
   public LiveStripeResponseGetter(HttpClient httpClient) {
+    this(httpClient, null);
+  }
+
+  /**
+   * Initializes a new instance of the {@link LiveStripeResponseGetter} class.
+   *
+   * @param httpClient the HTTP client to use
+   * @param requestCoalescer the coalescer used to share the responses of concurrent identical
+   *     {@code GET} requests, or {@code null} to send every request
+   */
+  public LiveStripeResponseGetter(HttpClient httpClient, RequestCoalescer requestCoalescer) {
     this.httpClient = (httpClient != null) ? httpClient : buildDefaultHttpClient();
+    this.requestCoalescer = requestCoalescer;
   }
 
   @Override
@@ -50,22 +68,89 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
       Class<T> clazz,
       RequestOptions options)
       throws StripeException {
-    StripeRequest request = new StripeRequest(method, url, params, options);
-    StripeResponse response = httpClient.requestWithRetries(request);
+    StripeRequest request = new StripeRequest(method, url, params, options).withResponseType(clazz);
+    StripeResponse response =
+        (this.requestCoalescer != null)
+            ? this.requestCoalescer.request(request, this.httpClient)
+            : this.httpClient.requestWithRetries(request);
+
+    return processResponse(response, clazz);
+  }
+
+  @Override
+  public <T extends StripeObjectInterface> CompletableFuture<T> requestAsync(
+      ApiResource.RequestMethod method,
+      String url,
+      Map<String, Object> params,
+      Class<T> clazz,
+      RequestOptions options) {
+    StripeRequest request;
+    try {
+      request = new StripeRequest(method, url, params, options).withResponseType(clazz);
+    } catch (StripeException e) {
+      CompletableFuture<T> future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+      return future;
+    }
+
+    CompletableFuture<StripeResponse> responseFuture =
+        (this.requestCoalescer != null)
+            ? this.requestCoalescer.requestAsync(request, this.httpClient)
+            : this.httpClient.requestWithRetriesAsync(request);
+
+    return responseFuture.thenApply(
+        response -> {
+          try {
+            return processResponse(response, clazz);
+          } catch (StripeException e) {
+            throw new CompletionException(e);
+          }
+        });
+  }
+
+  @Override
+  public StripeResponseStream requestStream(StripeRequest request) throws StripeException {
+    StripeResponseStream responseStream = this.httpClient.requestStreamWithRetries(request);
+
+    int responseCode = responseStream.code();
+    if (responseCode < 200 || responseCode >= 300) {
+      StripeResponse response;
+      try {
+        response = responseStream.bufferBody();
+      } catch (IOException e) {
+        throw new ApiConnectionException(
+            String.format(
+                "IOException while reading error response from Stripe (%s): %s",
+                request.url(), e.getMessage()),
+            e);
+      }
+      handleApiError(response);
+    }
+
+    return responseStream;
+  }
 
+  private static <T extends StripeObjectInterface> T processResponse(
+      StripeResponse response, Class<T> clazz) throws StripeException {
     int responseCode = response.code();
-    String responseBody = response.body();
     String requestId = response.requestId();
 
     if (responseCode < 200 || responseCode >= 300) {
       handleApiError(response);
     }
 
-    T resource = null;
-    try {
-      resource = ApiResource.GSON.fromJson(responseBody, clazz);
-    } catch (JsonSyntaxException e) {
-      raiseMalformedJsonError(responseBody, responseCode, requestId);
+    // The client may have deserialized the response while reading it.
+    T resource = response.takeDeserializedBody(clazz);
+    if (resource == null) {
+      String responseBody = response.body();
+      try {
+        resource = ApiResource.GSON.fromJson(responseBody, clazz);
+      } catch (JsonSyntaxException e) {
+        raiseMalformedJsonError(responseBody, responseCode, requestId);
+      }
+      if (resource == null) {
+        raiseMalformedJsonError(responseBody, responseCode, requestId);
+      }
     }
 
     resource.setLastResponse(response);
@@ -0,0 +1,268 @@
+package com.stripe.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The body of a request encoded using {@code multipart/form-data} MIME type, whose files are read
+ * while the body is sent rather than copied into memory beforehand.
+ *
+ * <p>The body is a sequence of parts: the encoded form fields and part headers, which are kept in
+ * memory, and the files and streams, which are only referenced. {@link File} parts are transferred
+ * from a {@link FileChannel} and can be sent any number of times. {@link InputStream} parts are
+ * read once, so a body with such a part can only be sent once and has no known length.
+ */
+final class MultipartBody {
+  private static final int BUFFER_SIZE = 8192;
+
+  private final List<Part> parts;
+
+  private final long length;
+
+  private final boolean repeatable;
+
+  private boolean written;
+
+  private MultipartBody(List<Part> parts) {
+    this.parts = parts;
+    long length = 0;
+    boolean repeatable = true;
+    for (Part part : parts) {
+      long partLength = part.length();
+      length = (length < 0 || partLength < 0) ? -1 : length + partLength;
+      repeatable &= part.repeatable();
+    }
+    this.length = length;
+    this.repeatable = repeatable;
+  }
+
+  /**
+   * Builds the body for the given name/value tuples. Values are either strings, {@link File}s or
+   * {@link InputStream}s.
+   *
+   * @param nameValueCollection the collection of name/value tuples to encode
+   * @param boundary the boundary
+   * @return the body
+   */
+  static MultipartBody build(
+      Collection<KeyValuePair<String, Object>> nameValueCollection, String boundary)
+      throws IOException {
+    PartCollector collector = new PartCollector();
+    MultipartProcessor multipartProcessor = null;
+    try {
+      multipartProcessor = new MultipartProcessor(collector, boundary, ApiResource.CHARSET);
+
+      for (KeyValuePair<String, Object> entry : nameValueCollection) {
+        String key = entry.getKey();
+        Object value = entry.getValue();
+
+        if (value instanceof File) {
+          File file = (File) value;
+          multipartProcessor.startFileField(key, file.getName());
+          if (file.isFile()) {
+            collector.addPart(new FilePart(file, file.length()));
+          } else {
+            // Pipes and devices have no length to transfer; this also reports missing files.
+            collector.addPart(new StreamPart(new FileInputStream(file)));
+          }
+          multipartProcessor.endFileField();
+        } else if (value instanceof InputStream) {
+          multipartProcessor.startFileField(key, "blob");
+          collector.addPart(new StreamPart((InputStream) value));
+          multipartProcessor.endFileField();
+        } else {
+          multipartProcessor.addFormField(key, (String) value);
+        }
+      }
+    } finally {
+      if (multipartProcessor != null) {
+        multipartProcessor.finish();
+      }
+    }
+
+    return new MultipartBody(collector.parts());
+  }
+
+  /** The length of the body in bytes, or {@code -1} if it is unknown. */
+  long length() {
+    return this.length;
+  }
+
+  /** Whether the body can be sent more than once. */
+  boolean repeatable() {
+    return this.repeatable;
+  }
+
+  /**
+   * Writes the body to the given stream.
+   *
+   * @param out the stream to write to, which is not closed
+   * @throws IOException if reading a part or writing to the stream fails, or if the body has
+   *     already been written and cannot be written again
+   */
+  void writeTo(OutputStream out) throws IOException {
+    synchronized (this) {
+      if (this.written && !this.repeatable) {
+        throw new IOException(
+            "The request body cannot be sent again because it is read from an InputStream.");
+      }
+      this.written = true;
+    }
+    for (Part part : this.parts) {
+      part.writeTo(out);
+    }
+  }
+
+  private interface Part {
+    long length();
+
+    boolean repeatable();
+
+    void writeTo(OutputStream out) throws IOException;
+  }
+
+  /** Encoded form fields and part headers. */
+  private static final class BytesPart implements Part {
+    private final byte[] bytes;
+
+    BytesPart(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    @Override
+    public long length() {
+      return this.bytes.length;
+    }
+
+    @Override
+    public boolean repeatable() {
+      return true;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+      out.write(this.bytes);
+    }
+  }
+
+  /**
+   * The content of a file, transferred by the file channel to the output stream. The length is
+   * taken when the body is built, so that it can be sent in the {@code Content-Length} header.
+   */
+  private static final class FilePart implements Part {
+    private final File file;
+    private final long length;
+
+    FilePart(File file, long length) {
+      this.file = file;
+      this.length = length;
+    }
+
+    @Override
+    public long length() {
+      return this.length;
+    }
+
+    @Override
+    public boolean repeatable() {
+      return true;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+      try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+        if (channel.size() < this.length) {
+          throw new IOException(
+              String.format("%s was truncated after the request was built", this.file));
+        }
+        WritableByteChannel target = Channels.newChannel(out);
+        long position = 0;
+        while (position < this.length) {
+          long transferred = channel.transferTo(position, this.length - position, target);
+          if (transferred == 0 && channel.size() <= position) {
+            throw new IOException(
+                String.format("%s was truncated while the request was sent", this.file));
+          }
+          position += transferred;
+        }
+      }
+    }
+  }
+
+  /** The content of a stream, which is read and closed the first time the body is written. */
+  private static final class StreamPart implements Part {
+    private final InputStream inputStream;
+
+    StreamPart(InputStream inputStream) {
+      this.inputStream = inputStream;
+    }
+
+    @Override
+    public long length() {
+      return -1;
+    }
+
+    @Override
+    public boolean repeatable() {
+      return false;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+      try (InputStream in = this.inputStream) {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          out.write(buffer, 0, read);
+        }
+      }
+    }
+  }
+
+  /**
+   * Collects what {@link MultipartProcessor} writes into byte parts, cut wherever a file or stream
+   * part is added.
+   */
+  private static final class PartCollector extends OutputStream {
+    private final List<Part> parts = new ArrayList<>();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    @Override
+    public void write(int b) {
+      this.pending.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      this.pending.write(b, off, len);
+    }
+
+    void addPart(Part part) {
+      this.flushPending();
+      this.parts.add(part);
+    }
+
+    List<Part> parts() {
+      this.flushPending();
+      return this.parts;
+    }
+
+    private void flushPending() {
+      if (this.pending.size() > 0) {
+        this.parts.add(new BytesPart(this.pending.toByteArray()));
+        this.pending.reset();
+      }
+    }
+  }
+}
@@ -48,6 +48,19 @@ public class MultipartProcessor {
    */
   public void addFileField(String name, String fileName, InputStream inputStream)
       throws IOException {
+    startFileField(name, fileName);
+    streamToOutput(inputStream);
+    endFileField();
+  }
+
+  /**
+   * Writes the headers of a file field, after which the caller writes the file's bytes to the
+   * output stream and calls {@link #endFileField()}.
+   *
+   * @param name Field name
+   * @param fileName Name of the "file" being uploaded.
+   */
+  void startFileField(String name, String fileName) {
     writer.append("--").append(boundary).append(LINE_BREAK);
     writer
         .append("Content-Disposition: form-data; name=\"")
@@ -62,9 +75,10 @@ public class MultipartProcessor {
     writer.append("Content-Transfer-Encoding: binary").append(LINE_BREAK);
     writer.append(LINE_BREAK);
     writer.flush();
+  }
 
-    streamToOutput(inputStream);
-
+  /** Ends a file field started with {@link #startFileField(String, String)}. */
+  void endFileField() {
     writer.append(LINE_BREAK);
     writer.flush();
   }
@@ -0,0 +1,256 @@
+package com.stripe.net;
+
+import com.stripe.Stripe;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.PasswordAuthentication;
+import java.net.Proxy;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/** A persistent connection to a single route, leased from a {@link ConnectionPool}. */
+class PooledConnection {
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * Minimum time a connection must have been idle before {@link #isStale()} probes it with a
+   * blocking read. A connection closed by the server more recently is detected when the request
+   * sent on it fails, and the request is sent again.
+   */
+  static final long STALE_PROBE_MIN_IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  @Getter(AccessLevel.PACKAGE)
+  private final ConnectionPool.Route route;
+
+  private final Socket socket;
+
+  @Getter(AccessLevel.PACKAGE)
+  private final InputStream input;
+
+  @Getter(AccessLevel.PACKAGE)
+  private final OutputStream output;
+
+  /** Value of {@link System#nanoTime()} when the connection was last returned to the pool. */
+  @Getter(AccessLevel.PACKAGE)
+  private long lastUsed;
+
+  /** Whether the connection has already served at least one request. */
+  private boolean reused;
+
+  private PooledConnection(ConnectionPool.Route route, Socket socket) throws IOException {
+    this.route = route;
+    this.socket = socket;
+    this.input = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+    this.output = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+    this.lastUsed = System.nanoTime();
+  }
+
+  /**
+   * Opens a new connection to the given route, tunneling through the route's proxy and performing
+   * the TLS handshake if needed.
+   *
+   * @param route the route to connect to
+   * @param connectTimeout the connect timeout, in milliseconds
+   * @return the new connection
+   * @throws IOException if the connection cannot be established
+   */
+  static PooledConnection open(ConnectionPool.Route route, int connectTimeout) throws IOException {
+    Proxy proxy = route.getProxy();
+    boolean httpProxy = proxy.type() == Proxy.Type.HTTP;
+
+    Socket socket = httpProxy ? new Socket() : new Socket(proxy);
+    try {
+      socket.setTcpNoDelay(true);
+      socket.setKeepAlive(true);
+      if (httpProxy) {
+        socket.connect(proxy.address(), connectTimeout);
+      } else {
+        socket.connect(new InetSocketAddress(route.getHost(), route.getPort()), connectTimeout);
+      }
+
+      if (httpProxy && route.isSecure()) {
+        openTunnel(socket, route, connectTimeout);
+      }
+
+      if (route.isSecure()) {
+        socket = startTls(socket, route, connectTimeout);
+      }
+
+      return new PooledConnection(route, socket);
+    } catch (IOException | RuntimeException e) {
+      closeQuietly(socket);
+      throw e;
+    }
+  }
+
+  /** Sets the timeout used when waiting for data from the server, in milliseconds. */
+  void setReadTimeout(int timeout) throws IOException {
+    this.socket.setSoTimeout(timeout);
+  }
+
+  /**
+   * Checks whether the server has closed the connection while it was idle. Unread data is detected
+   * without blocking; the end of the stream is only detected by briefly blocking to read a single
+   * byte, which is skipped unless the connection has been idle for at least {@link
+   * #STALE_PROBE_MIN_IDLE_NANOS}.
+   *
+   * @return {@code true} if the connection is unusable, {@code false} otherwise
+   */
+  boolean isStale() {
+    if (this.socket.isClosed() || this.socket.isInputShutdown() || this.socket.isOutputShutdown()) {
+      return true;
+    }
+
+    try {
+      // An idle connection should never have unread data. If it does, the previous response was
+      // not fully consumed and the connection cannot be reused safely.
+      if (this.input.available() > 0) {
+        return true;
+      }
+      if (System.nanoTime() - this.lastUsed < STALE_PROBE_MIN_IDLE_NANOS) {
+        return false;
+      }
+    } catch (IOException e) {
+      return true;
+    }
+
+    try {
+      int previousTimeout = this.socket.getSoTimeout();
+      try {
+        this.socket.setSoTimeout(1);
+        this.input.mark(1);
+        int b = this.input.read();
+        if (b == -1) {
+          return true;
+        }
+        // Unread data that had not arrived yet when available() was checked.
+        this.input.reset();
+        return true;
+      } finally {
+        this.socket.setSoTimeout(previousTimeout);
+      }
+    } catch (SocketTimeoutException e) {
+      return false;
+    } catch (IOException e) {
+      return true;
+    }
+  }
+
+  boolean isReused() {
+    return this.reused;
+  }
+
+  void markReused() {
+    this.reused = true;
+  }
+
+  void touch() {
+    this.lastUsed = System.nanoTime();
+  }
+
+  void close() {
+    closeQuietly(this.socket);
+  }
+
+  /**
+   * Returns the value of the {@code Proxy-Authorization} header to send to an HTTP proxy, or {@code
+   * null} if no proxy credentials were configured.
+   */
+  static String proxyAuthorization() {
+    PasswordAuthentication credential = Stripe.getProxyCredential();
+    if (credential == null) {
+      return null;
+    }
+
+    String userPass = credential.getUserName() + ":" + new String(credential.getPassword());
+    return "Basic "
+        + Base64.getEncoder().encodeToString(userPass.getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+  private static void openTunnel(Socket socket, ConnectionPool.Route route, int timeout)
+      throws IOException {
+    String authority = route.getHost() + ":" + route.getPort();
+    StringBuilder sb = new StringBuilder();
+    sb.append("CONNECT ").append(authority).append(" HTTP/1.1\r\n");
+    sb.append("Host: ").append(authority).append("\r\n");
+    String authorization = proxyAuthorization();
+    if (authorization != null) {
+      sb.append("Proxy-Authorization: ").append(authorization).append("\r\n");
+    }
+    sb.append("\r\n");
+
+    OutputStream out = socket.getOutputStream();
+    out.write(sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+    out.flush();
+
+    // Read the proxy's response byte by byte so that no bytes belonging to the TLS handshake are
+    // consumed.
+    socket.setSoTimeout(timeout);
+    InputStream in = socket.getInputStream();
+    String statusLine = readTunnelLine(in);
+    if (statusLine == null) {
+      throw new IOException("Proxy closed the connection while establishing a tunnel");
+    }
+    String[] parts = statusLine.split(" ", 3);
+    if (parts.length < 2 || !"200".equals(parts[1])) {
+      throw new IOException(String.format("Unable to tunnel through proxy: %s", statusLine));
+    }
+    String line;
+    while ((line = readTunnelLine(in)) != null && !line.isEmpty()) {
+      // Skip the proxy's response headers
+    }
+  }
+
+  private static String readTunnelLine(InputStream in) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    int b;
+    while ((b = in.read()) != -1) {
+      if (b == '\n') {
+        int length = sb.length();
+        if (length > 0 && sb.charAt(length - 1) == '\r') {
+          sb.setLength(length - 1);
+        }
+        return sb.toString();
+      }
+      sb.append((char) b);
+    }
+    return (sb.length() > 0) ? sb.toString() : null;
+  }
+
+  private static Socket startTls(Socket socket, ConnectionPool.Route route, int timeout)
+      throws IOException {
+    SSLSocket sslSocket =
+        (SSLSocket)
+            HttpsURLConnection.getDefaultSSLSocketFactory()
+                .createSocket(socket, route.getHost(), route.getPort(), true);
+
+    // Verify that the server's certificate matches the host name, as HttpsURLConnection would.
+    SSLParameters parameters = sslSocket.getSSLParameters();
+    parameters.setEndpointIdentificationAlgorithm("HTTPS");
+    sslSocket.setSSLParameters(parameters);
+
+    sslSocket.setSoTimeout(timeout);
+    sslSocket.startHandshake();
+    return sslSocket;
+  }
+
+  private static void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // ignore
+    }
+  }
+}
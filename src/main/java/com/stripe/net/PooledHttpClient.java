@@ -0,0 +1,553 @@
+package com.stripe.net;
+
+import com.stripe.Stripe;
+import com.stripe.exception.ApiConnectionException;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Proxy;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An {@link HttpClient} that keeps connections to Stripe's API open between requests.
+ *
+ * <p>{@link HttpURLConnectionClient} disconnects after every request, so each API call pays for a
+ * new TCP connection and TLS handshake. This client instead speaks HTTP/1.1 over sockets leased
+ * from a {@link ConnectionPool}, and returns each connection to the pool once the response has been
+ * fully read. Bodies are read from the connection as the caller consumes them, so streamed
+ * downloads are never held in memory.
+ *
+ * <pre>{@code
+ * PooledHttpClient httpClient = new PooledHttpClient(new ConnectionPool(64, 32, Duration.ofSeconds(30)));
+ * ApiResource.setStripeResponseGetter(new LiveStripeResponseGetter(httpClient));
+ * }</pre>
+ */
+public class PooledHttpClient extends HttpClient {
+  private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+  private final ConnectionPool connectionPool;
+
+  /** Initializes a new instance of the {@link PooledHttpClient} with a default pool. */
+  public PooledHttpClient() {
+    this(new ConnectionPool());
+  }
+
+  /**
+   * Initializes a new instance of the {@link PooledHttpClient}.
+   *
+   * @param connectionPool the pool to lease connections from
+   */
+  public PooledHttpClient(ConnectionPool connectionPool) {
+    super();
+    if (connectionPool == null) {
+      throw new IllegalArgumentException("connectionPool must not be null");
+    }
+    this.connectionPool = connectionPool;
+  }
+
+  /**
+   * Returns the connection pool used by this client.
+   *
+   * @return the connection pool
+   */
+  public ConnectionPool getConnectionPool() {
+    return this.connectionPool;
+  }
+
+  /**
+   * Returns a snapshot of the connection pool's statistics.
+   *
+   * @return the connection pool's statistics
+   */
+  public ConnectionPool.Stats getPoolStats() {
+    return this.connectionPool.getStats();
+  }
+
+  /**
+   * Sends the given request to Stripe's API.
+   *
+   * @param request the request
+   * @return the response
+   * @throws ApiConnectionException if an error occurs when sending or receiving
+   */
+  @Override
+  public StripeResponse request(StripeRequest request) throws ApiConnectionException {
+    try {
+      StripeResponseStream responseStream = this.exchange(request);
+      try {
+        return this.createResponse(
+            request, responseStream.code(), responseStream.headers(), responseStream.body());
+      } finally {
+        responseStream.close();
+      }
+    } catch (IOException e) {
+      throw connectionException(e);
+    }
+  }
+
+  /**
+   * Sends the given request to Stripe's API without reading the response's body. The body is read
+   * from the connection as it is consumed; the connection goes back to the pool once the body was
+   * read to its end and closed, and is closed if the body is closed before its end.
+   *
+   * @param request the request
+   * @return the response
+   * @throws ApiConnectionException if an error occurs when sending or receiving
+   */
+  @Override
+  public StripeResponseStream requestStream(StripeRequest request) throws ApiConnectionException {
+    try {
+      return this.exchange(request);
+    } catch (IOException e) {
+      throw connectionException(e);
+    }
+  }
+
+  /**
+   * Sends the request over a pooled connection and reads the response's headers. The returned body
+   * owns the connection and releases it to the pool when closed.
+   */
+  private StripeResponseStream exchange(StripeRequest request) throws IOException {
+    Proxy proxy = Stripe.getConnectionProxy();
+    ConnectionPool.Route route = ConnectionPool.Route.of(request.url(), proxy);
+
+    while (true) {
+      PooledConnection conn =
+          this.connectionPool.lease(route, request.options().getConnectTimeout());
+      Exchange exchange = new Exchange(this.connectionPool, conn);
+
+      try {
+        return exchange.execute(request);
+      } catch (IOException e) {
+        this.connectionPool.discard(conn);
+        // The server may close an idle connection at any time. If a reused connection turns out
+        // to have been closed, send the request again on another connection. This is safe even
+        // for POST requests since they always carry an idempotency key, but not for a body read
+        // from a stream, which the first attempt may have consumed.
+        HttpContent content = request.content();
+        boolean repeatable = (content == null) || content.repeatable();
+        if (repeatable && conn.isReused() && exchange.failedOnClosedConnection(e)) {
+          continue;
+        }
+        throw e;
+      } catch (RuntimeException e) {
+        this.connectionPool.discard(conn);
+        throw e;
+      }
+    }
+  }
+
+  /** A single request/response exchange over a pooled connection. */
+  private static class Exchange {
+    /**
+     * The number of unread bytes a closed body may still read to reach its end, so that its
+     * connection can be reused.
+     */
+    private static final long MAX_DRAIN_BYTES = 64 * 1024;
+
+    private final ConnectionPool pool;
+    private final PooledConnection conn;
+
+    /** Whether the request has been written and flushed to the connection. */
+    boolean requestSent;
+
+    /** Whether at least one byte of the response has been received. */
+    boolean responseStarted;
+
+    /** Whether the connection can be reused once the response has been read. */
+    boolean keepAlive;
+
+    Exchange(ConnectionPool pool, PooledConnection conn) {
+      this.pool = pool;
+      this.conn = conn;
+    }
+
+    /**
+     * Returns whether the exchange failed because the server had closed the connection: writing the
+     * request failed, or the connection was closed or reset before any byte of the response was
+     * received. A timeout is not such a failure, since the server may still be processing the
+     * request.
+     */
+    boolean failedOnClosedConnection(IOException e) {
+      if (this.responseStarted || e instanceof SocketTimeoutException) {
+        return false;
+      }
+      return !this.requestSent || e instanceof EOFException || e instanceof SocketException;
+    }
+
+    StripeResponseStream execute(StripeRequest request) throws IOException {
+      this.conn.setReadTimeout(request.options().getReadTimeout());
+      this.writeRequest(request);
+      this.requestSent = true;
+
+      InputStream in = this.conn.getInput();
+      String statusLine;
+      int code;
+      do {
+        statusLine = this.readLine(in);
+        if (statusLine == null) {
+          throw new EOFException("Unexpected end of stream: no response received");
+        }
+        code = parseStatusCode(statusLine);
+        if (code >= 100 && code < 200) {
+          // Skip informational responses (e.g. 100 Continue) and their headers
+          while (!this.readLine(in).isEmpty()) {}
+        }
+      } while (code >= 100 && code < 200);
+
+      Map<String, List<String>> headerMap = this.readHeaders(in);
+      HttpHeaders headers = HttpHeaders.of(headerMap);
+
+      boolean http10 = statusLine.startsWith("HTTP/1.0");
+      String connection = headers.firstValue("Connection").orElse("").toLowerCase(Locale.ROOT);
+      this.keepAlive = http10 ? connection.contains("keep-alive") : !connection.contains("close");
+
+      return new StripeResponseStream(code, headers, this.openBody(in, code, headers));
+    }
+
+    private void writeRequest(StripeRequest request) throws IOException {
+      URL url = request.url();
+      ConnectionPool.Route route = this.conn.getRoute();
+      boolean plainHttpProxy = route.getProxy().type() == Proxy.Type.HTTP && !route.isSecure();
+
+      String target;
+      if (plainHttpProxy) {
+        target = url.toString();
+      } else {
+        String path = url.getPath().isEmpty() ? "/" : url.getPath();
+        target = (url.getQuery() != null) ? path + "?" + url.getQuery() : path;
+      }
+
+      StringBuilder sb = new StringBuilder();
+      sb.append(request.method().name()).append(' ').append(target).append(" HTTP/1.1\r\n");
+
+      String host = url.getHost();
+      if (url.getPort() != -1 && url.getPort() != url.getDefaultPort()) {
+        host += ":" + url.getPort();
+      }
+      appendHeader(sb, "Host", host);
+
+      for (Map.Entry<String, List<String>> entry :
+          HttpURLConnectionClient.getHeaders(request).map().entrySet()) {
+        appendHeader(sb, entry.getKey(), String.join(",", entry.getValue()));
+      }
+
+      if (plainHttpProxy) {
+        String authorization = PooledConnection.proxyAuthorization();
+        if (authorization != null) {
+          appendHeader(sb, "Proxy-Authorization", authorization);
+        }
+      }
+
+      HttpContent content = request.content();
+      long contentLength = -1;
+      if (content != null) {
+        contentLength = content.contentLength();
+        appendHeader(sb, "Content-Type", content.contentType());
+        if (contentLength >= 0) {
+          appendHeader(sb, "Content-Length", Long.toString(contentLength));
+        } else {
+          appendHeader(sb, "Transfer-Encoding", "chunked");
+        }
+      }
+      sb.append("\r\n");
+
+      OutputStream out = this.conn.getOutput();
+      out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+      if (content != null) {
+        if (contentLength >= 0) {
+          content.writeTo(out);
+        } else {
+          ChunkedOutputStream chunked = new ChunkedOutputStream(out);
+          content.writeTo(chunked);
+          chunked.finish();
+        }
+      }
+      out.flush();
+    }
+
+    private Map<String, List<String>> readHeaders(InputStream in) throws IOException {
+      Map<String, List<String>> headerMap = new LinkedHashMap<>();
+      String line;
+      while (!(line = this.readLine(in)).isEmpty()) {
+        int colon = line.indexOf(':');
+        if (colon <= 0) {
+          throw new IOException(String.format("Malformed response header: %s", line));
+        }
+        String name = line.substring(0, colon).trim();
+        String value = line.substring(colon + 1).trim();
+        List<String> values = null;
+        for (Map.Entry<String, List<String>> entry : headerMap.entrySet()) {
+          if (entry.getKey().equalsIgnoreCase(name)) {
+            values = entry.getValue();
+            break;
+          }
+        }
+        if (values == null) {
+          values = new ArrayList<>(1);
+          headerMap.put(name, values);
+        }
+        values.add(value);
+      }
+      return headerMap;
+    }
+
+    private ResponseBody openBody(InputStream in, int code, HttpHeaders headers)
+        throws IOException {
+      if (code == 204 || code == 304) {
+        return new ResponseBody(in, ResponseBody.FIXED_LENGTH, 0);
+      }
+
+      String transferEncoding =
+          headers.firstValue("Transfer-Encoding").orElse("").toLowerCase(Locale.ROOT);
+      if (transferEncoding.contains("chunked")) {
+        return new ResponseBody(in, ResponseBody.CHUNKED, 0);
+      }
+
+      String contentLength = headers.firstValue("Content-Length").orElse(null);
+      if (contentLength != null) {
+        long length;
+        try {
+          length = Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+          throw new IOException(String.format("Invalid Content-Length: %s", contentLength), e);
+        }
+        if (length < 0) {
+          throw new IOException(String.format("Invalid Content-Length: %s", contentLength));
+        }
+        return new ResponseBody(in, ResponseBody.FIXED_LENGTH, length);
+      }
+
+      // No framing information: the body extends until the server closes the connection.
+      this.keepAlive = false;
+      return new ResponseBody(in, ResponseBody.UNTIL_CLOSE, 0);
+    }
+
+    /**
+     * The body of a response, read from the connection as it is consumed according to its framing.
+     * Closing it releases the connection: back to the pool if the body was read to its end, or
+     * after reading the few bytes left, and otherwise by closing it.
+     */
+    private class ResponseBody extends InputStream {
+      static final int FIXED_LENGTH = 0;
+      static final int CHUNKED = 1;
+      static final int UNTIL_CLOSE = 2;
+
+      private final InputStream in;
+      private final int framing;
+
+      /** The number of bytes left in the body, or in the current chunk of a chunked body. */
+      private long remaining;
+
+      private boolean firstChunk = true;
+      private boolean done;
+      private boolean failed;
+      private boolean closed;
+
+      ResponseBody(InputStream in, int framing, long length) {
+        this.in = in;
+        this.framing = framing;
+        this.remaining = length;
+        this.done = (framing == FIXED_LENGTH) && (length == 0);
+      }
+
+      @Override
+      public int read() throws IOException {
+        byte[] b = new byte[1];
+        int read;
+        while ((read = this.read(b, 0, 1)) == 0) {}
+        return (read == -1) ? -1 : (b[0] & 0xff);
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        if (this.closed) {
+          throw new IOException("Response body is closed");
+        }
+        if (len == 0) {
+          return 0;
+        }
+        try {
+          return this.readFraming(b, off, len);
+        } catch (IOException | RuntimeException e) {
+          this.failed = true;
+          throw e;
+        }
+      }
+
+      private int readFraming(byte[] b, int off, int len) throws IOException {
+        if (this.done) {
+          return -1;
+        }
+
+        if (this.framing == UNTIL_CLOSE) {
+          int read = this.in.read(b, off, len);
+          if (read == -1) {
+            this.done = true;
+          }
+          return read;
+        }
+
+        if (this.remaining == 0) {
+          // only chunked bodies get here: start the next chunk
+          if (!this.firstChunk && !Exchange.this.readLine(this.in).isEmpty()) {
+            throw new IOException("Malformed chunked body");
+          }
+          this.firstChunk = false;
+          this.remaining = readChunkSize(Exchange.this.readLine(this.in));
+          if (this.remaining == 0) {
+            // Skip trailers
+            while (!Exchange.this.readLine(this.in).isEmpty()) {}
+            this.done = true;
+            return -1;
+          }
+        }
+
+        int read = this.in.read(b, off, (int) Math.min(len, this.remaining));
+        if (read == -1) {
+          throw new EOFException("Unexpected end of stream while reading response body");
+        }
+        this.remaining -= read;
+        if (this.remaining == 0 && this.framing == FIXED_LENGTH) {
+          this.done = true;
+        }
+        return read;
+      }
+
+      @Override
+      public void close() throws IOException {
+        if (this.closed) {
+          return;
+        }
+        if (!this.done && !this.failed && this.framing != UNTIL_CLOSE) {
+          this.drain();
+        }
+        this.closed = true;
+
+        if (this.done && !this.failed && Exchange.this.keepAlive) {
+          Exchange.this.pool.recycle(Exchange.this.conn);
+        } else {
+          Exchange.this.pool.discard(Exchange.this.conn);
+        }
+      }
+
+      /** Reads the end of a body that is almost entirely read, so that its connection is reused. */
+      private void drain() {
+        byte[] buffer = new byte[8192];
+        long drained = 0;
+        try {
+          while (!this.done && drained < MAX_DRAIN_BYTES) {
+            int read = this.readFraming(buffer, 0, buffer.length);
+            if (read > 0) {
+              drained += read;
+            }
+          }
+        } catch (IOException | RuntimeException e) {
+          this.failed = true;
+        }
+      }
+    }
+
+    private static long readChunkSize(String sizeLine) throws IOException {
+      int extension = sizeLine.indexOf(';');
+      String size = (extension >= 0) ? sizeLine.substring(0, extension) : sizeLine;
+      try {
+        long chunkSize = Long.parseLong(size.trim(), 16);
+        if (chunkSize < 0) {
+          throw new NumberFormatException();
+        }
+        return chunkSize;
+      } catch (NumberFormatException e) {
+        throw new IOException(String.format("Invalid chunk size: %s", sizeLine), e);
+      }
+    }
+
+    private String readLine(InputStream in) throws IOException {
+      StringBuilder sb = new StringBuilder();
+      int b;
+      while ((b = in.read()) != -1) {
+        this.responseStarted = true;
+        if (b == '\n') {
+          int length = sb.length();
+          if (length > 0 && sb.charAt(length - 1) == '\r') {
+            sb.setLength(length - 1);
+          }
+          return sb.toString();
+        }
+        if (sb.length() >= MAX_LINE_LENGTH) {
+          throw new IOException("Response line too long");
+        }
+        sb.append((char) b);
+      }
+
+      if (!this.responseStarted) {
+        return null;
+      }
+      throw new EOFException("Unexpected end of stream while reading response");
+    }
+
+    private static int parseStatusCode(String statusLine) throws IOException {
+      String[] parts = statusLine.split(" ", 3);
+      if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+        throw new IOException(String.format("Malformed status line: %s", statusLine));
+      }
+      try {
+        return Integer.parseInt(parts[1]);
+      } catch (NumberFormatException e) {
+        throw new IOException(String.format("Malformed status line: %s", statusLine), e);
+      }
+    }
+
+    private static void appendHeader(StringBuilder sb, String name, String value) {
+      if (name.indexOf('\r') >= 0
+          || name.indexOf('\n') >= 0
+          || value.indexOf('\r') >= 0
+          || value.indexOf('\n') >= 0) {
+        throw new IllegalArgumentException(String.format("Illegal character in header %s", name));
+      }
+      sb.append(name).append(": ").append(value).append("\r\n");
+    }
+  }
+
+  /** Writes a request body using chunked transfer encoding, one chunk per write. */
+  private static class ChunkedOutputStream extends FilterOutputStream {
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    ChunkedOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      this.write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        // An empty chunk would end the body.
+        return;
+      }
+      this.out.write((Integer.toHexString(len) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+      this.out.write(b, off, len);
+      this.out.write(CRLF);
+    }
+
+    /** Writes the last chunk, without closing the underlying stream. */
+    void finish() throws IOException {
+      this.out.write(LAST_CHUNK);
+    }
+  }
+}
@@ -0,0 +1,176 @@
+package com.stripe.net;
+
+import com.stripe.exception.StripeException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Value;
+
+/**
+ * Coalesces concurrent identical {@code GET} requests into a single request.
+ *
+ * <p>When a {@code GET} request is sent while an identical one (same URL, including its query
+ * string, API key, {@code Stripe-Account} and {@code Stripe-Version}) is in flight, it does not
+ * reach the network: it waits for the in-flight request and shares its {@link StripeResponse}.
+ * Nothing is kept once the request completes, so responses are never stale: a request sent after an
+ * identical one completed is sent again.
+ *
+ * <p>Coalesced requests share the options of the request that was actually sent, such as its
+ * timeouts and number of retries. With {@link HttpClient#setResponseStreaming(boolean) response
+ * streaming}, only requests expecting the same class are coalesced, and the object deserialized
+ * while the response was read goes to one of them while the others deserialize the body. If the
+ * client does not retain raw bodies, coalesced requests are not deserialized while they are read.
+ */
+public class RequestCoalescer {
+  private final ConcurrentMap<Key, CompletableFuture<StripeResponse>> inFlight =
+      new ConcurrentHashMap<>();
+
+  private final AtomicLong sentCount = new AtomicLong();
+  private final AtomicLong coalescedCount = new AtomicLong();
+
+  /**
+   * Returns a snapshot of the coalescer's statistics.
+   *
+   * @return the coalescer's statistics
+   */
+  public Stats getStats() {
+    return new Stats(this.sentCount.get(), this.coalescedCount.get(), this.inFlight.size());
+  }
+
+  /**
+   * Sends the given request with the given client, unless an identical request is in flight.
+   *
+   * @param request the request
+   * @param client the client used to send the request
+   * @return the response
+   * @throws StripeException if the request fails for any reason
+   */
+  StripeResponse request(StripeRequest request, HttpClient client) throws StripeException {
+    if (request.method() != ApiResource.RequestMethod.GET) {
+      return client.requestWithRetries(request);
+    }
+
+    StripeRequest sharedRequest = sharedRequest(request, client);
+    Key key = Key.of(sharedRequest);
+    CompletableFuture<StripeResponse> created = new CompletableFuture<>();
+    CompletableFuture<StripeResponse> existing = this.inFlight.putIfAbsent(key, created);
+    if (existing != null) {
+      this.coalescedCount.incrementAndGet();
+      return HttpClient.awaitResponse(copyOf(existing));
+    }
+
+    this.sentCount.incrementAndGet();
+    try {
+      StripeResponse response = client.requestWithRetries(sharedRequest);
+      this.inFlight.remove(key, created);
+      created.complete(response);
+      return response;
+    } catch (StripeException | RuntimeException e) {
+      this.inFlight.remove(key, created);
+      created.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  /**
+   * Sends the given request asynchronously with the given client, unless an identical request is in
+   * flight.
+   *
+   * @param request the request
+   * @param client the client used to send the request
+   * @return a future that completes with the response
+   */
+  CompletableFuture<StripeResponse> requestAsync(StripeRequest request, HttpClient client) {
+    if (request.method() != ApiResource.RequestMethod.GET) {
+      return client.requestWithRetriesAsync(request);
+    }
+
+    StripeRequest sharedRequest = sharedRequest(request, client);
+    Key key = Key.of(sharedRequest);
+    CompletableFuture<StripeResponse> created = new CompletableFuture<>();
+    CompletableFuture<StripeResponse> existing = this.inFlight.putIfAbsent(key, created);
+    if (existing != null) {
+      this.coalescedCount.incrementAndGet();
+      return copyOf(existing);
+    }
+
+    this.sentCount.incrementAndGet();
+    client
+        .requestWithRetriesAsync(sharedRequest)
+        .whenComplete(
+            (response, error) -> {
+              // Stop sharing the request before completing it, so that later requests are sent
+              // again instead of reusing this response.
+              this.inFlight.remove(key, created);
+              if (error != null) {
+                created.completeExceptionally(HttpClient.unwrapCompletionException(error));
+              } else {
+                created.complete(response);
+              }
+            });
+    return copyOf(created);
+  }
+
+  /**
+   * Returns the request to send on behalf of all the callers sending the given request. Its
+   * response may carry an object deserialized while it was read (see {@link
+   * HttpClient#setResponseStreaming(boolean)}), which only one caller takes. The others deserialize
+   * the body, so the request is only deserialized while it is read if the raw body is retained, as
+   * the body would otherwise be rebuilt from an object another caller may have modified.
+   */
+  private static StripeRequest sharedRequest(StripeRequest request, HttpClient client) {
+    return client.getRetainRawResponseBody() ? request : request.withResponseType(null);
+  }
+
+  /**
+   * Returns a future completed with the outcome of the shared future, so that cancelling it does
+   * not affect the other callers.
+   */
+  private static CompletableFuture<StripeResponse> copyOf(
+      CompletableFuture<StripeResponse> shared) {
+    CompletableFuture<StripeResponse> copy = new CompletableFuture<>();
+    shared.whenComplete(
+        (response, error) -> {
+          if (error != null) {
+            copy.completeExceptionally(HttpClient.unwrapCompletionException(error));
+          } else {
+            copy.complete(response);
+          }
+        });
+    return copy;
+  }
+
+  /** The properties of a request that determine its response. */
+  @Value
+  private static class Key {
+    String url;
+    String authorization;
+    String stripeAccount;
+    String stripeVersion;
+    Class<?> responseType;
+
+    static Key of(StripeRequest request) {
+      HttpHeaders headers = request.headers();
+      return new Key(
+          request.url().toString(),
+          headers.firstValue("Authorization").orElse(null),
+          headers.firstValue("Stripe-Account").orElse(null),
+          headers.firstValue("Stripe-Version").orElse(null),
+          request.responseType());
+    }
+  }
+
+  /** A snapshot of a {@link RequestCoalescer}'s statistics. */
+  @Value
+  public static class Stats {
+    /** Number of {@code GET} requests actually sent. */
+    long sent;
+
+    /** Number of {@code GET} requests that shared the response of an in-flight request. */
+    long coalesced;
+
+    /** Number of {@code GET} requests currently in flight. */
+    int inFlight;
+  }
+}
@@ -0,0 +1,299 @@
+package com.stripe.net;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import lombok.Value;
+
+/**
+ * Sends hedged {@code GET} requests to reduce tail latency.
+ *
+ * <p>When a {@code GET} request has not received a response after the hedge delay, an identical
+ * request is sent. The first successful response to arrive is used, and the other request's future
+ * is cancelled. An error response, e.g. a {@code 5xx} or {@code 429}, is only used once no other
+ * copy of the request may still succeed. The hedge delay is a percentile (by default the 95th) of
+ * the latency of recent {@code GET} requests, so that only the slowest requests are hedged. No
+ * request is hedged until enough latencies have been observed. Latencies are those of the original
+ * requests, measured from when they were sent: when a hedge wins, the time the original request had
+ * been waiting is recorded, and the round trip of the hedge itself is never sampled.
+ *
+ * <p>The extra load is capped by a token bucket: every request adds {@code maxHedgeRatio} tokens
+ * and every hedge consumes one, so hedges cannot exceed that fraction of requests beyond a small
+ * burst.
+ *
+ * <p>Hedging only applies to {@code GET} requests, which have no side effects. Note that with a
+ * blocking transport, cancelling the losing request does not interrupt it: its connection is kept
+ * busy until it completes, and its response is discarded.
+ */
+public class RequestHedger {
+  /** Default latency percentile used as the hedge delay. */
+  public static final double DEFAULT_PERCENTILE = 0.95;
+
+  /** Default minimum hedge delay. */
+  public static final Duration DEFAULT_MIN_DELAY = Duration.ofMillis(50);
+
+  /** Default maximum fraction of requests that may be hedged. */
+  public static final double DEFAULT_MAX_HEDGE_RATIO = 0.05;
+
+  /** Number of recent latencies the hedge delay is computed from. */
+  static final int LATENCY_WINDOW_SIZE = 100;
+
+  /** Number of latencies that must be observed before requests are hedged. */
+  static final int MIN_LATENCY_SAMPLES = 20;
+
+  /** Maximum number of tokens in the bucket, i.e. the number of hedges allowed in a burst. */
+  private static final double MAX_TOKENS = 10;
+
+  private final double percentile;
+  private final long minDelayNanos;
+  private final double maxHedgeRatio;
+
+  private final long[] latencies = new long[LATENCY_WINDOW_SIZE];
+  private int latencyCount;
+  private int latencyPosition;
+
+  private double tokens = MAX_TOKENS;
+  private long requestCount;
+  private long hedgeCount;
+  private long hedgeWinCount;
+  private long deniedCount;
+
+  /** Initializes a new instance of the {@link RequestHedger} class with default parameters. */
+  public RequestHedger() {
+    this(DEFAULT_PERCENTILE, DEFAULT_MIN_DELAY, DEFAULT_MAX_HEDGE_RATIO);
+  }
+
+  /**
+   * Initializes a new instance of the {@link RequestHedger} class.
+   *
+   * @param percentile the percentile of recent latencies used as the hedge delay, between 0 and 1
+   *     exclusive (e.g. {@code 0.95})
+   * @param minDelay the minimum hedge delay
+   * @param maxHedgeRatio the maximum fraction of requests that may be hedged, between 0 and 1
+   * @throws IllegalArgumentException if a parameter is out of range
+   */
+  public RequestHedger(double percentile, Duration minDelay, double maxHedgeRatio) {
+    if (!(percentile > 0 && percentile < 1)) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 1 exclusive.");
+    }
+    if (minDelay == null || minDelay.isNegative()) {
+      throw new IllegalArgumentException("Minimum delay must not be negative.");
+    }
+    if (!(maxHedgeRatio >= 0 && maxHedgeRatio <= 1)) {
+      throw new IllegalArgumentException("Maximum hedge ratio must be between 0 and 1.");
+    }
+
+    this.percentile = percentile;
+    this.minDelayNanos = minDelay.toNanos();
+    this.maxHedgeRatio = maxHedgeRatio;
+  }
+
+  /**
+   * Returns a snapshot of the hedger's statistics.
+   *
+   * @return the hedger's statistics
+   */
+  public synchronized Stats getStats() {
+    Duration delay = this.getHedgeDelay();
+    return new Stats(
+        this.requestCount, this.hedgeCount, this.hedgeWinCount, this.deniedCount, delay);
+  }
+
+  /**
+   * Returns the current hedge delay.
+   *
+   * @return the hedge delay, or {@code null} if not enough latencies have been observed yet
+   */
+  synchronized Duration getHedgeDelay() {
+    if (this.latencyCount < MIN_LATENCY_SAMPLES) {
+      return null;
+    }
+
+    long[] sorted = Arrays.copyOf(this.latencies, this.latencyCount);
+    Arrays.sort(sorted);
+    int index = (int) Math.ceil(this.percentile * sorted.length) - 1;
+    long delay = sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    return Duration.ofNanos(Math.max(this.minDelayNanos, delay));
+  }
+
+  /**
+   * Sends the given request with the given sender, hedging it if it is a {@code GET} request that
+   * is slower than the hedge delay.
+   *
+   * @param request the request
+   * @param sender the function sending a single copy of the request
+   * @param scheduler the scheduler used to wait for the hedge delay
+   * @return a future that completes with the first successful response received, with an error
+   *     response if no copy of the request succeeded, or exceptionally if every copy failed
+   */
+  CompletableFuture<StripeResponse> send(
+      StripeRequest request,
+      Function<StripeRequest, CompletableFuture<StripeResponse>> sender,
+      RetryScheduler scheduler) {
+    if (request.method() != ApiResource.RequestMethod.GET) {
+      return sender.apply(request);
+    }
+
+    Duration delay;
+    synchronized (this) {
+      this.requestCount += 1;
+      this.tokens = Math.min(MAX_TOKENS, this.tokens + this.maxHedgeRatio);
+      delay = this.getHedgeDelay();
+    }
+
+    HedgedRequest hedged = new HedgedRequest();
+    hedged.primaryStart = System.nanoTime();
+    hedged.primary = this.sendCopy(request, sender, hedged, false);
+    hedged.result.whenComplete(
+        (response, error) -> {
+          if (hedged.result.isCancelled()) {
+            hedged.cancelOther(true);
+            hedged.cancelOther(false);
+          }
+        });
+
+    if (delay != null && !hedged.result.isDone()) {
+      CompletableFuture<Void> timer = scheduler.delay(delay);
+      hedged.result.whenComplete((response, error) -> timer.cancel(false));
+      timer.thenRun(
+          () -> {
+            if (hedged.result.isDone() || !this.tryAcquireHedge()) {
+              return;
+            }
+            hedged.hedge = this.sendCopy(request, sender, hedged, true);
+          });
+    }
+
+    return hedged.result;
+  }
+
+  private synchronized boolean tryAcquireHedge() {
+    if (this.tokens < 1) {
+      this.deniedCount += 1;
+      return false;
+    }
+    this.tokens -= 1;
+    this.hedgeCount += 1;
+    return true;
+  }
+
+  private CompletableFuture<StripeResponse> sendCopy(
+      StripeRequest request,
+      Function<StripeRequest, CompletableFuture<StripeResponse>> sender,
+      HedgedRequest hedged,
+      boolean isHedge) {
+    synchronized (hedged) {
+      hedged.pending += 1;
+    }
+
+    CompletableFuture<StripeResponse> future = sender.apply(request);
+    future.whenComplete(
+        (response, error) -> {
+          boolean succeeded = (error == null) && isSuccess(response);
+          boolean last;
+          StripeResponse errorResponse;
+          synchronized (hedged) {
+            hedged.pending -= 1;
+            last = (hedged.pending == 0);
+            if (!succeeded && (response != null)) {
+              hedged.errorResponse = response;
+            }
+            errorResponse = hedged.errorResponse;
+          }
+
+          if (succeeded) {
+            if (hedged.result.complete(response)) {
+              this.recordWin(System.nanoTime() - hedged.primaryStart, isHedge);
+              hedged.cancelOther(isHedge);
+            }
+          } else if (last) {
+            // Only fail once no other copy of the request may still succeed, preferring an error
+            // response over an exception.
+            if (errorResponse != null) {
+              hedged.result.complete(errorResponse);
+            } else {
+              hedged.result.completeExceptionally(HttpClient.unwrapCompletionException(error));
+            }
+          }
+        });
+    return future;
+  }
+
+  private static boolean isSuccess(StripeResponse response) {
+    return response.code() >= 200 && response.code() < 300;
+  }
+
+  /**
+   * Records the response of a request.
+   *
+   * @param latencyNanos the time since the original request was sent, which is its latency if it
+   *     won, or a lower bound of it if the hedge won and it was cancelled
+   * @param isHedge whether the hedge won
+   */
+  private synchronized void recordWin(long latencyNanos, boolean isHedge) {
+    if (isHedge) {
+      this.hedgeWinCount += 1;
+    }
+
+    this.latencies[this.latencyPosition] = latencyNanos;
+    this.latencyPosition = (this.latencyPosition + 1) % this.latencies.length;
+    if (this.latencyCount < this.latencies.length) {
+      this.latencyCount += 1;
+    }
+  }
+
+  /** The state of a single request and its hedge. */
+  private static class HedgedRequest {
+    final CompletableFuture<StripeResponse> result = new CompletableFuture<>();
+    volatile long primaryStart;
+    volatile CompletableFuture<StripeResponse> primary;
+    volatile CompletableFuture<StripeResponse> hedge;
+    StripeResponse errorResponse;
+    int pending;
+
+    void cancelOther(boolean isHedge) {
+      CompletableFuture<StripeResponse> other = isHedge ? this.primary : this.hedge;
+      if (other != null) {
+        other.cancel(true);
+      }
+    }
+  }
+
+  /** A snapshot of a {@link RequestHedger}'s statistics. */
+  @Value
+  public static class Stats {
+    /** Number of {@code GET} requests sent. */
+    long requests;
+
+    /** Number of hedges sent. */
+    long hedges;
+
+    /** Number of hedges that received a response before the original request. */
+    long hedgeWins;
+
+    /** Number of hedges not sent because the maximum hedge ratio was reached. */
+    long denied;
+
+    /** Current hedge delay, or {@code null} if not enough latencies have been observed yet. */
+    Duration hedgeDelay;
+
+    /**
+     * Returns the fraction of requests that were hedged.
+     *
+     * @return the hedge rate, between 0 and 1
+     */
+    public double getHedgeRate() {
+      return (this.requests == 0) ? 0 : (double) this.hedges / this.requests;
+    }
+
+    /**
+     * Returns the fraction of hedges that received a response before the original request.
+     *
+     * @return the win rate, between 0 and 1
+     */
+    public double getWinRate() {
+      return (this.hedges == 0) ? 0 : (double) this.hedgeWins / this.hedges;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package com.stripe.net;
+
+import lombok.Value;
+
+/**
+ * A token bucket that caps automatic request retries at a fraction of recent first attempts.
+ *
+ * <p>Each request's first attempt deposits {@code retryRatio} tokens into the bucket, and each
+ * retry withdraws one token. When the bucket holds less than one token, retries are denied and
+ * requests fail with the outcome of their last attempt instead. The bucket starts full and never
+ * holds more than {@code maxTokens} tokens, which bounds the burst of retries allowed after a quiet
+ * period.
+ *
+ * <p>A single budget can be shared by several {@link HttpClient}s (see {@link
+ * HttpClient#setRetryBudget(RetryBudget)}), so that during an incident the total retry traffic of
+ * the process stays proportional to its regular traffic.
+ */
+public class RetryBudget {
+  /** Default fraction of first attempts that may be retried. */
+  public static final double DEFAULT_RETRY_RATIO = 0.1;
+
+  /** Default maximum number of tokens in the bucket. */
+  public static final int DEFAULT_MAX_TOKENS = 10;
+
+  private final double retryRatio;
+  private final double maxTokens;
+
+  private double tokens;
+  private long firstAttempts;
+  private long retriesAllowed;
+  private long retriesDenied;
+
+  /** Initializes a new instance of the {@link RetryBudget} class with default parameters. */
+  public RetryBudget() {
+    this(DEFAULT_RETRY_RATIO, DEFAULT_MAX_TOKENS);
+  }
+
+  /**
+   * Initializes a new instance of the {@link RetryBudget} class.
+   *
+   * @param retryRatio the fraction of first attempts that may be retried, e.g. {@code 0.1} to allow
+   *     one retry for every ten requests
+   * @param maxTokens the maximum number of tokens in the bucket, i.e. the number of retries that
+   *     can be sent in a burst
+   * @throws IllegalArgumentException if the ratio is negative or the capacity is not positive
+   */
+  public RetryBudget(double retryRatio, int maxTokens) {
+    if (retryRatio < 0 || Double.isNaN(retryRatio)) {
+      throw new IllegalArgumentException("Retry ratio must not be negative.");
+    }
+    if (maxTokens <= 0) {
+      throw new IllegalArgumentException("Maximum number of tokens must be positive.");
+    }
+
+    this.retryRatio = retryRatio;
+    this.maxTokens = maxTokens;
+    this.tokens = maxTokens;
+  }
+
+  /** Records the first attempt of a request, depositing tokens into the bucket. */
+  public synchronized void recordFirstAttempt() {
+    this.firstAttempts += 1;
+    this.tokens = Math.min(this.maxTokens, this.tokens + this.retryRatio);
+  }
+
+  /**
+   * Withdraws a token for a retry, if one is available.
+   *
+   * @return {@code true} if the retry may be sent, {@code false} if the budget is spent
+   */
+  public synchronized boolean tryAcquireRetry() {
+    if (this.tokens < 1) {
+      this.retriesDenied += 1;
+      return false;
+    }
+
+    this.tokens -= 1;
+    this.retriesAllowed += 1;
+    return true;
+  }
+
+  /**
+   * Returns a snapshot of the budget's statistics.
+   *
+   * @return the budget's statistics
+   */
+  public synchronized Stats getStats() {
+    return new Stats(
+        this.tokens, this.maxTokens, this.firstAttempts, this.retriesAllowed, this.retriesDenied);
+  }
+
+  /** A snapshot of a {@link RetryBudget}'s statistics. */
+  @Value
+  public static class Stats {
+    /** Number of tokens currently in the bucket, i.e. the number of retries that can be sent. */
+    double availableTokens;
+
+    /** Maximum number of tokens in the bucket. */
+    double maxTokens;
+
+    /** Number of first attempts recorded. */
+    long firstAttempts;
+
+    /** Number of retries allowed, each of which consumed one token. */
+    long retriesAllowed;
+
+    /** Number of retries denied because the budget was spent. */
+    long retriesDenied;
+  }
+}
@@ -0,0 +1,101 @@
+package com.stripe.net;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the delays between automatic request retries.
+ *
+ * <p>Instead of putting the requesting thread to sleep, {@link HttpClient} asks the scheduler for a
+ * future that completes once the retry delay has elapsed. Asynchronous requests chain the next
+ * attempt onto that future, so no thread is held while waiting. A single scheduler, backed by one
+ * timer thread, can be shared by any number of clients.
+ */
+public class RetryScheduler {
+  private final ScheduledExecutorService executor;
+
+  /**
+   * Initializes a new instance of the {@link RetryScheduler} class.
+   *
+   * @param executor the executor used to schedule delays. The scheduler does not take ownership of
+   *     the executor: shutting it down remains the caller's responsibility.
+   */
+  public RetryScheduler(ScheduledExecutorService executor) {
+    if (executor == null) {
+      throw new IllegalArgumentException("executor must not be null");
+    }
+    this.executor = executor;
+  }
+
+  /**
+   * Returns the scheduler shared by all clients that were not given their own scheduler. It runs on
+   * a single daemon thread.
+   *
+   * @return the default scheduler
+   */
+  public static RetryScheduler getDefault() {
+    return DefaultSchedulerHolder.INSTANCE;
+  }
+
+  /**
+   * Returns a future that completes once the given delay has elapsed. Callbacks attached to the
+   * future without an explicit executor run on the scheduler's timer thread, so they should not
+   * block.
+   *
+   * <p>Cancelling the returned future cancels the underlying timer task.
+   *
+   * @param delay the delay
+   * @return a future that completes after the delay, or exceptionally with a {@link
+   *     RejectedExecutionException} if the delay cannot be scheduled
+   */
+  public CompletableFuture<Void> delay(Duration delay) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    if (delay.isZero() || delay.isNegative()) {
+      future.complete(null);
+      return future;
+    }
+
+    try {
+      ScheduledFuture<?> task =
+          this.executor.schedule(
+              () -> {
+                future.complete(null);
+              },
+              delay.toNanos(),
+              TimeUnit.NANOSECONDS);
+      future.whenComplete(
+          (result, error) -> {
+            if (future.isCancelled()) {
+              task.cancel(false);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+
+    return future;
+  }
+
+  /** Lazily creates the scheduler shared by clients that were not given their own scheduler. */
+  private static class DefaultSchedulerHolder {
+    private static final RetryScheduler INSTANCE = new RetryScheduler(createExecutor());
+
+    private static ScheduledExecutorService createExecutor() {
+      ScheduledThreadPoolExecutor executor =
+          new ScheduledThreadPoolExecutor(
+              1,
+              runnable -> {
+                Thread thread = new Thread(runnable, "stripe-retry-scheduler");
+                thread.setDaemon(true);
+                return thread;
+              });
+      executor.setRemoveOnCancelPolicy(true);
+      return executor;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package com.stripe.net;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Deserializes the body of a response while it is read from the network, instead of reading the
+ * whole body into a string and then parsing the string.
+ */
+final class StreamingResponseReader {
+  private StreamingResponseReader() {}
+
+  /**
+   * Reads a successful response, deserializing its body into an object of the given class. If the
+   * body is not valid JSON, the returned response holds the body as read so far (the whole body if
+   * raw bodies are retained) and no deserialized object, so that callers report it as malformed.
+   *
+   * @param code the HTTP status code of the response
+   * @param headers the HTTP headers of the response
+   * @param body the stream of the body, which is closed once read
+   * @param responseType the class of the object to deserialize
+   * @param retainRawBody whether to keep the raw bytes of the body in the response
+   * @return the response
+   * @throws IOException if reading the body fails
+   */
+  static StripeResponse read(
+      int code, HttpHeaders headers, InputStream body, Class<?> responseType, boolean retainRawBody)
+      throws IOException {
+    CapturingInputStream capture = retainRawBody ? new CapturingInputStream(body) : null;
+    InputStream in = (capture != null) ? capture : body;
+
+    try (JsonReader reader = new JsonReader(new InputStreamReader(in, ApiResource.CHARSET))) {
+      Object deserializedBody = deserialize(reader, responseType);
+      if (deserializedBody == null) {
+        // Let the caller report the malformed body, as it does for bodies read into a string.
+        return new StripeResponse(code, headers, (capture != null) ? capture.readToEnd() : "");
+      }
+      return new StripeResponse(
+          code, headers, (capture != null) ? capture.toByteArray() : null, deserializedBody);
+    }
+  }
+
+  /** Returns the deserialized object, or {@code null} if the body is not a valid JSON value. */
+  private static Object deserialize(JsonReader reader, Class<?> responseType) throws IOException {
+    try {
+      Object deserializedBody = ApiResource.GSON.fromJson(reader, responseType);
+      // Like Gson.fromJson(String, Class), reject trailing data.
+      return (reader.peek() == JsonToken.END_DOCUMENT) ? deserializedBody : null;
+    } catch (JsonSyntaxException e) {
+      // Gson reports network errors as syntax errors. A body ending too early is a syntax error.
+      Throwable cause = e.getCause();
+      if ((cause instanceof IOException)
+          && !(cause instanceof MalformedJsonException)
+          && !(cause instanceof EOFException)) {
+        throw (IOException) cause;
+      }
+      return null;
+    } catch (MalformedJsonException e) {
+      return null;
+    }
+  }
+
+  /** An input stream keeping a copy of the bytes read from another stream. */
+  private static final class CapturingInputStream extends FilterInputStream {
+    private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+    CapturingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b != -1) {
+        this.captured.write(b);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = super.read(b, off, len);
+      if (read > 0) {
+        this.captured.write(b, off, read);
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      // Read skipped bytes so that they are captured.
+      byte[] buffer = new byte[(int) Math.min(n, 8192)];
+      long skipped = 0;
+      while (skipped < n) {
+        int read = this.read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+        if (read == -1) {
+          break;
+        }
+        skipped += read;
+      }
+      return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    byte[] toByteArray() {
+      return this.captured.toByteArray();
+    }
+
+    /** Reads the rest of the stream and returns everything read as a string. */
+    String readToEnd() throws IOException {
+      byte[] buffer = new byte[8192];
+      while (this.read(buffer, 0, buffer.length) != -1) {}
+      return new String(this.captured.toByteArray(), ApiResource.CHARSET);
+    }
+  }
+}
@@ -13,8 +13,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 import lombok.Value;
 import lombok.experimental.Accessors;
 
@@ -51,6 +56,25 @@ public class StripeRequest {
   /** The special modifiers of the request. */
   RequestOptions options;
 
+  /**
+   * The class of the object expected in a successful response, which clients may deserialize while
+   * reading the response (see {@link HttpClient#setResponseStreaming(boolean)}), or {@code null}.
+   */
+  @Getter(AccessLevel.PACKAGE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  Class<?> responseType;
+
+  /** Maximum number of cached header blocks. */
+  private static final int MAX_HEADER_BLOCKS = 256;
+
+  /**
+   * Headers shared by every request sent with the same API key, {@code Stripe-Version} and {@code
+   * Stripe-Account}, so that they are validated and built once instead of for every request.
+   */
+  private static final ConcurrentMap<HeaderBlockKey, HttpHeaders> headerBlocks =
+      new ConcurrentHashMap<>();
+
   /**
    * Initializes a new instance of the {@link StripeRequest} class.
    *
@@ -73,6 +97,7 @@ public class StripeRequest {
       this.url = buildURL(method, url, params);
       this.content = buildContent(method, params);
       this.headers = buildHeaders(method, this.options);
+      this.responseType = null;
     } catch (IOException e) {
       throw new ApiConnectionException(
           String.format(
@@ -85,6 +110,26 @@ public class StripeRequest {
     }
   }
 
+  /**
+   * Initializes a new instance of the {@link StripeRequest} class from its properties.
+   *
+   * @param method the HTTP method
+   * @param url the URL of the request, including its query string
+   * @param content the body of the request
+   * @param headers the HTTP headers of the request
+   * @param params the parameters of the request
+   * @param options the special modifiers of the request
+   */
+  protected StripeRequest(
+      ApiResource.RequestMethod method,
+      URL url,
+      HttpContent content,
+      HttpHeaders headers,
+      Map<String, Object> params,
+      RequestOptions options) {
+    this(method, url, content, headers, params, options, null);
+  }
+
   /**
    * Returns a new {@link StripeRequest} instance with an additional header.
    *
@@ -99,7 +144,23 @@ public class StripeRequest {
         this.content,
         this.headers.withAdditionalHeader(name, value),
         this.params,
-        this.options);
+        this.options,
+        this.responseType);
+  }
+
+  /**
+   * Returns a new {@link StripeRequest} instance expecting the given class of object in a
+   * successful response.
+   *
+   * @param responseType the class of the object, or {@code null} if unknown
+   * @return the new {@link StripeRequest} instance
+   */
+  StripeRequest withResponseType(Class<?> responseType) {
+    if (responseType == this.responseType) {
+      return this;
+    }
+    return new StripeRequest(
+        this.method, this.url, this.content, this.headers, this.params, this.options, responseType);
   }
 
   private static URL buildURL(
@@ -131,6 +192,46 @@ public class StripeRequest {
 
   private static HttpHeaders buildHeaders(ApiResource.RequestMethod method, RequestOptions options)
       throws AuthenticationException {
+    HttpHeaders headers = getHeaderBlock(options);
+
+    // Idempotency-Key
+    if (options.getIdempotencyKey() != null) {
+      headers = headers.withAdditionalHeader("Idempotency-Key", options.getIdempotencyKey());
+    } else if (method == ApiResource.RequestMethod.POST) {
+      headers = headers.withAdditionalHeader("Idempotency-Key", UUID.randomUUID().toString());
+    }
+
+    return headers;
+  }
+
+  /**
+   * Returns the headers that only depend on the API key, {@code Stripe-Version} and {@code
+   * Stripe-Account} of the given options, building and caching them if needed.
+   */
+  private static HttpHeaders getHeaderBlock(RequestOptions options) throws AuthenticationException {
+    String stripeVersion =
+        (options.getStripeVersionOverride() != null)
+            ? options.getStripeVersionOverride()
+            : options.getStripeVersion();
+    HeaderBlockKey key =
+        new HeaderBlockKey(options.getApiKey(), stripeVersion, options.getStripeAccount());
+
+    HttpHeaders headers = headerBlocks.get(key);
+    if (headers == null) {
+      // Invalid options throw here, so they are never cached.
+      headers = buildHeaderBlock(options);
+      if (headerBlocks.size() >= MAX_HEADER_BLOCKS) {
+        // Applications using many API keys or accounts start over rather than growing the cache
+        // without bound.
+        headerBlocks.clear();
+      }
+      headerBlocks.put(key, headers);
+    }
+    return headers;
+  }
+
+  private static HttpHeaders buildHeaderBlock(RequestOptions options)
+      throws AuthenticationException {
     Map<String, List<String>> headerMap = new HashMap<String, List<String>>();
 
     // Accept
@@ -186,13 +287,13 @@ public class StripeRequest {
       headerMap.put("Stripe-Account", Arrays.asList(options.getStripeAccount()));
     }
 
-    // Idempotency-Key
-    if (options.getIdempotencyKey() != null) {
-      headerMap.put("Idempotency-Key", Arrays.asList(options.getIdempotencyKey()));
-    } else if (method == ApiResource.RequestMethod.POST) {
-      headerMap.put("Idempotency-Key", Arrays.asList(UUID.randomUUID().toString()));
-    }
-
     return HttpHeaders.of(headerMap);
   }
+
+  @Value
+  private static class HeaderBlockKey {
+    String apiKey;
+    String stripeVersion;
+    String stripeAccount;
+  }
 }
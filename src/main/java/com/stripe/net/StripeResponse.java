@@ -2,6 +2,7 @@ package com.stripe.net;
 
 import static java.util.Objects.requireNonNull;
 
+import com.stripe.model.StripeObject;
 import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
@@ -24,7 +25,8 @@ public class StripeResponse {
   HttpHeaders headers;
 
   /** The body of the response. */
-  String body;
+  @Getter(AccessLevel.NONE)
+  Body body;
 
   /** Number of times the request was retried. Used for internal tests only. */
   @NonFinal
@@ -46,7 +48,63 @@ public class StripeResponse {
 
     this.code = code;
     this.headers = headers;
-    this.body = body;
+    this.body = new Body(body, null, null);
+  }
+
+  /**
+   * Initializes a new instance of the {@link StripeResponse} class for a response whose body was
+   * deserialized while it was read.
+   *
+   * @param code the HTTP status code of the response
+   * @param headers the HTTP headers of the response
+   * @param rawBody the raw bytes of the body, or {@code null} if they were not retained
+   * @param deserializedBody the object deserialized from the body
+   */
+  StripeResponse(int code, HttpHeaders headers, byte[] rawBody, Object deserializedBody) {
+    requireNonNull(headers);
+    requireNonNull(deserializedBody);
+
+    this.code = code;
+    this.headers = headers;
+    this.body = new Body(null, rawBody, deserializedBody);
+  }
+
+  /**
+   * Gets the body of the response.
+   *
+   * <p>If the response was deserialized while it was read (see {@link
+   * HttpClient#setResponseStreaming(boolean)}), the body is decoded from the raw body when first
+   * requested. If the raw body was not retained (see {@link
+   * HttpClient#setRetainRawResponseBody(boolean)}), the body is instead rebuilt from the
+   * deserialized object in its current state, which leaves out the properties that the library does
+   * not know.
+   *
+   * @return the body of the response
+   */
+  public String body() {
+    return this.body.text();
+  }
+
+  /**
+   * Returns whether {@link #body()} is the body sent by Stripe, i.e. unless the response was
+   * deserialized while it was read and its raw body was not retained.
+   *
+   * @return whether the body is the one sent by Stripe
+   */
+  boolean hasOriginalBody() {
+    return this.body.isOriginal();
+  }
+
+  /**
+   * Returns the object deserialized from the body while it was read, the first time it is called
+   * with a class the object is an instance of. Callers that get {@code null} must deserialize
+   * {@link #body()} themselves.
+   *
+   * @param clazz the expected class of the object
+   * @return the deserialized object, or {@code null}
+   */
+  <T> T takeDeserializedBody(Class<T> clazz) {
+    return this.body.takeDeserialized(clazz);
   }
 
   /**
@@ -79,4 +137,71 @@ public class StripeResponse {
   public String requestId() {
     return this.headers.firstValue("Request-Id").orElse(null);
   }
+
+  /**
+   * The body of a response. The body of a response deserialized while it was read is only decoded,
+   * or rebuilt from the deserialized object, when first requested.
+   */
+  private static final class Body {
+    /** The object deserialized from the body while it was read, or {@code null}. */
+    private final Object deserialized;
+
+    /** The body, or {@code null} until it is decoded or rebuilt. */
+    private String text;
+
+    /** The raw bytes of the body, until they are decoded into {@link #text}. */
+    private byte[] raw;
+
+    /** Whether {@link #text} is, or will be decoded from, the body sent by Stripe. */
+    private final boolean original;
+
+    /** Whether {@link #deserialized} was handed out. */
+    private boolean deserializedTaken;
+
+    Body(String text, byte[] raw, Object deserialized) {
+      this.text = text;
+      this.raw = raw;
+      this.deserialized = deserialized;
+      this.original = (text != null) || (raw != null);
+    }
+
+    synchronized String text() {
+      if (this.text == null) {
+        if (this.raw != null) {
+          this.text = new String(this.raw, ApiResource.CHARSET);
+          this.raw = null;
+        } else {
+          this.text = StripeObject.PRETTY_PRINT_GSON.toJson(this.deserialized);
+        }
+      }
+      return this.text;
+    }
+
+    boolean isOriginal() {
+      return this.original;
+    }
+
+    synchronized <T> T takeDeserialized(Class<T> clazz) {
+      if (this.deserializedTaken || !clazz.isInstance(this.deserialized)) {
+        return null;
+      }
+      this.deserializedTaken = true;
+      return clazz.cast(this.deserialized);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return (o instanceof Body) && this.text().equals(((Body) o).text());
+    }
+
+    @Override
+    public int hashCode() {
+      return this.text().hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return this.text();
+    }
+  }
 }
@@ -1,8 +1,10 @@
 package com.stripe.net;
 
+import com.stripe.exception.ApiConnectionException;
 import com.stripe.exception.StripeException;
 import com.stripe.model.StripeObjectInterface;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public interface StripeResponseGetter {
   <T extends StripeObjectInterface> T request(
@@ -13,6 +15,46 @@ public interface StripeResponseGetter {
       RequestOptions options)
       throws StripeException;
 
+  /**
+   * Sends a request asynchronously and returns a future that completes with the deserialized
+   * resource, or exceptionally with a {@link StripeException}.
+   *
+   * <p>The default implementation calls {@link #request(ApiResource.RequestMethod, String, Map,
+   * Class, RequestOptions)} on the calling thread and returns an already completed future.
+   */
+  default <T extends StripeObjectInterface> CompletableFuture<T> requestAsync(
+      ApiResource.RequestMethod method,
+      String url,
+      Map<String, Object> params,
+      Class<T> clazz,
+      RequestOptions options) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      future.complete(this.request(method, url, params, clazz, options));
+    } catch (StripeException | RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /**
+   * Sends a request and returns the response without reading its body, so that the caller can
+   * stream it, e.g. to save a file to disk. The caller must close the response.
+   *
+   * <p>The default implementation throws an {@link ApiConnectionException} without sending the
+   * request. Getters that wrap another getter should forward the request to it.
+   *
+   * @param request the request
+   * @return the successful response
+   * @throws StripeException if the request fails, or if the response is an error
+   */
+  default StripeResponseStream requestStream(StripeRequest request) throws StripeException {
+    throw new ApiConnectionException(
+        String.format(
+            "%s does not support streamed responses; use LiveStripeResponseGetter to download %s",
+            this.getClass().getName(), request.url()));
+  }
+
   <T extends StripeObjectInterface> T oauthRequest(
       ApiResource.RequestMethod method,
       String url,
@@ -0,0 +1,78 @@
+package com.stripe.net;
+
+import static java.util.Objects.requireNonNull;
+
+import com.stripe.util.StreamUtils;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import lombok.Value;
+import lombok.experimental.Accessors;
+
+/**
+ * A response from Stripe's API whose body is read from the network by the caller, e.g. to save the
+ * contents of a file to disk. Closing the response closes its body.
+ */
+@Value
+@Accessors(fluent = true)
+public class StripeResponseStream implements Closeable {
+  /** The HTTP status code of the response. */
+  int code;
+
+  /** The HTTP headers of the response. */
+  HttpHeaders headers;
+
+  /** The body of the response, as a stream. */
+  InputStream body;
+
+  /**
+   * Initializes a new instance of the {@link StripeResponseStream} class.
+   *
+   * @param code the HTTP status code of the response
+   * @param headers the HTTP headers of the response
+   * @param body the body of the response, as a stream
+   * @throws NullPointerException if {@code headers} or {@code body} is {@code null}
+   */
+  public StripeResponseStream(int code, HttpHeaders headers, InputStream body) {
+    requireNonNull(headers);
+    requireNonNull(body);
+
+    this.code = code;
+    this.headers = headers;
+    this.body = body;
+  }
+
+  /**
+   * Gets the ID of the request, as returned by Stripe.
+   *
+   * @return the ID of the request, as returned by Stripe
+   */
+  public String requestId() {
+    return this.headers.firstValue("Request-Id").orElse(null);
+  }
+
+  /**
+   * Reads the whole body into a string and returns it as a regular response, e.g. to report an
+   * error. The body is closed.
+   *
+   * @return the response
+   * @throws IOException if reading the body fails
+   */
+  public StripeResponse bufferBody() throws IOException {
+    return new StripeResponse(
+        this.code, this.headers, StreamUtils.readToEnd(this.body, ApiResource.CHARSET));
+  }
+
+  /**
+   * Returns a response with the status code and headers of this response, and an empty body, for
+   * the components that only look at the status and headers.
+   */
+  StripeResponse withoutBody() {
+    return new StripeResponse(this.code, this.headers, "");
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.body.close();
+  }
+}
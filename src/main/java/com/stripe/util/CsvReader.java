@@ -0,0 +1,478 @@
+package com.stripe.util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the rows of a CSV file one at a time, such as the results of a Sigma scheduled query run or
+ * of a report run, so that files of any size are read in constant memory.
+ *
+ * <p>The first line holds the names of the columns. Fields follow RFC 4180: they are separated by
+ * commas, and fields holding commas, quotes or line breaks are quoted, with quotes doubled. Lines
+ * end with either {@code \r\n} or {@code \n}, and empty lines are skipped.
+ *
+ * <p>Rows are read lazily, with {@link #hasNext()} and {@link #next()} or with {@link #stream()}.
+ * For aggregations over large files, {@link #parallelStream()} hands chunks of rows to other cores
+ * while the file is still being read. Reading errors are thrown as {@link UncheckedIOException}s.
+ * The reader must be closed, which closes the underlying stream.
+ */
+public final class CsvReader implements Iterator<CsvReader.Row>, Closeable {
+  /** Number of rows in each chunk of {@link #parallelStream()}. */
+  public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+  /** Timestamps in Sigma and reporting results, which are in UTC. */
+  private static final DateTimeFormatter TIMESTAMP =
+      new DateTimeFormatterBuilder()
+          .appendPattern("yyyy-MM-dd HH:mm:ss")
+          .optionalStart()
+          .appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true)
+          .optionalEnd()
+          .toFormatter();
+
+  private final Reader reader;
+
+  private final char[] buffer = new char[BUFFER_SIZE];
+  private int position;
+  private int limit;
+
+  private final StringBuilder field = new StringBuilder();
+  private final List<String> fields = new ArrayList<>();
+
+  private final List<String> columns;
+  private final Map<String, Integer> columnIndexes;
+
+  /** The next row, if it was already read by {@link #hasNext()}. */
+  private Row nextRow;
+
+  private boolean finished;
+  private long rowCount;
+
+  /**
+   * Initializes a new instance of the {@link CsvReader} class, reading the names of the columns.
+   *
+   * @param reader the reader of the CSV file
+   * @throws IOException if reading the first line fails
+   */
+  public CsvReader(Reader reader) throws IOException {
+    this.reader = reader;
+
+    if (this.peek() == BYTE_ORDER_MARK) {
+      this.read();
+    }
+    String[] header = this.readRecord();
+    if (header == null) {
+      header = new String[0];
+    }
+    Map<String, Integer> columnIndexes = new HashMap<>();
+    for (int i = header.length - 1; i >= 0; i--) {
+      columnIndexes.put(header[i], i);
+    }
+    this.columns = Collections.unmodifiableList(Arrays.asList(header));
+    this.columnIndexes = columnIndexes;
+  }
+
+  /**
+   * Opens a CSV file encoded in UTF-8.
+   *
+   * @param in the stream of the file
+   * @return the reader of the file
+   * @throws IOException if reading the first line fails
+   */
+  public static CsvReader open(InputStream in) throws IOException {
+    return new CsvReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Returns the names of the columns, as read from the first line.
+   *
+   * @return the names of the columns
+   */
+  public List<String> getColumns() {
+    return this.columns;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (this.nextRow == null && !this.finished) {
+      String[] values;
+      try {
+        values = this.readRecord();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      if (values == null) {
+        this.finished = true;
+      } else {
+        this.rowCount += 1;
+        this.nextRow = new Row(this.columns, this.columnIndexes, values, this.rowCount);
+      }
+    }
+    return this.nextRow != null;
+  }
+
+  @Override
+  public Row next() {
+    if (!this.hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Row row = this.nextRow;
+    this.nextRow = null;
+    return row;
+  }
+
+  /**
+   * Returns a sequential stream of the remaining rows. Closing the stream closes the reader.
+   *
+   * @return the stream of rows
+   */
+  public Stream<Row> stream() {
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL),
+            false)
+        .onClose(this::closeUnchecked);
+  }
+
+  /**
+   * Returns a parallel stream of the remaining rows, split in chunks of {@link #DEFAULT_CHUNK_SIZE}
+   * rows. Closing the stream closes the reader.
+   *
+   * @return the stream of rows
+   */
+  public Stream<Row> parallelStream() {
+    return this.parallelStream(DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Returns a parallel stream of the remaining rows, split in chunks of the given number of rows.
+   * The file is still read and parsed by one thread at a time, while other threads process the
+   * chunks already read, so at most a few chunks per thread are held in memory. Closing the stream
+   * closes the reader.
+   *
+   * @param chunkSize the number of rows in each chunk
+   * @return the stream of rows
+   * @throws IllegalArgumentException if {@code chunkSize} is not positive
+   */
+  public Stream<Row> parallelStream(int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize must be positive");
+    }
+    return StreamSupport.stream(new ChunkSpliterator(chunkSize), true)
+        .onClose(this::closeUnchecked);
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.reader.close();
+  }
+
+  private void closeUnchecked() {
+    try {
+      this.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Reads the fields of the next non-empty line.
+   *
+   * @return the fields, or {@code null} at the end of the file
+   */
+  private String[] readRecord() throws IOException {
+    int c = this.read();
+    while (c == '\r' || c == '\n') {
+      c = this.read();
+    }
+    if (c == -1) {
+      return null;
+    }
+
+    this.fields.clear();
+    while (true) {
+      this.field.setLength(0);
+      if (c == '"') {
+        while (true) {
+          c = this.read();
+          if (c == -1) {
+            throw new EOFException(
+                String.format("Unterminated quoted field in row %d", this.rowCount + 1));
+          }
+          if (c == '"') {
+            c = this.read();
+            if (c != '"') {
+              break;
+            }
+          }
+          this.field.append((char) c);
+        }
+      }
+      // Characters after a closing quote are kept, as most readers do.
+      while (c != ',' && c != '\r' && c != '\n' && c != -1) {
+        this.field.append((char) c);
+        c = this.read();
+      }
+      this.fields.add(this.field.toString());
+
+      if (c == ',') {
+        c = this.read();
+        continue;
+      }
+      if (c == '\r' && this.peek() == '\n') {
+        this.read();
+      }
+      return this.fields.toArray(new String[0]);
+    }
+  }
+
+  private int read() throws IOException {
+    if (this.position == this.limit && !this.fill()) {
+      return -1;
+    }
+    return this.buffer[this.position++];
+  }
+
+  private int peek() throws IOException {
+    if (this.position == this.limit && !this.fill()) {
+      return -1;
+    }
+    return this.buffer[this.position];
+  }
+
+  private boolean fill() throws IOException {
+    int read = this.reader.read(this.buffer, 0, this.buffer.length);
+    this.position = 0;
+    this.limit = Math.max(read, 0);
+    return read > 0;
+  }
+
+  /**
+   * Splits off chunks of rows read ahead, so that parallel streams process rows on several cores
+   * while keeping the memory used proportional to the chunk size.
+   */
+  private final class ChunkSpliterator implements Spliterator<Row> {
+    private final int chunkSize;
+
+    ChunkSpliterator(int chunkSize) {
+      this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Row> action) {
+      if (!CsvReader.this.hasNext()) {
+        return false;
+      }
+      action.accept(CsvReader.this.next());
+      return true;
+    }
+
+    @Override
+    public Spliterator<Row> trySplit() {
+      Row[] chunk = new Row[this.chunkSize];
+      int count = 0;
+      while (count < this.chunkSize && CsvReader.this.hasNext()) {
+        chunk[count] = CsvReader.this.next();
+        count += 1;
+      }
+      if (count == 0) {
+        return null;
+      }
+      return Spliterators.spliterator(
+          chunk, 0, count, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    @Override
+    public long estimateSize() {
+      return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+      return Spliterator.ORDERED | Spliterator.NONNULL;
+    }
+  }
+
+  /** A row of a CSV file, whose fields can be read by column name. */
+  public static final class Row {
+    private final List<String> columns;
+    private final Map<String, Integer> columnIndexes;
+    private final String[] values;
+    private final long number;
+
+    Row(List<String> columns, Map<String, Integer> columnIndexes, String[] values, long number) {
+      this.columns = columns;
+      this.columnIndexes = columnIndexes;
+      this.values = values;
+      this.number = number;
+    }
+
+    /**
+     * Returns the number of the row, starting at 1 for the row after the names of the columns.
+     *
+     * @return the number of the row
+     */
+    public long getNumber() {
+      return this.number;
+    }
+
+    /**
+     * Returns the number of fields in the row.
+     *
+     * @return the number of fields
+     */
+    public int size() {
+      return this.values.length;
+    }
+
+    /**
+     * Returns the field at the given index.
+     *
+     * @param index the index of the field
+     * @return the field, or {@code null} if the row has no field at this index
+     */
+    public String get(int index) {
+      return (index >= 0 && index < this.values.length) ? this.values[index] : null;
+    }
+
+    /**
+     * Returns the field in the given column.
+     *
+     * @param column the name of the column
+     * @return the field, or {@code null} if the row has no field in this column
+     * @throws IllegalArgumentException if there is no such column
+     */
+    public String get(String column) {
+      Integer index = this.columnIndexes.get(column);
+      if (index == null) {
+        throw new IllegalArgumentException(String.format("No column named %s", column));
+      }
+      return this.get(index);
+    }
+
+    /**
+     * Returns the field in the given column, as an integer.
+     *
+     * @param column the name of the column
+     * @return the value, or {@code null} if the field is empty
+     * @throws NumberFormatException if the field is not an integer
+     */
+    public Long getLong(String column) {
+      String value = this.getNonEmpty(column);
+      return (value != null) ? Long.valueOf(value) : null;
+    }
+
+    /**
+     * Returns the field in the given column, as a decimal number, e.g. an amount in a report.
+     *
+     * @param column the name of the column
+     * @return the value, or {@code null} if the field is empty
+     * @throws NumberFormatException if the field is not a number
+     */
+    public BigDecimal getBigDecimal(String column) {
+      String value = this.getNonEmpty(column);
+      return (value != null) ? new BigDecimal(value) : null;
+    }
+
+    /**
+     * Returns the field in the given column, as a boolean.
+     *
+     * @param column the name of the column
+     * @return the value, or {@code null} if the field is empty
+     * @throws IllegalArgumentException if the field is neither {@code true} nor {@code false}
+     */
+    public Boolean getBoolean(String column) {
+      String value = this.getNonEmpty(column);
+      if (value == null) {
+        return null;
+      } else if ("true".equalsIgnoreCase(value)) {
+        return Boolean.TRUE;
+      } else if ("false".equalsIgnoreCase(value)) {
+        return Boolean.FALSE;
+      }
+      throw new IllegalArgumentException(String.format("%s is not a boolean", value));
+    }
+
+    /**
+     * Returns the field in the given column, as an instant. Fields are either timestamps in UTC
+     * such as {@code 2019-12-31 23:59:59}, as in Sigma and reporting results, or ISO-8601 instants
+     * such as {@code 2019-12-31T23:59:59Z}.
+     *
+     * @param column the name of the column
+     * @return the value, or {@code null} if the field is empty
+     * @throws DateTimeParseException if the field is not a timestamp
+     */
+    public Instant getInstant(String column) {
+      String value = this.getNonEmpty(column);
+      if (value == null) {
+        return null;
+      }
+      if (value.indexOf('T') != -1) {
+        return Instant.parse(value);
+      }
+      return LocalDateTime.parse(value, TIMESTAMP).toInstant(ZoneOffset.UTC);
+    }
+
+    /**
+     * Returns the fields of the row.
+     *
+     * @return an unmodifiable list of the fields
+     */
+    public List<String> values() {
+      return Collections.unmodifiableList(Arrays.asList(this.values));
+    }
+
+    /**
+     * Returns the fields of the row by column name, in the order of the columns.
+     *
+     * @return a map of column names to fields
+     */
+    public Map<String, String> toMap() {
+      Map<String, String> map = new LinkedHashMap<>();
+      for (int i = 0; i < this.columns.size(); i++) {
+        map.putIfAbsent(this.columns.get(i), this.get(i));
+      }
+      return map;
+    }
+
+    private String getNonEmpty(String column) {
+      String value = this.get(column);
+      return (value == null || value.isEmpty()) ? null : value;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("Row %d: %s", this.number, Arrays.toString(this.values));
+    }
+  }
+}
@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 import com.google.common.collect.ImmutableMap;
 import com.stripe.BaseStripeTest;
+import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Charge;
 import com.stripe.model.ChargeCollection;
@@ -14,6 +15,7 @@ import com.stripe.param.ChargeUpdateParams;
 import java.util.HashMap;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
 
 public class ChargeTest extends BaseStripeTest {
   public static final String CHARGE_ID = "ch_123";
@@ -60,6 +62,20 @@ public class ChargeTest extends BaseStripeTest {
     verifyRequest(ApiResource.RequestMethod.GET, String.format("/v1/charges/%s", CHARGE_ID));
   }
 
+  @Test
+  public void testRetrieveAsync() throws Exception {
+    final Charge charge = Charge.retrieveAsync(CHARGE_ID).get();
+
+    assertNotNull(charge);
+    Mockito.verify(networkSpy)
+        .requestAsync(
+            Mockito.eq(ApiResource.RequestMethod.GET),
+            Mockito.eq(String.format("%s/v1/charges/%s", Stripe.getApiBase(), CHARGE_ID)),
+            Mockito.isNull(),
+            Mockito.eq(Charge.class),
+            Mockito.isNull());
+  }
+
   @Test
   public void testUpdate() throws StripeException {
     final Charge charge = getChargeFixture();
@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.stripe.BaseStripeTest;
+import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Customer;
 import com.stripe.model.CustomerCollection;
@@ -12,6 +13,7 @@ import com.stripe.net.ApiResource;
 import java.util.HashMap;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
 
 public class CustomerTest extends BaseStripeTest {
   public static final String CUSTOMER_ID = "cus_123";
@@ -32,6 +34,23 @@ public class CustomerTest extends BaseStripeTest {
     verifyRequest(ApiResource.RequestMethod.POST, String.format("/v1/customers"), params);
   }
 
+  @Test
+  public void testCreateAsync() throws Exception {
+    final Map<String, Object> params = new HashMap<>();
+    params.put("description", "description");
+
+    final Customer customer = Customer.createAsync(params).get();
+
+    assertNotNull(customer);
+    Mockito.verify(networkSpy)
+        .requestAsync(
+            Mockito.eq(ApiResource.RequestMethod.POST),
+            Mockito.eq(String.format("%s/v1/customers", Stripe.getApiBase())),
+            Mockito.argThat(new ParamMapMatcher(params)),
+            Mockito.eq(Customer.class),
+            Mockito.isNull());
+  }
+
   @Test
   public void testRetrieve() throws StripeException {
     final Customer customer = Customer.retrieve(CUSTOMER_ID);
@@ -2,8 +2,12 @@ package com.stripe.functional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.stripe.BaseStripeTest;
+import com.stripe.Stripe;
+import com.stripe.exception.InvalidRequestException;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Account;
 import com.stripe.model.Application;
@@ -20,7 +24,9 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
 
 public class PaymentIntentTest extends BaseStripeTest {
   public static final String PAYMENT_INTENT_ID = "pi_123";
@@ -47,6 +53,41 @@ public class PaymentIntentTest extends BaseStripeTest {
     verifyRequest(ApiResource.RequestMethod.POST, String.format("/v1/payment_intents"), params);
   }
 
+  @Test
+  public void testCreateAsync() throws Exception {
+    final List<String> paymentMethodTypes = new ArrayList<>();
+    paymentMethodTypes.add("card");
+
+    final Map<String, Object> params = new HashMap<>();
+    params.put("amount", 1234);
+    params.put("currency", "usd");
+    params.put("payment_method_types", paymentMethodTypes);
+
+    final PaymentIntent paymentIntent = PaymentIntent.createAsync(params).get();
+
+    assertNotNull(paymentIntent);
+    Mockito.verify(networkSpy)
+        .requestAsync(
+            Mockito.eq(ApiResource.RequestMethod.POST),
+            Mockito.eq(String.format("%s/v1/payment_intents", Stripe.getApiBase())),
+            Mockito.argThat(new ParamMapMatcher(params)),
+            Mockito.eq(PaymentIntent.class),
+            Mockito.isNull());
+  }
+
+  @Test
+  public void testRetrieveAsyncWithNullId() {
+    final ExecutionException exception =
+        assertThrows(
+            ExecutionException.class,
+            () -> {
+              PaymentIntent.retrieveAsync(null).get();
+            });
+
+    assertTrue(exception.getCause() instanceof InvalidRequestException);
+    verifyNoRequest();
+  }
+
   @Test
   public void testRetrieve() throws StripeException {
     final PaymentIntent paymentIntent = PaymentIntent.retrieve(PAYMENT_INTENT_ID);
@@ -0,0 +1,77 @@
+package com.stripe.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class FilePagingCheckpointStoreTest {
+  private Path dir;
+
+  @BeforeEach
+  public void setUpDir() throws IOException {
+    this.dir = Files.createTempDirectory("checkpoints");
+  }
+
+  @AfterEach
+  public void tearDownDir() throws IOException {
+    for (Path path : Files.newDirectoryStream(this.dir)) {
+      Files.delete(path);
+    }
+    Files.delete(this.dir);
+  }
+
+  @Test
+  public void testSaveAndLoad() throws IOException {
+    Path path = this.dir.resolve("invoices.cursor");
+    FilePagingCheckpointStore store = new FilePagingCheckpointStore(path);
+    assertNull(store.load());
+
+    Map<String, Object> created = new HashMap<>();
+    created.put("gte", 1500000000L);
+    Map<String, Object> params = new HashMap<>();
+    params.put("created", created);
+    params.put("expand", Arrays.asList("data.customer"));
+    params.put("limit", 100);
+    params.put("starting_after", "in_122");
+    PagingCursor cursor =
+        new PagingCursor(
+            "https://api.stripe.com/v1/invoices", params, "in_123", InvoiceCollection.class);
+    store.save(cursor);
+
+    PagingCursor loaded = new FilePagingCheckpointStore(path).load();
+    assertEquals(cursor, loaded);
+    assertEquals("com.stripe.model.InvoiceCollection", loaded.getCollectionType());
+    assertNull(loaded.getRequestParams().get("starting_after"));
+    assertEquals(1500000000L, ((Map<?, ?>) loaded.getRequestParams().get("created")).get("gte"));
+    assertFalse(Files.exists(this.dir.resolve("invoices.cursor.tmp")));
+
+    store.clear();
+    assertFalse(Files.exists(path));
+    assertNull(store.load());
+  }
+
+  @Test
+  public void testRejectsUnexpectedClasses() throws IOException {
+    Path path = this.dir.resolve("invoices.cursor");
+    try (OutputStream out = Files.newOutputStream(path);
+        ObjectOutputStream objects = new ObjectOutputStream(out)) {
+      objects.writeObject(new Date());
+    }
+
+    assertThrows(IOException.class, () -> new FilePagingCheckpointStore(path).load());
+  }
+}
@@ -0,0 +1,102 @@
+package com.stripe.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.stripe.BaseStripeTest;
+import com.stripe.model.issuing.CardDetails;
+import com.stripe.model.terminal.ConnectionToken;
+import com.stripe.net.ApiResource;
+import org.junit.jupiter.api.Test;
+
+public class GeneratedTypeAdapterFactoryTest extends BaseStripeTest {
+  private static final Gson REFLECTIVE_GSON = createGson(false);
+  private static final Gson GENERATED_GSON = createGson(true);
+
+  private static Gson createGson(boolean generated) {
+    GsonBuilder builder =
+        new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES);
+    if (generated) {
+      builder.registerTypeAdapterFactory(new GeneratedTypeAdapterFactory());
+    }
+    return builder
+        .registerTypeAdapter(EphemeralKey.class, new EphemeralKeyDeserializer())
+        .registerTypeAdapter(EventData.class, new EventDataDeserializer())
+        .registerTypeAdapter(EventRequest.class, new EventRequestDeserializer())
+        .registerTypeAdapter(ExpandableField.class, new ExpandableFieldDeserializer())
+        .registerTypeAdapter(StripeRawJsonObject.class, new StripeRawJsonObjectDeserializer())
+        .registerTypeAdapterFactory(new BalanceTransactionSourceTypeAdapterFactory())
+        .registerTypeAdapterFactory(new ExternalAccountTypeAdapterFactory())
+        .registerTypeAdapterFactory(new PaymentSourceTypeAdapterFactory())
+        .create();
+  }
+
+  @Test
+  public void testCreatesAdaptersForModelClasses() {
+    GeneratedTypeAdapterFactory factory = new GeneratedTypeAdapterFactory();
+
+    assertNotNull(factory.create(REFLECTIVE_GSON, TypeToken.get(PaymentIntent.class)));
+    assertNotNull(factory.create(REFLECTIVE_GSON, TypeToken.get(Charge.Outcome.class)));
+    assertNotNull(factory.create(REFLECTIVE_GSON, TypeToken.get(ChargeCollection.class)));
+    assertNotNull(factory.create(REFLECTIVE_GSON, TypeToken.get(ConnectionToken.class)));
+
+    assertNull(factory.create(REFLECTIVE_GSON, TypeToken.get(String.class)));
+    assertNull(factory.create(REFLECTIVE_GSON, TypeToken.get(StripeObject.class)));
+    assertNull(factory.create(REFLECTIVE_GSON, TypeToken.get(PaymentSource.class)));
+    assertNull(
+        factory.create(
+            REFLECTIVE_GSON, TypeToken.getParameterized(ExpandableField.class, Customer.class)));
+  }
+
+  @Test
+  public void testApiResourceUsesGeneratedAdapters() {
+    assertEquals(
+        GeneratedTypeAdapters.class,
+        ApiResource.GSON.getAdapter(Invoice.class).getClass().getEnclosingClass());
+  }
+
+  @Test
+  public void testDeserializesLikeReflectiveAdapters() throws Exception {
+    assertSameDeserialization(
+        "/api_fixtures/payment_intent_with_expansions.json", PaymentIntent.class);
+    assertSameDeserialization(
+        "/api_fixtures/payment_intent_last_payment_error.json", PaymentIntent.class);
+    assertSameDeserialization("/api_fixtures/charge_level3.json", Charge.Level3.class);
+    assertSameDeserialization("/api_fixtures/charge_outcome.json", Charge.Outcome.class);
+    assertSameDeserialization("/api_fixtures/subscription.json", Subscription.class);
+    assertSameDeserialization(
+        "/api_fixtures/source_transactions.json", SourceTransactionCollection.class);
+    assertSameDeserialization(
+        "/api_fixtures/external_account_collection.json", ExternalAccountCollection.class);
+    assertSameDeserialization("/api_fixtures/person_old_document_expanded.json", Person.class);
+    assertSameDeserialization("/api_fixtures/event_plan.json", Event.class);
+    assertSameDeserialization("/api_fixtures/issuing/card_details.json", CardDetails.class);
+    assertSameDeserialization(
+        "/api_fixtures/terminal/connection_token.json", ConnectionToken.class);
+  }
+
+  @Test
+  public void testDeserializesNullAndUnknownProperties() {
+    assertNull(GENERATED_GSON.fromJson("null", PaymentIntent.class));
+
+    PaymentIntent paymentIntent =
+        GENERATED_GSON.fromJson(
+            "{\"id\": \"pi_123\", \"unknown\": {\"nested\": [1, 2]}, \"amount\": 100}",
+            PaymentIntent.class);
+    assertEquals("pi_123", paymentIntent.getId());
+    assertEquals(Long.valueOf(100), paymentIntent.getAmount());
+  }
+
+  private <T> void assertSameDeserialization(String fixture, Class<T> clazz) throws Exception {
+    String data = getResourceAsString(fixture);
+    T expected = REFLECTIVE_GSON.fromJson(data, clazz);
+    T actual = GENERATED_GSON.fromJson(data, clazz);
+    // Compare the serialized objects, as not all model classes implement equals.
+    assertEquals(REFLECTIVE_GSON.toJson(expected), REFLECTIVE_GSON.toJson(actual), fixture);
+  }
+}
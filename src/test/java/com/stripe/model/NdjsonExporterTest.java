@@ -0,0 +1,268 @@
+package com.stripe.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.stripe.BaseStripeTest;
+import com.stripe.Stripe;
+import com.stripe.exception.InvalidRequestException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import lombok.Cleanup;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class NdjsonExporterTest extends BaseStripeTest {
+  private static final int CUSTOMERS = 7;
+
+  private static final int PAGE_SIZE = 3;
+
+  private Path dir;
+
+  @BeforeEach
+  public void setUpDir() throws IOException {
+    this.dir = Files.createTempDirectory("export");
+  }
+
+  @AfterEach
+  public void tearDownDir() throws IOException {
+    try (Stream<Path> paths = Files.list(this.dir)) {
+      for (Path path : paths.collect(Collectors.toList())) {
+        Files.delete(path);
+      }
+    }
+    Files.delete(this.dir);
+  }
+
+  /**
+   * Serves the customers {@code cus_1} to {@code cus_7} by pages of 3, with a field no model class
+   * has. The request for the page after {@code failAfter} fails once.
+   */
+  private static class CustomersDispatcher extends Dispatcher {
+    final List<String> startingAfters = Collections.synchronizedList(new ArrayList<>());
+    String failAfter;
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+      String startingAfter = request.getRequestUrl().queryParameter("starting_after");
+      startingAfters.add(startingAfter);
+      if (startingAfter != null && startingAfter.equals(failAfter)) {
+        failAfter = null;
+        return new MockResponse()
+            .setResponseCode(400)
+            .setBody("{\"error\": {\"type\": \"invalid_request_error\", \"message\": \"Boom\"}}");
+      }
+
+      int start = (startingAfter == null) ? 1 : Integer.parseInt(startingAfter.substring(4)) + 1;
+      int end = Math.min(start + PAGE_SIZE - 1, CUSTOMERS);
+      List<String> data = new ArrayList<>();
+      for (int i = start; i <= end; i++) {
+        data.add(
+            String.format(
+                "{\"id\": \"cus_%d\", \"object\": \"customer\", \"x_custom\": {\"n\": %d}}", i, i));
+      }
+      return new MockResponse()
+          .setBody(
+              String.format(
+                  "{\"object\": \"list\", \"url\": \"/v1/customers\", \"has_more\": %s,"
+                      + " \"data\": [%s]}",
+                  end < CUSTOMERS, String.join(", ", data)));
+    }
+  }
+
+  private static List<String> readIds(Path path) throws IOException {
+    List<String> ids = new ArrayList<>();
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(path)), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        JsonObject object = JsonParser.parseString(line).getAsJsonObject();
+        ids.add(object.get("id").getAsString());
+        // fields unknown to the model classes are kept
+        assertEquals(
+            Integer.parseInt(object.get("id").getAsString().substring(4)),
+            object.getAsJsonObject("x_custom").get("n").getAsInt());
+      }
+    }
+    return ids;
+  }
+
+  private List<String> fileNames() throws IOException {
+    try (Stream<Path> paths = Files.list(this.dir)) {
+      return paths.map(path -> path.getFileName().toString()).sorted().collect(Collectors.toList());
+    }
+  }
+
+  @Test
+  public void testExport() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.setDispatcher(new CustomersDispatcher());
+    server.start();
+    Stripe.overrideApiBase(server.url("").toString().replaceAll("/$", ""));
+
+    NdjsonExporter exporter =
+        NdjsonExporter.builder("/v1/customers", this.dir).setMaxObjectsPerFile(3).build();
+    NdjsonExporter.Stats stats = exporter.run();
+
+    assertEquals(
+        Arrays.asList(
+            "customers-00000.ndjson.gz", "customers-00001.ndjson.gz", "customers-00002.ndjson.gz"),
+        fileNames());
+    assertEquals(
+        Arrays.asList("cus_1", "cus_2", "cus_3"),
+        readIds(this.dir.resolve("customers-00000.ndjson.gz")));
+    assertEquals(Arrays.asList("cus_7"), readIds(this.dir.resolve("customers-00002.ndjson.gz")));
+
+    assertEquals(7, stats.getObjects());
+    assertEquals(3, stats.getPages());
+    assertEquals(3, stats.getFiles());
+    long size = 0;
+    for (String name : fileNames()) {
+      size += Files.size(this.dir.resolve(name));
+    }
+    assertEquals(size, stats.getBytesWritten());
+    assertEquals(stats, exporter.getStats());
+  }
+
+  @Test
+  public void testRotatesBySize() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.setDispatcher(new CustomersDispatcher());
+    server.start();
+    Stripe.overrideApiBase(server.url("").toString().replaceAll("/$", ""));
+
+    NdjsonExporter.builder("/v1/customers", this.dir)
+        .setFilePrefix("snapshot")
+        .setMaxBytesPerFile(1)
+        .build()
+        .run();
+
+    assertEquals(
+        Arrays.asList(
+            "snapshot-00000.ndjson.gz", "snapshot-00001.ndjson.gz", "snapshot-00002.ndjson.gz"),
+        fileNames());
+  }
+
+  @Test
+  public void testResumesFromCheckpoint() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    CustomersDispatcher dispatcher = new CustomersDispatcher();
+    dispatcher.failAfter = "cus_6";
+    server.setDispatcher(dispatcher);
+    server.start();
+    Stripe.overrideApiBase(server.url("").toString().replaceAll("/$", ""));
+
+    Path cursorPath = this.dir.resolve("customers.cursor");
+    NdjsonExporter exporter =
+        NdjsonExporter.builder("/v1/customers", this.dir)
+            .setMaxObjectsPerFile(3)
+            .setCheckpointStore(new FilePagingCheckpointStore(cursorPath))
+            .build();
+
+    assertThrows(InvalidRequestException.class, exporter::run);
+    assertEquals(
+        Arrays.asList("customers-00000.ndjson.gz", "customers-00001.ndjson.gz", "customers.cursor"),
+        fileNames());
+    assertEquals("cus_6", new FilePagingCheckpointStore(cursorPath).load().getLastId());
+
+    // the second run starts after the last complete file
+    exporter.run();
+    assertEquals(
+        Arrays.asList(
+            "customers-00000.ndjson.gz", "customers-00001.ndjson.gz", "customers-00002.ndjson.gz"),
+        fileNames());
+    assertEquals(Arrays.asList("cus_7"), readIds(this.dir.resolve("customers-00002.ndjson.gz")));
+    assertEquals(Arrays.asList(null, "cus_3", "cus_6", "cus_6"), dispatcher.startingAfters);
+    assertNull(new FilePagingCheckpointStore(cursorPath).load());
+    assertFalse(Files.exists(this.dir.resolve("customers-00002.ndjson.gz.part")));
+    assertTrue(exporter.getStats().getObjectsPerSecond() >= 0);
+  }
+
+  @Test
+  public void testOverwritesFilesAfterCheckpoint() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    CustomersDispatcher dispatcher = new CustomersDispatcher();
+    server.setDispatcher(dispatcher);
+    server.start();
+    Stripe.overrideApiBase(server.url("").toString().replaceAll("/$", ""));
+
+    // a previous run completed the second file but stopped before saving its position
+    Path cursorPath = this.dir.resolve("customers.cursor");
+    new FilePagingCheckpointStore(cursorPath)
+        .save(
+            new PagingCursor(
+                Stripe.getApiBase() + "/v1/customers", null, "cus_3", RawJsonCollection.class, 1));
+    Files.write(this.dir.resolve("customers-00001.ndjson.gz"), new byte[] {1, 2, 3});
+
+    NdjsonExporter.builder("/v1/customers", this.dir)
+        .setMaxObjectsPerFile(3)
+        .setCheckpointStore(new FilePagingCheckpointStore(cursorPath))
+        .build()
+        .run();
+
+    assertEquals(
+        Arrays.asList("customers-00001.ndjson.gz", "customers-00002.ndjson.gz"), fileNames());
+    assertEquals(
+        Arrays.asList("cus_4", "cus_5", "cus_6"),
+        readIds(this.dir.resolve("customers-00001.ndjson.gz")));
+    assertEquals(Arrays.asList("cus_3", "cus_6"), dispatcher.startingAfters);
+  }
+
+  @Test
+  public void testRejectsCheckpointWithOtherParams() throws Exception {
+    Path cursorPath = this.dir.resolve("export.cursor");
+    new FilePagingCheckpointStore(cursorPath)
+        .save(
+            new PagingCursor(
+                Stripe.getApiBase() + "/v1/customers",
+                Collections.singletonMap("email", "jenny@example.com"),
+                "cus_3",
+                RawJsonCollection.class,
+                1));
+
+    NdjsonExporter exporter =
+        NdjsonExporter.builder("/v1/customers", this.dir)
+            .setParams(Collections.singletonMap("email", "other@example.com"))
+            .setCheckpointStore(new FilePagingCheckpointStore(cursorPath))
+            .build();
+    assertThrows(IllegalStateException.class, exporter::run);
+  }
+
+  @Test
+  public void testRejectsCheckpointOfAnotherList() throws Exception {
+    Path cursorPath = this.dir.resolve("export.cursor");
+    new FilePagingCheckpointStore(cursorPath)
+        .save(
+            new PagingCursor(
+                Stripe.getApiBase() + "/v1/invoices", null, "in_123", RawJsonCollection.class));
+
+    NdjsonExporter exporter =
+        NdjsonExporter.builder("/v1/customers", this.dir)
+            .setCheckpointStore(new FilePagingCheckpointStore(cursorPath))
+            .build();
+    assertThrows(IllegalStateException.class, exporter::run);
+  }
+}
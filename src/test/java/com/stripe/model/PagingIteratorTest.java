@@ -1,23 +1,34 @@
 package com.stripe.model;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 import com.stripe.BaseStripeTest;
+import com.stripe.Stripe;
+import com.stripe.exception.AutoPagingException;
+import com.stripe.exception.InvalidRequestException;
 import com.stripe.exception.StripeException;
 import com.stripe.net.ApiResource;
 import com.stripe.net.RequestOptions;
 import com.stripe.net.RequestOptions.RequestOptionsBuilder;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
-import org.mockito.invocation.InvocationOnMock;
-import org.mockito.stubbing.Answer;
 
 public class PagingIteratorTest extends BaseStripeTest {
   /**
@@ -41,30 +52,29 @@ public class PagingIteratorTest extends BaseStripeTest {
 
   private static class PageableModelCollection extends StripeCollection<PageableModel> {}
 
+  private final List<String> pages = new ArrayList<>();
+
+  private int count = 0;
+
+  private PageableModelCollection nextPage() {
+    if (count >= pages.size()) {
+      throw new RuntimeException("Page out of bounds");
+    }
+
+    return ApiResource.GSON.fromJson(pages.get(count++), PageableModelCollection.class);
+  }
+
   /** Sets the mock page fixtures. */
   @BeforeEach
   public void setUpMockPages() throws IOException, StripeException {
-    final List<String> pages = new ArrayList<>();
     pages.add(getResourceAsString("/model_fixtures/pageable_model_page_0.json"));
     pages.add(getResourceAsString("/model_fixtures/pageable_model_page_1.json"));
     pages.add(getResourceAsString("/model_fixtures/pageable_model_page_2.json"));
 
-    Mockito.doAnswer(
-            new Answer<PageableModelCollection>() {
-              private int count = 0;
-
-              // essentially all we're doing here is returning the first page of
-              // results on the first request and the second page of results on
-              // the second
-              @Override
-              public PageableModelCollection answer(InvocationOnMock invocation) {
-                if (count >= pages.size()) {
-                  throw new RuntimeException("Page out of bounds");
-                }
-
-                return ApiResource.GSON.fromJson(pages.get(count++), PageableModelCollection.class);
-              }
-            })
+    // essentially all we're doing here is returning the first page of
+    // results on the first request and the second page of results on
+    // the second
+    Mockito.doAnswer(invocation -> nextPage())
         .when(networkSpy)
         .request(
             Mockito.any(ApiResource.RequestMethod.class),
@@ -72,6 +82,14 @@ public class PagingIteratorTest extends BaseStripeTest {
             Mockito.<Map<String, Object>>any(),
             Mockito.<Class<PageableModelCollection>>any(),
             Mockito.<RequestOptions>any());
+    Mockito.doAnswer(invocation -> CompletableFuture.completedFuture(nextPage()))
+        .when(networkSpy)
+        .requestAsync(
+            Mockito.any(ApiResource.RequestMethod.class),
+            Mockito.anyString(),
+            Mockito.<Map<String, Object>>any(),
+            Mockito.<Class<PageableModelCollection>>any(),
+            Mockito.<RequestOptions>any());
   }
 
   @Test
@@ -148,4 +166,289 @@ public class PagingIteratorTest extends BaseStripeTest {
     verifyRequest(ApiResource.RequestMethod.GET, "/v1/pageable_models", page2Params, options);
     verifyNoMoreInteractions(networkSpy);
   }
+
+  private void verifyPageRequestAsync(Map<String, Object> params) {
+    Mockito.verify(networkSpy)
+        .requestAsync(
+            Mockito.eq(ApiResource.RequestMethod.GET),
+            Mockito.eq(String.format("%s/v1/pageable_models", Stripe.getApiBase())),
+            Mockito.eq(params),
+            Mockito.<Class<PageableModelCollection>>any(),
+            Mockito.<RequestOptions>any());
+  }
+
+  @Test
+  public void testAutoPaginationWithPrefetch() throws StripeException {
+    final Map<String, Object> page0Params = new HashMap<>();
+    page0Params.put("foo", "bar");
+
+    final Map<String, Object> page1Params = new HashMap<>();
+    page1Params.put("foo", "bar");
+    page1Params.put("starting_after", "pm_124");
+
+    final Map<String, Object> page2Params = new HashMap<>();
+    page2Params.put("foo", "bar");
+    page2Params.put("starting_after", "pm_126");
+
+    final PageableModelCollection collection = PageableModel.list(page0Params, null);
+    final Iterator<PageableModel> iterator =
+        collection.autoPagingIterable(new PagingPrefetch(0.5, 1)).iterator();
+
+    // the next page is requested once half of the current page is consumed
+    assertEquals("pm_123", iterator.next().getId());
+    verifyPageRequestAsync(page1Params);
+
+    final List<String> ids = new ArrayList<>();
+    while (iterator.hasNext()) {
+      ids.add(iterator.next().getId());
+    }
+    assertEquals(4, ids.size());
+    assertEquals("pm_124", ids.get(0));
+    assertEquals("pm_127", ids.get(3));
+
+    verifyRequest(ApiResource.RequestMethod.GET, "/v1/pageable_models", page0Params);
+    verifyPageRequestAsync(page2Params);
+    verifyNoMoreInteractions(networkSpy);
+  }
+
+  @Test
+  public void testAutoPaginationWithPrefetchDepth() throws StripeException {
+    final PageableModelCollection collection = PageableModel.list(new HashMap<>(), null);
+
+    // with no threshold, the following pages are requested as soon as a page arrives
+    final Iterator<PageableModel> iterator =
+        collection.autoPagingIterable(new PagingPrefetch(0, 2)).iterator();
+    assertEquals(3, count);
+
+    final List<String> ids = new ArrayList<>();
+    iterator.forEachRemaining(model -> ids.add(model.getId()));
+    assertEquals(5, ids.size());
+    assertFalse(iterator.hasNext());
+    assertEquals(3, count);
+  }
+
+  @Test
+  public void testAutoPaginationWithPrefetchError() throws StripeException {
+    final PageableModelCollection collection = PageableModel.list(new HashMap<>(), null);
+    final InvalidRequestException error =
+        new InvalidRequestException("No such cursor", "starting_after", "req_123", null, 400, null);
+    final CompletableFuture<PageableModelCollection> failed = new CompletableFuture<>();
+    failed.completeExceptionally(error);
+    Mockito.doReturn(failed)
+        .when(networkSpy)
+        .requestAsync(
+            Mockito.any(ApiResource.RequestMethod.class),
+            Mockito.anyString(),
+            Mockito.<Map<String, Object>>any(),
+            Mockito.<Class<PageableModelCollection>>any(),
+            Mockito.<RequestOptions>any());
+
+    final Iterator<PageableModel> iterator =
+        collection.autoPagingIterable(new PagingPrefetch()).iterator();
+    assertEquals("pm_123", iterator.next().getId());
+    assertEquals("pm_124", iterator.next().getId());
+
+    // the error is thrown once the page is needed
+    final AutoPagingException e = assertThrows(AutoPagingException.class, iterator::next);
+    assertSame(error, e.getCause());
+  }
+
+  @Test
+  public void testAutoPaginationError() throws StripeException {
+    final PageableModelCollection collection = PageableModel.list(new HashMap<>(), null);
+    final InvalidRequestException error =
+        new InvalidRequestException("No such cursor", "starting_after", "req_123", null, 400, null);
+    Mockito.doThrow(error)
+        .when(networkSpy)
+        .request(
+            Mockito.any(ApiResource.RequestMethod.class),
+            Mockito.anyString(),
+            Mockito.<Map<String, Object>>any(),
+            Mockito.<Class<PageableModelCollection>>any(),
+            Mockito.<RequestOptions>any());
+
+    final Iterator<PageableModel> iterator = collection.autoPagingIterable().iterator();
+    iterator.next();
+    iterator.next();
+
+    final AutoPagingException e = assertThrows(AutoPagingException.class, iterator::next);
+    assertSame(error, e.getCause());
+  }
+
+  @Test
+  public void testAutoPagingStream() throws StripeException {
+    final PageableModelCollection collection = PageableModel.list(new HashMap<>(), null);
+
+    final Stream<PageableModel> stream = collection.autoPagingStream();
+    assertEquals(1, count);
+    assertTrue(stream.spliterator().hasCharacteristics(Spliterator.ORDERED | Spliterator.NONNULL));
+
+    final List<String> ids =
+        collection.autoPagingStream().map(PageableModel::getId).collect(Collectors.toList());
+    assertEquals(Arrays.asList("pm_123", "pm_124", "pm_125", "pm_126", "pm_127"), ids);
+  }
+
+  @Test
+  public void testAutoPagingStreamShortCircuits() throws StripeException {
+    final PageableModelCollection collection = PageableModel.list(new HashMap<>(), null);
+
+    assertEquals("pm_123", collection.autoPagingStream().findFirst().get().getId());
+    assertEquals(1, count);
+
+    assertEquals(3, collection.autoPagingStream().limit(3).count());
+    assertEquals(2, count);
+  }
+
+  @Test
+  public void testAutoPagingStreamAnyMatch() throws StripeException {
+    final PageableModelCollection collection = PageableModel.list(new HashMap<>(), null);
+
+    assertTrue(collection.autoPagingStream().anyMatch(model -> "pm_125".equals(model.getId())));
+    assertEquals(2, count);
+  }
+
+  @Test
+  public void testAutoPagingStreamError() throws StripeException {
+    final PageableModelCollection collection = PageableModel.list(new HashMap<>(), null);
+    final InvalidRequestException error =
+        new InvalidRequestException("No such cursor", "starting_after", "req_123", null, 400, null);
+    Mockito.doThrow(error)
+        .when(networkSpy)
+        .request(
+            Mockito.any(ApiResource.RequestMethod.class),
+            Mockito.anyString(),
+            Mockito.<Map<String, Object>>any(),
+            Mockito.<Class<PageableModelCollection>>any(),
+            Mockito.<RequestOptions>any());
+
+    final InvalidRequestException e =
+        assertThrows(
+            InvalidRequestException.class,
+            () -> AutoPagingException.unwrap(() -> collection.autoPagingStream().count()));
+    assertSame(error, e);
+  }
+
+  @Test
+  public void testAutoPagingStreamCloseStopsPrefetch() throws StripeException {
+    final PageableModelCollection collection = PageableModel.list(new HashMap<>(), null);
+    final CompletableFuture<PageableModelCollection> page1 = new CompletableFuture<>();
+    Mockito.doReturn(page1)
+        .when(networkSpy)
+        .requestAsync(
+            Mockito.any(ApiResource.RequestMethod.class),
+            Mockito.anyString(),
+            Mockito.<Map<String, Object>>any(),
+            Mockito.<Class<PageableModelCollection>>any(),
+            Mockito.<RequestOptions>any());
+
+    try (Stream<PageableModel> stream = collection.autoPagingStream(new PagingPrefetch(0, 2))) {
+      assertEquals("pm_123", stream.findFirst().get().getId());
+    }
+    page1.complete(nextPage());
+
+    // the page after the one in flight is never requested
+    Mockito.verify(networkSpy, Mockito.times(1))
+        .requestAsync(
+            Mockito.any(ApiResource.RequestMethod.class),
+            Mockito.anyString(),
+            Mockito.<Map<String, Object>>any(),
+            Mockito.<Class<PageableModelCollection>>any(),
+            Mockito.<RequestOptions>any());
+  }
+
+  /** Keeps the saved cursors in memory. */
+  private static class MemoryCheckpointStore implements PagingCheckpointStore {
+    final List<PagingCursor> saved = new ArrayList<>();
+    boolean cleared;
+
+    @Override
+    public PagingCursor load() {
+      return saved.isEmpty() ? null : saved.get(saved.size() - 1);
+    }
+
+    @Override
+    public void save(PagingCursor cursor) {
+      saved.add(cursor);
+    }
+
+    @Override
+    public void clear() {
+      cleared = true;
+    }
+  }
+
+  @Test
+  public void testAutoPaginationWithCheckpoints() throws StripeException {
+    final Map<String, Object> params = new HashMap<>();
+    params.put("foo", "bar");
+    final PageableModelCollection collection = PageableModel.list(params, null);
+
+    final MemoryCheckpointStore store = new MemoryCheckpointStore();
+    final Iterator<PageableModel> iterator = collection.autoPagingIterable(store, 1).iterator();
+    iterator.next();
+    iterator.next();
+    assertTrue(store.saved.isEmpty());
+
+    // the position is saved once the consumer moves past the first page
+    iterator.next();
+    assertEquals(1, store.saved.size());
+    final PagingCursor cursor = store.saved.get(0);
+    assertEquals(String.format("%s/v1/pageable_models", Stripe.getApiBase()), cursor.getUrl());
+    assertEquals(params, cursor.getRequestParams());
+    assertEquals("pm_124", cursor.getLastId());
+    assertEquals(PageableModelCollection.class.getName(), cursor.getCollectionType());
+
+    iterator.next();
+    iterator.next();
+    assertFalse(store.cleared);
+    assertEquals(2, store.saved.size());
+    assertEquals("pm_126", store.saved.get(1).getLastId());
+    assertTrue(store.saved.get(1).getRequestParams().get("starting_after") == null);
+    assertFalse(iterator.hasNext());
+    assertTrue(store.cleared);
+  }
+
+  @Test
+  public void testAutoPaginationCheckpointInterval() throws StripeException {
+    final PageableModelCollection collection = PageableModel.list(new HashMap<>(), null);
+
+    final MemoryCheckpointStore store = new MemoryCheckpointStore();
+    for (PageableModel model : collection.autoPagingIterable(store, 2)) {
+      assertTrue(model.getId().startsWith("pm_"));
+    }
+    assertEquals(1, store.saved.size());
+    assertEquals("pm_126", store.saved.get(0).getLastId());
+    assertTrue(store.cleared);
+  }
+
+  @Test
+  public void testResumeFromCursor() throws StripeException {
+    final Map<String, Object> params = new HashMap<>();
+    params.put("foo", "bar");
+    final PagingCursor cursor =
+        new PagingCursor(
+            String.format("%s/v1/pageable_models", Stripe.getApiBase()),
+            params,
+            "pm_124",
+            PageableModelCollection.class);
+    final RequestOptions options = new RequestOptionsBuilder().setApiKey("sk_paging_key").build();
+
+    // the first page was consumed by the interrupted run
+    count = 1;
+    final StripeCollection<PageableModel> resumed = cursor.resume(options);
+
+    final List<String> ids = new ArrayList<>();
+    for (PageableModel model : resumed.autoPagingIterable()) {
+      ids.add(model.getId());
+    }
+    assertEquals(Arrays.asList("pm_125", "pm_126", "pm_127"), ids);
+
+    final Map<String, Object> page1Params = new HashMap<>(params);
+    page1Params.put("starting_after", "pm_124");
+    final Map<String, Object> page2Params = new HashMap<>(params);
+    page2Params.put("starting_after", "pm_126");
+    verifyRequest(ApiResource.RequestMethod.GET, "/v1/pageable_models", page1Params, options);
+    verifyRequest(ApiResource.RequestMethod.GET, "/v1/pageable_models", page2Params, options);
+    verifyNoMoreInteractions(networkSpy);
+  }
 }
@@ -0,0 +1,187 @@
+package com.stripe.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.stripe.exception.AutoPagingException;
+import com.stripe.exception.InvalidRequestException;
+import com.stripe.exception.StripeException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+public class ParallelListerTest {
+  private static final int PAGE_SIZE = 3;
+
+  private static class Item implements HasId {
+    final String id;
+    final long created;
+
+    Item(String id, long created) {
+      this.id = id;
+      this.created = created;
+    }
+
+    @Override
+    public String getId() {
+      return id;
+    }
+
+    long getCreated() {
+      return created;
+    }
+  }
+
+  private static class ItemCollection extends StripeCollection<Item> {}
+
+  /**
+   * Lists items the way the API does: from the most recently created, filtered by {@code created}
+   * and starting after the cursor.
+   */
+  private static class FakeList implements ParallelLister.ListMethod<Item> {
+    final List<Item> items = new ArrayList<>();
+    final Set<Long> windowStarts = ConcurrentHashMap.newKeySet();
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+
+    FakeList(int count) {
+      // two items per second, listed from the most recent
+      for (int i = count - 1; i >= 0; i--) {
+        items.add(new Item(String.format("it_%04d", i), 1000 + i / 2));
+      }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ItemCollection list(Map<String, Object> params) throws StripeException {
+      int current = inFlight.incrementAndGet();
+      maxInFlight.accumulateAndGet(current, Math::max);
+      try {
+        Thread.sleep(2);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+
+      Map<String, Object> created = (Map<String, Object>) params.get("created");
+      long gte = (Long) created.get("gte");
+      long lt = (Long) created.get("lt");
+      windowStarts.add(gte);
+      String startingAfter = (String) params.get("starting_after");
+
+      List<Item> data = new ArrayList<>();
+      boolean started = startingAfter == null;
+      boolean hasMore = false;
+      for (Item item : items) {
+        if (!started) {
+          started = item.id.equals(startingAfter);
+          continue;
+        }
+        if (item.created >= gte && item.created < lt) {
+          if (data.size() == PAGE_SIZE) {
+            hasMore = true;
+            break;
+          }
+          data.add(item);
+        }
+      }
+
+      inFlight.decrementAndGet();
+      ItemCollection collection = new ItemCollection();
+      collection.setData(data);
+      collection.setHasMore(hasMore);
+      return collection;
+    }
+
+    List<String> ids() {
+      return items.stream().map(Item::getId).collect(Collectors.toList());
+    }
+  }
+
+  @Test
+  public void testOrdered() {
+    FakeList fake = new FakeList(200);
+    ParallelLister<Item> lister = new ParallelLister<>(fake, Item::getCreated, 4, 3);
+
+    try (Stream<Item> items = lister.stream(null, 1000, 1100, true)) {
+      assertEquals(fake.ids(), items.map(Item::getId).collect(Collectors.toList()));
+    }
+    assertTrue(fake.maxInFlight.get() <= 3);
+  }
+
+  @Test
+  public void testUnorderedParallelStream() {
+    FakeList fake = new FakeList(200);
+    ParallelLister<Item> lister = new ParallelLister<>(fake, Item::getCreated, 8, 4);
+
+    List<String> ids;
+    try (Stream<Item> items = lister.stream(null, 1000, 1100, false)) {
+      ids = items.parallel().map(Item::getId).collect(Collectors.toList());
+    }
+    assertEquals(200, ids.size());
+    assertEquals(new HashSet<>(fake.ids()), new HashSet<>(ids));
+    assertTrue(fake.maxInFlight.get() <= 4);
+  }
+
+  @Test
+  public void testRebalancesDenseWindows() {
+    FakeList fake = new FakeList(200);
+    ParallelLister<Item> lister = new ParallelLister<>(fake, Item::getCreated, 1, 4);
+
+    try (Stream<Item> items = lister.stream(null, 1000, 1100, true)) {
+      assertEquals(fake.ids(), items.map(Item::getId).collect(Collectors.toList()));
+    }
+    // the single window was split while it was paged
+    assertTrue(fake.windowStarts.size() > 1);
+  }
+
+  @Test
+  public void testRangeNarrowerThanWindows() {
+    FakeList fake = new FakeList(10);
+    ParallelLister<Item> lister = new ParallelLister<>(fake, Item::getCreated, 16, 2);
+
+    try (Stream<Item> items = lister.stream(null, 1002, 1004, true)) {
+      assertEquals(fake.ids().subList(2, 6), items.map(Item::getId).collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public void testError() {
+    InvalidRequestException error =
+        new InvalidRequestException("Invalid created", "created", "req_123", null, 400, null);
+    ParallelLister<Item> lister =
+        new ParallelLister<>(
+            params -> {
+              throw error;
+            },
+            Item::getCreated,
+            4,
+            2);
+
+    try (Stream<Item> items = lister.stream(Collections.emptyMap(), 1000, 1100, false)) {
+      AutoPagingException e = assertThrows(AutoPagingException.class, items::count);
+      assertSame(error, e.getCause());
+    }
+  }
+
+  @Test
+  public void testInvalidArguments() {
+    FakeList fake = new FakeList(1);
+    assertThrows(
+        IllegalArgumentException.class, () -> new ParallelLister<>(fake, Item::getCreated, 0, 1));
+    assertThrows(
+        IllegalArgumentException.class, () -> new ParallelLister<>(fake, Item::getCreated, 1, 0));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new ParallelLister<>(fake, Item::getCreated, 1, 1).stream(null, 1000, 1000, true));
+  }
+}
@@ -80,10 +80,10 @@ public class StandardizationTest {
           continue;
         }
 
-        // Skip `public static Foo retrieve(String id) {...` helper methods
+        // Skip `public static Foo retrieve(String id) {...` helper methods and their async variants
         if (String.class.equals(finalParamType)
             && parameters.size() == 1
-            && "retrieve".equals(method.getName())) {
+            && ("retrieve".equals(method.getName()) || "retrieveAsync".equals(method.getName()))) {
           continue;
         }
 
@@ -0,0 +1,240 @@
+package com.stripe.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.stripe.BaseStripeTest;
+import com.stripe.Stripe;
+import com.stripe.exception.RateLimitException;
+import com.stripe.net.BatchExecutor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class UsageRecordAggregatorTest extends BaseStripeTest {
+  private MockWebServer server;
+
+  private final AtomicInteger failuresLeft = new AtomicInteger();
+
+  private volatile int failureCode = 500;
+
+  @BeforeEach
+  public void setUpServer() throws Exception {
+    this.server = new MockWebServer();
+    this.server.setDispatcher(
+        new Dispatcher() {
+          @Override
+          public MockResponse dispatch(RecordedRequest request) {
+            if (failuresLeft.getAndDecrement() > 0) {
+              return new MockResponse()
+                  .setResponseCode(failureCode)
+                  .setBody(
+                      "{\"error\": {\"type\": \"invalid_request_error\", \"message\": \"Boom\"}}");
+            }
+            return new MockResponse()
+                .setBody("{\"id\": \"mbur_123\", \"object\": \"usage_record\"}");
+          }
+        });
+    this.server.start();
+    Stripe.overrideApiBase(this.server.url("").toString().replaceAll("/$", ""));
+  }
+
+  @AfterEach
+  public void tearDownServer() throws Exception {
+    this.server.shutdown();
+  }
+
+  /** Takes the next request, as a map of its path, idempotency key and form parameters. */
+  private Map<String, String> takeRequest() throws InterruptedException {
+    RecordedRequest request = this.server.takeRequest(5, TimeUnit.SECONDS);
+    assertNotNull(request);
+    Map<String, String> fields = new HashMap<>();
+    fields.put("path", request.getPath());
+    fields.put("idempotency_key", request.getHeader("Idempotency-Key"));
+    for (String pair : request.getBody().readUtf8().split("&")) {
+      String[] parts = pair.split("=", 2);
+      fields.put(parts[0], parts[1]);
+    }
+    return fields;
+  }
+
+  private List<Map<String, String>> takeRequests(int count) throws InterruptedException {
+    List<Map<String, String>> requests = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      requests.add(this.takeRequest());
+    }
+    requests.sort(
+        (a, b) ->
+            (a.get("path") + a.get("timestamp")).compareTo(b.get("path") + b.get("timestamp")));
+    return requests;
+  }
+
+  @Test
+  public void testAggregatesPerItemAndBucket() throws Exception {
+    UsageRecordAggregator aggregator =
+        UsageRecordAggregator.builder().setFlushInterval(null).build();
+
+    CountDownLatch done = new CountDownLatch(8);
+    for (int t = 0; t < 8; t++) {
+      new Thread(
+              () -> {
+                for (int i = 0; i < 1000; i++) {
+                  aggregator.increment("si_1", 2, 1600000025);
+                }
+                done.countDown();
+              })
+          .start();
+    }
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    aggregator.increment("si_1", 3, 1600000079);
+    aggregator.increment("si_1", 4, 1600000080);
+    aggregator.increment("si_2", 5, 1600000030);
+
+    BatchExecutor.BatchResult<UsageRecord> result = aggregator.flush();
+    assertEquals(3, result.getStats().getSucceeded());
+    assertEquals(0, aggregator.getPendingRecordCount());
+
+    List<Map<String, String>> requests = this.takeRequests(3);
+    assertEquals("/v1/subscription_items/si_1/usage_records", requests.get(0).get("path"));
+    assertEquals("1600000020", requests.get(0).get("timestamp"));
+    assertEquals("16003", requests.get(0).get("quantity"));
+    assertEquals("increment", requests.get(0).get("action"));
+    assertEquals("1600000080", requests.get(1).get("timestamp"));
+    assertEquals("4", requests.get(1).get("quantity"));
+    assertEquals("/v1/subscription_items/si_2/usage_records", requests.get(2).get("path"));
+    assertEquals("5", requests.get(2).get("quantity"));
+    assertTrue(requests.get(0).get("idempotency_key").startsWith("usage-si_1-1600000020-"));
+
+    // nothing new to send
+    assertTrue(aggregator.flush().getItems().isEmpty());
+    aggregator.close();
+  }
+
+  @Test
+  public void testRetriesFromSpillFile() throws Exception {
+    Path dir = Files.createTempDirectory("usage");
+    Path spillFile = dir.resolve("usage.spill");
+    try {
+      UsageRecordAggregator aggregator =
+          UsageRecordAggregator.builder().setFlushInterval(null).setSpillFile(spillFile).build();
+      aggregator.increment("si_1", 7, 1600000000);
+      this.failuresLeft.set(1);
+
+      BatchExecutor.BatchResult<UsageRecord> result = aggregator.flush();
+      assertEquals(1, result.getStats().getFailed());
+      assertEquals(1, aggregator.getPendingRecordCount());
+      assertTrue(Files.exists(spillFile));
+      String firstKey = this.takeRequest().get("idempotency_key");
+
+      // a new aggregator, e.g. after a restart, sends the record again with the same key
+      UsageRecordAggregator restarted =
+          UsageRecordAggregator.builder().setFlushInterval(null).setSpillFile(spillFile).build();
+      assertEquals(1, restarted.getPendingRecordCount());
+      restarted.flush();
+
+      Map<String, String> retry = this.takeRequest();
+      assertEquals(firstKey, retry.get("idempotency_key"));
+      assertEquals("7", retry.get("quantity"));
+      assertEquals(0, restarted.getPendingRecordCount());
+      assertFalse(Files.exists(spillFile));
+    } finally {
+      Files.deleteIfExists(spillFile);
+      Files.delete(dir);
+    }
+  }
+
+  @Test
+  public void testKeepsRateLimitedRecords() throws Exception {
+    UsageRecordAggregator aggregator =
+        UsageRecordAggregator.builder().setFlushInterval(null).build();
+    aggregator.increment("si_1", 3, 1600000000);
+    this.failureCode = 429;
+    this.failuresLeft.set(1);
+
+    BatchExecutor.BatchResult<UsageRecord> result = aggregator.flush();
+    assertTrue(result.getItems().get(0).getException() instanceof RateLimitException);
+    assertEquals(1, aggregator.getPendingRecordCount());
+    String firstKey = this.takeRequest().get("idempotency_key");
+
+    aggregator.flush();
+    Map<String, String> retry = this.takeRequest();
+    assertEquals(firstKey, retry.get("idempotency_key"));
+    assertEquals("3", retry.get("quantity"));
+    assertEquals(0, aggregator.getPendingRecordCount());
+    aggregator.close();
+  }
+
+  @Test
+  public void testDropsInvalidRecords() throws Exception {
+    UsageRecordAggregator aggregator =
+        UsageRecordAggregator.builder().setFlushInterval(null).build();
+    aggregator.increment("si_1", 3, 1600000000);
+    this.failureCode = 404;
+    this.failuresLeft.set(1);
+
+    BatchExecutor.BatchResult<UsageRecord> result = aggregator.flush();
+    assertEquals(1, result.getStats().getFailed());
+    assertEquals(0, aggregator.getPendingRecordCount());
+    aggregator.close();
+  }
+
+  @Test
+  public void testFlushesOnMaxBuckets() throws Exception {
+    UsageRecordAggregator aggregator =
+        UsageRecordAggregator.builder().setFlushInterval(null).setMaxBuckets(2).build();
+    aggregator.increment("si_1", 1);
+    aggregator.increment("si_2", 1);
+
+    List<Map<String, String>> requests = this.takeRequests(2);
+    assertEquals("/v1/subscription_items/si_1/usage_records", requests.get(0).get("path"));
+    assertEquals("/v1/subscription_items/si_2/usage_records", requests.get(1).get("path"));
+    aggregator.close();
+  }
+
+  @Test
+  public void testFlushesPeriodicallyAndOnClose() throws Exception {
+    UsageRecordAggregator aggregator =
+        UsageRecordAggregator.builder().setFlushInterval(Duration.ofMillis(50)).build();
+    aggregator.increment("si_1", 1);
+    assertEquals("1", this.takeRequest().get("quantity"));
+
+    aggregator.increment("si_1", 2);
+    aggregator.close();
+    assertEquals("2", this.takeRequest().get("quantity"));
+  }
+
+  @Test
+  public void testInvalidArguments() throws Exception {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> UsageRecordAggregator.builder().setBucketDuration(Duration.ofMillis(1500)).build());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> UsageRecordAggregator.builder().setFlushInterval(Duration.ZERO).build());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> UsageRecordAggregator.builder().setMaxBuckets(0).build());
+
+    UsageRecordAggregator aggregator =
+        UsageRecordAggregator.builder().setFlushInterval(null).build();
+    assertThrows(IllegalArgumentException.class, () -> aggregator.increment("si_1", -1));
+    aggregator.close();
+  }
+}
@@ -6,8 +6,10 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.google.gson.annotations.SerializedName;
+import com.stripe.param.PaymentIntentCreateParams;
 import com.stripe.param.common.EmptyParam;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -253,6 +255,49 @@ public class ApiRequestParamsConverterTest {
     assertEquals(featureMap.get("barLong"), null);
   }
 
+  @Test
+  public void testConvertMatchesJsonTreeConversion() {
+    Map<String, Object> nestedExtraParam = new HashMap<>();
+    nestedExtraParam.put("null_value", null);
+    nestedExtraParam.put("list", Arrays.asList("foo", EmptyParam.EMPTY, null, 42));
+
+    PaymentIntentCreateParams params =
+        PaymentIntentCreateParams.builder()
+            .setAmount(2000L)
+            .setCurrency("usd")
+            .setCaptureMethod(PaymentIntentCreateParams.CaptureMethod.MANUAL)
+            .setConfirm(true)
+            .addPaymentMethodType("card")
+            .addExpand("customer")
+            .putMetadata("order_id", "6735")
+            .setShipping(
+                PaymentIntentCreateParams.Shipping.builder()
+                    .setName("Jenny Rosen")
+                    .setAddress(
+                        PaymentIntentCreateParams.Shipping.Address.builder()
+                            .setLine1("1234 Main Street")
+                            .setCity("San Francisco")
+                            .putExtraParam("nested_extra", "value")
+                            .build())
+                    .build())
+            .putExtraParam("nested", nestedExtraParam)
+            .putExtraParam("date", new Date(1234567890000L))
+            .putExtraParam("double", 1.5)
+            .putExtraParam("ints", new int[] {1, 2, 3})
+            .build();
+
+    assertEquals(ApiRequestParamsConverter.convertUsingJsonTree(params), toMap(params));
+  }
+
+  @Test
+  public void testConvertMatchesJsonTreeConversionWithEmptyParams() {
+    ModelHasExtraParams fooParams = new ModelHasExtraParams(EmptyParam.EMPTY);
+    RootModelHasNestedExtraParams barParams =
+        new RootModelHasNestedExtraParams(ParamCode.ENUM_BAR, fooParams);
+
+    assertEquals(ApiRequestParamsConverter.convertUsingJsonTree(barParams), toMap(barParams));
+  }
+
   private Map<String, Object> toMap(ApiRequestParams params) {
     return converter.convert(params);
   }
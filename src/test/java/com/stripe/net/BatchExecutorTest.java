@@ -0,0 +1,182 @@
+package com.stripe.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.stripe.BaseStripeTest;
+import com.stripe.exception.InvalidRequestException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.InvoiceItem;
+import com.stripe.param.InvoiceItemCreateParams;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class BatchExecutorTest extends BaseStripeTest {
+  /** Operations returning the idempotency key they were sent with. */
+  private static List<BatchExecutor.Operation<String>> keyOperations(
+      int count, List<String> sentKeys) {
+    List<BatchExecutor.Operation<String>> operations = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      operations.add(
+          options -> {
+            sentKeys.add(options.getIdempotencyKey());
+            return options.getIdempotencyKey();
+          });
+    }
+    return operations;
+  }
+
+  @Test
+  public void testDeterministicIdempotencyKeys() {
+    BatchExecutor executor = new BatchExecutor("batch", 4);
+    List<String> sentKeys = Collections.synchronizedList(new ArrayList<>());
+
+    BatchExecutor.BatchResult<String> first = executor.execute(keyOperations(20, sentKeys));
+    BatchExecutor.BatchResult<String> second = executor.execute(keyOperations(20, sentKeys));
+
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      expected.add("batch-" + i);
+    }
+    assertEquals(
+        expected,
+        first.getItems().stream()
+            .map(BatchExecutor.ItemResult::getValue)
+            .collect(Collectors.toList()));
+    assertEquals(
+        expected,
+        second.getItems().stream()
+            .map(BatchExecutor.ItemResult::getIdempotencyKey)
+            .collect(Collectors.toList()));
+    assertEquals(40, sentKeys.size());
+    assertEquals(20, first.getStats().getSucceeded());
+    assertTrue(first.getFailures().isEmpty());
+  }
+
+  @Test
+  public void testBoundedConcurrency() {
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    List<BatchExecutor.Operation<Integer>> operations = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      int value = i;
+      operations.add(
+          options -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+              Thread.sleep(5);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            return value;
+          });
+    }
+
+    BatchExecutor.BatchResult<Integer> result = new BatchExecutor("batch", 3).execute(operations);
+
+    assertTrue(maxInFlight.get() <= 3);
+    assertTrue(maxInFlight.get() > 1);
+    assertEquals(30, result.getItems().size());
+    assertEquals(29, (int) result.getItems().get(29).getValue());
+    BatchExecutor.Stats stats = result.getStats();
+    assertTrue(stats.getMedianLatency().toMillis() >= 5);
+    assertTrue(stats.getP95Latency().compareTo(stats.getMedianLatency()) >= 0);
+    assertTrue(stats.getMaxLatency().compareTo(stats.getP95Latency()) >= 0);
+    assertTrue(stats.getOperationsPerSecond() > 0);
+  }
+
+  @Test
+  public void testCollectsFailures() {
+    InvalidRequestException error =
+        new InvalidRequestException("Invalid amount", "amount", "req_123", null, 400, null);
+    List<BatchExecutor.Operation<String>> operations =
+        Arrays.asList(
+            options -> "ok",
+            options -> {
+              throw error;
+            },
+            options -> {
+              throw new IllegalStateException("Boom");
+            },
+            options -> "ok");
+
+    BatchExecutor.BatchResult<String> result = new BatchExecutor("batch", 2).execute(operations);
+
+    assertEquals(2, result.getStats().getSucceeded());
+    assertEquals(2, result.getStats().getFailed());
+    List<BatchExecutor.ItemResult<String>> failures = result.getFailures();
+    assertEquals(2, failures.size());
+    assertEquals(1, failures.get(0).getIndex());
+    assertSame(error, failures.get(0).getException());
+    assertNull(failures.get(0).getValue());
+    assertTrue(failures.get(1).getException() instanceof IllegalStateException);
+    assertTrue(result.getItems().get(3).isSuccess());
+  }
+
+  @Test
+  public void testKeyedOperations() {
+    BatchExecutor executor = new BatchExecutor("usage-2020-10-01", 2);
+    BatchExecutor.ResourceMethod<String, String> echo = (params, options) -> params;
+
+    assertEquals(
+        "usage-2020-10-01-si_123",
+        executor.idempotencyKey(0, BatchExecutor.operation("si_123", "params", echo)));
+    assertEquals(
+        "usage-2020-10-01-7", executor.idempotencyKey(7, BatchExecutor.operation("params", echo)));
+
+    // keys too long for the API are hashed
+    String longKey = String.join("", Collections.nCopies(300, "x"));
+    String hashed = executor.idempotencyKey(0, BatchExecutor.operation(longKey, "params", echo));
+    assertEquals(64, hashed.length());
+    assertEquals(
+        hashed, executor.idempotencyKey(3, BatchExecutor.operation(longKey, "other", echo)));
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            executor.execute(
+                Arrays.asList(
+                    BatchExecutor.operation("si_123", "a", echo),
+                    BatchExecutor.operation("si_123", "b", echo))));
+  }
+
+  @Test
+  public void testInvalidArguments() {
+    assertThrows(IllegalArgumentException.class, () -> new BatchExecutor(" ", 1));
+    assertThrows(IllegalArgumentException.class, () -> new BatchExecutor("batch", 0));
+    assertTrue(new BatchExecutor("batch", 1).execute(new ArrayList<>()).getItems().isEmpty());
+  }
+
+  @Test
+  public void testResourceMethod() throws StripeException {
+    InvoiceItemCreateParams params =
+        InvoiceItemCreateParams.builder()
+            .setAmount(100L)
+            .setCurrency("usd")
+            .setCustomer("cus_123")
+            .build();
+
+    BatchExecutor.BatchResult<InvoiceItem> result =
+        new BatchExecutor("invoice-items", 2)
+            .execute(
+                Collections.singletonList(BatchExecutor.operation(params, InvoiceItem::create)));
+
+    assertTrue(result.getItems().get(0).isSuccess());
+    assertNotNull(result.getItems().get(0).getValue());
+    verifyRequest(
+        ApiResource.RequestMethod.POST,
+        "/v1/invoiceitems",
+        null,
+        RequestOptions.getDefault().toBuilder().setIdempotencyKey("invoice-items-0").build());
+  }
+}
@@ -0,0 +1,239 @@
+package com.stripe.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.stripe.BaseStripeTest;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Customer;
+import com.stripe.model.Event;
+import com.stripe.model.ExchangeRate;
+import com.stripe.model.StripeObjectInterface;
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+public class CachingStripeResponseGetterTest extends BaseStripeTest {
+  private final AtomicLong now = new AtomicLong();
+
+  private StripeResponseGetter delegate;
+
+  private CachingStripeResponseGetter getter;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setUpGetter() throws StripeException {
+    this.delegate = Mockito.mock(StripeResponseGetter.class);
+    Mockito.when(
+            this.delegate.request(
+                ArgumentMatchers.any(),
+                ArgumentMatchers.anyString(),
+                ArgumentMatchers.any(),
+                ArgumentMatchers.any(),
+                ArgumentMatchers.any()))
+        .thenAnswer(
+            invocation -> {
+              Class<? extends StripeObjectInterface> clazz = invocation.getArgument(3);
+              StripeResponse response =
+                  new StripeResponse(200, HttpHeaders.of(Collections.emptyMap()), "{\"id\":\"x\"}");
+              StripeObjectInterface resource = ApiResource.GSON.fromJson(response.body(), clazz);
+              resource.setLastResponse(response);
+              return resource;
+            });
+
+    this.getter =
+        CachingStripeResponseGetter.builder(this.delegate)
+            .setPolicy(Event.class, CachePolicy.immutable())
+            .setPolicy(ExchangeRate.class, CachePolicy.ttl(Duration.ofMinutes(1)))
+            .setMaxEntries(2)
+            .setClock(now::get)
+            .build();
+  }
+
+  private <T extends StripeObjectInterface> T get(
+      String path, Map<String, Object> params, Class<T> clazz) throws StripeException {
+    return this.getter.request(ApiResource.RequestMethod.GET, path, params, clazz, null);
+  }
+
+  private void verifyDelegateCalls(int times) throws StripeException {
+    Mockito.verify(this.delegate, Mockito.times(times))
+        .request(
+            ArgumentMatchers.any(),
+            ArgumentMatchers.anyString(),
+            ArgumentMatchers.any(),
+            ArgumentMatchers.any(),
+            ArgumentMatchers.any());
+  }
+
+  @Test
+  public void testCachesImmutableResources() throws StripeException {
+    Event first = get("/v1/events/evt_1", null, Event.class);
+    Event second = get("/v1/events/evt_1", null, Event.class);
+
+    assertNotSame(first, second);
+    assertEquals("x", second.getId());
+    verifyDelegateCalls(1);
+
+    CachingStripeResponseGetter.Stats stats = this.getter.getStats();
+    assertEquals(1, stats.getHits());
+    assertEquals(1, stats.getMisses());
+    assertEquals(1, stats.getSize());
+  }
+
+  @Test
+  public void testExpiresTtlResources() throws StripeException {
+    get("/v1/exchange_rates/usd", null, ExchangeRate.class);
+    now.addAndGet(Duration.ofSeconds(59).toNanos());
+    get("/v1/exchange_rates/usd", null, ExchangeRate.class);
+    verifyDelegateCalls(1);
+
+    now.addAndGet(Duration.ofSeconds(1).toNanos());
+    get("/v1/exchange_rates/usd", null, ExchangeRate.class);
+    verifyDelegateCalls(2);
+  }
+
+  @Test
+  public void testDoesNotCacheOtherResources() throws StripeException {
+    get("/v1/customers/cus_1", null, Customer.class);
+    get("/v1/customers/cus_1", null, Customer.class);
+
+    verifyDelegateCalls(2);
+    assertEquals(0, this.getter.getStats().getMisses());
+  }
+
+  @Test
+  public void testKeyIncludesExpand() throws StripeException {
+    get("/v1/events/evt_1", null, Event.class);
+    get("/v1/events/evt_1", ImmutableMap.of("expand", ImmutableList.of("data")), Event.class);
+    get("/v1/events/evt_1", ImmutableMap.of("expand", ImmutableList.of("data")), Event.class);
+
+    verifyDelegateCalls(2);
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() throws StripeException {
+    get("/v1/events/evt_1", null, Event.class);
+    get("/v1/events/evt_2", null, Event.class);
+    get("/v1/events/evt_1", null, Event.class);
+    get("/v1/events/evt_3", null, Event.class);
+
+    CachingStripeResponseGetter.Stats stats = this.getter.getStats();
+    assertEquals(1, stats.getEvictions());
+    assertEquals(2, stats.getSize());
+
+    get("/v1/events/evt_1", null, Event.class);
+    verifyDelegateCalls(3);
+    get("/v1/events/evt_2", null, Event.class);
+    verifyDelegateCalls(4);
+  }
+
+  @Test
+  public void testWritesInvalidateUrl() throws StripeException {
+    get("/v1/exchange_rates/usd", null, ExchangeRate.class);
+    this.getter.request(
+        ApiResource.RequestMethod.POST, "/v1/exchange_rates/usd", null, ExchangeRate.class, null);
+    get("/v1/exchange_rates/usd", null, ExchangeRate.class);
+
+    verifyDelegateCalls(3);
+  }
+
+  @Test
+  public void testInvalidatesUrlOnceWriteCompletes() throws StripeException {
+    // a read sent while the write is in flight may see the resource before the write
+    Mockito.doAnswer(
+            invocation -> {
+              get("/v1/exchange_rates/usd", null, ExchangeRate.class);
+              return new ExchangeRate();
+            })
+        .when(this.delegate)
+        .request(
+            ArgumentMatchers.eq(ApiResource.RequestMethod.POST),
+            ArgumentMatchers.anyString(),
+            ArgumentMatchers.any(),
+            ArgumentMatchers.any(),
+            ArgumentMatchers.any());
+
+    this.getter.request(
+        ApiResource.RequestMethod.POST, "/v1/exchange_rates/usd", null, ExchangeRate.class, null);
+    get("/v1/exchange_rates/usd", null, ExchangeRate.class);
+
+    verifyDelegateCalls(3);
+  }
+
+  @Test
+  public void testDoesNotCacheResponseRequestedDuringWrite() throws StripeException {
+    Mockito.doAnswer(
+            invocation -> {
+              this.getter.request(
+                  ApiResource.RequestMethod.POST,
+                  "/v1/exchange_rates/usd",
+                  null,
+                  ExchangeRate.class,
+                  null);
+              ExchangeRate rate = new ExchangeRate();
+              rate.setLastResponse(
+                  new StripeResponse(
+                      200, HttpHeaders.of(Collections.emptyMap()), "{\"id\":\"usd\"}"));
+              return rate;
+            })
+        .when(this.delegate)
+        .request(
+            ArgumentMatchers.eq(ApiResource.RequestMethod.GET),
+            ArgumentMatchers.anyString(),
+            ArgumentMatchers.any(),
+            ArgumentMatchers.any(),
+            ArgumentMatchers.any());
+
+    get("/v1/exchange_rates/usd", null, ExchangeRate.class);
+    assertEquals(0, this.getter.getStats().getSize());
+  }
+
+  @Test
+  public void testDoesNotCacheResponseWithoutBody() throws StripeException {
+    // a response deserialized while it was read, without its raw body
+    Mockito.doAnswer(
+            invocation -> {
+              Event event = new Event();
+              event.setLastResponse(
+                  new StripeResponse(200, HttpHeaders.of(Collections.emptyMap()), null, event));
+              return event;
+            })
+        .when(this.delegate)
+        .request(
+            ArgumentMatchers.any(),
+            ArgumentMatchers.anyString(),
+            ArgumentMatchers.any(),
+            ArgumentMatchers.any(),
+            ArgumentMatchers.any());
+
+    get("/v1/events/evt_1", null, Event.class);
+    get("/v1/events/evt_1", null, Event.class);
+
+    verifyDelegateCalls(2);
+    assertEquals(0, this.getter.getStats().getSize());
+  }
+
+  @Test
+  public void testForwardsStreamedRequests() throws StripeException {
+    StripeRequest request =
+        new StripeRequest(
+            ApiResource.RequestMethod.GET, "https://files.stripe.com/v1/files/file_1", null, null);
+    StripeResponseStream response =
+        new StripeResponseStream(
+            200, HttpHeaders.of(Collections.emptyMap()), new ByteArrayInputStream(new byte[0]));
+    Mockito.when(this.delegate.requestStream(request)).thenReturn(response);
+
+    assertSame(response, this.getter.requestStream(request));
+    assertSame(response, this.getter.requestStream(request));
+    Mockito.verify(this.delegate, Mockito.times(2)).requestStream(request);
+  }
+}
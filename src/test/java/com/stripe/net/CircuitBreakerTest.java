@@ -0,0 +1,149 @@
+package com.stripe.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.stripe.BaseStripeTest;
+import com.stripe.exception.CircuitBreakerOpenException;
+import com.stripe.exception.StripeException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CircuitBreakerTest extends BaseStripeTest {
+  private static final HttpHeaders EMPTY_HEADERS = HttpHeaders.of(Collections.emptyMap());
+
+  private static final StripeResponse OK = new StripeResponse(200, EMPTY_HEADERS, "{}");
+
+  private static final StripeResponse SERVER_ERROR = new StripeResponse(500, EMPTY_HEADERS, "{}");
+
+  private final AtomicLong now = new AtomicLong();
+
+  private CircuitBreaker breaker;
+
+  private StripeRequest request;
+
+  @BeforeEach
+  public void setUpBreaker() throws StripeException {
+    this.breaker =
+        new CircuitBreaker(4, 0.5, Duration.ofSeconds(10), Duration.ofSeconds(2), now::get);
+    this.request =
+        new StripeRequest(
+            ApiResource.RequestMethod.GET,
+            "https://api.stripe.com/v1/invoices/upcoming",
+            null,
+            null);
+  }
+
+  private void send(StripeResponse response) throws CircuitBreakerOpenException {
+    CircuitBreaker.Call call = this.breaker.acquire(this.request);
+    call.start();
+    call.complete(response);
+  }
+
+  private CircuitBreaker.Stats stats() {
+    return this.breaker.getStats().get("GET /v1/invoices/upcoming");
+  }
+
+  @Test
+  public void testEndpointOf() throws StripeException {
+    assertEquals(
+        "GET /v1/customers/{id}",
+        CircuitBreaker.endpointOf(
+            new StripeRequest(
+                ApiResource.RequestMethod.GET,
+                "https://api.stripe.com/v1/customers/cus_123",
+                null,
+                null)));
+    assertEquals(
+        "POST /v1/payment_intents/{id}/confirm",
+        CircuitBreaker.endpointOf(
+            new StripeRequest(
+                ApiResource.RequestMethod.POST,
+                "https://api.stripe.com/v1/payment_intents/pi_123/confirm",
+                null,
+                null)));
+    assertEquals(
+        "DELETE /v1/customers/{id}/sources/{id}",
+        CircuitBreaker.endpointOf(
+            new StripeRequest(
+                ApiResource.RequestMethod.DELETE,
+                "https://api.stripe.com/v1/customers/cus_123/sources/card_1Ab",
+                null,
+                null)));
+    assertEquals("GET /v1/invoices/upcoming", CircuitBreaker.endpointOf(this.request));
+  }
+
+  @Test
+  public void testOpensWhenFailureRateIsReached() throws StripeException {
+    send(OK);
+    send(SERVER_ERROR);
+    send(OK);
+    assertEquals(CircuitBreaker.State.CLOSED, stats().getState());
+
+    send(SERVER_ERROR);
+    assertEquals(CircuitBreaker.State.OPEN, stats().getState());
+
+    CircuitBreakerOpenException exception =
+        assertThrows(CircuitBreakerOpenException.class, () -> send(OK));
+    assertEquals("GET /v1/invoices/upcoming", exception.getEndpoint());
+    assertEquals(1, stats().getRejected());
+  }
+
+  @Test
+  public void testConnectionErrorsAndSlowCallsAreFailures() throws StripeException {
+    send(null);
+    send(OK);
+
+    CircuitBreaker.Call call = this.breaker.acquire(this.request);
+    call.start();
+    now.addAndGet(Duration.ofSeconds(3).toNanos());
+    call.complete(OK);
+
+    assertEquals(2, stats().getFailures());
+
+    send(OK);
+    assertEquals(CircuitBreaker.State.OPEN, stats().getState());
+  }
+
+  @Test
+  public void testCallsNeverStartedAreIgnored() throws StripeException {
+    this.breaker.acquire(this.request).complete(null);
+
+    assertEquals(0, stats().getRecorded());
+  }
+
+  @Test
+  public void testHalfOpenClosesAfterSuccessfulTrial() throws StripeException {
+    for (int i = 0; i < 4; i++) {
+      send(SERVER_ERROR);
+    }
+    now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+    CircuitBreaker.Call trial = this.breaker.acquire(this.request);
+    assertEquals(CircuitBreaker.State.HALF_OPEN, stats().getState());
+    // Only one trial request is let through at a time
+    assertThrows(CircuitBreakerOpenException.class, () -> this.breaker.acquire(this.request));
+
+    trial.start();
+    trial.complete(OK);
+
+    assertEquals(CircuitBreaker.State.CLOSED, stats().getState());
+    assertEquals(0, stats().getRecorded());
+  }
+
+  @Test
+  public void testHalfOpenReopensAfterFailedTrial() throws StripeException {
+    for (int i = 0; i < 4; i++) {
+      send(SERVER_ERROR);
+    }
+    now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+    send(SERVER_ERROR);
+
+    assertEquals(CircuitBreaker.State.OPEN, stats().getState());
+    assertThrows(CircuitBreakerOpenException.class, () -> send(OK));
+  }
+}
@@ -0,0 +1,153 @@
+package com.stripe.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.stripe.BaseStripeTest;
+import com.stripe.exception.StripeException;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ConcurrencyLimiterTest extends BaseStripeTest {
+  private static final HttpHeaders EMPTY_HEADERS = HttpHeaders.of(Collections.emptyMap());
+
+  private static final StripeResponse OK = new StripeResponse(200, EMPTY_HEADERS, "{}");
+
+  private static final StripeResponse RATE_LIMITED =
+      new StripeResponse(429, EMPTY_HEADERS, "{\"error\":{\"type\":\"invalid_request_error\"}}");
+
+  private ConcurrencyLimiter limiter;
+
+  @BeforeEach
+  public void setUpLimiter() {
+    this.limiter = new ConcurrencyLimiter(2, 1, 4, 0.5, true);
+  }
+
+  private static StripeRequest getRequest(String stripeAccount) throws StripeException {
+    return new StripeRequest(
+        ApiResource.RequestMethod.GET,
+        "http://example.com/get",
+        null,
+        RequestOptions.builder().setApiKey("sk_test_123").setStripeAccount(stripeAccount).build());
+  }
+
+  @Test
+  public void testQueuesRequestsAboveLimit() throws StripeException {
+    StripeRequest request = getRequest(null);
+
+    ConcurrencyLimiter.Permit first = this.limiter.acquire(request);
+    this.limiter.acquire(request);
+    CompletableFuture<ConcurrencyLimiter.Permit> third = this.limiter.acquireAsync(request);
+
+    assertFalse(third.isDone());
+    assertEquals(1, this.limiter.getStats("sk_test_123", null).getQueued());
+
+    first.release(null);
+
+    assertTrue(third.isDone());
+    assertEquals(2, this.limiter.getStats("sk_test_123", null).getInFlight());
+    assertEquals(0, this.limiter.getStats("sk_test_123", null).getQueued());
+  }
+
+  @Test
+  public void testAdditiveIncrease() throws StripeException {
+    StripeRequest request = getRequest(null);
+
+    for (int i = 0; i < 4; i++) {
+      this.limiter.acquire(request).release(OK);
+    }
+
+    // Two successes per unit of limit, then three
+    ConcurrencyLimiter.Stats stats = this.limiter.getStats("sk_test_123", null);
+    assertTrue(stats.getLimit() > 3 && stats.getLimit() < 4);
+
+    for (int i = 0; i < 20; i++) {
+      this.limiter.acquire(request).release(OK);
+    }
+    assertEquals(4, this.limiter.getStats("sk_test_123", null).getLimit(), 1e-9);
+  }
+
+  @Test
+  public void testMultiplicativeDecreaseOncePerRound() throws StripeException {
+    StripeRequest request = getRequest(null);
+
+    ConcurrencyLimiter.Permit first = this.limiter.acquire(request);
+    ConcurrencyLimiter.Permit second = this.limiter.acquire(request);
+    first.release(RATE_LIMITED);
+    second.release(RATE_LIMITED);
+
+    ConcurrencyLimiter.Stats stats = this.limiter.getStats("sk_test_123", null);
+    assertEquals(1, stats.getLimit(), 1e-9);
+    assertEquals(1, stats.getThrottled());
+
+    // Requests sent after the decrease can decrease the limit again, down to the minimum
+    this.limiter.acquire(request).release(RATE_LIMITED);
+    stats = this.limiter.getStats("sk_test_123", null);
+    assertEquals(1, stats.getLimit(), 1e-9);
+    assertEquals(2, stats.getThrottled());
+  }
+
+  @Test
+  public void testLockTimeoutIsThrottled() {
+    assertTrue(
+        ConcurrencyLimiter.isThrottled(
+            new StripeResponse(409, EMPTY_HEADERS, "{\"error\":{\"code\":\"lock_timeout\"}}")));
+    assertFalse(
+        ConcurrencyLimiter.isThrottled(
+            new StripeResponse(
+                409, EMPTY_HEADERS, "{\"error\":{\"code\":\"idempotency_error\"}}")));
+    assertFalse(ConcurrencyLimiter.isThrottled(new StripeResponse(500, EMPTY_HEADERS, "{}")));
+  }
+
+  @Test
+  public void testSeparateLimitPerAccount() throws StripeException {
+    this.limiter.acquire(getRequest("acct_1"));
+    this.limiter.acquire(getRequest("acct_1"));
+
+    CompletableFuture<ConcurrencyLimiter.Permit> other =
+        this.limiter.acquireAsync(getRequest("acct_2"));
+    assertTrue(other.isDone());
+
+    assertEquals(2, this.limiter.getStats("sk_test_123", "acct_1").getInFlight());
+    assertEquals(1, this.limiter.getStats("sk_test_123", "acct_2").getInFlight());
+  }
+
+  @Test
+  public void testCancelledWaiterIsSkipped() throws StripeException {
+    this.limiter = new ConcurrencyLimiter(1, 1, 4, 0.5, true);
+    StripeRequest request = getRequest(null);
+
+    ConcurrencyLimiter.Permit first = this.limiter.acquire(request);
+    CompletableFuture<ConcurrencyLimiter.Permit> cancelled = this.limiter.acquireAsync(request);
+    CompletableFuture<ConcurrencyLimiter.Permit> waiting = this.limiter.acquireAsync(request);
+    cancelled.cancel(false);
+    first.release(null);
+
+    assertTrue(waiting.isDone());
+    assertEquals(1, this.limiter.getStats("sk_test_123", null).getInFlight());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsedIdlePartitions() throws StripeException {
+    this.limiter = new ConcurrencyLimiter(2, 1, 4, 0.5, true, 2);
+
+    this.limiter.acquire(getRequest("acct_1")).release(RATE_LIMITED);
+    ConcurrencyLimiter.Permit busy = this.limiter.acquire(getRequest("acct_2"));
+    this.limiter.acquire(getRequest("acct_3")).release(OK);
+
+    // acct_1 is forgotten and starts again from the initial limit
+    ConcurrencyLimiter.Stats stats = this.limiter.getStats("sk_test_123", "acct_1");
+    assertEquals(2, stats.getLimit(), 1e-9);
+    assertEquals(0, stats.getThrottled());
+
+    // acct_2, with a request in flight, is kept even when it is the least recently used
+    this.limiter.acquire(getRequest("acct_1")).release(RATE_LIMITED);
+    this.limiter.acquire(getRequest("acct_4"));
+    assertEquals(1, this.limiter.getStats("sk_test_123", "acct_2").getInFlight());
+    busy.release(OK);
+    assertEquals(0, this.limiter.getStats("sk_test_123", "acct_2").getInFlight());
+  }
+}
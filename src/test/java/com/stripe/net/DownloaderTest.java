@@ -0,0 +1,322 @@
+package com.stripe.net;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.stripe.BaseStripeTest;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.InvalidRequestException;
+import com.stripe.model.File;
+import com.stripe.util.CsvReader;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.Cleanup;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DownloaderTest extends BaseStripeTest {
+  private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-");
+
+  private static final byte[] CONTENTS = new byte[300 * 1024];
+
+  static {
+    new Random(42).nextBytes(CONTENTS);
+  }
+
+  private Path dir;
+
+  @BeforeEach
+  public void setUpDir() throws Exception {
+    this.dir = Files.createTempDirectory("downloads");
+  }
+
+  @AfterEach
+  public void tearDownDir() throws Exception {
+    for (Path path : Files.newDirectoryStream(this.dir)) {
+      Files.delete(path);
+    }
+    Files.delete(this.dir);
+  }
+
+  /**
+   * Serves the contents with an entity tag, honoring {@code Range} headers unless told otherwise or
+   * the {@code If-Range} header does not match. The first responses can be cut short by closing the
+   * connection during the body.
+   */
+  private static class ContentsDispatcher extends Dispatcher {
+    final AtomicInteger interruptions;
+    final boolean honorRange;
+    final List<String> ranges = new ArrayList<>();
+    final List<String> ifRanges = new ArrayList<>();
+    final List<Integer> codes = new ArrayList<>();
+    volatile String etag = "\"v1\"";
+
+    ContentsDispatcher(int interruptions, boolean honorRange) {
+      this.interruptions = new AtomicInteger(interruptions);
+      this.honorRange = honorRange;
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+      String range = request.getHeader("Range");
+      String ifRange = request.getHeader("If-Range");
+      this.ranges.add(range);
+      this.ifRanges.add(ifRange);
+
+      MockResponse response = new MockResponse().setHeader("ETag", this.etag);
+      int start = 0;
+      Matcher matcher = (range != null) ? RANGE.matcher(range) : null;
+      if (this.honorRange
+          && matcher != null
+          && matcher.matches()
+          && (ifRange == null || ifRange.equals(this.etag))) {
+        start = Integer.parseInt(matcher.group(1));
+        if (start >= CONTENTS.length) {
+          return response
+              .setResponseCode(416)
+              .setBody("{\"error\": {\"message\": \"Range not satisfiable\"}}");
+        }
+        response
+            .setResponseCode(206)
+            .setHeader(
+                "Content-Range",
+                String.format("bytes %d-%d/%d", start, CONTENTS.length - 1, CONTENTS.length));
+      }
+      response.setBody(new Buffer().write(Arrays.copyOfRange(CONTENTS, start, CONTENTS.length)));
+      this.codes.add((start > 0) ? 206 : 200);
+      if (this.interruptions.getAndDecrement() > 0) {
+        response.setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+      }
+      return response;
+    }
+  }
+
+  private static RequestOptions retries(int maxNetworkRetries) {
+    return RequestOptions.builder().setMaxNetworkRetries(maxNetworkRetries).build();
+  }
+
+  @Test
+  public void testDownloadToPath() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    ContentsDispatcher dispatcher = new ContentsDispatcher(0, true);
+    server.setDispatcher(dispatcher);
+    server.start();
+
+    Path path = this.dir.resolve("report.csv");
+    List<long[]> progress = new ArrayList<>();
+    long size =
+        ApiResource.download(
+            server.url("/v1/files/file_123/contents").toString(),
+            path,
+            (downloaded, total) -> progress.add(new long[] {downloaded, total}),
+            null);
+
+    assertEquals(CONTENTS.length, size);
+    assertArrayEquals(CONTENTS, Files.readAllBytes(path));
+    assertFalse(Files.exists(this.dir.resolve("report.csv.part")));
+    assertTrue(progress.size() > 1);
+    assertArrayEquals(
+        new long[] {CONTENTS.length, CONTENTS.length}, progress.get(progress.size() - 1));
+
+    RecordedRequest request = server.takeRequest();
+    assertEquals("Bearer sk_test_123", request.getHeader("Authorization"));
+    assertNull(request.getHeader("Range"));
+  }
+
+  @Test
+  public void testResumesInterruptedDownload() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    ContentsDispatcher dispatcher = new ContentsDispatcher(1, true);
+    server.setDispatcher(dispatcher);
+    server.start();
+
+    Path path = this.dir.resolve("report.csv");
+    long size =
+        ApiResource.download(
+            server.url("/v1/files/file_123/contents").toString(), path, null, retries(1));
+
+    assertEquals(CONTENTS.length, size);
+    assertArrayEquals(CONTENTS, Files.readAllBytes(path));
+    assertEquals(2, dispatcher.ranges.size());
+    assertNull(dispatcher.ranges.get(0));
+    assertTrue(RANGE.matcher(dispatcher.ranges.get(1)).matches());
+  }
+
+  @Test
+  public void testKeepsPartialFileWhenResumesAreExhausted() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    ContentsDispatcher dispatcher = new ContentsDispatcher(1, true);
+    server.setDispatcher(dispatcher);
+    server.start();
+    String url = server.url("/v1/files/file_123/contents").toString();
+
+    Path path = this.dir.resolve("report.csv");
+    assertThrows(
+        ApiConnectionException.class, () -> ApiResource.download(url, path, null, retries(0)));
+    assertFalse(Files.exists(path));
+    Path partPath = this.dir.resolve("report.csv.part");
+    long partSize = Files.size(partPath);
+    assertTrue(partSize < CONTENTS.length);
+
+    // The next download resumes from the partial file.
+    assertEquals(CONTENTS.length, ApiResource.download(url, path, null, retries(0)));
+    assertArrayEquals(CONTENTS, Files.readAllBytes(path));
+    assertEquals(String.format("bytes=%d-", partSize), dispatcher.ranges.get(1));
+    assertEquals("\"v1\"", dispatcher.ifRanges.get(1));
+    assertEquals(Arrays.asList(200, 206), dispatcher.codes);
+    assertFalse(Files.exists(this.dir.resolve("report.csv.part.meta")));
+  }
+
+  @Test
+  public void testRestartsWhenContentsChanged() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    ContentsDispatcher dispatcher = new ContentsDispatcher(1, true);
+    server.setDispatcher(dispatcher);
+    server.start();
+    String url = server.url("/v1/files/file_123/contents").toString();
+
+    Path path = this.dir.resolve("report.csv");
+    assertThrows(
+        ApiConnectionException.class, () -> ApiResource.download(url, path, null, retries(0)));
+    dispatcher.etag = "\"v2\"";
+
+    // The partial file is of another version: the server sends the whole contents again.
+    assertEquals(CONTENTS.length, ApiResource.download(url, path, null, retries(0)));
+    assertArrayEquals(CONTENTS, Files.readAllBytes(path));
+    assertEquals("\"v1\"", dispatcher.ifRanges.get(1));
+    assertEquals(Arrays.asList(200, 200), dispatcher.codes);
+  }
+
+  @Test
+  public void testRestartsPartialFileFromAnotherUrl() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    ContentsDispatcher dispatcher = new ContentsDispatcher(1, true);
+    server.setDispatcher(dispatcher);
+    server.start();
+
+    Path path = this.dir.resolve("report.csv");
+    assertThrows(
+        ApiConnectionException.class,
+        () ->
+            ApiResource.download(
+                server.url("/v1/files/file_123/contents").toString(), path, null, retries(0)));
+    ApiResource.download(
+        server.url("/v1/files/file_456/contents").toString(), path, null, retries(0));
+
+    assertArrayEquals(CONTENTS, Files.readAllBytes(path));
+    assertEquals(Arrays.asList(null, null), dispatcher.ranges);
+  }
+
+  @Test
+  public void testRestartsWhenPartialFileIsTooLong() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    ContentsDispatcher dispatcher = new ContentsDispatcher(0, true);
+    server.setDispatcher(dispatcher);
+    server.start();
+
+    Path path = this.dir.resolve("report.csv");
+    String url = server.url("/v1/files/file_123/contents").toString();
+    Files.write(this.dir.resolve("report.csv.part"), new byte[CONTENTS.length + 10]);
+    Files.write(
+        this.dir.resolve("report.csv.part.meta"),
+        Arrays.asList(url, "\"v1\""),
+        StandardCharsets.UTF_8);
+    ApiResource.download(url, path, null, null);
+
+    assertArrayEquals(CONTENTS, Files.readAllBytes(path));
+    assertEquals(
+        Arrays.asList(String.format("bytes=%d-", CONTENTS.length + 10), null), dispatcher.ranges);
+  }
+
+  @Test
+  public void testResumesStreamWhenRangeIsIgnored() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    ContentsDispatcher dispatcher = new ContentsDispatcher(1, false);
+    server.setDispatcher(dispatcher);
+    server.start();
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    long size =
+        ApiResource.download(
+            server.url("/v1/files/file_123/contents").toString(), out, null, retries(1));
+
+    // The bytes already written are skipped in the full contents sent again.
+    assertEquals(CONTENTS.length, size);
+    assertArrayEquals(CONTENTS, out.toByteArray());
+    assertEquals(2, dispatcher.ranges.size());
+  }
+
+  @Test
+  public void testErrorResponse() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.enqueue(
+        new MockResponse()
+            .setResponseCode(404)
+            .setBody(
+                "{\"error\": {\"type\": \"invalid_request_error\", \"message\": \"No such file\"}}"));
+    server.start();
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    InvalidRequestException e =
+        assertThrows(
+            InvalidRequestException.class,
+            () ->
+                ApiResource.download(
+                    server.url("/v1/files/file_123/contents").toString(), out, null, null));
+    assertEquals("No such file", e.getStripeError().getMessage());
+    assertEquals(0, out.size());
+  }
+
+  @Test
+  public void testFileDownload() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.setDispatcher(new ContentsDispatcher(0, true));
+    server.start();
+
+    File file = new File();
+    file.setId("file_123");
+    file.setUrl(server.url("/v1/files/file_123/contents").toString());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertEquals(CONTENTS.length, file.download(out, null));
+    assertArrayEquals(CONTENTS, out.toByteArray());
+    assertEquals("/v1/files/file_123/contents", server.takeRequest().getPath());
+  }
+
+  @Test
+  public void testFileReadCsv() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setBody("id,amount\nch_1,100\nch_2,250\n"));
+    server.start();
+
+    File file = new File();
+    file.setId("file_123");
+    file.setUrl(server.url("/v1/files/file_123/contents").toString());
+
+    try (CsvReader reader = file.readCsv(null)) {
+      assertEquals(Arrays.asList("id", "amount"), reader.getColumns());
+      assertEquals(350, reader.stream().mapToLong(row -> row.getLong("amount")).sum());
+    }
+    assertEquals("/v1/files/file_123/contents", server.takeRequest().getPath());
+  }
+}
@@ -422,6 +422,47 @@ public class FormEncoderTest extends BaseStripeTest {
     }
   }
 
+  @Test
+  public void testCreateHttpContentMatchesFlattenedParams() throws IOException {
+    final Map<String, Object> metadata = new LinkedHashMap<>();
+    for (int i = 0; i < 50; i++) {
+      metadata.put("key_" + i, "value " + i + " \u00e9\u4e2d\ud83d\ude00 \ud83d & = ? [x]");
+    }
+    final List<Object> items = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      items.add(ImmutableMap.of("price", "price_" + i, "quantity", i, "tax_rates", new int[] {i}));
+    }
+
+    final Map<String, Object> params = new LinkedHashMap<>();
+    params.put("metadata", metadata);
+    params.put("items", items);
+    params.put("empty_items", ImmutableList.of(Collections.emptyMap()));
+    params.put("nested", ImmutableMap.of("a[b]", ImmutableMap.of("c", TestEnum.FOO)));
+    params.put("date", Date.from(Instant.ofEpochSecond(1234567890)));
+    params.put("null", null);
+
+    List<KeyValuePair<String, String>> flatParams = new ArrayList<>();
+    for (KeyValuePair<String, Object> param : FormEncoder.flattenParams(params)) {
+      flatParams.add(new KeyValuePair<>(param.getKey(), (String) param.getValue()));
+    }
+    String expected = FormEncoder.createQueryString(flatParams);
+
+    HttpContent content = FormEncoder.createHttpContent(params);
+    assertEquals("application/x-www-form-urlencoded;charset=UTF-8", content.contentType());
+    assertEquals(expected, new String(content.byteArrayContent(), StandardCharsets.UTF_8));
+    assertEquals(expected, FormEncoder.createQueryString(params));
+  }
+
+  @Test
+  public void testCreateQueryStringSkipsStreams() {
+    final Map<String, Object> params = new LinkedHashMap<>();
+    params.put("file", new ByteArrayInputStream(new byte[0]));
+    params.put("files", ImmutableList.of(new ByteArrayInputStream(new byte[0])));
+    params.put("string", "String!");
+
+    assertEquals("string=String%21", FormEncoder.createQueryString(params));
+  }
+
   @Test
   public void testFlattenParams() {
     @Data
@@ -1,7 +1,9 @@
 package com.stripe.net;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.withSettings;
@@ -10,9 +12,23 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.stripe.BaseStripeTest;
 import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.CircuitBreakerOpenException;
 import com.stripe.exception.StripeException;
+import java.io.ByteArrayInputStream;
 import java.net.ConnectException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -119,6 +135,42 @@ public class HttpClientTest extends BaseStripeTest {
     assertEquals(1, response.numRetries());
   }
 
+  @Test
+  public void testRequestWithRetriesStreamedBodyNotResent() throws StripeException {
+    StripeRequest request =
+        new StripeRequest(
+            ApiResource.RequestMethod.POST,
+            "http://example.com/files",
+            ImmutableMap.of("file", new ByteArrayInputStream(new byte[] {1, 2, 3})),
+            RequestOptions.builder().setMaxNetworkRetries(2).build());
+    Mockito.when(this.client.request(request))
+        .thenReturn(new StripeResponse(409, emptyHeaders, "{}"))
+        .thenReturn(new StripeResponse(200, emptyHeaders, "{}"));
+
+    StripeResponse response = this.client.requestWithRetries(request);
+
+    assertEquals(409, response.code());
+    assertEquals(0, response.numRetries());
+  }
+
+  @Test
+  public void testRequestStreamWithRetries() throws Exception {
+    StripeResponseStream unavailable =
+        new StripeResponseStream(503, emptyHeaders, new ByteArrayInputStream(new byte[0]));
+    StripeResponseStream ok =
+        new StripeResponseStream(200, emptyHeaders, new ByteArrayInputStream(new byte[] {1, 2}));
+    Mockito.doThrow(new ApiConnectionException("foo", new ConnectException("timeout")))
+        .doReturn(unavailable)
+        .doReturn(ok)
+        .when(this.client)
+        .requestStream(this.request);
+
+    StripeResponseStream response = this.client.requestStreamWithRetries(this.request);
+
+    assertSame(ok, response);
+    Mockito.verify(this.client, Mockito.times(3)).requestStream(this.request);
+  }
+
   @Test
   public void testRequestWithRetriesConflictServiceUnavailable() throws StripeException {
     Mockito.when(this.client.request(this.request))
@@ -144,4 +196,262 @@ public class HttpClientTest extends BaseStripeTest {
     assertEquals(200, response.code());
     assertEquals(1, response.numRetries());
   }
+
+  @Test
+  public void testRequestWithRetriesAsync() throws Exception {
+    Mockito.when(this.client.request(this.request))
+        .thenThrow(new ApiConnectionException("foo", new ConnectException("timeout or something")))
+        .thenReturn(new StripeResponse(500, emptyHeaders, "{}"))
+        .thenReturn(new StripeResponse(200, emptyHeaders, "{}"));
+
+    StripeResponse response = this.client.requestWithRetriesAsync(this.request).get();
+
+    assertNotNull(response);
+    assertEquals(200, response.code());
+    assertEquals(2, response.numRetries());
+  }
+
+  @Test
+  public void testRequestWithRetriesAsyncRethrowAfterAllAttempts() throws StripeException {
+    Mockito.when(this.client.request(this.request))
+        .thenThrow(new ApiConnectionException("1", new ConnectException("timeout 1")))
+        .thenThrow(new ApiConnectionException("2", new ConnectException("timeout 2")))
+        .thenThrow(new ApiConnectionException("3", new ConnectException("timeout 3")));
+
+    ExecutionException e =
+        assertThrows(
+            ExecutionException.class,
+            () -> {
+              this.client.requestWithRetriesAsync(this.request).get();
+            });
+    assertTrue(e.getCause() instanceof ApiConnectionException);
+    assertEquals("3", e.getCause().getMessage());
+  }
+
+  @Test
+  public void testDefaultAsyncExecutorIsBounded() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    Mockito.when(this.client.request(this.request))
+        .thenAnswer(
+            invocation -> {
+              maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+              release.await();
+              running.decrementAndGet();
+              return new StripeResponse(200, emptyHeaders, "{}");
+            });
+
+    List<CompletableFuture<StripeResponse>> futures = new ArrayList<>();
+    for (int i = 0; i < HttpClient.DEFAULT_ASYNC_THREADS * 3; i++) {
+      futures.add(this.client.requestAsync(this.request));
+    }
+    Thread.sleep(200);
+    release.countDown();
+
+    for (CompletableFuture<StripeResponse> future : futures) {
+      assertEquals(200, future.get().code());
+    }
+    // the requests beyond the pool's threads were queued rather than given a thread each
+    assertTrue(maxRunning.get() <= HttpClient.DEFAULT_ASYNC_THREADS);
+  }
+
+  @Test
+  public void testRequestWithRetriesAsyncSchedulesRetries() throws Exception {
+    List<CompletableFuture<Void>> delays = new ArrayList<>();
+    this.client.networkRetriesSleep = true;
+    this.client.setAsyncExecutor(Runnable::run);
+    this.client.setRetryScheduler(
+        new RetryScheduler(Executors.newSingleThreadScheduledExecutor()) {
+          @Override
+          public CompletableFuture<Void> delay(Duration delay) {
+            assertTrue(delay.compareTo(HttpClient.minNetworkRetriesDelay) >= 0);
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            delays.add(future);
+            return future;
+          }
+        });
+    Mockito.when(this.client.request(this.request))
+        .thenReturn(new StripeResponse(500, emptyHeaders, "{}"))
+        .thenReturn(new StripeResponse(200, emptyHeaders, "{}"));
+
+    CompletableFuture<StripeResponse> future = this.client.requestWithRetriesAsync(this.request);
+
+    // The first attempt failed and the retry is waiting on the scheduler, without holding a thread
+    assertFalse(future.isDone());
+    assertEquals(1, delays.size());
+    Mockito.verify(this.client, Mockito.times(1)).request(this.request);
+
+    delays.get(0).complete(null);
+
+    assertTrue(future.isDone());
+    assertEquals(200, future.get().code());
+    assertEquals(1, future.get().numRetries());
+  }
+
+  @Test
+  public void testRequestWithRetriesStopsWhenDelayCannotBeScheduled() throws Exception {
+    this.client.networkRetriesSleep = true;
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    executor.shutdown();
+    this.client.setRetryScheduler(new RetryScheduler(executor));
+    Mockito.when(this.client.request(this.request))
+        .thenReturn(new StripeResponse(500, emptyHeaders, "{}"))
+        .thenReturn(new StripeResponse(200, emptyHeaders, "{}"));
+
+    StripeResponse response = this.client.requestWithRetries(this.request);
+
+    assertEquals(500, response.code());
+    assertEquals(0, response.numRetries());
+  }
+
+  @Test
+  public void testRetrySchedulerDelay() throws Exception {
+    RetryScheduler scheduler = RetryScheduler.getDefault();
+
+    assertTrue(scheduler.delay(Duration.ZERO).isDone());
+
+    CompletableFuture<Void> delay = scheduler.delay(Duration.ofMillis(10));
+    delay.get();
+    assertTrue(delay.isDone());
+  }
+
+  @Test
+  public void testRequestWithRetriesDeniedByBudget() throws StripeException {
+    RetryBudget budget = new RetryBudget(0, 1);
+    this.client.setRetryBudget(budget);
+    Mockito.when(this.client.request(this.request))
+        .thenReturn(new StripeResponse(500, emptyHeaders, "{}"))
+        .thenReturn(new StripeResponse(500, emptyHeaders, "{}"))
+        .thenReturn(new StripeResponse(200, emptyHeaders, "{}"));
+
+    StripeResponse response = this.client.requestWithRetries(this.request);
+
+    // The only token in the budget was spent on the first retry
+    assertEquals(500, response.code());
+    assertEquals(1, response.numRetries());
+
+    RetryBudget.Stats stats = budget.getStats();
+    assertEquals(1, stats.getFirstAttempts());
+    assertEquals(1, stats.getRetriesAllowed());
+    assertEquals(1, stats.getRetriesDenied());
+  }
+
+  @Test
+  public void testRequestWithRetriesAsyncDeniedByBudget() throws Exception {
+    RetryBudget budget = new RetryBudget(0, 1);
+    budget.tryAcquireRetry();
+    this.client.setRetryBudget(budget);
+    Mockito.when(this.client.request(this.request))
+        .thenReturn(new StripeResponse(500, emptyHeaders, "{}"))
+        .thenReturn(new StripeResponse(200, emptyHeaders, "{}"));
+
+    StripeResponse response = this.client.requestWithRetriesAsync(this.request).get();
+
+    assertEquals(500, response.code());
+    assertEquals(0, response.numRetries());
+    assertEquals(1, budget.getStats().getRetriesDenied());
+  }
+
+  @Test
+  public void testRequestWithoutRetryDoesNotConsumeBudget() throws StripeException {
+    RetryBudget budget = new RetryBudget(0, 1);
+    this.client.setRetryBudget(budget);
+    Mockito.when(this.client.request(this.request))
+        .thenReturn(new StripeResponse(400, emptyHeaders, "{}"));
+
+    this.client.requestWithRetries(this.request);
+
+    assertEquals(0, budget.getStats().getRetriesDenied());
+    assertEquals(1, budget.getStats().getAvailableTokens(), 1e-9);
+  }
+
+  @Test
+  public void testRequestWithRetriesReleasesConcurrencyLimit() throws Exception {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 10, 0.5, true);
+    this.client.setConcurrencyLimiter(limiter);
+    Mockito.when(this.client.request(this.request))
+        .thenReturn(new StripeResponse(429, emptyHeaders, "{}"))
+        .thenReturn(new StripeResponse(200, emptyHeaders, "{}"))
+        .thenReturn(new StripeResponse(200, emptyHeaders, "{}"));
+
+    assertEquals(429, this.client.requestWithRetries(this.request).code());
+    assertEquals(200, this.client.requestWithRetriesAsync(this.request).get().code());
+    assertEquals(200, this.client.requestWithRetries(this.request).code());
+
+    ConcurrencyLimiter.Stats stats = limiter.getStats(this.request.options().getApiKey(), null);
+    assertEquals(0, stats.getInFlight());
+    assertEquals(1, stats.getThrottled());
+  }
+
+  @Test
+  public void testRequestWithRetriesRejectedByCircuitBreaker() throws Exception {
+    this.client.setCircuitBreaker(
+        new CircuitBreaker(2, 1, Duration.ofMinutes(1), Duration.ofMinutes(1)));
+    Mockito.when(this.client.request(this.request))
+        .thenReturn(new StripeResponse(500, emptyHeaders, "{}"));
+
+    // The first request and its first retry fail, opening the breaker before the second retry
+    assertThrows(
+        CircuitBreakerOpenException.class,
+        () -> {
+          this.client.requestWithRetries(this.request);
+        });
+    Mockito.verify(this.client, Mockito.times(2)).request(this.request);
+
+    ExecutionException e =
+        assertThrows(
+            ExecutionException.class,
+            () -> {
+              this.client.requestWithRetriesAsync(this.request).get();
+            });
+    assertTrue(e.getCause() instanceof CircuitBreakerOpenException);
+    Mockito.verify(this.client, Mockito.times(2)).request(this.request);
+  }
+
+  @Test
+  public void testRequestWithRetriesHedged() throws Exception {
+    RequestHedger hedger = new RequestHedger();
+    this.client.setRequestHedger(hedger);
+    Mockito.when(this.client.request(this.request))
+        .thenReturn(new StripeResponse(200, emptyHeaders, "{}"));
+
+    assertEquals(200, this.client.requestWithRetries(this.request).code());
+    assertEquals(200, this.client.requestWithRetriesAsync(this.request).get().code());
+
+    assertEquals(2, hedger.getStats().getRequests());
+  }
+
+  @Test
+  public void testRequestWithRetriesHedgedDoesNotUseAsyncExecutor() throws Exception {
+    this.client.setRequestHedger(new RequestHedger());
+    this.client.setAsyncExecutor(
+        runnable -> {
+          throw new RejectedExecutionException();
+        });
+    List<String> threadNames = new CopyOnWriteArrayList<>();
+    Mockito.when(this.client.request(this.request))
+        .thenAnswer(
+            invocation -> {
+              threadNames.add(Thread.currentThread().getName());
+              return new StripeResponse(200, emptyHeaders, "{}");
+            });
+
+    assertEquals(200, this.client.requestWithRetries(this.request).code());
+
+    assertEquals(1, threadNames.size());
+    assertTrue(threadNames.get(0).startsWith("stripe-hedged-request-"));
+  }
+
+  @Test
+  public void testGetUserAgentHeadersIsCached() {
+    Map<String, List<String>> headers = HttpClient.getUserAgentHeaders();
+
+    assertEquals(
+        Collections.singletonList(HttpClient.buildUserAgentString()), headers.get("User-Agent"));
+    assertEquals(
+        Collections.singletonList(HttpClient.buildXStripeClientUserAgentString()),
+        headers.get("X-Stripe-Client-User-Agent"));
+    assertSame(headers, HttpClient.getUserAgentHeaders());
+  }
 }
@@ -1,12 +1,19 @@
 package com.stripe.net;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.stripe.BaseStripeTest;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.Test;
@@ -177,4 +184,82 @@ public class HttpContentTest extends BaseStripeTest {
     assertEquals(9, stringContent.length());
     assertEquals("key=value", stringContent);
   }
+
+  @Test
+  public void testMultipartFileContentIsStreamed() throws IOException {
+    File file = File.createTempFile("upload", ".txt");
+    file.deleteOnExit();
+    Files.write(file.toPath(), "Hello World!".getBytes(StandardCharsets.UTF_8));
+    List<KeyValuePair<String, Object>> data = new ArrayList<KeyValuePair<String, Object>>();
+    data.add(new KeyValuePair<String, Object>("purpose", "dispute_evidence"));
+    data.add(new KeyValuePair<String, Object>("file", file));
+
+    HttpContent content = HttpContent.buildMultipartFormDataContent(data, "test-boundary");
+    assertTrue(content.streamed());
+    assertTrue(content.repeatable());
+
+    String expected =
+        "--test-boundary\r\nContent-Disposition: form-data; name=\"purpose\"\r\n\r\n"
+            + "dispute_evidence\r\n"
+            + "--test-boundary\r\nContent-Disposition: form-data; name=\"file\"; filename=\"%s\"\r\n"
+            + "Content-Type: text/plain\r\nContent-Transfer-Encoding: binary\r\n\r\n"
+            + "Hello World!\r\n"
+            + "--test-boundary--\r\n";
+    expected = String.format(expected, file.getName());
+    assertEquals(expected.getBytes(StandardCharsets.UTF_8).length, content.contentLength());
+
+    // The file is read each time the content is written.
+    for (int i = 0; i < 2; i++) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      content.writeTo(out);
+      assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void testMultipartStreamContentCanOnlyBeWrittenOnce() throws IOException {
+    List<KeyValuePair<String, Object>> data = new ArrayList<KeyValuePair<String, Object>>();
+    data.add(
+        new KeyValuePair<String, Object>(
+            "key", new ByteArrayInputStream("Hello World!".getBytes(StandardCharsets.UTF_8))));
+
+    HttpContent content = HttpContent.buildMultipartFormDataContent(data, "test-boundary");
+    assertTrue(content.streamed());
+    assertFalse(content.repeatable());
+    assertEquals(-1, content.contentLength());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    content.writeTo(out);
+    assertEquals(168, out.size());
+    assertThrows(IOException.class, () -> content.writeTo(new ByteArrayOutputStream()));
+  }
+
+  @Test
+  public void testMultipartStreamContentReadIntoMemory() throws IOException {
+    List<KeyValuePair<String, Object>> data = new ArrayList<KeyValuePair<String, Object>>();
+    data.add(
+        new KeyValuePair<String, Object>(
+            "key", new ByteArrayInputStream("Hello World!".getBytes(StandardCharsets.UTF_8))));
+
+    HttpContent content = HttpContent.buildMultipartFormDataContent(data, "test-boundary");
+    byte[] bytes = content.byteArrayContent();
+
+    // Once read into memory, the content is sent from memory.
+    assertFalse(content.streamed());
+    assertTrue(content.repeatable());
+    assertEquals(168, content.contentLength());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    content.writeTo(out);
+    assertArrayEquals(bytes, out.toByteArray());
+  }
+
+  @Test
+  public void testMultipartMissingFile() {
+    List<KeyValuePair<String, Object>> data = new ArrayList<KeyValuePair<String, Object>>();
+    data.add(new KeyValuePair<String, Object>("file", new File("/does/not/exist.txt")));
+
+    assertThrows(
+        FileNotFoundException.class,
+        () -> HttpContent.buildMultipartFormDataContent(data, "test-boundary"));
+  }
 }
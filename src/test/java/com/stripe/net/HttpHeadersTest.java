@@ -2,6 +2,7 @@ package com.stripe.net;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -10,6 +11,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.stripe.BaseStripeTest;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
@@ -101,4 +103,51 @@ public class HttpHeadersTest extends BaseStripeTest {
         ImmutableMap.of("Some-Header", ImmutableList.of("First value", "Second value")),
         headers.map());
   }
+
+  @Test
+  public void testWithAdditionalHeaderReplacesExistingHeader() {
+    HttpHeaders headers = HttpHeaders.of(this.headerMap);
+    HttpHeaders newHeaders = headers.withAdditionalHeader("SOME-HEADER", "New value");
+    assertEquals(ImmutableMap.of("SOME-HEADER", ImmutableList.of("New value")), newHeaders.map());
+    assertEquals(ImmutableList.of("First value", "Second value"), headers.allValues("Some-Header"));
+  }
+
+  @Test
+  public void testMapIsCaseInsensitiveAndUnmodifiable() {
+    HttpHeaders headers = HttpHeaders.of(this.headerMap);
+    assertTrue(headers.map().containsKey("SOME-HEADER"));
+    assertEquals(ImmutableList.of("First value", "Second value"), headers.map().get("some-header"));
+    assertThrows(
+        UnsupportedOperationException.class,
+        () -> {
+          headers.map().put("New-Header", ImmutableList.of("New value"));
+        });
+    assertThrows(
+        UnsupportedOperationException.class,
+        () -> {
+          headers.allValues("Some-Header").add("Third value");
+        });
+  }
+
+  @Test
+  public void testNullHeaderName() {
+    Map<String, List<String>> map = new HashMap<>();
+    map.put(null, ImmutableList.of("HTTP/1.1 200 OK"));
+    map.put("Request-Id", ImmutableList.of("req_123"));
+    HttpHeaders headers = HttpHeaders.of(map);
+    assertEquals(ImmutableList.of("HTTP/1.1 200 OK"), headers.allValues(null));
+    assertEquals("req_123", headers.firstValue("request-id").orElse(null));
+    assertEquals(map, headers.map());
+  }
+
+  @Test
+  public void testEquals() {
+    HttpHeaders headers = HttpHeaders.of(this.headerMap);
+    HttpHeaders sameHeaders =
+        HttpHeaders.of(Collections.emptyMap())
+            .withAdditionalHeader("Some-Header", ImmutableList.of("First value", "Second value"));
+    assertEquals(headers, sameHeaders);
+    assertEquals(headers.hashCode(), sameHeaders.hashCode());
+    assertNotEquals(headers, headers.withAdditionalHeader("New-Header", "New value"));
+  }
 }
@@ -0,0 +1,69 @@
+package com.stripe.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.stripe.BaseStripeTest;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import lombok.Cleanup;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.Test;
+
+public class HttpURLConnectionClientTest extends BaseStripeTest {
+  private final HttpURLConnectionClient client = new HttpURLConnectionClient();
+
+  @Test
+  public void testMultipartFileRequestHasFixedLength() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.start();
+
+    File file = File.createTempFile("upload", ".txt");
+    file.deleteOnExit();
+    Files.write(file.toPath(), "Hello World!".getBytes(StandardCharsets.UTF_8));
+    StripeRequest request =
+        new StripeRequest(
+            ApiResource.RequestMethod.POST,
+            server.url("/v1/files").toString(),
+            ImmutableMap.of("purpose", "dispute_evidence", "file", file),
+            null);
+    assertEquals(200, this.client.request(request).code());
+
+    RecordedRequest recorded = server.takeRequest();
+    assertTrue(recorded.getBody().readUtf8().contains("\r\n\r\nHello World!\r\n"));
+    assertEquals(
+        Long.toString(request.content().contentLength()), recorded.getHeader("Content-Length"));
+    assertNull(recorded.getHeader("Transfer-Encoding"));
+  }
+
+  @Test
+  public void testMultipartStreamRequestIsChunked() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.start();
+
+    StripeRequest request =
+        new StripeRequest(
+            ApiResource.RequestMethod.POST,
+            server.url("/v1/files").toString(),
+            ImmutableMap.of(
+                "purpose",
+                "dispute_evidence",
+                "file",
+                new ByteArrayInputStream("Hello World!".getBytes(StandardCharsets.UTF_8))),
+            null);
+    assertEquals(200, this.client.request(request).code());
+
+    RecordedRequest recorded = server.takeRequest();
+    assertTrue(recorded.getBody().readUtf8().contains("\r\n\r\nHello World!\r\n"));
+    assertEquals("chunked", recorded.getHeader("Transfer-Encoding"));
+    assertNull(recorded.getHeader("Content-Length"));
+  }
+}
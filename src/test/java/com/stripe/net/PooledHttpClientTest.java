@@ -0,0 +1,362 @@
+package com.stripe.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.stripe.BaseStripeTest;
+import com.stripe.Stripe;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Balance;
+import com.stripe.util.StreamUtils;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PooledHttpClientTest extends BaseStripeTest {
+  private PooledHttpClient client;
+
+  @BeforeEach
+  public void setUpClient() {
+    this.client = new PooledHttpClient(new ConnectionPool(4, 2, Duration.ofSeconds(30)));
+  }
+
+  private StripeRequest getRequest(MockWebServer server) throws StripeException {
+    return new StripeRequest(
+        ApiResource.RequestMethod.GET, server.url("/v1/balance").toString(), null, null);
+  }
+
+  @Test
+  public void testReusesConnection() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setBody("{\"n\":1}"));
+    server.enqueue(new MockResponse().setBody("{\"n\":2}"));
+    server.enqueue(new MockResponse().setBody("{\"n\":3}"));
+    server.start();
+
+    assertEquals("{\"n\":1}", this.client.request(getRequest(server)).body());
+    assertEquals("{\"n\":2}", this.client.request(getRequest(server)).body());
+    assertEquals("{\"n\":3}", this.client.request(getRequest(server)).body());
+
+    assertEquals(0, server.takeRequest().getSequenceNumber());
+    assertEquals(1, server.takeRequest().getSequenceNumber());
+    assertEquals(2, server.takeRequest().getSequenceNumber());
+
+    ConnectionPool.Stats stats = this.client.getPoolStats();
+    assertEquals(1, stats.getHandshakes());
+    assertEquals(2, stats.getReused());
+    assertEquals(0, stats.getLeased());
+    assertEquals(1, stats.getIdle());
+    assertEquals(0, stats.getPending());
+  }
+
+  @Test
+  public void testChunkedResponse() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setChunkedBody("{\"object\":\"balance\"}", 4));
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.start();
+
+    assertEquals("{\"object\":\"balance\"}", this.client.request(getRequest(server)).body());
+    assertEquals("{}", this.client.request(getRequest(server)).body());
+    assertEquals(1, this.client.getPoolStats().getHandshakes());
+  }
+
+  @Test
+  public void testStreamsResponseBody() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    String body = String.join("", Collections.nCopies(20000, "0123456789"));
+    server.enqueue(new MockResponse().setChunkedBody(body, 4096));
+    server.enqueue(new MockResponse().setBody(body));
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.start();
+
+    StripeResponseStream chunked = this.client.requestStream(getRequest(server));
+    assertEquals('0', chunked.body().read());
+    // the connection is held until the body is closed
+    assertEquals(1, this.client.getPoolStats().getLeased());
+    assertEquals(body.substring(1), StreamUtils.readToEnd(chunked.body(), StandardCharsets.UTF_8));
+    assertEquals(0, this.client.getPoolStats().getLeased());
+
+    StripeResponseStream fixedLength = this.client.requestStream(getRequest(server));
+    assertEquals(body, StreamUtils.readToEnd(fixedLength.body(), StandardCharsets.UTF_8));
+    assertEquals("{}", this.client.request(getRequest(server)).body());
+
+    ConnectionPool.Stats stats = this.client.getPoolStats();
+    assertEquals(1, stats.getHandshakes());
+    assertEquals(2, stats.getReused());
+  }
+
+  @Test
+  public void testDiscardsConnectionOfUnreadBody() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.enqueue(
+        new MockResponse().setBody(String.join("", Collections.nCopies(20000, "0123456789"))));
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.start();
+
+    StripeResponseStream response = this.client.requestStream(getRequest(server));
+    assertEquals('0', response.body().read());
+    response.close();
+    assertThrows(IOException.class, () -> response.body().read());
+
+    assertEquals("{}", this.client.request(getRequest(server)).body());
+    assertEquals(2, this.client.getPoolStats().getHandshakes());
+  }
+
+  @Test
+  public void testRouteIgnoresDefaultLocale() throws Exception {
+    Locale defaultLocale = Locale.getDefault();
+    Locale.setDefault(new Locale("tr", "TR"));
+    try {
+      ConnectionPool.Route route =
+          ConnectionPool.Route.of(new URL("HTTPS://FILES.STRIPE.COM"), null);
+      assertEquals("https", route.getScheme());
+      assertEquals("files.stripe.com", route.getHost());
+    } finally {
+      Locale.setDefault(defaultLocale);
+    }
+  }
+
+  @Test
+  public void testPostRequest() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setResponseCode(402).setBody("{\"error\":{}}"));
+    server.start();
+
+    StripeRequest request =
+        new StripeRequest(
+            ApiResource.RequestMethod.POST,
+            server.url("/v1/charges").toString(),
+            ImmutableMap.of("amount", 100, "currency", "usd"),
+            null);
+    StripeResponse response = this.client.request(request);
+
+    assertEquals(402, response.code());
+    assertEquals("{\"error\":{}}", response.body());
+
+    RecordedRequest recorded = server.takeRequest();
+    assertEquals("POST", recorded.getMethod());
+    assertEquals("/v1/charges", recorded.getPath());
+    assertEquals("amount=100&currency=usd", recorded.getBody().readUtf8());
+    assertEquals("23", recorded.getHeader("Content-Length"));
+    assertEquals("Bearer sk_test_123", recorded.getHeader("Authorization"));
+    assertEquals(
+        "application/x-www-form-urlencoded;charset=UTF-8", recorded.getHeader("Content-Type"));
+  }
+
+  @Test
+  public void testMultipartFileRequest() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.start();
+
+    File file = File.createTempFile("upload", ".txt");
+    file.deleteOnExit();
+    Files.write(file.toPath(), "Hello World!".getBytes(StandardCharsets.UTF_8));
+    StripeRequest request =
+        new StripeRequest(
+            ApiResource.RequestMethod.POST,
+            server.url("/v1/files").toString(),
+            ImmutableMap.of("purpose", "dispute_evidence", "file", file),
+            null);
+    this.client.request(request);
+
+    RecordedRequest recorded = server.takeRequest();
+    String body = recorded.getBody().readUtf8();
+    assertTrue(body.contains("\r\n\r\nHello World!\r\n"));
+    assertEquals(
+        Long.toString(request.content().contentLength()), recorded.getHeader("Content-Length"));
+    assertNull(recorded.getHeader("Transfer-Encoding"));
+  }
+
+  @Test
+  public void testMultipartStreamRequestIsChunked() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.start();
+
+    StripeRequest request =
+        new StripeRequest(
+            ApiResource.RequestMethod.POST,
+            server.url("/v1/files").toString(),
+            ImmutableMap.of(
+                "purpose",
+                "dispute_evidence",
+                "file",
+                new ByteArrayInputStream("Hello World!".getBytes(StandardCharsets.UTF_8))),
+            null);
+    this.client.request(request);
+
+    RecordedRequest recorded = server.takeRequest();
+    assertTrue(recorded.getBody().readUtf8().contains("\r\n\r\nHello World!\r\n"));
+    assertEquals("chunked", recorded.getHeader("Transfer-Encoding"));
+    assertNull(recorded.getHeader("Content-Length"));
+  }
+
+  @Test
+  public void testDoesNotReuseClosedConnection() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.enqueue(
+        new MockResponse().setBody("{}").setSocketPolicy(SocketPolicy.DISCONNECT_AT_END));
+    server.enqueue(new MockResponse().setBody("{}").addHeader("Connection", "close"));
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.start();
+
+    this.client.request(getRequest(server));
+    this.client.request(getRequest(server));
+    this.client.request(getRequest(server));
+
+    assertEquals(0, server.takeRequest().getSequenceNumber());
+    assertEquals(0, server.takeRequest().getSequenceNumber());
+    assertEquals(0, server.takeRequest().getSequenceNumber());
+    assertEquals(3, this.client.getPoolStats().getHandshakes());
+  }
+
+  @Test
+  public void testResendsRequestOnClosedConnection() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST));
+    server.enqueue(new MockResponse().setBody("{\"n\":3}"));
+    server.start();
+
+    this.client.request(getRequest(server));
+    assertEquals("{\"n\":3}", this.client.request(getRequest(server)).body());
+
+    assertEquals(3, server.getRequestCount());
+    assertEquals(2, this.client.getPoolStats().getHandshakes());
+  }
+
+  @Test
+  public void testDoesNotResendStreamedBodyOnClosedConnection() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST));
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.start();
+
+    this.client.request(getRequest(server));
+    StripeRequest request =
+        new StripeRequest(
+            ApiResource.RequestMethod.POST,
+            server.url("/v1/files").toString(),
+            ImmutableMap.of(
+                "purpose",
+                "dispute_evidence",
+                "file",
+                new ByteArrayInputStream("Hello World!".getBytes(StandardCharsets.UTF_8))),
+            null);
+
+    assertThrows(ApiConnectionException.class, () -> this.client.request(request));
+    assertEquals(2, server.getRequestCount());
+  }
+
+  @Test
+  public void testDoesNotResendRequestOnReadTimeout() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.start();
+
+    this.client.request(getRequest(server));
+    StripeRequest request =
+        new StripeRequest(
+            ApiResource.RequestMethod.GET,
+            server.url("/v1/balance").toString(),
+            null,
+            RequestOptions.builder().setReadTimeout(200).build());
+
+    assertThrows(ApiConnectionException.class, () -> this.client.request(request));
+    assertEquals(2, server.getRequestCount());
+  }
+
+  @Test
+  public void testProbesOnlyConnectionsIdleForLong() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.enqueue(
+        new MockResponse().setBody("{}").setSocketPolicy(SocketPolicy.DISCONNECT_AT_END));
+    server.enqueue(
+        new MockResponse().setBody("{}").setSocketPolicy(SocketPolicy.DISCONNECT_AT_END));
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.start();
+
+    // A connection used just before is not probed: the request sent on it fails and is resent.
+    this.client.request(getRequest(server));
+    this.client.request(getRequest(server));
+    assertEquals(1, this.client.getPoolStats().getReused());
+
+    // A connection idle for longer is probed and discarded before it is used.
+    Thread.sleep(TimeUnit.NANOSECONDS.toMillis(PooledConnection.STALE_PROBE_MIN_IDLE_NANOS) + 100);
+    this.client.request(getRequest(server));
+    assertEquals(1, this.client.getPoolStats().getReused());
+    assertEquals(3, this.client.getPoolStats().getHandshakes());
+  }
+
+  @Test
+  public void testEvictsIdleConnections() throws Exception {
+    this.client = new PooledHttpClient(new ConnectionPool(4, 2, Duration.ZERO));
+
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.start();
+
+    this.client.request(getRequest(server));
+    this.client.getConnectionPool().evictIdleConnections();
+    assertEquals(0, this.client.getPoolStats().getIdle());
+
+    this.client.request(getRequest(server));
+    assertEquals(2, this.client.getPoolStats().getHandshakes());
+  }
+
+  @Test
+  public void testConnectionError() throws IOException {
+    MockWebServer server = new MockWebServer();
+    server.start();
+    String url = server.url("/v1/balance").toString();
+    server.shutdown();
+
+    assertThrows(
+        ApiConnectionException.class,
+        () -> {
+          this.client.request(new StripeRequest(ApiResource.RequestMethod.GET, url, null, null));
+        });
+    ConnectionPool.Stats stats = this.client.getPoolStats();
+    assertEquals(0, stats.getLeased());
+    assertEquals(0, stats.getIdle());
+  }
+
+  @Test
+  public void testWithLiveStripeResponseGetter() throws Exception {
+    @Cleanup MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setBody("{\"object\":\"balance\",\"livemode\":false}"));
+    server.enqueue(new MockResponse().setBody("{\"object\":\"balance\",\"livemode\":true}"));
+    server.start();
+
+    Stripe.overrideApiBase(server.url("").toString());
+    ApiResource.setStripeResponseGetter(new LiveStripeResponseGetter(this.client));
+
+    assertEquals(false, Balance.retrieve().getLivemode());
+    assertEquals(true, Balance.retrieve().getLivemode());
+    assertEquals(1, this.client.getPoolStats().getHandshakes());
+  }
+}
@@ -0,0 +1,145 @@
+package com.stripe.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.withSettings;
+
+import com.stripe.BaseStripeTest;
+import com.stripe.Stripe;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Balance;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+public class RequestCoalescerTest extends BaseStripeTest {
+  private final CountDownLatch responseLatch = new CountDownLatch(1);
+
+  private HttpClient client;
+
+  private RequestCoalescer coalescer;
+
+  private LiveStripeResponseGetter getter;
+
+  @BeforeEach
+  public void setUpCoalescer() throws StripeException {
+    this.client =
+        Mockito.mock(
+            HttpClient.class,
+            withSettings().useConstructor().defaultAnswer(Mockito.CALLS_REAL_METHODS));
+    Mockito.doAnswer(
+            invocation -> {
+              this.responseLatch.await();
+              return new StripeResponse(
+                  200,
+                  HttpHeaders.of(Collections.emptyMap()),
+                  "{\"object\":\"balance\",\"livemode\":false}");
+            })
+        .when(this.client)
+        .request(ArgumentMatchers.any());
+
+    this.coalescer = new RequestCoalescer();
+    this.getter = new LiveStripeResponseGetter(this.client, this.coalescer);
+  }
+
+  private CompletableFuture<Balance> retrieveBalanceAsync(RequestOptions options) {
+    return this.getter.requestAsync(
+        ApiResource.RequestMethod.GET,
+        String.format("%s/v1/balance", Stripe.getApiBase()),
+        null,
+        Balance.class,
+        options);
+  }
+
+  @Test
+  public void testCoalescesConcurrentRequests() throws Exception {
+    CompletableFuture<Balance> first = retrieveBalanceAsync(null);
+    CompletableFuture<Balance> second = retrieveBalanceAsync(null);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<Balance> third =
+        executor.submit(
+            () ->
+                this.getter.request(
+                    ApiResource.RequestMethod.GET,
+                    String.format("%s/v1/balance", Stripe.getApiBase()),
+                    null,
+                    Balance.class,
+                    null));
+    while (this.coalescer.getStats().getCoalesced() < 2) {
+      Thread.sleep(1);
+    }
+    this.responseLatch.countDown();
+
+    Balance firstBalance = first.get();
+    Balance secondBalance = second.get();
+    Balance thirdBalance = third.get();
+    executor.shutdown();
+
+    // Each caller gets its own object, deserialized from the same response
+    assertNotSame(firstBalance, secondBalance);
+    assertNotSame(firstBalance, thirdBalance);
+    assertSame(firstBalance.getLastResponse(), secondBalance.getLastResponse());
+    assertSame(firstBalance.getLastResponse(), thirdBalance.getLastResponse());
+    Mockito.verify(this.client, Mockito.times(1)).request(ArgumentMatchers.any());
+
+    RequestCoalescer.Stats stats = this.coalescer.getStats();
+    assertEquals(1, stats.getSent());
+    assertEquals(2, stats.getCoalesced());
+    assertEquals(0, stats.getInFlight());
+  }
+
+  @Test
+  public void testDoesNotShareCompletedResponses() throws Exception {
+    this.responseLatch.countDown();
+
+    retrieveBalanceAsync(null).get();
+    retrieveBalanceAsync(null).get();
+
+    Mockito.verify(this.client, Mockito.times(2)).request(ArgumentMatchers.any());
+    assertEquals(0, this.coalescer.getStats().getCoalesced());
+  }
+
+  @Test
+  public void testDoesNotCoalesceRequestsForDifferentAccounts() throws Exception {
+    CompletableFuture<Balance> first = retrieveBalanceAsync(null);
+    CompletableFuture<Balance> second =
+        retrieveBalanceAsync(RequestOptions.builder().setStripeAccount("acct_123").build());
+    this.responseLatch.countDown();
+
+    first.get();
+    second.get();
+
+    Mockito.verify(this.client, Mockito.times(2)).request(ArgumentMatchers.any());
+    assertEquals(2, this.coalescer.getStats().getSent());
+  }
+
+  @Test
+  public void testDoesNotCoalesceRequestsForDifferentResponseTypes() throws Exception {
+    StripeRequest request =
+        new StripeRequest(
+            ApiResource.RequestMethod.GET,
+            String.format("%s/v1/balance", Stripe.getApiBase()),
+            null,
+            null);
+    CompletableFuture<StripeResponse> first =
+        this.coalescer.requestAsync(request.withResponseType(Balance.class), this.client);
+    CompletableFuture<StripeResponse> second =
+        this.coalescer.requestAsync(request.withResponseType(null), this.client);
+    this.responseLatch.countDown();
+
+    first.get();
+    second.get();
+
+    Mockito.verify(this.client, Mockito.times(2)).request(ArgumentMatchers.any());
+    assertEquals(2, this.coalescer.getStats().getSent());
+  }
+}
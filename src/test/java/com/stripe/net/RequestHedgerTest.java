@@ -0,0 +1,218 @@
+package com.stripe.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.stripe.BaseStripeTest;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class RequestHedgerTest extends BaseStripeTest {
+  private static final HttpHeaders EMPTY_HEADERS = HttpHeaders.of(Collections.emptyMap());
+
+  private final List<CompletableFuture<Void>> timers = new ArrayList<>();
+
+  private final List<CompletableFuture<StripeResponse>> sent = new ArrayList<>();
+
+  private final RetryScheduler scheduler =
+      new RetryScheduler(Executors.newSingleThreadScheduledExecutor()) {
+        @Override
+        public CompletableFuture<Void> delay(Duration delay) {
+          CompletableFuture<Void> timer = new CompletableFuture<>();
+          timers.add(timer);
+          return timer;
+        }
+      };
+
+  private RequestHedger hedger;
+
+  private StripeRequest request;
+
+  @BeforeEach
+  public void setUpHedger() throws StripeException {
+    this.hedger = new RequestHedger(0.95, Duration.ofMillis(10), 0.1);
+    this.request =
+        new StripeRequest(
+            ApiResource.RequestMethod.GET, "http://example.com/v1/customers/cus_123", null, null);
+  }
+
+  private CompletableFuture<StripeResponse> send(StripeRequest request) {
+    CompletableFuture<StripeResponse> future = new CompletableFuture<>();
+    this.sent.add(future);
+    return future;
+  }
+
+  private void warmUp() {
+    for (int i = 0; i < RequestHedger.MIN_LATENCY_SAMPLES; i++) {
+      this.hedger.send(
+          this.request,
+          r -> CompletableFuture.completedFuture(new StripeResponse(200, EMPTY_HEADERS, "{}")),
+          this.scheduler);
+    }
+  }
+
+  @Test
+  public void testDoesNotHedgeBeforeEnoughLatencies() {
+    this.hedger.send(this.request, this::send, this.scheduler);
+
+    assertTrue(this.timers.isEmpty());
+    assertNull(this.hedger.getStats().getHedgeDelay());
+  }
+
+  @Test
+  public void testHedgeWins() throws Exception {
+    warmUp();
+    assertEquals(Duration.ofMillis(10), this.hedger.getStats().getHedgeDelay());
+
+    CompletableFuture<StripeResponse> result =
+        this.hedger.send(this.request, this::send, this.scheduler);
+    assertEquals(1, this.sent.size());
+
+    this.timers.get(0).complete(null);
+    assertEquals(2, this.sent.size());
+
+    StripeResponse response = new StripeResponse(200, EMPTY_HEADERS, "{\"hedge\":true}");
+    this.sent.get(1).complete(response);
+
+    assertSame(response, result.get());
+    assertTrue(this.sent.get(0).isCancelled());
+
+    RequestHedger.Stats stats = this.hedger.getStats();
+    assertEquals(21, stats.getRequests());
+    assertEquals(1, stats.getHedges());
+    assertEquals(1, stats.getHedgeWins());
+    assertEquals(1.0, stats.getWinRate(), 1e-9);
+  }
+
+  @Test
+  public void testSamplesPrimaryLatencyWhenHedgeWins() throws Exception {
+    warmUp();
+
+    for (int i = 0; i < 2; i++) {
+      this.hedger.send(this.request, this::send, this.scheduler);
+      Thread.sleep(50);
+      this.timers.get(i).complete(null);
+      this.sent.get(2 * i + 1).complete(new StripeResponse(200, EMPTY_HEADERS, "{}"));
+    }
+
+    // The fast hedges are not sampled: the cancelled requests had been waiting for 50ms.
+    assertTrue(this.hedger.getStats().getHedgeDelay().toMillis() >= 50);
+  }
+
+  @Test
+  public void testPrimaryRespondsBeforeDelay() throws Exception {
+    warmUp();
+
+    CompletableFuture<StripeResponse> result =
+        this.hedger.send(this.request, this::send, this.scheduler);
+    StripeResponse response = new StripeResponse(200, EMPTY_HEADERS, "{}");
+    this.sent.get(0).complete(response);
+
+    assertSame(response, result.get());
+    assertTrue(this.timers.get(0).isCancelled());
+    assertEquals(1, this.sent.size());
+    assertEquals(0, this.hedger.getStats().getHedges());
+  }
+
+  @Test
+  public void testWaitsForHedgeWhenPrimaryFails() throws Exception {
+    warmUp();
+
+    CompletableFuture<StripeResponse> result =
+        this.hedger.send(this.request, this::send, this.scheduler);
+    this.timers.get(0).complete(null);
+    this.sent.get(0).completeExceptionally(new ApiConnectionException("foo"));
+
+    assertFalse(result.isDone());
+
+    StripeResponse response = new StripeResponse(200, EMPTY_HEADERS, "{}");
+    this.sent.get(1).complete(response);
+    assertSame(response, result.get());
+  }
+
+  @Test
+  public void testWaitsForHedgeWhenPrimaryReturnsError() throws Exception {
+    warmUp();
+
+    CompletableFuture<StripeResponse> result =
+        this.hedger.send(this.request, this::send, this.scheduler);
+    this.timers.get(0).complete(null);
+    this.sent.get(0).complete(new StripeResponse(503, EMPTY_HEADERS, "{}"));
+
+    assertFalse(result.isDone());
+    assertFalse(this.sent.get(1).isCancelled());
+
+    StripeResponse response = new StripeResponse(200, EMPTY_HEADERS, "{}");
+    this.sent.get(1).complete(response);
+    assertSame(response, result.get());
+    assertEquals(1, this.hedger.getStats().getHedgeWins());
+  }
+
+  @Test
+  public void testReturnsErrorResponseWhenNoCopySucceeds() throws Exception {
+    warmUp();
+
+    CompletableFuture<StripeResponse> result =
+        this.hedger.send(this.request, this::send, this.scheduler);
+    this.timers.get(0).complete(null);
+    StripeResponse response = new StripeResponse(429, EMPTY_HEADERS, "{}");
+    this.sent.get(0).complete(response);
+    this.sent.get(1).completeExceptionally(new ApiConnectionException("foo"));
+
+    assertSame(response, result.get());
+    assertEquals(0, this.hedger.getStats().getHedgeWins());
+  }
+
+  @Test
+  public void testReturnsErrorResponseWithoutHedge() throws Exception {
+    warmUp();
+
+    CompletableFuture<StripeResponse> result =
+        this.hedger.send(this.request, this::send, this.scheduler);
+    StripeResponse response = new StripeResponse(500, EMPTY_HEADERS, "{}");
+    this.sent.get(0).complete(response);
+
+    assertSame(response, result.get());
+    assertTrue(this.timers.get(0).isCancelled());
+  }
+
+  @Test
+  public void testHedgesAreCapped() {
+    this.hedger = new RequestHedger(0.95, Duration.ofMillis(10), 0);
+    warmUp();
+
+    for (int i = 0; i < 11; i++) {
+      this.hedger.send(this.request, this::send, this.scheduler);
+      this.timers.get(i).complete(null);
+    }
+
+    RequestHedger.Stats stats = this.hedger.getStats();
+    assertEquals(10, stats.getHedges());
+    assertEquals(1, stats.getDenied());
+  }
+
+  @Test
+  public void testDoesNotHedgePost() throws StripeException {
+    warmUp();
+
+    this.hedger.send(
+        new StripeRequest(
+            ApiResource.RequestMethod.POST, "http://example.com/v1/customers", null, null),
+        this::send,
+        this.scheduler);
+
+    assertTrue(this.timers.isEmpty());
+    assertEquals(20, this.hedger.getStats().getRequests());
+  }
+}
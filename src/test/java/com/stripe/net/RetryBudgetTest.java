@@ -0,0 +1,58 @@
+package com.stripe.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class RetryBudgetTest {
+  @Test
+  public void testStartsFull() {
+    RetryBudget budget = new RetryBudget(0.5, 2);
+
+    assertTrue(budget.tryAcquireRetry());
+    assertTrue(budget.tryAcquireRetry());
+    assertFalse(budget.tryAcquireRetry());
+
+    RetryBudget.Stats stats = budget.getStats();
+    assertEquals(0, stats.getAvailableTokens(), 1e-9);
+    assertEquals(2, stats.getRetriesAllowed());
+    assertEquals(1, stats.getRetriesDenied());
+  }
+
+  @Test
+  public void testFirstAttemptsRefillBudget() {
+    RetryBudget budget = new RetryBudget(0.5, 2);
+    budget.tryAcquireRetry();
+    budget.tryAcquireRetry();
+
+    budget.recordFirstAttempt();
+    assertFalse(budget.tryAcquireRetry());
+    budget.recordFirstAttempt();
+    assertTrue(budget.tryAcquireRetry());
+
+    RetryBudget.Stats stats = budget.getStats();
+    assertEquals(2, stats.getFirstAttempts());
+    assertEquals(3, stats.getRetriesAllowed());
+    assertEquals(1, stats.getRetriesDenied());
+  }
+
+  @Test
+  public void testCapacityIsCapped() {
+    RetryBudget budget = new RetryBudget(1, 3);
+
+    for (int i = 0; i < 10; i++) {
+      budget.recordFirstAttempt();
+    }
+
+    assertEquals(3, budget.getStats().getAvailableTokens(), 1e-9);
+  }
+
+  @Test
+  public void testInvalidParameters() {
+    assertThrows(IllegalArgumentException.class, () -> new RetryBudget(-0.1, 10));
+    assertThrows(IllegalArgumentException.class, () -> new RetryBudget(0.1, 0));
+  }
+}
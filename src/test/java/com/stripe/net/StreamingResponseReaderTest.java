@@ -0,0 +1,197 @@
+package com.stripe.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.stripe.BaseStripeTest;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.ApiException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Customer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+public class StreamingResponseReaderTest extends BaseStripeTest {
+  private static final String CUSTOMER_JSON =
+      "{\"id\": \"cus_123\", \"object\": \"customer\", \"unknown_property\": \"value\"}";
+
+  private static final String URL = "https://api.stripe.com/v1/customers/cus_123";
+
+  /** A client that answers every request with the same body. */
+  private static class StubHttpClient extends HttpClient {
+    private final String body;
+    private final boolean failMidway;
+
+    StubHttpClient(String body, boolean failMidway) {
+      this.body = body;
+      this.failMidway = failMidway;
+    }
+
+    @Override
+    public StripeResponse request(StripeRequest request) throws StripeException {
+      InputStream stream = new ByteArrayInputStream(this.body.getBytes(StandardCharsets.UTF_8));
+      if (this.failMidway) {
+        stream =
+            new SequenceInputStream(
+                stream,
+                new InputStream() {
+                  @Override
+                  public int read() throws IOException {
+                    throw new IOException("Connection reset");
+                  }
+                });
+      }
+      try {
+        return this.createResponse(request, 200, HttpHeaders.of(Collections.emptyMap()), stream);
+      } catch (IOException e) {
+        throw new ApiConnectionException(e.getMessage(), e);
+      }
+    }
+  }
+
+  private static Customer retrieve(HttpClient client) throws StripeException {
+    return new LiveStripeResponseGetter(client)
+        .request(ApiResource.RequestMethod.GET, URL, null, Customer.class, null);
+  }
+
+  @Test
+  public void testDisabledByDefault() throws StripeException {
+    StubHttpClient client = new StubHttpClient(CUSTOMER_JSON, false);
+    assertFalse(client.getResponseStreaming());
+
+    StripeRequest request =
+        new StripeRequest(ApiResource.RequestMethod.GET, URL, null, null)
+            .withResponseType(Customer.class);
+    StripeResponse response = client.request(request);
+
+    assertNull(response.takeDeserializedBody(Customer.class));
+    assertEquals(CUSTOMER_JSON, response.body());
+  }
+
+  @Test
+  public void testDeserializesWhileReading() throws StripeException {
+    StubHttpClient client = new StubHttpClient(CUSTOMER_JSON, false);
+    client.setResponseStreaming(true);
+
+    StripeRequest request =
+        new StripeRequest(ApiResource.RequestMethod.GET, URL, null, null)
+            .withResponseType(Customer.class);
+    StripeResponse response = client.request(request);
+
+    Customer customer = response.takeDeserializedBody(Customer.class);
+    assertNotNull(customer);
+    assertEquals("cus_123", customer.getId());
+    // Handed out only once
+    assertNull(response.takeDeserializedBody(Customer.class));
+  }
+
+  @Test
+  public void testRawJsonObjectWithoutRawBody() throws StripeException {
+    StubHttpClient client = new StubHttpClient(CUSTOMER_JSON, false);
+    client.setResponseStreaming(true);
+    client.setRetainRawResponseBody(false);
+
+    Customer customer = retrieve(client);
+
+    assertEquals("cus_123", customer.getId());
+    assertEquals(200, customer.getLastResponse().code());
+    // The body is rebuilt from the object, without the properties the library does not know.
+    assertEquals("cus_123", customer.getRawJsonObject().get("id").getAsString());
+    assertFalse(customer.getRawJsonObject().has("unknown_property"));
+    assertFalse(customer.getLastResponse().hasOriginalBody());
+  }
+
+  @Test
+  public void testRawJsonObjectWithRawBody() throws StripeException {
+    StubHttpClient client = new StubHttpClient(CUSTOMER_JSON, false);
+    client.setResponseStreaming(true);
+
+    Customer customer = retrieve(client);
+
+    assertEquals("cus_123", customer.getId());
+    assertTrue(customer.getLastResponse().hasOriginalBody());
+    assertEquals(CUSTOMER_JSON, customer.getLastResponse().body());
+    assertTrue(customer.getRawJsonObject().has("unknown_property"));
+  }
+
+  @Test
+  public void testCoalescedRequestsAreDeserializedWhileReading() throws StripeException {
+    StubHttpClient client = new StubHttpClient(CUSTOMER_JSON, false);
+    client.setResponseStreaming(true);
+
+    StripeResponse response =
+        new RequestCoalescer()
+            .request(
+                new StripeRequest(ApiResource.RequestMethod.GET, URL, null, null)
+                    .withResponseType(Customer.class),
+                client);
+
+    assertNotNull(response.takeDeserializedBody(Customer.class));
+    // The callers that did not take the object deserialize the original body.
+    assertEquals(CUSTOMER_JSON, response.body());
+  }
+
+  @Test
+  public void testCoalescedRequestsWithoutRawBodyAreNotDeserializedWhileReading()
+      throws StripeException {
+    StubHttpClient client = new StubHttpClient(CUSTOMER_JSON, false);
+    client.setResponseStreaming(true);
+    client.setRetainRawResponseBody(false);
+    LiveStripeResponseGetter getter = new LiveStripeResponseGetter(client, new RequestCoalescer());
+
+    Customer customer =
+        getter.request(ApiResource.RequestMethod.GET, URL, null, Customer.class, null);
+
+    assertEquals("cus_123", customer.getId());
+    assertTrue(customer.getLastResponse().hasOriginalBody());
+  }
+
+  @Test
+  public void testMalformedBody() {
+    StubHttpClient client = new StubHttpClient("{\"id\": \"cus_123\",", false);
+    client.setResponseStreaming(true);
+    client.setRetainRawResponseBody(true);
+
+    ApiException e = assertThrows(ApiException.class, () -> retrieve(client));
+    assertTrue(e.getMessage().contains("{\"id\": \"cus_123\","));
+  }
+
+  @Test
+  public void testTrailingData() {
+    StubHttpClient client = new StubHttpClient(CUSTOMER_JSON + " {}", false);
+    client.setResponseStreaming(true);
+
+    assertThrows(ApiException.class, () -> retrieve(client));
+  }
+
+  @Test
+  public void testNetworkErrorWhileReading() {
+    StubHttpClient client = new StubHttpClient("{\"id\": \"cus_123\",", true);
+    client.setResponseStreaming(true);
+
+    ApiConnectionException e = assertThrows(ApiConnectionException.class, () -> retrieve(client));
+    assertEquals("Connection reset", e.getCause().getMessage());
+  }
+
+  @Test
+  public void testUsesDeserializedObject() throws StripeException {
+    StubHttpClient client = new StubHttpClient(CUSTOMER_JSON, false);
+    client.setResponseStreaming(true);
+    client.setRetainRawResponseBody(false);
+
+    Customer customer = retrieve(client);
+    customer.setDescription("changed");
+
+    // Without the raw body, the body is built from the object the first time it is requested.
+    assertTrue(customer.getLastResponse().body().contains("changed"));
+  }
+}
@@ -2,6 +2,7 @@ package com.stripe.net;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -172,4 +173,31 @@ public class StripeRequestTest extends BaseStripeTest {
     assertTrue(updatedRequest.headers().firstValue("New-Header").isPresent());
     assertEquals("bar", updatedRequest.headers().firstValue("New-Header").get());
   }
+
+  @Test
+  public void testCtorReusesHeadersForSameOptions() throws StripeException {
+    RequestOptions options =
+        RequestOptions.builder().setApiKey("sk_reused").setStripeAccount("acct_123").build();
+    StripeRequest request1 =
+        new StripeRequest(ApiResource.RequestMethod.POST, "http://example.com/post", null, options);
+    StripeRequest request2 =
+        new StripeRequest(ApiResource.RequestMethod.POST, "http://example.com/post", null, options);
+    StripeRequest request3 =
+        new StripeRequest(
+            ApiResource.RequestMethod.GET,
+            "http://example.com/get",
+            null,
+            options.toBuilder().setStripeAccount("acct_456").build());
+
+    assertEquals(
+        request1.headers().allValues("Authorization"),
+        request2.headers().allValues("Authorization"));
+    assertEquals("acct_123", request2.headers().firstValue("Stripe-Account").orElse(null));
+    // Idempotency keys are still generated for each request.
+    assertNotEquals(
+        request1.headers().firstValue("Idempotency-Key").get(),
+        request2.headers().firstValue("Idempotency-Key").get());
+    assertEquals("acct_456", request3.headers().firstValue("Stripe-Account").orElse(null));
+    assertFalse(request3.headers().firstValue("Idempotency-Key").isPresent());
+  }
 }
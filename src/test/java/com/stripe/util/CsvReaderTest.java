@@ -0,0 +1,127 @@
+package com.stripe.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+public class CsvReaderTest {
+  @Test
+  public void testReadRows() throws IOException {
+    String csv =
+        "id,description,net,created,livemode\r\n"
+            + "txn_1,\"Coffee, large\",12.50,2019-12-31 23:59:59,false\r\n"
+            + "\r\n"
+            + "txn_2,\"Said \"\"hi\"\"\nover two lines\",-3,2020-01-01T00:00:00Z,true\n"
+            + "txn_3,,,,";
+    CsvReader reader = new CsvReader(new StringReader(csv));
+
+    assertEquals(
+        Arrays.asList("id", "description", "net", "created", "livemode"), reader.getColumns());
+
+    CsvReader.Row row = reader.next();
+    assertEquals(1, row.getNumber());
+    assertEquals("txn_1", row.get("id"));
+    assertEquals("Coffee, large", row.get("description"));
+    assertEquals(new BigDecimal("12.50"), row.getBigDecimal("net"));
+    assertEquals(Instant.parse("2019-12-31T23:59:59Z"), row.getInstant("created"));
+    assertEquals(Boolean.FALSE, row.getBoolean("livemode"));
+
+    row = reader.next();
+    assertEquals(2, row.getNumber());
+    assertEquals("Said \"hi\"\nover two lines", row.get(1));
+    assertEquals(Long.valueOf(-3), row.getLong("net"));
+    assertEquals(Instant.parse("2020-01-01T00:00:00Z"), row.getInstant("created"));
+    assertEquals(Boolean.TRUE, row.getBoolean("livemode"));
+
+    row = reader.next();
+    assertEquals(5, row.size());
+    assertEquals("", row.get("description"));
+    assertNull(row.getLong("net"));
+    assertNull(row.getInstant("created"));
+    assertNull(row.getBoolean("livemode"));
+    assertNull(row.get(5));
+
+    assertFalse(reader.hasNext());
+    assertThrows(NoSuchElementException.class, reader::next);
+  }
+
+  @Test
+  public void testByteOrderMark() throws IOException {
+    byte[] csv = "\uFEFF\"id\",amount\nch_1,100\n".getBytes(StandardCharsets.UTF_8);
+    CsvReader reader = CsvReader.open(new ByteArrayInputStream(csv));
+
+    assertEquals(Arrays.asList("id", "amount"), reader.getColumns());
+    CsvReader.Row row = reader.next();
+    assertEquals("ch_1", row.get("id"));
+    assertEquals("{id=ch_1, amount=100}", row.toMap().toString());
+  }
+
+  @Test
+  public void testUnknownColumn() throws IOException {
+    CsvReader reader = new CsvReader(new StringReader("id\nch_1\n"));
+
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> reader.next().get("amount"));
+    assertEquals("No column named amount", e.getMessage());
+  }
+
+  @Test
+  public void testUnterminatedQuote() throws IOException {
+    CsvReader reader = new CsvReader(new StringReader("id,description\nch_1,\"Coffee\n"));
+
+    UncheckedIOException e = assertThrows(UncheckedIOException.class, reader::hasNext);
+    assertTrue(e.getCause() instanceof EOFException);
+  }
+
+  @Test
+  public void testStream() throws IOException {
+    try (Stream<CsvReader.Row> rows = new CsvReader(new StringReader(amounts(100))).stream()) {
+      assertEquals(5050, rows.mapToLong(row -> row.getLong("amount")).sum());
+    }
+  }
+
+  @Test
+  public void testParallelStream() throws IOException {
+    try (Stream<CsvReader.Row> rows =
+        new CsvReader(new StringReader(amounts(10000))).parallelStream(64)) {
+      assertEquals(50005000, rows.mapToLong(row -> row.getLong("amount")).sum());
+    }
+
+    // Rows keep the order of the file.
+    try (Stream<CsvReader.Row> rows =
+        new CsvReader(new StringReader(amounts(1000))).parallelStream(7)) {
+      assertEquals(
+          amounts(1000),
+          rows.map(row -> row.get("amount") + "\n")
+              .collect(Collectors.joining("", "amount\n", "")));
+    }
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new CsvReader(new StringReader(amounts(1))).parallelStream(0));
+  }
+
+  private static String amounts(int count) {
+    StringBuilder csv = new StringBuilder("amount\n");
+    for (int i = 1; i <= count; i++) {
+      csv.append(i).append('\n');
+    }
+    return csv.toString();
+  }
+}